@@ -0,0 +1,92 @@
+package lib.nbt.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+
+/**
+ * Throughput of the bulk array paths of {@link lib.nbt.NBTType#readFrom(DataInputStream)}
+ * and {@link lib.nbt.NBTType#writePayload(Object, java.io.DataOutput)}, against
+ * one-call-per-element loops, on chunk-sized long arrays.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayCodecBenchmark {
+
+  @Param({ "4096", "16384", "65536" })
+  public int size;
+
+  private long[] values;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    values = new long[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = random.nextLong();
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NBTType.LONG_ARRAY.writePayload(values, new DataOutputStream(bytes));
+    encoded = bytes.toByteArray();
+  }
+
+  @Benchmark
+  public long[] readLoop() throws IOException {
+    DataInputStream source = new DataInputStream(new ByteArrayInputStream(encoded));
+    int length = source.readInt();
+    long[] out = new long[length];
+    for (int i = 0; i < length; i++) {
+      out[i] = source.readLong();
+    }
+    return out;
+  }
+
+  @Benchmark
+  public Object readBulk() throws IOException, NBTException {
+    return NBTType.LONG_ARRAY.readFrom(new DataInputStream(new ByteArrayInputStream(encoded)));
+  }
+
+  @Benchmark
+  public int writeLoop() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(values.length * Long.BYTES + 4);
+    DataOutputStream dest = new DataOutputStream(bytes);
+    dest.writeInt(values.length);
+    for (long l : values) {
+      dest.writeLong(l);
+    }
+    return bytes.size();
+  }
+
+  @Benchmark
+  public int writeBulk() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(values.length * Long.BYTES + 4);
+    NBTType.LONG_ARRAY.writePayload(values, new DataOutputStream(bytes));
+    return bytes.size();
+  }
+}
@@ -0,0 +1,105 @@
+package lib.nbt.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.bind.Binding;
+import lib.nbt.bind.NBTField;
+import lib.nbt.io.Compression;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.NBTStreamReader;
+import lib.nbt.io.StringInterner;
+
+/**
+ * Decoding an inventory of items into objects with a {@link lib.nbt.bind.Binding},
+ * straight from the stream and through a compound tree, and encoding them back.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingBenchmark {
+
+  public static class Item {
+    @NBTField("id") String id;
+    @NBTField(value = "Count", type = NBTType.BYTE) int count;
+    @NBTField("Slot") byte slot;
+    @NBTField("Damage") short damage;
+  }
+
+  public static class Inventory {
+    @NBTField("Items") List<Item> items;
+    @NBTField("Owner") String owner;
+    @NBTField("Seed") long seed;
+  }
+
+  @Param({ "64", "4096" })
+  public int items;
+
+  private Binding<Inventory> binding;
+  private Inventory inventory;
+  private byte[] data;
+
+  @Setup
+  public void setup() throws IOException {
+    binding = Binding.of(Inventory.class);
+    inventory = new Inventory();
+    inventory.owner = "Steve";
+    inventory.seed = 42;
+    inventory.items = new ArrayList<>(items);
+    for (int i = 0; i < items; i++) {
+      Item item = new Item();
+      item.id = "minecraft:item_" + (i % 97);
+      item.count = i % 64 + 1;
+      item.slot = (byte)i;
+      item.damage = (short)(i % 250);
+      inventory.items.add(item);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    binding.write(inventory, out, Compression.NONE);
+    data = out.toByteArray();
+  }
+
+  @Benchmark
+  public Inventory stream() throws IOException, NBTException {
+    NBTStreamReader reader = new NBTStreamReader(data, 0, data.length);
+    reader.setInterner(StringInterner.global());
+    return binding.read(reader);
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public Inventory tree() throws IOException, NBTException {
+    Object root = new NBTReader(data, 0, data.length).readNBT().getValue();
+    return binding.fromCompound((Map<String, ?>)root);
+  }
+
+  @Benchmark
+  public int write() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+    binding.write(inventory, out, Compression.NONE);
+    return out.size();
+  }
+}
@@ -0,0 +1,125 @@
+package lib.nbt.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+import lib.nbt.io.NBTCodec;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.NBTWriter;
+
+/**
+ * Reading and writing back small GZIPped player-like documents, one per
+ * operation, with a fresh {@link lib.nbt.io.NBTReader} and
+ * {@link lib.nbt.io.NBTWriter} against one reused {@link lib.nbt.io.NBTCodec}.
+ *
+ * The difference lies in allocation rather than time, so run it with the
+ * GC profiler and compare <code>gc.alloc.rate.norm</code>, the bytes
+ * allocated per document:
+ * <pre>
+ * java -jar bench/target/benchmarks.jar CodecAllocationBenchmark -prof gc
+ * </pre>
+ * Both variants allocate the decoded trees alike. Native zlib state is not
+ * on the heap: the fresh variant also creates an inflater and a deflater
+ * per document, which the codec does not.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecAllocationBenchmark {
+  private static final int DOCUMENTS = 64;
+
+  private byte[][] documents;
+  private NBTCodec codec;
+  private ByteArrayOutputStream buffer;
+  private int next;
+
+  @Setup
+  public void setup() throws IOException {
+    documents = new byte[DOCUMENTS][];
+    Random random = new Random(42);
+    for (int i = 0; i < documents.length; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new NBTWriter(out, true).writeNBT(player(random));
+      documents[i] = out.toByteArray();
+    }
+    codec = new NBTCodec();
+    buffer = new ByteArrayOutputStream(8192);
+  }
+
+  @TearDown
+  public void tearDown() {
+    codec.close();
+  }
+
+  private byte[] nextDocument() {
+    next = (next + 1) % documents.length;
+    return documents[next];
+  }
+
+  @Benchmark
+  public int fresh() throws IOException, NBTException {
+    Tag root = new NBTReader(new ByteArrayInputStream(nextDocument())).readNBT();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    new NBTWriter(out, true).writeNBT(root);
+    return out.size();
+  }
+
+  @Benchmark
+  public int reused() throws IOException, NBTException {
+    Tag root = codec.read(new ByteArrayInputStream(nextDocument()));
+    buffer.reset();
+    codec.write(root, buffer);
+    return buffer.size();
+  }
+
+  /**
+   * @return A compound shaped like a small player data file.
+   */
+  private static Tag player(Random random) {
+    Map<String, Object> root = new HashMap<>();
+    NBTList pos = new NBTList(NBTType.DOUBLE);
+    for (int i = 0; i < 3; i++) {
+      pos.add(random.nextDouble() * 1000);
+    }
+    root.put("Pos", pos);
+    root.put("Health", 20f);
+    root.put("XpLevel", random.nextInt(50));
+    root.put("UUID", new int[] { random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt() });
+    NBTList inventory = new NBTList(NBTType.COMPOUND);
+    for (int i = 0; i < 20; i++) {
+      Map<String, Object> item = new HashMap<>();
+      item.put("Slot", (byte)i);
+      item.put("id", "minecraft:item_" + random.nextInt(40));
+      item.put("Count", (byte)(1 + random.nextInt(64)));
+      inventory.add(item);
+    }
+    root.put("Inventory", inventory);
+    return new Tag("", root);
+  }
+}
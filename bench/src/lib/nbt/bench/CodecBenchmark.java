@@ -0,0 +1,66 @@
+package lib.nbt.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.Tag;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.NBTWriter;
+
+/**
+ * Throughput of {@link lib.nbt.io.NBTReader#readNBT()} and
+ * {@link lib.nbt.io.NBTWriter#writeNBT(Tag)} on each {@link lib.nbt.bench.Corpus}
+ * document, in memory, with and without GZIP.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({ "level", "deep", "longs", "wide" })
+  public String corpus;
+
+  @Param({ "false", "true" })
+  public boolean compressed;
+
+  private Tag root;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws IOException, NBTException {
+    root = Corpus.load(corpus);
+    encoded = Corpus.encode(root, compressed);
+  }
+
+  @Benchmark
+  public Tag readNBT() throws IOException, NBTException {
+    return new NBTReader(new ByteArrayInputStream(encoded), compressed).readNBT();
+  }
+
+  @Benchmark
+  public int writeNBT() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length);
+    new NBTWriter(out, compressed).writeNBT(root);
+    return out.size();
+  }
+}
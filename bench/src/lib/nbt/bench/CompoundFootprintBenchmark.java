@@ -0,0 +1,143 @@
+package lib.nbt.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.Tag;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.RegionFile;
+import lib.nbt.io.StringInterner;
+
+/**
+ * The heap retained by a batch of documents read into {@link java.util.HashMap}
+ * compounds, into {@link lib.nbt.CompactCompound}s, and into compact compounds
+ * with interned strings.
+ *
+ * Each operation reads the whole batch and keeps it reachable. The score is
+ * the time that takes; the footprint is measured around each iteration,
+ * outside the timed section, and printed as the retained bytes per document.
+ * The batch is every chunk of the region files in the <code>regions</code>
+ * directory, e.g. <code>-p regions=world/region</code>, or without one,
+ * {@value #COPIES} copies of the <code>level</code> {@link lib.nbt.bench.Corpus}
+ * document.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CompoundFootprintBenchmark {
+  static final int COPIES = 4096;
+
+  @Param({ "hashmap", "compact", "intern" })
+  public String mode;
+
+  @Param({ "" })
+  public String regions;
+
+  private List<Path> files;
+  private byte[] level;
+  private long baseline;
+
+  /**
+   * Keeps the documents of the current iteration reachable while they are measured.
+   */
+  private List<Tag> held;
+
+  @Setup
+  public void setup() throws IOException, NBTException {
+    if (regions.isEmpty()) {
+      level = Corpus.encode(Corpus.load("level"), false);
+      return;
+    }
+    try (Stream<Path> listing = Files.list(Paths.get(regions))) {
+      files = listing.filter(p -> p.getFileName().toString().endsWith(".mca")).sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void measureBaseline() {
+    held = null;
+    baseline = usedHeap();
+  }
+
+  @TearDown(Level.Iteration)
+  public void measureRetained() {
+    long retained = usedHeap() - baseline;
+    System.out.printf("%n%s: %d documents, %.1f MiB retained, %d bytes/document%n", mode, held.size(),
+        retained / (1024.0 * 1024.0), held.isEmpty() ? 0 : retained / held.size());
+    held = null;
+  }
+
+  @Benchmark
+  public List<Tag> read() throws IOException, NBTException {
+    boolean compact = !mode.equals("hashmap");
+    StringInterner interner = mode.equals("intern") ? new StringInterner(1 << 16) : null;
+    List<Tag> documents = new ArrayList<>();
+    if (files == null) {
+      for (int i = 0; i < COPIES; i++) {
+        NBTReader reader = new NBTReader(level, 0, level.length);
+        reader.setCompact(compact);
+        reader.setInterner(interner);
+        documents.add(reader.readNBT());
+      }
+    } else {
+      for (Path file : files) {
+        try (RegionFile region = new RegionFile(file)) {
+          region.setCompact(compact);
+          region.setInterner(interner);
+          for (int z = 0; z < RegionFile.REGION_SIZE; z++) {
+            for (int x = 0; x < RegionFile.REGION_SIZE; x++) {
+              Tag chunk = region.readChunk(x, z);
+              if (chunk != null) {
+                documents.add(chunk);
+              }
+            }
+          }
+        }
+      }
+    }
+    held = documents;
+    return documents;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    // collect until the figure stops shrinking
+    for (int i = 0; i < 8; i++) {
+      System.gc();
+      long now = runtime.totalMemory() - runtime.freeMemory();
+      if (now >= used) {
+        break;
+      }
+      used = now;
+    }
+    return used;
+  }
+}
@@ -0,0 +1,136 @@
+package lib.nbt.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.NBTWriter;
+
+/**
+ * The documents the JMH benchmarks run against, by name:
+ * <ul>
+ * <li><code>level</code>: the <code>level.dat</code> file found at the
+ *   <code>nbtlib.level</code> system property, <code>bin/level.dat</code> by default</li>
+ * <li><code>deep</code>: compounds and lists nested {@value #DEPTH} levels deep</li>
+ * <li><code>longs</code>: a chunk-like compound of {@value #ARRAYS} long arrays
+ *   of {@value #ARRAY_LENGTH} elements</li>
+ * <li><code>wide</code>: a single compound of {@value #WIDTH} mixed entries</li>
+ * </ul>
+ *
+ * Generated documents are seeded, so every run measures the same data.
+ *
+ * @author Kyrillos Tawadros
+ */
+public final class Corpus {
+  static final int DEPTH = 512;
+  static final int ARRAYS = 64;
+  static final int ARRAY_LENGTH = 4096;
+  static final int WIDTH = 8192;
+
+  private Corpus() {}
+
+  /**
+   * @param name The name of the document.
+   * @return The root tag of the document.
+   * @throws IOException If <code>level.dat</code> can't be read.
+   * @throws NBTException If <code>level.dat</code> is not valid NBT data.
+   * @throws IllegalArgumentException If there is no document named <code>name</code>.
+   */
+  public static Tag load(String name) throws IOException, NBTException {
+    switch (name) {
+    case "level":
+      try (InputStream in = new FileInputStream(System.getProperty("nbtlib.level", "bin/level.dat"))) {
+        return new NBTReader(in).readNBT();
+      }
+    case "deep":
+      return deep();
+    case "longs":
+      return longs();
+    case "wide":
+      return wide();
+    default:
+      throw new IllegalArgumentException(String.format("Unknown corpus '%s'", name));
+    }
+  }
+
+  /**
+   * @param root The root tag to encode.
+   * @param compressed <code>true</code> to GZIP the data
+   * @return The encoded document.
+   * @throws IOException If writing fails.
+   */
+  public static byte[] encode(Tag root, boolean compressed) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new NBTWriter(out, compressed).writeNBT(root);
+    return out.toByteArray();
+  }
+
+  private static Tag deep() {
+    Map<String, Object> root = new HashMap<>();
+    Map<String, Object> current = root;
+    for (int i = 0; i < DEPTH; i++) {
+      Map<String, Object> child = new HashMap<>();
+      current.put("depth", i);
+      if (i % 2 == 0) {
+        current.put("child", child);
+      } else {
+        // alternate with single-element lists, like passengers of passengers
+        NBTList list = new NBTList(NBTType.COMPOUND);
+        list.add(child);
+        current.put("children", list);
+      }
+      current = child;
+    }
+    return new Tag("", root);
+  }
+
+  private static Tag longs() {
+    Random random = new Random(42);
+    Map<String, Object> root = new HashMap<>();
+    NBTList sections = new NBTList(NBTType.COMPOUND);
+    for (int i = 0; i < ARRAYS; i++) {
+      long[] states = new long[ARRAY_LENGTH];
+      for (int j = 0; j < states.length; j++) {
+        states[j] = random.nextLong();
+      }
+      Map<String, Object> section = new HashMap<>();
+      section.put("Y", (byte)i);
+      section.put("BlockStates", states);
+      sections.add(section);
+    }
+    root.put("Sections", sections);
+    return new Tag("", root);
+  }
+
+  private static Tag wide() {
+    Random random = new Random(42);
+    Map<String, Object> root = new HashMap<>();
+    for (int i = 0; i < WIDTH; i++) {
+      String key = "key" + i;
+      switch (i % 4) {
+      case 0:
+        root.put(key, random.nextInt());
+        break;
+      case 1:
+        root.put(key, random.nextDouble());
+        break;
+      case 2:
+        root.put(key, "value" + random.nextInt(1000));
+        break;
+      default:
+        root.put(key, (byte)random.nextInt());
+        break;
+      }
+    }
+    return new Tag("", root);
+  }
+}
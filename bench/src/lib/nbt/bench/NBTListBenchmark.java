@@ -0,0 +1,107 @@
+package lib.nbt.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+
+/**
+ * Throughput of filling and iterating {@link lib.nbt.NBTList}s of ints and
+ * strings, through the boxed {@link java.util.List} methods and, for ints,
+ * the unboxed accessors.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NBTListBenchmark {
+
+  @Param({ "16", "1024", "65536" })
+  public int size;
+
+  private NBTList ints;
+  private NBTList strings;
+  private String[] values;
+
+  @Setup
+  public void setup() {
+    ints = new NBTList(NBTType.INT);
+    strings = new NBTList(NBTType.STRING);
+    values = new String[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = "item" + i;
+      ints.add(i);
+      strings.add(values[i]);
+    }
+  }
+
+  @Benchmark
+  public NBTList addInts() {
+    NBTList list = new NBTList(NBTType.INT);
+    for (int i = 0; i < size; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public NBTList addIntsUnboxed() {
+    NBTList list = new NBTList(NBTType.INT);
+    for (int i = 0; i < size; i++) {
+      list.addInt(i);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public NBTList addStrings() {
+    NBTList list = new NBTList(NBTType.STRING);
+    for (String value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public long iterateInts() {
+    long sum = 0;
+    for (Object value : ints) {
+      sum += (Integer)value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long iterateIntsUnboxed() {
+    long sum = 0;
+    for (int i = 0; i < ints.size(); i++) {
+      sum += ints.getInt(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long iterateStrings() {
+    long sum = 0;
+    for (Object value : strings) {
+      sum += ((String)value).length();
+    }
+    return sum;
+  }
+}
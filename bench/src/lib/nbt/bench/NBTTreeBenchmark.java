@@ -0,0 +1,57 @@
+package lib.nbt.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.Tag;
+import lib.nbt.gui.NBTTree;
+
+/**
+ * Throughput of {@link lib.nbt.gui.NBTTree#setRoot(Tag)}, which rebuilds
+ * the tree nodes of a whole document. The trees are never shown, so this
+ * runs headless.
+ *
+ * The <code>longs</code> document is left out: every array element becomes
+ * a node, which measures Swing rather than this library.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class NBTTreeBenchmark {
+
+  @Param({ "level", "deep", "wide" })
+  public String corpus;
+
+  private Tag root;
+  private NBTTree tree;
+
+  @Setup
+  public void setup() throws IOException, NBTException {
+    root = Corpus.load(corpus);
+    tree = new NBTTree();
+  }
+
+  @Benchmark
+  public NBTTree setRoot() {
+    tree.setRoot(root);
+    return tree;
+  }
+}
@@ -0,0 +1,68 @@
+package lib.nbt.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.Tag;
+import lib.nbt.io.SNBTReader;
+import lib.nbt.io.SNBTWriter;
+
+/**
+ * Throughput of {@link lib.nbt.io.SNBTReader} and {@link lib.nbt.io.SNBTWriter}
+ * on each {@link lib.nbt.bench.Corpus} document, printing into a reused
+ * {@link java.lang.StringBuilder}.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SNBTBenchmark {
+
+  @Param({ "level", "deep", "longs", "wide" })
+  public String corpus;
+
+  @Param({ "false", "true" })
+  public boolean pretty;
+
+  private Tag root;
+  private String text;
+  private StringBuilder out;
+  private SNBTWriter writer;
+
+  @Setup
+  public void setup() throws IOException, NBTException {
+    root = Corpus.load(corpus);
+    text = SNBTWriter.toString(root.getValue(), pretty);
+    out = new StringBuilder(text.length());
+    writer = new SNBTWriter(out, pretty);
+  }
+
+  @Benchmark
+  public Object parse() throws NBTException {
+    return SNBTReader.parse(text);
+  }
+
+  @Benchmark
+  public int print() throws IOException {
+    out.setLength(0);
+    writer.write(root.getValue());
+    return out.length();
+  }
+}
@@ -0,0 +1,70 @@
+package lib.nbt.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.Schema;
+import lib.nbt.io.SchemaDecoder;
+
+/**
+ * Decoding a few entries of the <code>level</code> {@link lib.nbt.bench.Corpus}
+ * document with a {@link lib.nbt.io.SchemaDecoder}, against decoding the
+ * whole tree, uncompressed and in memory.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaBenchmark {
+  private byte[] encoded;
+  private SchemaDecoder decoder;
+
+  @Setup
+  public void setup() throws IOException, NBTException {
+    encoded = Corpus.encode(Corpus.load("level"), false);
+    decoder = Schema.compound()
+        .require("Data", Schema.compound()
+            .key("DataVersion", NBTType.INT)
+            .key("LevelName", NBTType.STRING)
+            .key("Time", NBTType.LONG)
+            .key("Player", Schema.compound()
+                .key("Pos", Schema.listOf(NBTType.DOUBLE))
+                .key("Inventory", Schema.listOf(Schema.compound()
+                    .key("id", NBTType.STRING)
+                    .key("Slot", NBTType.BYTE)
+                    .build()))
+                .build())
+            .build())
+        .build()
+        .compile();
+  }
+
+  @Benchmark
+  public Tag schema() throws IOException, NBTException {
+    return decoder.decode(encoded, 0, encoded.length);
+  }
+
+  @Benchmark
+  public Tag tree() throws IOException, NBTException {
+    return new NBTReader(encoded, 0, encoded.length).readNBT();
+  }
+}
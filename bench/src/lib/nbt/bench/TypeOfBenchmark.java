@@ -0,0 +1,48 @@
+package lib.nbt.bench;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+
+/**
+ * Throughput of {@link lib.nbt.NBTType#typeOf(Object)} over values of
+ * every NBT type, so the lookup can't be specialized to a single class.
+ *
+ * @author Kyrillos Tawadros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeOfBenchmark {
+
+  private final Object[] values = {
+    (byte)1, (short)2, 3, 4L, 5f, 6d, "seven",
+    new byte[8], new int[9], new long[10],
+    new NBTList(NBTType.INT), new HashMap<String, Object>()
+  };
+
+  @Benchmark
+  @OperationsPerInvocation(12)
+  public void typeOf(Blackhole hole) {
+    for (Object value : values) {
+      hole.consume(NBTType.typeOf(value));
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package lib.nbt;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>byte</code>s, the editable form of
+ * {@link lib.nbt.NBTType#BYTE_ARRAY} values.
+ *
+ * @see lib.nbt.PrimitiveArrayList
+ * @author Kyrillos Tawadros
+ */
+public class ByteArrayList extends PrimitiveArrayList<Byte> {
+  private byte[] elements;
+
+  /**
+   * @param capacity The initial capacity.
+   */
+  public ByteArrayList(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+    }
+    this.elements = new byte[capacity];
+  }
+
+  /**
+   * Initializes an empty list.
+   */
+  public ByteArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param values The initial elements, which are copied.
+   */
+  public ByteArrayList(byte[] values) {
+    this.elements = values.clone();
+    this.size = values.length;
+  }
+
+  @Override
+  public NBTType getElementType() {
+    return NBTType.BYTE;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>.
+   */
+  public byte getByte(int index) {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @return The previous value of the element.
+   */
+  public byte setByte(int index, byte value) {
+    checkIndex(index);
+    byte old = elements[index];
+    elements[index] = value;
+    return old;
+  }
+
+  /**
+   * @param value The element to append.
+   */
+  public void addByte(byte value) {
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    elements[size++] = value;
+  }
+
+  /**
+   * @param index The index to insert at.
+   * @param value The element to insert.
+   */
+  public void addByte(int index, byte value) {
+    checkPosition(index);
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  /**
+   * @param values The elements to append.
+   */
+  public void addAll(byte[] values) {
+    modCount++;
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, elements, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The removed element.
+   */
+  public byte removeByte(int index) {
+    checkIndex(index);
+    modCount++;
+    byte old = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  @Override
+  public Byte get(int index) {
+    return getByte(index);
+  }
+
+  @Override
+  public Byte set(int index, Byte value) {
+    return setByte(index, value);
+  }
+
+  @Override
+  public boolean add(Byte value) {
+    addByte(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Byte value) {
+    addByte(index, value);
+  }
+
+  @Override
+  public Byte remove(int index) {
+    return removeByte(index);
+  }
+
+  @Override
+  protected void removeRange(int from, int to) {
+    modCount++;
+    System.arraycopy(elements, to, elements, from, size - to);
+    size -= to - from;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    if (o instanceof Byte) {
+      byte value = (Byte)o;
+      for (int i = 0; i < size; i++) {
+        if (elements[i] == value) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public byte[] toPrimitiveArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  @Override
+  public ByteArrayList copy() {
+    ByteArrayList copy = new ByteArrayList(0);
+    copy.elements = Arrays.copyOf(elements, size);
+    copy.size = size;
+    return copy;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, grow(capacity, elements.length));
+    }
+  }
+
+  @Override
+  public void trimToSize() {
+    if (size < elements.length) {
+      elements = Arrays.copyOf(elements, size);
+    }
+  }
+}
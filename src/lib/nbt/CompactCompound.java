@@ -0,0 +1,408 @@
+package lib.nbt;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * A compound that stores its values in a flat array, and shares
+ * its keys with every other compound that has the same key set.
+ *
+ * The keys and their order form an immutable "shape". Shapes are
+ * reached from the empty shape by adding one key at a time, and each
+ * transition is remembered, so the thousands of entity or item
+ * compounds in a chunk that have the same fields all point to one
+ * shape. Each compound then costs a single object and a value array,
+ * instead of a hash table with an entry object per field.
+ *
+ * Getting and replacing values works on the array. Adding or removing
+ * a key changes the shape, and converts the compound to a
+ * {@link java.util.HashMap} for the rest of its life, so shapes only
+ * ever come from decoded data.
+ *
+ * Instances are created with a {@link CompactCompound.Builder},
+ * which {@link lib.nbt.io.NBTStreamReader} uses in compact mode.
+ *
+ * @see lib.nbt.io.NBTReader#setCompact(boolean)
+ * @author Kyrillos Tawadros
+ */
+public class CompactCompound extends AbstractMap<String, Object> {
+
+  /**
+   * The largest number of keys a shape can have. Builders
+   * fall back to a {@link java.util.HashMap} for larger compounds.
+   */
+  public static final int MAX_SHAPE_SIZE = 64;
+
+  /**
+   * The largest number of shapes ever created, which keeps data with
+   * unbounded key sets from filling the heap with transitions.
+   */
+  private static final int MAX_SHAPES = 1 << 16;
+
+  /**
+   * The shapes with up to this many keys are searched linearly.
+   */
+  private static final int LINEAR_SEARCH_SIZE = 8;
+
+  private static final AtomicInteger SHAPE_COUNT = new AtomicInteger();
+
+  private static final Shape EMPTY = new Shape(new String[0]);
+
+  private static final Object[] NO_VALUES = new Object[0];
+
+  /**
+   * An immutable, ordered key set, shared between compounds.
+   */
+  private static final class Shape {
+    final String[] keys;
+    private final Map<String, Integer> index;
+    private final Map<String, Shape> transitions = new ConcurrentHashMap<>();
+
+    Shape(String[] keys) {
+      this.keys = keys;
+      if (keys.length > LINEAR_SEARCH_SIZE) {
+        index = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+          index.put(keys[i], i);
+        }
+      } else {
+        index = null;
+      }
+    }
+
+    int indexOf(Object key) {
+      if (index != null) {
+        Integer i = index.get(key);
+        return i == null ? -1 : i;
+      }
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      if (key != null) {
+        for (int i = 0; i < keys.length; i++) {
+          if (keys[i].equals(key)) {
+            return i;
+          }
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return The shape with <code>key</code> appended,
+     *   <code>null</code> if it would exceed the limits
+     */
+    Shape with(String key) {
+      Shape next = transitions.get(key);
+      if (next == null) {
+        if (keys.length >= MAX_SHAPE_SIZE || SHAPE_COUNT.get() >= MAX_SHAPES) {
+          return null;
+        }
+        next = transitions.computeIfAbsent(key, k -> {
+          SHAPE_COUNT.incrementAndGet();
+          String[] extended = Arrays.copyOf(keys, keys.length + 1);
+          extended[keys.length] = k;
+          return new Shape(extended);
+        });
+      }
+      return next;
+    }
+  }
+
+  /**
+   * A class for building compounds one entry at a time.
+   * A builder can be reused after {@link #build()}.
+   */
+  public static class Builder {
+    private Shape shape = EMPTY;
+    private Object[] values = new Object[8];
+    private Map<String, Object> fallback;
+
+    /**
+     * @param key The key of the entry.
+     * @param value The value of the entry.
+     * @return This builder.
+     * @throws IllegalArgumentException If <code>key</code> is <code>null</code>.
+     *
+     * Adds an entry, replacing the value of an existing entry with the same key.
+     */
+    public Builder put(String key, Object value) {
+      if (key == null) {
+        throw new IllegalArgumentException("Compound keys must not be null!");
+      }
+      if (fallback != null) {
+        fallback.put(key, value);
+        return this;
+      }
+      int i = shape.indexOf(key);
+      if (i >= 0) {
+        values[i] = value;
+        return this;
+      }
+      Shape next = shape.with(key);
+      if (next == null) {
+        fallback = new HashMap<>();
+        for (int j = 0; j < shape.keys.length; j++) {
+          fallback.put(shape.keys[j], values[j]);
+        }
+        fallback.put(key, value);
+        return this;
+      }
+      int size = shape.keys.length;
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size] = value;
+      shape = next;
+      return this;
+    }
+
+    /**
+     * @return A {@link CompactCompound} holding the entries added so far, or
+     *   a {@link java.util.HashMap} if they exceed the shape limits.
+     *
+     * Resets this builder to an empty state.
+     */
+    public Map<String, Object> build() {
+      Map<String, Object> result;
+      if (fallback != null) {
+        result = fallback;
+      } else {
+        int size = shape.keys.length;
+        result = new CompactCompound(shape, size == 0 ? NO_VALUES : Arrays.copyOf(values, size));
+        Arrays.fill(values, 0, size, null);
+      }
+      shape = EMPTY;
+      fallback = null;
+      return result;
+    }
+  }
+
+  /**
+   * The shape of this compound, <code>null</code> once it has been converted.
+   */
+  private Shape shape;
+  private Object[] values;
+
+  /**
+   * The entries once this compound has been converted, <code>null</code> before.
+   */
+  private Map<String, Object> map;
+
+  private CompactCompound(Shape shape, Object[] values) {
+    this.shape = shape;
+    this.values = values;
+  }
+
+  /**
+   * Initializes an empty compound.
+   */
+  public CompactCompound() {
+    this(EMPTY, NO_VALUES);
+  }
+
+  /**
+   * @return <code>true</code> if this compound still shares its shape, <code>false</code>
+   *   if a key was added or removed and it is backed by a {@link java.util.HashMap}
+   */
+  public boolean isCompact() {
+    return map == null;
+  }
+
+  /**
+   * @return A compound sharing the shape of this one, holding the same
+   *   values, <code>null</code> if this compound is no longer compact
+   */
+  CompactCompound copyShape() {
+    return map == null ? new CompactCompound(shape, values.clone()) : null;
+  }
+
+  /**
+   * Converts this compound to a hash map before its key set changes.
+   */
+  private Map<String, Object> convert() {
+    if (map == null) {
+      Map<String, Object> converted = new HashMap<>(Math.max(16, shape.keys.length * 2));
+      for (int i = 0; i < shape.keys.length; i++) {
+        converted.put(shape.keys[i], values[i]);
+      }
+      map = converted;
+      shape = null;
+      values = null;
+    }
+    return map;
+  }
+
+  @Override
+  public int size() {
+    return map == null ? shape.keys.length : map.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return map == null ? shape.indexOf(key) >= 0 : map.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    if (map != null) {
+      return map.containsValue(value);
+    }
+    for (Object v : values) {
+      if (Objects.equals(v, value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (map != null) {
+      return map.get(key);
+    }
+    int i = shape.indexOf(key);
+    return i < 0 ? null : values[i];
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    if (map == null) {
+      int i = shape.indexOf(key);
+      if (i >= 0) {
+        Object old = values[i];
+        values[i] = value;
+        return old;
+      }
+    }
+    return convert().put(key, value);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (map == null && shape.indexOf(key) < 0) {
+      return null;
+    }
+    return convert().remove(key);
+  }
+
+  @Override
+  public void clear() {
+    convert().clear();
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super Object> action) {
+    if (map != null) {
+      map.forEach(action);
+      return;
+    }
+    for (int i = 0; i < values.length; i++) {
+      action.accept(shape.keys[i], values[i]);
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public int size() {
+        return CompactCompound.this.size();
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        if (map != null) {
+          return map.entrySet().iterator();
+        }
+        return new ShapeIterator();
+      }
+    };
+  }
+
+  /**
+   * Iterates over the keys of the shape this compound had when
+   * iteration started. Removing an entry converts the compound,
+   * after which the remaining entries are read from the hash map.
+   */
+  private final class ShapeIterator implements Iterator<Map.Entry<String, Object>> {
+    private final String[] keys = shape.keys;
+    private int next;
+    private int current = -1;
+
+    @Override
+    public boolean hasNext() {
+      return next < keys.length;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if (next >= keys.length) {
+        throw new NoSuchElementException();
+      }
+      current = next++;
+      final int index = current;
+      return new Map.Entry<String, Object>() {
+        @Override
+        public String getKey() {
+          return keys[index];
+        }
+
+        @Override
+        public Object getValue() {
+          return map == null ? values[index] : map.get(keys[index]);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+          if (map == null) {
+            Object old = values[index];
+            values[index] = value;
+            return old;
+          }
+          return map.put(keys[index], value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+          if (!(o instanceof Map.Entry)) {
+            return false;
+          }
+          Map.Entry<?, ?> other = (Map.Entry<?, ?>)o;
+          return getKey().equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+          return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+          return getKey() + "=" + getValue();
+        }
+      };
+    }
+
+    @Override
+    public void remove() {
+      if (current < 0) {
+        throw new IllegalStateException();
+      }
+      convert().remove(keys[current]);
+      current = -1;
+    }
+  }
+}
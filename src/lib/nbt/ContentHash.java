@@ -0,0 +1,252 @@
+package lib.nbt;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A 64-bit structural hash of NBT values.
+ *
+ * Equal trees hash alike, whatever their Java representation: arrays hash
+ * by content, compounds hash the same in any iteration order and in any
+ * {@link java.util.Map} implementation, and empty lists hash alike whatever
+ * their element type, since they are all written as lists of bytes. Values
+ * of different NBT types hash differently, so an int 1 is not a long 1.
+ *
+ * {@link #of(Object)} hashes a value on demand. Persistent compounds and
+ * lists are immutable, so each remembers its own hash once computed, and
+ * hashing a tree that shares them only walks what is new. An instance also
+ * remembers the hash of every mutable compound and list it has hashed, by
+ * identity, so hashing a subtree again costs a lookup: useful while
+ * comparing two trees, as long as they are not modified meanwhile.
+ *
+ * {@link #equal(Object, Object)} is the matching structural equality, used by
+ * {@link lib.nbt.Tag#equals(Object)}. Lists and compounds keep the
+ * <code>equals</code> and <code>hashCode</code> of {@link java.util.List} and
+ * {@link java.util.Map}, so compare their contents through this class.
+ *
+ * @author Kyrillos Tawadros
+ */
+public final class ContentHash {
+  private static final long PRIME = 0x100000001B3L;
+
+  private final Map<Object, Long> cache = new IdentityHashMap<>();
+
+  /**
+   * @param value An NBT value.
+   * @return The structural hash of <code>value</code>.
+   * @throws IllegalArgumentException If <code>value</code> is not a valid NBT value.
+   */
+  public static long of(Object value) {
+    return hash(value, null);
+  }
+
+  /**
+   * @param value An NBT value.
+   * @return The structural hash of <code>value</code>, remembered
+   *   if it is a compound or a list.
+   * @throws IllegalArgumentException If <code>value</code> is not a valid NBT value.
+   */
+  public long hash(Object value) {
+    return hash(value, cache);
+  }
+
+  /**
+   * The finalizer of MurmurHash3, spreading every input bit over the result.
+   */
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * @return The hash of <code>str</code>, as an entry name or a string value.
+   */
+  static long hashString(String str) {
+    long h = 0xCBF29CE484222325L;
+    for (int i = 0; i < str.length(); i++) {
+      h = (h ^ str.charAt(i)) * PRIME;
+    }
+    return mix(h ^ str.length());
+  }
+
+  private static long typed(NBTType type, long payload) {
+    return mix(payload * PRIME + type.id);
+  }
+
+  private static long hash(Object value, Map<Object, Long> cache) {
+    NBTType type = NBTType.typeOf(value);
+    if (type == null) {
+      throw new IllegalArgumentException("Invalid object " + String.valueOf(value));
+    }
+    switch (type) {
+    case END:
+      return typed(type, 0);
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+      return typed(type, ((Number)value).longValue());
+    case FLOAT:
+      return typed(type, Float.floatToIntBits((Float)value));
+    case DOUBLE:
+      return typed(type, Double.doubleToLongBits((Double)value));
+    case STRING:
+      return typed(type, hashString((String)value));
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      return typed(type, hashArray(NBTType.unboxArray(value)));
+    default:
+      break;
+    }
+
+    if (value instanceof PersistentCompound) {
+      return ((PersistentCompound)value).contentHash();
+    } else if (value instanceof PersistentList) {
+      return ((PersistentList)value).contentHash();
+    }
+    if (cache != null) {
+      Long cached = cache.get(value);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    long h = hashContainer(value, cache);
+    if (cache != null) {
+      cache.put(value, h);
+    }
+    return h;
+  }
+
+  /**
+   * @param value A compound or a list.
+   * @return The hash of <code>value</code>, computed from the hashes of its
+   *   children, which persistent children remember.
+   */
+  static long hashContainer(Object value, Map<Object, Long> cache) {
+    if (value instanceof NBTList) {
+      NBTList list = (NBTList)value;
+      int size = list.size();
+      long h = size == 0 ? 0 : list.type.id;
+      for (int i = 0; i < size; i++) {
+        h = h * PRIME + hash(list.get(i), cache);
+      }
+      return typed(NBTType.LIST, h ^ size);
+    }
+    // summing the entries makes the hash independent of their order
+    long h = 0;
+    for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+      h += mix(hashString((String)entry.getKey()) * PRIME + hash(entry.getValue(), cache));
+    }
+    return typed(NBTType.COMPOUND, h ^ ((Map<?, ?>)value).size());
+  }
+
+  /**
+   * @param a An NBT value.
+   * @param b Another NBT value.
+   * @return <code>true</code> if the two values are structurally equal: of the
+   *   same NBT type, with equal contents, arrays included
+   *
+   * Equality agrees with the hash: compounds are compared regardless of
+   * their implementation and order, and empty lists regardless of their
+   * element type. Persistent subtrees are compared by their remembered hashes
+   * first, and values that differ in type or size are told apart at once,
+   * without walking them.
+   */
+  public static boolean equal(Object a, Object b) {
+    if (a == b) {
+      return true;
+    }
+    NBTType type = NBTType.typeOf(a);
+    if (type == null || type != NBTType.typeOf(b)) {
+      return false;
+    }
+    switch (type) {
+    case FLOAT:
+      return Float.floatToIntBits((Float)a) == Float.floatToIntBits((Float)b);
+    case DOUBLE:
+      return Double.doubleToLongBits((Double)a) == Double.doubleToLongBits((Double)b);
+    case BYTE_ARRAY:
+      return Arrays.equals((byte[])NBTType.unboxArray(a), (byte[])NBTType.unboxArray(b));
+    case INT_ARRAY:
+      return Arrays.equals((int[])NBTType.unboxArray(a), (int[])NBTType.unboxArray(b));
+    case LONG_ARRAY:
+      return Arrays.equals((long[])NBTType.unboxArray(a), (long[])NBTType.unboxArray(b));
+    case LIST:
+      return equalLists((NBTList)a, (NBTList)b);
+    case COMPOUND:
+      return equalCompounds((Map<?, ?>)a, (Map<?, ?>)b);
+    default:
+      return a.equals(b);
+    }
+  }
+
+  private static boolean equalLists(NBTList a, NBTList b) {
+    int size = a.size();
+    if (size != b.size()) {
+      return false;
+    } else if (size == 0) {
+      return true;
+    } else if (a.type != b.type || !sameCachedHash(a, b)) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!equal(a.get(i), b.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equalCompounds(Map<?, ?> a, Map<?, ?> b) {
+    if (a.size() != b.size() || !sameCachedHash(a, b)) {
+      return false;
+    }
+    for (Map.Entry<?, ?> entry : a.entrySet()) {
+      Object other = b.get(entry.getKey());
+      if (other == null || !equal(entry.getValue(), other)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return <code>false</code> if both values are persistent and their
+   *   remembered hashes differ, <code>true</code> if they may be equal
+   */
+  private static boolean sameCachedHash(Object a, Object b) {
+    boolean persistent = (a instanceof PersistentCompound || a instanceof PersistentList)
+        && (b instanceof PersistentCompound || b instanceof PersistentList);
+    return !persistent || hash(a, null) == hash(b, null);
+  }
+
+  private static long hashArray(Object array) {
+    long h;
+    if (array instanceof byte[]) {
+      byte[] bytes = (byte[])array;
+      h = bytes.length;
+      for (byte b : bytes) {
+        h = h * PRIME + b;
+      }
+    } else if (array instanceof int[]) {
+      int[] ints = (int[])array;
+      h = ints.length;
+      for (int i : ints) {
+        h = h * PRIME + i;
+      }
+    } else {
+      long[] longs = (long[])array;
+      h = longs.length;
+      for (long l : longs) {
+        h = h * PRIME + mix(l);
+      }
+    }
+    return h;
+  }
+}
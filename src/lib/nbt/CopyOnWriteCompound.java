@@ -0,0 +1,192 @@
+package lib.nbt;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable view of a compound that never modifies it, and only copies
+ * the parts of it that are modified.
+ *
+ * Until the view is first mutated, it reads from the source compound.
+ * Nested compounds and lists are handed out as copy-on-write views of
+ * their own, and arrays as copies, so modifying anything reached through
+ * the view leaves the source untouched. The first mutation copies the
+ * entries of this compound only, into a presized {@link java.util.HashMap};
+ * the subtrees it holds stay shared until they are mutated in turn.
+ *
+ * The source must not be modified while the view is in use.
+ *
+ * @see lib.nbt.Tag#copyOnWrite()
+ * @see lib.nbt.CopyOnWriteList
+ * @author Kyrillos Tawadros
+ */
+public class CopyOnWriteCompound extends AbstractMap<String, Object> {
+  private final Map<String, ?> source;
+
+  /**
+   * The views handed out for values of the source, before the first mutation.
+   */
+  private Map<String, Object> views;
+
+  /**
+   * The entries of this compound after the first mutation, <code>null</code> before.
+   */
+  private Map<String, Object> copy;
+
+  /**
+   * @param source The compound to view.
+   */
+  public CopyOnWriteCompound(Map<String, ?> source) {
+    this.source = source;
+  }
+
+  /**
+   * @param value An NBT value.
+   * @return A copy-on-write view of <code>value</code> if it is a compound or a list,
+   *   a copy if it is an array, otherwise <code>value</code> itself
+   */
+  @SuppressWarnings("unchecked")
+  static Object wrap(Object value) {
+    if (value instanceof Map) {
+      return new CopyOnWriteCompound((Map<String, ?>)value);
+    } else if (value instanceof NBTList) {
+      return new CopyOnWriteList((NBTList)value);
+    } else if (value instanceof byte[]) {
+      return ((byte[])value).clone();
+    } else if (value instanceof int[]) {
+      return ((int[])value).clone();
+    } else if (value instanceof long[]) {
+      return ((long[])value).clone();
+    }
+    return value;
+  }
+
+  /**
+   * @return <code>true</code> if this compound has been copied from its source
+   */
+  public boolean isCopied() {
+    return copy != null;
+  }
+
+  /**
+   * Copies the entries of the source before the first mutation.
+   */
+  private Map<String, Object> copy() {
+    if (copy == null) {
+      Map<String, Object> entries = new HashMap<>(Util.mapCapacity(source.size()));
+      for (Map.Entry<String, ?> entry : source.entrySet()) {
+        Object view = views == null ? null : views.get(entry.getKey());
+        entries.put(entry.getKey(), view != null ? view : wrap(entry.getValue()));
+      }
+      copy = entries;
+      views = null;
+    }
+    return copy;
+  }
+
+  @Override
+  public int size() {
+    return copy == null ? source.size() : copy.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return copy == null ? source.containsKey(key) : copy.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (copy != null) {
+      return copy.get(key);
+    }
+    Object view = views == null ? null : views.get(key);
+    if (view != null) {
+      return view;
+    }
+    Object value = source.get(key);
+    view = wrap(value);
+    if (view != value) {
+      if (views == null) {
+        views = new HashMap<>();
+      }
+      views.put((String)key, view);
+    }
+    return view;
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    return copy().put(key, value);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    return containsKey(key) ? copy().remove(key) : null;
+  }
+
+  @Override
+  public void clear() {
+    copy = new HashMap<>();
+    views = null;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    if (copy != null) {
+      return copy.entrySet();
+    }
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return new SourceIterator();
+      }
+
+      @Override
+      public int size() {
+        return CopyOnWriteCompound.this.size();
+      }
+    };
+  }
+
+  /**
+   * Iterates over the keys of the source, reading values through
+   * the view, so entries can be changed or removed as it goes.
+   */
+  private final class SourceIterator implements Iterator<Map.Entry<String, Object>> {
+    private final Iterator<String> keys = source.keySet().iterator();
+    private String current;
+
+    @Override
+    public boolean hasNext() {
+      return keys.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      current = keys.next();
+      String key = current;
+      return new AbstractMap.SimpleEntry<String, Object>(key, get(key)) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object setValue(Object value) {
+          put(key, value);
+          return super.setValue(value);
+        }
+      };
+    }
+
+    @Override
+    public void remove() {
+      if (current == null) {
+        throw new IllegalStateException();
+      }
+      copy().remove(current);
+      current = null;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package lib.nbt;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A mutable view of an NBT list that never modifies it, and only copies
+ * it once the view is first mutated.
+ *
+ * Nested compounds and lists are handed out as copy-on-write views and
+ * arrays as copies, like {@link lib.nbt.CopyOnWriteCompound} does. The first
+ * mutation copies the elements of this list only: numeric lists with a
+ * single array copy, others into a presized list sharing the nested views.
+ *
+ * The source must not be modified while the view is in use.
+ *
+ * @see lib.nbt.Tag#copyOnWrite()
+ * @see lib.nbt.CopyOnWriteCompound
+ * @author Kyrillos Tawadros
+ */
+public class CopyOnWriteList extends NBTList {
+  private final Storage storage;
+
+  /**
+   * @param source The list to view.
+   */
+  public CopyOnWriteList(NBTList source) {
+    this(source, new Storage(source));
+  }
+
+  private CopyOnWriteList(NBTList source, Storage storage) {
+    super(source.type, storage);
+    this.storage = storage;
+  }
+
+  /**
+   * @return <code>true</code> if this list has been copied from its source
+   */
+  public boolean isCopied() {
+    return storage.copy != null;
+  }
+
+  /**
+   * Reads from the source list until the first mutation, then from a copy.
+   */
+  private static final class Storage extends AbstractList<Object> implements RandomAccess {
+    private final NBTList source;
+    private Object[] views;
+    private List<Object> copy;
+
+    Storage(NBTList source) {
+      this.source = source;
+    }
+
+    private List<Object> copy() {
+      if (copy == null) {
+        NBTList primitives = source.copyPrimitives();
+        if (primitives != null) {
+          copy = primitives;
+        } else {
+          int size = source.size();
+          List<Object> elements = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            elements.add(get(i));
+          }
+          copy = elements;
+        }
+        views = null;
+      }
+      return copy;
+    }
+
+    @Override
+    public Object get(int index) {
+      if (copy != null) {
+        return copy.get(index);
+      }
+      Object value = source.get(index);
+      if (value instanceof Number || value instanceof String) {
+        return value;
+      }
+      if (views == null) {
+        views = new Object[source.size()];
+      } else if (views[index] != null) {
+        return views[index];
+      }
+      return views[index] = CopyOnWriteCompound.wrap(value);
+    }
+
+    @Override
+    public int size() {
+      return copy == null ? source.size() : copy.size();
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+      return copy().set(index, element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+      modCount++;
+      copy().add(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+      modCount++;
+      return copy().remove(index);
+    }
+
+    @Override
+    public void clear() {
+      modCount++;
+      copy = new ArrayList<>();
+      views = null;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package lib.nbt;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>double</code>s, the storage of
+ * {@link lib.nbt.NBTList}s of {@link lib.nbt.NBTType#DOUBLE} elements.
+ *
+ * @see lib.nbt.PrimitiveArrayList
+ * @author Kyrillos Tawadros
+ */
+public class DoubleArrayList extends PrimitiveArrayList<Double> {
+  private double[] elements;
+
+  /**
+   * @param capacity The initial capacity.
+   */
+  public DoubleArrayList(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+    }
+    this.elements = new double[capacity];
+  }
+
+  /**
+   * Initializes an empty list.
+   */
+  public DoubleArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param values The initial elements, which are copied.
+   */
+  public DoubleArrayList(double[] values) {
+    this.elements = values.clone();
+    this.size = values.length;
+  }
+
+  @Override
+  public NBTType getElementType() {
+    return NBTType.DOUBLE;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>.
+   */
+  public double getDouble(int index) {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @return The previous value of the element.
+   */
+  public double setDouble(int index, double value) {
+    checkIndex(index);
+    double old = elements[index];
+    elements[index] = value;
+    return old;
+  }
+
+  /**
+   * @param value The element to append.
+   */
+  public void addDouble(double value) {
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    elements[size++] = value;
+  }
+
+  /**
+   * @param index The index to insert at.
+   * @param value The element to insert.
+   */
+  public void addDouble(int index, double value) {
+    checkPosition(index);
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  /**
+   * @param values The elements to append.
+   */
+  public void addAll(double[] values) {
+    modCount++;
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, elements, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The removed element.
+   */
+  public double removeDouble(int index) {
+    checkIndex(index);
+    modCount++;
+    double old = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  @Override
+  public Double get(int index) {
+    return getDouble(index);
+  }
+
+  @Override
+  public Double set(int index, Double value) {
+    return setDouble(index, value);
+  }
+
+  @Override
+  public boolean add(Double value) {
+    addDouble(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Double value) {
+    addDouble(index, value);
+  }
+
+  @Override
+  public Double remove(int index) {
+    return removeDouble(index);
+  }
+
+  @Override
+  protected void removeRange(int from, int to) {
+    modCount++;
+    System.arraycopy(elements, to, elements, from, size - to);
+    size -= to - from;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    if (o instanceof Double) {
+      // compared as List.equals would, so NaN is found and -0.0 is not 0.0
+      long bits = Double.doubleToLongBits((Double)o);
+      for (int i = 0; i < size; i++) {
+        if (Double.doubleToLongBits(elements[i]) == bits) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public double[] toPrimitiveArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  @Override
+  public DoubleArrayList copy() {
+    DoubleArrayList copy = new DoubleArrayList(0);
+    copy.elements = Arrays.copyOf(elements, size);
+    copy.size = size;
+    return copy;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, grow(capacity, elements.length));
+    }
+  }
+
+  @Override
+  public void trimToSize() {
+    if (size < elements.length) {
+      elements = Arrays.copyOf(elements, size);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package lib.nbt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A value that holds its own encoding, such as a compound backed by the
+ * bytes it was read from. {@link lib.nbt.NBTType#writePayload(Object, DataOutput)}
+ * and {@link lib.nbt.NBTType#sizeOf(Object)} defer to it instead of walking
+ * the value.
+ *
+ * @see lib.nbt.io.LazyCompound
+ * @author Kyrillos Tawadros
+ */
+public interface EncodedPayload {
+
+  /**
+   * @param dest The output to write to.
+   * @throws IOException If <code>dest</code> throws an
+   *   {@link java.io.IOException} on the write operation
+   *
+   * Writes the payload of this value, without type or name.
+   */
+  void writePayload(DataOutput dest) throws IOException;
+
+  /**
+   * @return The exact number of bytes {@link #writePayload(DataOutput)} writes.
+   */
+  long sizeOf();
+}
@@ -0,0 +1,188 @@
+package lib.nbt;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>float</code>s, the storage of
+ * {@link lib.nbt.NBTList}s of {@link lib.nbt.NBTType#FLOAT} elements.
+ *
+ * @see lib.nbt.PrimitiveArrayList
+ * @author Kyrillos Tawadros
+ */
+public class FloatArrayList extends PrimitiveArrayList<Float> {
+  private float[] elements;
+
+  /**
+   * @param capacity The initial capacity.
+   */
+  public FloatArrayList(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+    }
+    this.elements = new float[capacity];
+  }
+
+  /**
+   * Initializes an empty list.
+   */
+  public FloatArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param values The initial elements, which are copied.
+   */
+  public FloatArrayList(float[] values) {
+    this.elements = values.clone();
+    this.size = values.length;
+  }
+
+  @Override
+  public NBTType getElementType() {
+    return NBTType.FLOAT;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>.
+   */
+  public float getFloat(int index) {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @return The previous value of the element.
+   */
+  public float setFloat(int index, float value) {
+    checkIndex(index);
+    float old = elements[index];
+    elements[index] = value;
+    return old;
+  }
+
+  /**
+   * @param value The element to append.
+   */
+  public void addFloat(float value) {
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    elements[size++] = value;
+  }
+
+  /**
+   * @param index The index to insert at.
+   * @param value The element to insert.
+   */
+  public void addFloat(int index, float value) {
+    checkPosition(index);
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  /**
+   * @param values The elements to append.
+   */
+  public void addAll(float[] values) {
+    modCount++;
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, elements, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The removed element.
+   */
+  public float removeFloat(int index) {
+    checkIndex(index);
+    modCount++;
+    float old = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  @Override
+  public Float get(int index) {
+    return getFloat(index);
+  }
+
+  @Override
+  public Float set(int index, Float value) {
+    return setFloat(index, value);
+  }
+
+  @Override
+  public boolean add(Float value) {
+    addFloat(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Float value) {
+    addFloat(index, value);
+  }
+
+  @Override
+  public Float remove(int index) {
+    return removeFloat(index);
+  }
+
+  @Override
+  protected void removeRange(int from, int to) {
+    modCount++;
+    System.arraycopy(elements, to, elements, from, size - to);
+    size -= to - from;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    if (o instanceof Float) {
+      // compared as List.equals would, so NaN is found and -0.0 is not 0.0
+      int bits = Float.floatToIntBits((Float)o);
+      for (int i = 0; i < size; i++) {
+        if (Float.floatToIntBits(elements[i]) == bits) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public float[] toPrimitiveArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  @Override
+  public FloatArrayList copy() {
+    FloatArrayList copy = new FloatArrayList(0);
+    copy.elements = Arrays.copyOf(elements, size);
+    copy.size = size;
+    return copy;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, grow(capacity, elements.length));
+    }
+  }
+
+  @Override
+  public void trimToSize() {
+    if (size < elements.length) {
+      elements = Arrays.copyOf(elements, size);
+    }
+  }
+}
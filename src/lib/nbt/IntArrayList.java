@@ -0,0 +1,187 @@
+package lib.nbt;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>int</code>s, the editable form of
+ * {@link lib.nbt.NBTType#INT_ARRAY} values.
+ *
+ * @see lib.nbt.PrimitiveArrayList
+ * @author Kyrillos Tawadros
+ */
+public class IntArrayList extends PrimitiveArrayList<Integer> {
+  private int[] elements;
+
+  /**
+   * @param capacity The initial capacity.
+   */
+  public IntArrayList(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+    }
+    this.elements = new int[capacity];
+  }
+
+  /**
+   * Initializes an empty list.
+   */
+  public IntArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param values The initial elements, which are copied.
+   */
+  public IntArrayList(int[] values) {
+    this.elements = values.clone();
+    this.size = values.length;
+  }
+
+  @Override
+  public NBTType getElementType() {
+    return NBTType.INT;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>.
+   */
+  public int getInt(int index) {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @return The previous value of the element.
+   */
+  public int setInt(int index, int value) {
+    checkIndex(index);
+    int old = elements[index];
+    elements[index] = value;
+    return old;
+  }
+
+  /**
+   * @param value The element to append.
+   */
+  public void addInt(int value) {
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    elements[size++] = value;
+  }
+
+  /**
+   * @param index The index to insert at.
+   * @param value The element to insert.
+   */
+  public void addInt(int index, int value) {
+    checkPosition(index);
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  /**
+   * @param values The elements to append.
+   */
+  public void addAll(int[] values) {
+    modCount++;
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, elements, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The removed element.
+   */
+  public int removeInt(int index) {
+    checkIndex(index);
+    modCount++;
+    int old = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  @Override
+  public Integer get(int index) {
+    return getInt(index);
+  }
+
+  @Override
+  public Integer set(int index, Integer value) {
+    return setInt(index, value);
+  }
+
+  @Override
+  public boolean add(Integer value) {
+    addInt(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Integer value) {
+    addInt(index, value);
+  }
+
+  @Override
+  public Integer remove(int index) {
+    return removeInt(index);
+  }
+
+  @Override
+  protected void removeRange(int from, int to) {
+    modCount++;
+    System.arraycopy(elements, to, elements, from, size - to);
+    size -= to - from;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    if (o instanceof Integer) {
+      int value = (Integer)o;
+      for (int i = 0; i < size; i++) {
+        if (elements[i] == value) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int[] toPrimitiveArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  @Override
+  public IntArrayList copy() {
+    IntArrayList copy = new IntArrayList(0);
+    copy.elements = Arrays.copyOf(elements, size);
+    copy.size = size;
+    return copy;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, grow(capacity, elements.length));
+    }
+  }
+
+  @Override
+  public void trimToSize() {
+    if (size < elements.length) {
+      elements = Arrays.copyOf(elements, size);
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package lib.nbt;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>long</code>s, the editable form of
+ * {@link lib.nbt.NBTType#LONG_ARRAY} values.
+ *
+ * @see lib.nbt.PrimitiveArrayList
+ * @author Kyrillos Tawadros
+ */
+public class LongArrayList extends PrimitiveArrayList<Long> {
+  private long[] elements;
+
+  /**
+   * @param capacity The initial capacity.
+   */
+  public LongArrayList(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+    }
+    this.elements = new long[capacity];
+  }
+
+  /**
+   * Initializes an empty list.
+   */
+  public LongArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param values The initial elements, which are copied.
+   */
+  public LongArrayList(long[] values) {
+    this.elements = values.clone();
+    this.size = values.length;
+  }
+
+  @Override
+  public NBTType getElementType() {
+    return NBTType.LONG;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>.
+   */
+  public long getLong(int index) {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @return The previous value of the element.
+   */
+  public long setLong(int index, long value) {
+    checkIndex(index);
+    long old = elements[index];
+    elements[index] = value;
+    return old;
+  }
+
+  /**
+   * @param value The element to append.
+   */
+  public void addLong(long value) {
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    elements[size++] = value;
+  }
+
+  /**
+   * @param index The index to insert at.
+   * @param value The element to insert.
+   */
+  public void addLong(int index, long value) {
+    checkPosition(index);
+    modCount++;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grow(size + 1, elements.length));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  /**
+   * @param values The elements to append.
+   */
+  public void addAll(long[] values) {
+    modCount++;
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, elements, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The removed element.
+   */
+  public long removeLong(int index) {
+    checkIndex(index);
+    modCount++;
+    long old = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  @Override
+  public Long get(int index) {
+    return getLong(index);
+  }
+
+  @Override
+  public Long set(int index, Long value) {
+    return setLong(index, value);
+  }
+
+  @Override
+  public boolean add(Long value) {
+    addLong(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Long value) {
+    addLong(index, value);
+  }
+
+  @Override
+  public Long remove(int index) {
+    return removeLong(index);
+  }
+
+  @Override
+  protected void removeRange(int from, int to) {
+    modCount++;
+    System.arraycopy(elements, to, elements, from, size - to);
+    size -= to - from;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    if (o instanceof Long) {
+      long value = (Long)o;
+      for (int i = 0; i < size; i++) {
+        if (elements[i] == value) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public long[] toPrimitiveArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  @Override
+  public LongArrayList copy() {
+    LongArrayList copy = new LongArrayList(0);
+    copy.elements = Arrays.copyOf(elements, size);
+    copy.size = size;
+    return copy;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, grow(capacity, elements.length));
+    }
+  }
+
+  @Override
+  public void trimToSize() {
+    if (size < elements.length) {
+      elements = Arrays.copyOf(elements, size);
+    }
+  }
+}
@@ -56,7 +56,7 @@ public class MapSyncTag extends Tag {
   @Override
   public void setValue(Object value) {
     super.setValue(value);
-    ref.put(name, value);
+    ref.put(name, this.value);
   }
   
   /**
@@ -64,6 +64,6 @@ public class MapSyncTag extends Tag {
    */
   @Override
   public MapSyncTag copy() {
-    return new MapSyncTag(name, value, ref);
+    return new MapSyncTag(name, getValue(), ref);
   }
 }
@@ -1,42 +1,148 @@
 package lib.nbt;
 
+import java.util.AbstractList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * An extension of NBTList used to allow manipulation of the
  * arrays contained by Array-typed tags (i.e. Byte, Int, and Long arrays).
+ *
+ * The elements are edited in place in a {@link lib.nbt.PrimitiveArrayList}.
+ * A mutation only marks the list dirty; the elements are published to the
+ * tag as a new array when the tag's value is next read or set, or on
+ * {@link #commit()}. Any number of mutations between two reads therefore
+ * copy the array once. A tag that writes through to its container, such as
+ * a {@link lib.nbt.SyncTag}, only updates the container when it publishes,
+ * so commit before reading the container directly.
+ *
+ * {@link #setAutoCommit(boolean) Auto-commit} publishes after every mutation
+ * instead, copying the whole array each time, and {@link #edit(Consumer)}
+ * groups mutations into one publication even then. Iterators and sublists
+ * edit through this list, so their changes are tracked like direct ones.
  * 
  * @see lib.nbt.NBTList
+ * @see lib.nbt.PrimitiveArrayList
  * @author Kyrillos Tawadros
  */
 public class NBTArrayList extends NBTList {
   
   private Tag ref;
+  private final PrimitiveArrayList<?> elements;
+  private boolean autoCommit;
+  private boolean dirty;
+  private int batches;
+
+  /**
+   * The view iterators and sublists work through.
+   */
+  private final List<Object> view = new View();
 
   /**
    * @param ref The tag containing this list.
    */
   public NBTArrayList(Tag ref) {
-    super(ref.getType().getElementType());
+    this(ref, PrimitiveArrayList.of(ref.getValue()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private NBTArrayList(Tag ref, PrimitiveArrayList<?> elements) {
+    super(ref.getType().getElementType(), (List<Object>)(List<?>)elements);
     this.ref = ref;
-    for (Object el : (Object[])ref.getValue()) {
-      internal.add(el);
+    this.elements = elements;
+  }
+
+  /**
+   * @param autoCommit <code>true</code> to publish the array to the tag after
+   *   every mutation, <code>false</code> to publish it when the tag's value
+   *   is next read or set, or on {@link #commit()}
+   *
+   * Enabling auto-commit publishes any pending changes.
+   */
+  public void setAutoCommit(boolean autoCommit) {
+    this.autoCommit = autoCommit;
+    if (autoCommit && batches == 0) {
+      commit();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if every mutation is published to the tag
+   */
+  public boolean isAutoCommit() {
+    return autoCommit;
+  }
+
+  /**
+   * @return <code>true</code> if the list holds changes not yet published to the tag
+   */
+  public boolean isDirty() {
+    return dirty;
+  }
+
+  /**
+   * Sets the value of the tag to an array of the elements
+   * of the list, if it changed since the last commit.
+   */
+  public void commit() {
+    if (dirty) {
+      dirty = false;
+      if (ref.pending == this) {
+        ref.pending = null;
+      }
+      ref.setValue(elements.toPrimitiveArray());
+    }
+  }
+
+  /**
+   * @param edits The mutations to apply to this list.
+   *
+   * Applies <code>edits</code> as one batch: with auto-commit enabled,
+   * the array is published once afterwards rather than after each mutation.
+   */
+  public void edit(Consumer<? super NBTArrayList> edits) {
+    batch(() -> edits.accept(this));
+  }
+
+  /**
+   * Runs <code>batch</code> with auto-commits deferred, then commits once if enabled.
+   */
+  private void batch(Runnable batch) {
+    batches++;
+    try {
+      batch.run();
+    } finally {
+      batches--;
+      onchange();
     }
   }
+
+  @Override
+  protected void changed() {
+    onchange();
+  }
   
   /**
-   * 
-   * @param <T> the element type of the array this list represents.
-   * 
-   * An internal method used to update the value of the tag whenever
+   * An internal method used to mark the tag's value as out of date whenever
    * the contents of the list are updated.
-   * 
    */
-  private <T> void onchange() {
-    @SuppressWarnings("unchecked")
-    T[] newarray = (T[]) java.lang.reflect.Array.newInstance(type.javaType, size());
-    this.toArray(newarray);
-    this.ref.setValue(newarray);
+  private void onchange() {
+    dirty = true;
+    if (ref.pending != this) {
+      // publishes the edits of another list over the same tag, which these follow
+      ref.publish();
+      ref.pending = this;
+    }
+    if (autoCommit && batches == 0) {
+      commit();
+    }
   }
   
   @Override
@@ -55,16 +161,25 @@ public class NBTArrayList extends NBTList {
   
   @Override
   public boolean addAll(Collection<? extends Object> c) {
-    boolean result = super.addAll(c);
-    onchange();
-    return result;
+    batches++;
+    try {
+      elements.ensureCapacity(size() + c.size());
+      return super.addAll(c);
+    } finally {
+      batches--;
+      onchange();
+    }
   }
   
   @Override
   public boolean addAll(int index, Collection<? extends Object> c) {
-    boolean result = super.addAll(index, c);
-    onchange();
-    return result;
+    batches++;
+    try {
+      return super.addAll(index, c);
+    } finally {
+      batches--;
+      onchange();
+    }
   }
   
   @Override
@@ -106,4 +221,84 @@ public class NBTArrayList extends NBTList {
     onchange();
     return result;
   }
+
+  @Override
+  public boolean removeIf(Predicate<? super Object> filter) {
+    batches++;
+    try {
+      return super.removeIf(filter);
+    } finally {
+      batches--;
+      onchange();
+    }
+  }
+
+  @Override
+  public void replaceAll(UnaryOperator<Object> operator) {
+    batch(() -> super.replaceAll(operator));
+  }
+
+  @Override
+  public void sort(Comparator<? super Object> c) {
+    batch(() -> super.sort(c));
+  }
+
+  @Override
+  public Iterator<Object> iterator() {
+    return view.iterator();
+  }
+
+  @Override
+  public ListIterator<Object> listIterator() {
+    return view.listIterator();
+  }
+
+  @Override
+  public ListIterator<Object> listIterator(int index) {
+    return view.listIterator(index);
+  }
+
+  @Override
+  public List<Object> subList(int fromIndex, int toIndex) {
+    return view.subList(fromIndex, toIndex);
+  }
+
+  /**
+   * Forwards mutations to the list, and removes ranges in one batch.
+   */
+  private final class View extends AbstractList<Object> implements RandomAccess {
+    @Override
+    public Object get(int index) {
+      return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+
+    @Override
+    public Object set(int index, Object value) {
+      return NBTArrayList.this.set(index, value);
+    }
+
+    @Override
+    public void add(int index, Object value) {
+      NBTArrayList.this.add(index, value);
+      modCount++;
+    }
+
+    @Override
+    public Object remove(int index) {
+      Object result = NBTArrayList.this.remove(index);
+      modCount++;
+      return result;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      batch(() -> elements.subList(fromIndex, toIndex).clear());
+      modCount++;
+    }
+  }
 }
@@ -1,10 +1,16 @@
 package lib.nbt;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Objects;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 /**
  * A class that implements {@link java.util.List}
@@ -18,6 +24,12 @@ import java.util.ListIterator;
  * invalid value, an exception is thrown and the value(s) are
  * not added.
  * 
+ * Lists of numeric types (byte, short, int, long, float and double)
+ * store their elements unboxed in a {@link lib.nbt.PrimitiveArrayList}
+ * instead. The typed accessors such as {@link #getDouble(int)} and
+ * {@link #setInt(int, int)} read and write them without boxing, while
+ * the {@link java.util.List} methods keep working with boxed values.
+ * 
  * @see lib.nbt.NBTType
  * @see java.util.List
  * 
@@ -26,6 +38,7 @@ import java.util.ListIterator;
 public class NBTList implements List<Object> {
   protected List<Object> internal;
   public final NBTType type;
+  private final PrimitiveArrayList<?> primitive;
   
   /**
    * @param type The type of value stored in the list.
@@ -33,22 +46,52 @@ public class NBTList implements List<Object> {
    * Initializes an empty list with the specified <code>type</code>.
    */
   public NBTList(NBTType type) {
+    this(type, storageFor(type));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> storageFor(NBTType type) {
+    PrimitiveArrayList<?> primitive = PrimitiveArrayList.forType(type);
+    if (primitive != null) {
+      return (List<Object>)(List<?>)primitive;
+    }
+    return new ArrayList<>();
+  }
+
+  /**
+   * @param type The type of value stored in the list.
+   * @param internal The list holding the values, which must
+   *   only hold valid values of <code>type</code>
+   *
+   * Initializes a list backed by <code>internal</code>, for
+   * subclasses storing their values differently.
+   */
+  protected NBTList(NBTType type, List<Object> internal) {
     this.type = type;
-    this.internal = new ArrayList<>();
+    this.internal = internal;
+    Object storage = internal;
+    this.primitive = storage instanceof PrimitiveArrayList ? (PrimitiveArrayList<?>)storage : null;
   }
   
   /**
    * @param value The value to validate.
+   * @return <code>value</code>, with boxed arrays converted
+   *   to their primitive equivalents
    * @throws IllegalArgumentException If the value is not valid.
    * 
    * Checks if <code>value</code> is valid. Throws an exception if
-   * it is not, does nothing if it is.
+   * it is not, returns the value to store if it is.
    */
-  private void validate(Object value) {
-    if (!type.isValidValue(value)) {
+  protected Object validate(Object value) {
+    if (type.isValidValue(value)) {
+      return value;
+    }
+    Object unboxed = NBTType.unboxArray(value);
+    if (!type.isValidValue(unboxed)) {
       throw new IllegalArgumentException(String.format("Invalid value '%s' for NBT type %s", String.valueOf(value),
           type.toString()));
     }
+    return unboxed;
   }
 
   @Override
@@ -83,8 +126,7 @@ public class NBTList implements List<Object> {
 
   @Override
   public boolean add(Object e) {
-    validate(e);
-    return internal.add(e);
+    return internal.add(validate(e));
   }
 
   @Override
@@ -136,14 +178,12 @@ public class NBTList implements List<Object> {
 
   @Override
   public Object set(int index, Object element) {
-    validate(element);
-    return internal.set(index, element);
+    return internal.set(index, validate(element));
   }
 
   @Override
   public void add(int index, Object element) {
-    validate(element);
-    internal.add(index, element);
+    internal.add(index, validate(element));
   }
 
   @Override
@@ -176,6 +216,386 @@ public class NBTList implements List<Object> {
     return internal.subList(fromIndex, toIndex);
   }
 
+  /**
+   * @return A list of the same type holding the same elements, <code>null</code>
+   *   if the elements are not stored unboxed
+   */
+  NBTList copyPrimitives() {
+    if (primitive == null) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    List<Object> copy = (List<Object>)(List<?>)primitive.copy();
+    return new NBTList(type, copy);
+  }
+
+  /**
+   * Called after every mutation made through the typed accessors,
+   * for subclasses tracking changes to the list.
+   */
+  protected void changed() {
+  }
+
+  /**
+   * @param capacity The number of elements the list should hold without growing again.
+   */
+  public void ensureCapacity(int capacity) {
+    if (primitive != null) {
+      primitive.ensureCapacity(capacity);
+    } else if (internal instanceof ArrayList) {
+      ((ArrayList<?>)internal).ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>, converted
+   *   as by {@link java.lang.Number#byteValue()}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public byte getByte(int index) {
+    if (primitive instanceof ByteArrayList) {
+      return ((ByteArrayList)primitive).getByte(index);
+    }
+    return ((Number)internal.get(index)).byteValue();
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>, converted
+   *   as by {@link java.lang.Number#shortValue()}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public short getShort(int index) {
+    if (primitive instanceof ShortArrayList) {
+      return ((ShortArrayList)primitive).getShort(index);
+    }
+    return ((Number)internal.get(index)).shortValue();
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>, converted
+   *   as by {@link java.lang.Number#intValue()}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public int getInt(int index) {
+    if (primitive instanceof IntArrayList) {
+      return ((IntArrayList)primitive).getInt(index);
+    }
+    return ((Number)internal.get(index)).intValue();
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>, converted
+   *   as by {@link java.lang.Number#longValue()}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public long getLong(int index) {
+    if (primitive instanceof LongArrayList) {
+      return ((LongArrayList)primitive).getLong(index);
+    }
+    return ((Number)internal.get(index)).longValue();
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>, converted
+   *   as by {@link java.lang.Number#floatValue()}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public float getFloat(int index) {
+    if (primitive instanceof FloatArrayList) {
+      return ((FloatArrayList)primitive).getFloat(index);
+    }
+    return ((Number)internal.get(index)).floatValue();
+  }
+
+  /**
+   * @param index The index of the element.
+   * @return The element at <code>index</code>, converted
+   *   as by {@link java.lang.Number#doubleValue()}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public double getDouble(int index) {
+    if (primitive instanceof DoubleArrayList) {
+      return ((DoubleArrayList)primitive).getDouble(index);
+    }
+    return ((Number)internal.get(index)).doubleValue();
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @throws IllegalArgumentException If this is not a list of bytes.
+   */
+  public void setByte(int index, byte value) {
+    if (primitive instanceof ByteArrayList) {
+      ((ByteArrayList)primitive).setByte(index, value);
+      changed();
+    } else {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @throws IllegalArgumentException If this is not a list of shorts.
+   */
+  public void setShort(int index, short value) {
+    if (primitive instanceof ShortArrayList) {
+      ((ShortArrayList)primitive).setShort(index, value);
+      changed();
+    } else {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @throws IllegalArgumentException If this is not a list of ints.
+   */
+  public void setInt(int index, int value) {
+    if (primitive instanceof IntArrayList) {
+      ((IntArrayList)primitive).setInt(index, value);
+      changed();
+    } else {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @throws IllegalArgumentException If this is not a list of longs.
+   */
+  public void setLong(int index, long value) {
+    if (primitive instanceof LongArrayList) {
+      ((LongArrayList)primitive).setLong(index, value);
+      changed();
+    } else {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @throws IllegalArgumentException If this is not a list of floats.
+   */
+  public void setFloat(int index, float value) {
+    if (primitive instanceof FloatArrayList) {
+      ((FloatArrayList)primitive).setFloat(index, value);
+      changed();
+    } else {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @param index The index of the element.
+   * @param value The new value of the element.
+   * @throws IllegalArgumentException If this is not a list of doubles.
+   */
+  public void setDouble(int index, double value) {
+    if (primitive instanceof DoubleArrayList) {
+      ((DoubleArrayList)primitive).setDouble(index, value);
+      changed();
+    } else {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @param value The element to append.
+   * @throws IllegalArgumentException If this is not a list of bytes.
+   */
+  public void addByte(byte value) {
+    if (primitive instanceof ByteArrayList) {
+      ((ByteArrayList)primitive).addByte(value);
+      changed();
+    } else {
+      add(value);
+    }
+  }
+
+  /**
+   * @param value The element to append.
+   * @throws IllegalArgumentException If this is not a list of shorts.
+   */
+  public void addShort(short value) {
+    if (primitive instanceof ShortArrayList) {
+      ((ShortArrayList)primitive).addShort(value);
+      changed();
+    } else {
+      add(value);
+    }
+  }
+
+  /**
+   * @param value The element to append.
+   * @throws IllegalArgumentException If this is not a list of ints.
+   */
+  public void addInt(int value) {
+    if (primitive instanceof IntArrayList) {
+      ((IntArrayList)primitive).addInt(value);
+      changed();
+    } else {
+      add(value);
+    }
+  }
+
+  /**
+   * @param value The element to append.
+   * @throws IllegalArgumentException If this is not a list of longs.
+   */
+  public void addLong(long value) {
+    if (primitive instanceof LongArrayList) {
+      ((LongArrayList)primitive).addLong(value);
+      changed();
+    } else {
+      add(value);
+    }
+  }
+
+  /**
+   * @param value The element to append.
+   * @throws IllegalArgumentException If this is not a list of floats.
+   */
+  public void addFloat(float value) {
+    if (primitive instanceof FloatArrayList) {
+      ((FloatArrayList)primitive).addFloat(value);
+      changed();
+    } else {
+      add(value);
+    }
+  }
+
+  /**
+   * @param value The element to append.
+   * @throws IllegalArgumentException If this is not a list of doubles.
+   */
+  public void addDouble(double value) {
+    if (primitive instanceof DoubleArrayList) {
+      ((DoubleArrayList)primitive).addDouble(value);
+      changed();
+    } else {
+      add(value);
+    }
+  }
+
+  /**
+   * @return The elements of the list, converted as by {@link #getInt(int)}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public IntStream intStream() {
+    return IntStream.range(0, size()).map(this::getInt);
+  }
+
+  /**
+   * @return The elements of the list, converted as by {@link #getLong(int)}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public LongStream longStream() {
+    return IntStream.range(0, size()).mapToLong(this::getLong);
+  }
+
+  /**
+   * @return The elements of the list, converted as by {@link #getDouble(int)}
+   * @throws ClassCastException If the list is not numeric.
+   */
+  public DoubleStream doubleStream() {
+    return IntStream.range(0, size()).mapToDouble(this::getDouble);
+  }
+
+  /**
+   * @param dest The {@link java.io.DataOutput} to write to.
+   * @return <code>true</code> if the elements were written, <code>false</code>
+   *   if they are not stored unboxed and must be written one by one
+   * @throws IOException If <code>dest</code> throws an {@link java.io.IOException}
+   *
+   * Writes the payloads of the elements of a numeric list without boxing them.
+   */
+  boolean writeElements(DataOutput dest) throws IOException {
+    int size = internal.size();
+    if (primitive instanceof ByteArrayList) {
+      ByteArrayList bytes = (ByteArrayList)primitive;
+      for (int i = 0; i < size; i++) {
+        dest.writeByte(bytes.getByte(i));
+      }
+    } else if (primitive instanceof ShortArrayList) {
+      ShortArrayList shorts = (ShortArrayList)primitive;
+      for (int i = 0; i < size; i++) {
+        dest.writeShort(shorts.getShort(i));
+      }
+    } else if (primitive instanceof IntArrayList) {
+      IntArrayList ints = (IntArrayList)primitive;
+      for (int i = 0; i < size; i++) {
+        dest.writeInt(ints.getInt(i));
+      }
+    } else if (primitive instanceof LongArrayList) {
+      LongArrayList longs = (LongArrayList)primitive;
+      for (int i = 0; i < size; i++) {
+        dest.writeLong(longs.getLong(i));
+      }
+    } else if (primitive instanceof FloatArrayList) {
+      FloatArrayList floats = (FloatArrayList)primitive;
+      for (int i = 0; i < size; i++) {
+        dest.writeFloat(floats.getFloat(i));
+      }
+    } else if (primitive instanceof DoubleArrayList) {
+      DoubleArrayList doubles = (DoubleArrayList)primitive;
+      for (int i = 0; i < size; i++) {
+        dest.writeDouble(doubles.getDouble(i));
+      }
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return <code>true</code> if <code>o</code> is a {@link java.util.List} holding
+   *   equal elements in the same order, as the <code>List</code> contract requires.
+   *   Array elements are compared by identity; compare trees structurally
+   *   through {@link lib.nbt.ContentHash#equal(Object, Object)}.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof List)) {
+      return false;
+    }
+    List<?> other = (List<?>)o;
+    if (other.size() != size()) {
+      return false;
+    }
+    Iterator<?> items = other.iterator();
+    for (Object item : this) {
+      if (!items.hasNext() || !Objects.equals(item, items.next())) {
+        return false;
+      }
+    }
+    return !items.hasNext();
+  }
+
+  /**
+   * @return The hash of the elements as defined by {@link java.util.List#hashCode()}.
+   */
+  @Override
+  public int hashCode() {
+    int h = 1;
+    for (Object item : this) {
+      h = 31 * h + Objects.hashCode(item);
+    }
+    return h;
+  }
+
   @Override
   public String toString() {
     return Util.formatList(this);
@@ -1,8 +1,10 @@
 package lib.nbt;
 
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,9 +20,9 @@ import java.util.Map;
 public enum NBTType {
   END((byte)0, Void.class), BYTE((byte)1, Byte.class), SHORT((byte)2, Short.class),
   INT((byte)3, Integer.class), LONG((byte)4, Long.class), FLOAT((byte)5, Float.class),
-  DOUBLE((byte)6, Double.class), BYTE_ARRAY((byte)7, Byte[].class), STRING((byte)8, String.class),
-  LIST((byte)9, NBTList.class), COMPOUND((byte)10, Map.class), INT_ARRAY((byte)11, Integer[].class),
-  LONG_ARRAY((byte)12, Long[].class);
+  DOUBLE((byte)6, Double.class), BYTE_ARRAY((byte)7, byte[].class), STRING((byte)8, String.class),
+  LIST((byte)9, NBTList.class), COMPOUND((byte)10, Map.class), INT_ARRAY((byte)11, int[].class),
+  LONG_ARRAY((byte)12, long[].class);
   
   /**
    * The byte value that represents this tag in the NBT file format.
@@ -37,6 +39,47 @@ public enum NBTType {
     this.javaType = javaType;
   }
   
+  /**
+   * All constants, cached so lookups don't allocate a fresh
+   * array through {@link #values()}.
+   */
+  private static final NBTType[] VALUES = values();
+  
+  /**
+   * Constants indexed by their tag ID.
+   */
+  private static final NBTType[] BY_ID = new NBTType[VALUES.length];
+  static {
+    for (NBTType t : VALUES) {
+      BY_ID[t.id] = t;
+    }
+  }
+  
+  /**
+   * The NBT type of each Java class, resolved once per class.
+   */
+  private static final ClassValue<NBTType> BY_CLASS = new ClassValue<NBTType>() {
+    @Override
+    protected NBTType computeValue(Class<?> type) {
+      for (NBTType t : VALUES) {
+        if (t.javaType.isAssignableFrom(type)) {
+          return t;
+        }
+      }
+      
+      // legacy boxed arrays
+      if (type == Byte[].class) {
+        return BYTE_ARRAY;
+      } else if (type == Integer[].class) {
+        return INT_ARRAY;
+      } else if (type == Long[].class) {
+        return LONG_ARRAY;
+      }
+      
+      return null;
+    }
+  };
+  
   /**
    * @param value The value to validate.
    * @return <code>true</code> if the value is a valid
@@ -75,6 +118,29 @@ public enum NBTType {
     }
   }
   
+  /**
+   * @return The size in bytes of an encoded payload of this type,
+   *   or <code>-1</code> if the size depends on the value
+   */
+  public int getPayloadSize() {
+    switch(this) {
+    case END:
+      return 0;
+    case BYTE:
+      return Byte.BYTES;
+    case SHORT:
+      return Short.BYTES;
+    case INT:
+    case FLOAT:
+      return Integer.BYTES;
+    case LONG:
+    case DOUBLE:
+      return Long.BYTES;
+    default:
+      return -1;
+    }
+  }
+  
   /**
    * @return The type of element contained by this array type,
    * <code>null</code> if this type is not an array type
@@ -131,10 +197,13 @@ public enum NBTType {
    * @return An object of this type read from <code>source</code>
    * @throws IOException If <code>source</code> throws an
    *   {@link java.io.IOException} on the read operation
+   * @throws NBTException If <code>source</code> contains an unknown tag ID
    *   
-   * Reads an object of this type from <code>source</code>.
+   * Reads an object of this type from <code>source</code>, with the same
+   * representations as {@link lib.nbt.io.NBTStreamReader}: primitive arrays,
+   * unboxed numeric lists and plain {@link java.util.HashMap} compounds.
    */
-  public Object readFrom(DataInputStream source) throws IOException {
+  public Object readFrom(DataInputStream source) throws IOException, NBTException {
     int length = -1;
     switch(this) {
     case END:
@@ -152,85 +221,158 @@ public enum NBTType {
     case DOUBLE:
       return source.readDouble();
     case BYTE_ARRAY:
-      length = source.readInt();
-      Byte[] arr = new Byte[length];
-      for(int i = 0; i < length; i++) {
-        arr[i] = source.readByte();
-      }
-      return arr;
+      length = readLength(source);
+      byte[] bytes = new byte[length];
+      source.readFully(bytes);
+      return bytes;
     case STRING:
       return source.readUTF();
     case LIST:
-      byte tag_id = source.readByte();
-      NBTType type = NBTType.getById(tag_id);
-      length = source.readInt();
-      NBTList list = new NBTList(type);
-      for (int i = 0; i < length; i++) {
-        Object result = type.readFrom(source);
-        list.add(result);
-      }
-      return list;
+      NBTType type = NBTType.getById(source.readByte());
+      return readList(type, readLength(source), source);
     case COMPOUND:
       Map<String, Object> compound = new HashMap<String, Object>();
       byte next_tag_id;
       while((next_tag_id = source.readByte()) != NBTType.END.id) {
-        String name = source.readUTF();
         NBTType next_type = NBTType.getById(next_tag_id);
-        Object content = next_type.readFrom(source);
-        compound.put(name, content);
+        String name = source.readUTF();
+        compound.put(name, next_type.readFrom(source));
       }
       return compound;
     case INT_ARRAY:
-      length = source.readInt();
-      Integer[] int_out = new Integer[length];
+      length = readLength(source);
+      int[] ints = new int[length];
+      Util.readInts(source, ints);
+      return ints;
+    case LONG_ARRAY:
+      length = readLength(source);
+      long[] longs = new long[length];
+      Util.readLongs(source, longs);
+      return longs;
+    default:
+      return null;
+    }
+  }
+
+  private static int readLength(DataInputStream source) throws IOException, NBTException {
+    int length = source.readInt();
+    if (length < 0) {
+      throw new NBTException(String.format("Negative length %d", length));
+    }
+    return length;
+  }
+
+  /**
+   * Reads the elements of a list whose element type and length have already been read.
+   */
+  private static NBTList readList(NBTType type, int length, DataInputStream source) throws IOException, NBTException {
+    NBTList list = new NBTList(type);
+    // the length is untrusted, so only presize up to a bound
+    list.ensureCapacity(Math.min(length, 1 << 16));
+    switch(type) {
+    case BYTE:
       for (int i = 0; i < length; i++) {
-        int_out[i] = source.readInt();
+        list.addByte(source.readByte());
       }
-      return int_out;
-    case LONG_ARRAY:
-      length = source.readInt();
-      Long[] long_out = new Long[length];
+      break;
+    case SHORT:
+      for (int i = 0; i < length; i++) {
+        list.addShort(source.readShort());
+      }
+      break;
+    case INT:
+      for (int i = 0; i < length; i++) {
+        list.addInt(source.readInt());
+      }
+      break;
+    case LONG:
+      for (int i = 0; i < length; i++) {
+        list.addLong(source.readLong());
+      }
+      break;
+    case FLOAT:
+      for (int i = 0; i < length; i++) {
+        list.addFloat(source.readFloat());
+      }
+      break;
+    case DOUBLE:
       for (int i = 0; i < length; i++) {
-        long_out[i] = source.readLong();
+        list.addDouble(source.readDouble());
       }
-      return long_out;
+      break;
     default:
-      return null;
+      for (int i = 0; i < length; i++) {
+        list.add(type.readFrom(source));
+      }
     }
+    return list;
   }
   
   /**
    * @param name The name of the tag to write.
    * @param obj The value of the tag. Expected to be of
    *   the appropriate type for this <code>NBTType</code>.
-   * @param dest The {@link java.io.DataOutputStream} to
+   * @param dest The {@link java.io.DataOutput} to
    *   write to.
    * @throws IOException if <code>dest</code> throws an
    *   {@link java.io.IOException} on the write operation.
    *   
-   * @see #writePayload(Object, DataOutputStream)
+   * @see #writePayload(Object, DataOutput)
    * 
    * Writes a full tag of this type to <code>dest</code>,
    * including the tag ID, the name, and the payload.
    */
-  public void writeTo(String name, Object obj, DataOutputStream dest) throws IOException {
+  public void writeTo(String name, Object obj, DataOutput dest) throws IOException {
     dest.writeByte(this.id);
     dest.writeUTF(name);
     writePayload(obj, dest);
   }
   
+  /**
+   * @param name The name of the tag to write.
+   * @param obj The value of the tag.
+   * @param dest The {@link java.io.DataOutputStream} to write to.
+   * @throws IOException if <code>dest</code> throws an
+   *   {@link java.io.IOException} on the write operation.
+   *
+   * Kept for callers compiled against the <code>DataOutputStream</code> signature.
+   *
+   * @see #writeTo(String, Object, DataOutput)
+   */
+  public void writeTo(String name, Object obj, DataOutputStream dest) throws IOException {
+    writeTo(name, obj, (DataOutput)dest);
+  }
+  
   /**
    * @param obj The value to write.
    * @param dest The {@link java.io.DataOutputStream} to write to.
    * @throws IOException if <code>dest</code> throws an
+   *   {@link java.io.IOException} on the write operation.
+   *
+   * Kept for callers compiled against the <code>DataOutputStream</code> signature.
+   *
+   * @see #writePayload(Object, DataOutput)
+   */
+  public void writePayload(Object obj, DataOutputStream dest) throws IOException {
+    writePayload(obj, (DataOutput)dest);
+  }
+  
+  /**
+   * @param obj The value to write.
+   * @param dest The {@link java.io.DataOutput} to write to.
+   * @throws IOException if <code>dest</code> throws an
    * {@link java.io.IOException} on the write operation.
    * 
    * Writes a payload of this type to <code>dest</code>.
    * Does not write a full tag, only a value.
    */
-  public void writePayload(Object obj, DataOutputStream dest) throws IOException {
+  public void writePayload(Object obj, DataOutput dest) throws IOException {
     switch(this) {
     case COMPOUND:
+      if (obj instanceof EncodedPayload) {
+        ((EncodedPayload)obj).writePayload(dest);
+        break;
+      }
       @SuppressWarnings("unchecked")
       Map<String, ?> items = (Map<String, ?>)obj;
       for (String key : items.keySet()) {
@@ -264,11 +406,9 @@ public enum NBTType {
       dest.writeDouble((double)obj);
       break;
     case BYTE_ARRAY:
-      Byte[] bytes = (Byte[])obj;
+      byte[] bytes = (byte[])unboxArray(obj);
       dest.writeInt(bytes.length);
-      for (Byte b : bytes) {
-        dest.writeByte(b);
-      }
+      dest.write(bytes);
       break;
     case STRING:
       dest.writeUTF((String)obj);
@@ -286,28 +426,85 @@ public enum NBTType {
         NBTType type = lst.type;
         dest.writeByte(type.id);
         dest.writeInt(lst.size());
-        for (Object item : lst) {
-          type.writePayload(item, dest);
+        if (!lst.writeElements(dest)) {
+          for (Object item : lst) {
+            type.writePayload(item, dest);
+          }
         }
       }
       break;
     case INT_ARRAY:
-      Integer[] numbers = (Integer[])obj;
+      int[] numbers = (int[])unboxArray(obj);
       dest.writeInt(numbers.length);
-      for (int i : numbers) {
-        dest.writeInt(i);
-      }
+      Util.writeInts(dest, numbers);
       break;
     case LONG_ARRAY:
-      Long[] longs = (Long[])obj;
+      long[] longs = (long[])unboxArray(obj);
       dest.writeInt(longs.length);
-      for(long l : longs) {
-        dest.writeLong(l);
-      }
+      Util.writeLongs(dest, longs);
       break;
     }
   }
   
+  /**
+   * @param obj The value to measure. Expected to be of
+   *   the appropriate type for this <code>NBTType</code>.
+   * @return The exact number of bytes {@link #writePayload(Object, DataOutput)}
+   *   writes for <code>obj</code>.
+   */
+  public long sizeOf(Object obj) {
+    int fixed = getPayloadSize();
+    if (fixed >= 0) {
+      return fixed;
+    }
+    switch(this) {
+    case STRING:
+      return Short.BYTES + Util.modifiedUtf8Length((String)obj);
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      return Integer.BYTES + (long)Array.getLength(obj) * getElementType().getPayloadSize();
+    case LIST:
+      NBTList lst = (NBTList) obj;
+      long list_size = Byte.BYTES + Integer.BYTES;
+      int element_size = lst.type.getPayloadSize();
+      if (element_size >= 0) {
+        return list_size + (long)lst.size() * element_size;
+      }
+      for (Object item : lst) {
+        list_size += lst.type.sizeOf(item);
+      }
+      return list_size;
+    case COMPOUND:
+      if (obj instanceof EncodedPayload) {
+        return ((EncodedPayload)obj).sizeOf();
+      }
+      @SuppressWarnings("unchecked")
+      Map<String, ?> items = (Map<String, ?>)obj;
+      long compound_size = Byte.BYTES;
+      for (Map.Entry<String, ?> entry : items.entrySet()) {
+        NBTType type = NBTType.typeOf(entry.getValue());
+        if (type == null) {
+          throw new IllegalArgumentException("Invalid object " + String.valueOf(entry.getValue()));
+        }
+        compound_size += type.sizeOf(entry.getKey(), entry.getValue());
+      }
+      return compound_size;
+    default:
+      return 0;
+    }
+  }
+  
+  /**
+   * @param name The name of the tag.
+   * @param obj The value of the tag.
+   * @return The exact number of bytes {@link #writeTo(String, Object, DataOutput)}
+   *   writes for a full tag of this type.
+   */
+  public long sizeOf(String name, Object obj) {
+    return Byte.BYTES + Short.BYTES + Util.modifiedUtf8Length(name) + sizeOf(obj);
+  }
+  
   // Static methods
   
   /**
@@ -324,30 +521,59 @@ public enum NBTType {
       return END;
     }
     
-    for (NBTType t : NBTType.values()) {
-      if (t.javaType.isInstance(value)) {
-        return t;
+    return BY_CLASS.get(value.getClass());
+  }
+  
+  /**
+   * @param value The value to convert.
+   * @return The primitive equivalent of <code>value</code> if it
+   *   is a boxed array (<code>Byte[]</code>, <code>Integer[]</code>
+   *   or <code>Long[]</code>), otherwise <code>value</code> itself
+   * @throws NullPointerException If a boxed array contains <code>null</code>
+   * 
+   * Array tags are stored as primitive arrays. This method provides
+   * a compatibility path for code that still hands in boxed arrays.
+   */
+  public static Object unboxArray(Object value) {
+    if (value instanceof Byte[]) {
+      Byte[] boxed = (Byte[])value;
+      byte[] result = new byte[boxed.length];
+      for (int i = 0; i < boxed.length; i++) {
+        result[i] = boxed[i];
       }
+      return result;
+    } else if (value instanceof Integer[]) {
+      Integer[] boxed = (Integer[])value;
+      int[] result = new int[boxed.length];
+      for (int i = 0; i < boxed.length; i++) {
+        result[i] = boxed[i];
+      }
+      return result;
+    } else if (value instanceof Long[]) {
+      Long[] boxed = (Long[])value;
+      long[] result = new long[boxed.length];
+      for (int i = 0; i < boxed.length; i++) {
+        result[i] = boxed[i];
+      }
+      return result;
     }
-    
-    return null;
+    return value;
   }
   
   /**
    * @param id The tag ID to get the type of.
    * @return The type represented by <code>id</code>
+   * @throws NBTException If <code>id</code> is not a known tag ID.
    * 
    * Returns the type represented by <code>id</code>
    * according to the NBT file format.
    */
-  public static NBTType getById(byte id) {
-    for (NBTType t : NBTType.values()) {
-      if (t.id == id) {
-        return t;
-      }
+  public static NBTType getById(byte id) throws NBTException {
+    if (id < 0 || id >= BY_ID.length) {
+      throw new NBTException(String.format("Unknown tag ID %d", id));
     }
     
-    return null;
+    return BY_ID[id];
   }
   
   /**
@@ -375,7 +601,7 @@ public enum NBTType {
     case DOUBLE:
       return 0.0;
     case BYTE_ARRAY:
-      return new Byte[0];
+      return new byte[0];
     case STRING:
       return "";
     case LIST:
@@ -383,9 +609,9 @@ public enum NBTType {
     case COMPOUND:
       return new HashMap<String, Object>();
     case INT_ARRAY:
-      return new Integer[0];
+      return new int[0];
     case LONG_ARRAY:
-      return new Long[0];
+      return new long[0];
     default:
       return null;
     }
@@ -421,11 +647,11 @@ public enum NBTType {
    *   every NBTType, except <code>NBTType.END</code>
    */
   public static String[] choices() {
-    String[] ret = new String[NBTType.values().length - 1];
+    String[] ret = new String[VALUES.length - 1];
     int next_idx = 0;
-    for (int i = 0; i < NBTType.values().length; i++) {
-      if (NBTType.values()[i] == END) continue;
-      ret[next_idx++] = NBTType.values()[i].toDisplayString();
+    for (int i = 0; i < VALUES.length; i++) {
+      if (VALUES[i] == END) continue;
+      ret[next_idx++] = VALUES[i].toDisplayString();
     }
     return ret;
   }
@@ -0,0 +1,489 @@
+package lib.nbt;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable compound, stored as a hash array mapped trie.
+ *
+ * Updating a persistent compound with {@link #assoc(String, Object)},
+ * {@link #dissoc(String)} or {@link #assocIn(List, Object)} returns a new
+ * compound and leaves this one untouched. The new compound shares every
+ * node of the trie, and every nested value, that the update did not change,
+ * so an update costs the path to the changed entry rather than a copy of
+ * the tree. A snapshot of a persistent tree is the tree itself, and any
+ * number of threads can read it without locking.
+ *
+ * Nested compounds and lists are persistent as well: values stored in a
+ * persistent compound are converted by {@link #freeze(Object)}. Arrays
+ * are copied when stored, and must not be modified through
+ * {@link #get(Object)}. The {@link java.util.Map} mutators throw
+ * {@link java.lang.UnsupportedOperationException}.
+ *
+ * @see lib.nbt.PersistentList
+ * @author Kyrillos Tawadros
+ */
+public final class PersistentCompound extends AbstractMap<String, Object> {
+
+  /**
+   * The compound without entries.
+   */
+  public static final PersistentCompound EMPTY = new PersistentCompound(null, 0);
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private final Node root;
+  private final int size;
+
+  /**
+   * The content hash once computed, 0 before.
+   */
+  private volatile long contentHash;
+
+  private PersistentCompound(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * @param compound The compound to convert.
+   * @return A persistent compound holding the entries of <code>compound</code>,
+   *   with nested values converted by {@link #freeze(Object)}
+   * @throws IllegalArgumentException If a value is not a valid NBT value.
+   */
+  public static PersistentCompound of(Map<String, ?> compound) {
+    if (compound instanceof PersistentCompound) {
+      return (PersistentCompound)compound;
+    }
+    PersistentCompound result = EMPTY;
+    for (Map.Entry<String, ?> entry : compound.entrySet()) {
+      result = result.assoc(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * @param value An NBT value.
+   * @return <code>value</code> if it is immutable, otherwise an immutable
+   *   equivalent: compounds and lists are converted to persistent ones,
+   *   recursively, and arrays are copied
+   * @throws IllegalArgumentException If <code>value</code> is not a valid NBT value.
+   *
+   * Persistent compounds and lists are returned as they are, so freezing
+   * a tree that is already persistent costs nothing.
+   */
+  @SuppressWarnings("unchecked")
+  public static Object freeze(Object value) {
+    NBTType type = NBTType.typeOf(value);
+    if (type == null || type == NBTType.END) {
+      throw new IllegalArgumentException("Invalid object " + String.valueOf(value));
+    }
+    switch (type) {
+    case COMPOUND:
+      return of((Map<String, ?>)value);
+    case LIST:
+      return PersistentList.of((NBTList)value);
+    case BYTE_ARRAY:
+      return value instanceof byte[] ? ((byte[])value).clone() : NBTType.unboxArray(value);
+    case INT_ARRAY:
+      return value instanceof int[] ? ((int[])value).clone() : NBTType.unboxArray(value);
+    case LONG_ARRAY:
+      return value instanceof long[] ? ((long[])value).clone() : NBTType.unboxArray(value);
+    default:
+      return value;
+    }
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (root == null || !(key instanceof String)) {
+      return null;
+    }
+    return root.find(0, hash(key), (String)key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    // values are never null
+    return get(key) != null;
+  }
+
+  /**
+   * @param key The name of the entry.
+   * @param value The value of the entry, converted by {@link #freeze(Object)}.
+   * @return A compound with <code>key</code> mapped to <code>value</code>,
+   *   <code>this</code> if it already was
+   * @throws IllegalArgumentException If <code>key</code> is <code>null</code>,
+   *   or <code>value</code> is not a valid NBT value
+   */
+  public PersistentCompound assoc(String key, Object value) {
+    if (key == null) {
+      throw new IllegalArgumentException("Key must not be null!");
+    }
+    value = freeze(value);
+    boolean[] added = new boolean[1];
+    Node node = (root == null ? BitmapNode.EMPTY : root).assoc(0, hash(key), key, value, added);
+    if (node == root) {
+      return this;
+    }
+    return new PersistentCompound(node, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * @param key The name of the entry.
+   * @return A compound without <code>key</code>, <code>this</code> if it had none
+   */
+  public PersistentCompound dissoc(String key) {
+    if (root == null || key == null) {
+      return this;
+    }
+    Node node = root.dissoc(0, hash(key), key);
+    if (node == root) {
+      return this;
+    }
+    return node == null ? EMPTY : new PersistentCompound(node, size - 1);
+  }
+
+  /**
+   * @param path The names of the entries and indices of the elements leading
+   *   to the value, starting in this compound.
+   * @param value The value to store at the end of <code>path</code>.
+   * @return A compound with the value at <code>path</code> replaced, sharing
+   *   everything off the path with this one
+   * @throws IllegalArgumentException If <code>path</code> is empty or does not
+   *   lead through existing compounds and lists, or <code>value</code> is invalid.
+   *
+   * The last step of the path may name a new entry, or append to a list
+   * by giving its size as the index.
+   */
+  public PersistentCompound assocIn(List<?> path, Object value) {
+    if (path.isEmpty()) {
+      throw new IllegalArgumentException("Path must not be empty!");
+    }
+    return (PersistentCompound)assocIn(this, path, 0, value);
+  }
+
+  /**
+   * Replaces the value at <code>path</code>, from <code>depth</code> on, in <code>node</code>.
+   */
+  static Object assocIn(Object node, List<?> path, int depth, Object value) {
+    if (depth == path.size()) {
+      return freeze(value);
+    }
+    Object step = path.get(depth);
+    if (node instanceof PersistentCompound && step instanceof String) {
+      PersistentCompound compound = (PersistentCompound)node;
+      Object child = compound.get(step);
+      if (child == null && depth + 1 < path.size()) {
+        throw new IllegalArgumentException(String.format("No tag at %s", path.subList(0, depth + 1)));
+      }
+      return compound.assoc((String)step, assocIn(child, path, depth + 1, value));
+    } else if (node instanceof PersistentList && step instanceof Integer) {
+      PersistentList list = (PersistentList)node;
+      int index = (Integer)step;
+      Object child = index < list.size() && index >= 0 ? list.get(index) : null;
+      if (child == null && depth + 1 < path.size()) {
+        throw new IllegalArgumentException(String.format("No tag at %s", path.subList(0, depth + 1)));
+      }
+      return list.assoc(index, assocIn(child, path, depth + 1, value));
+    }
+    throw new IllegalArgumentException(String.format("Invalid path %s", path.subList(0, depth + 1)));
+  }
+
+  /**
+   * @return The {@link lib.nbt.ContentHash} of this compound, computed once.
+   */
+  public long contentHash() {
+    long h = contentHash;
+    if (h == 0) {
+      h = ContentHash.hashContainer(this, null);
+      contentHash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return new TrieIterator(root);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * A trie node. Its array holds key-value pairs; in bitmap nodes,
+   * a pair with a <code>null</code> key holds a child node instead.
+   */
+  private abstract static class Node {
+    final Object[] array;
+
+    Node(Object[] array) {
+      this.array = array;
+    }
+
+    abstract Object find(int shift, int hash, String key);
+
+    abstract Node assoc(int shift, int hash, String key, Object value, boolean[] added);
+
+    abstract Node dissoc(int shift, int hash, String key);
+  }
+
+  private static final class BitmapNode extends Node {
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    final int bitmap;
+
+    BitmapNode(int bitmap, Object[] array) {
+      super(array);
+      this.bitmap = bitmap;
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    Object find(int shift, int hash, String key) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int i = index(bit);
+      Object k = array[i];
+      if (k == null) {
+        return ((Node)array[i + 1]).find(shift + BITS, hash, key);
+      }
+      return key.equals(k) ? array[i + 1] : null;
+    }
+
+    @Override
+    Node assoc(int shift, int hash, String key, Object value, boolean[] added) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      int i = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] grown = new Object[array.length + 2];
+        System.arraycopy(array, 0, grown, 0, i);
+        grown[i] = key;
+        grown[i + 1] = value;
+        System.arraycopy(array, i, grown, i + 2, array.length - i);
+        added[0] = true;
+        return new BitmapNode(bitmap | bit, grown);
+      }
+      Object k = array[i];
+      Object v = array[i + 1];
+      if (k == null) {
+        Node child = ((Node)v).assoc(shift + BITS, hash, key, value, added);
+        return child == v ? this : with(i + 1, child);
+      }
+      if (key.equals(k)) {
+        return v == value ? this : with(i + 1, value);
+      }
+      added[0] = true;
+      Node child = pair(shift + BITS, hash((String)k), (String)k, v, hash, key, value);
+      Object[] copy = array.clone();
+      copy[i] = null;
+      copy[i + 1] = child;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    private BitmapNode with(int i, Object value) {
+      Object[] copy = array.clone();
+      copy[i] = value;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    @Override
+    Node dissoc(int shift, int hash, String key) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int i = index(bit);
+      Object k = array[i];
+      if (k == null) {
+        Node child = ((Node)array[i + 1]).dissoc(shift + BITS, hash, key);
+        if (child == array[i + 1]) {
+          return this;
+        } else if (child != null) {
+          return with(i + 1, child);
+        }
+      } else if (!key.equals(k)) {
+        return this;
+      }
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] shrunk = new Object[array.length - 2];
+      System.arraycopy(array, 0, shrunk, 0, i);
+      System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+      return new BitmapNode(bitmap & ~bit, shrunk);
+    }
+  }
+
+  /**
+   * The entries whose keys have the same full hash.
+   */
+  private static final class CollisionNode extends Node {
+    final int hash;
+
+    CollisionNode(int hash, Object[] array) {
+      super(array);
+      this.hash = hash;
+    }
+
+    private int indexOf(String key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object find(int shift, int hash, String key) {
+      int i = indexOf(key);
+      return i < 0 ? null : array[i + 1];
+    }
+
+    @Override
+    Node assoc(int shift, int hash, String key, Object value, boolean[] added) {
+      if (hash != this.hash) {
+        // nest this node under a bitmap node, which tells the hashes apart
+        return new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] { null, this })
+            .assoc(shift, hash, key, value, added);
+      }
+      int i = indexOf(key);
+      if (i >= 0) {
+        if (array[i + 1] == value) {
+          return this;
+        }
+        Object[] copy = array.clone();
+        copy[i + 1] = value;
+        return new CollisionNode(hash, copy);
+      }
+      Object[] grown = new Object[array.length + 2];
+      System.arraycopy(array, 0, grown, 0, array.length);
+      grown[array.length] = key;
+      grown[array.length + 1] = value;
+      added[0] = true;
+      return new CollisionNode(hash, grown);
+    }
+
+    @Override
+    Node dissoc(int shift, int hash, String key) {
+      int i = indexOf(key);
+      if (i < 0) {
+        return this;
+      } else if (array.length == 2) {
+        return null;
+      }
+      Object[] shrunk = new Object[array.length - 2];
+      System.arraycopy(array, 0, shrunk, 0, i);
+      System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+      return new CollisionNode(hash, shrunk);
+    }
+  }
+
+  /**
+   * @return A node holding the two entries, whose keys differ.
+   */
+  private static Node pair(int shift, int hash1, String key1, Object value1, int hash2, String key2, Object value2) {
+    if (hash1 == hash2) {
+      return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+    }
+    int index1 = (hash1 >>> shift) & MASK;
+    int index2 = (hash2 >>> shift) & MASK;
+    if (index1 == index2) {
+      return new BitmapNode(1 << index1,
+          new Object[] { null, pair(shift + BITS, hash1, key1, value1, hash2, key2, value2) });
+    }
+    Object[] array = index1 < index2
+        ? new Object[] { key1, value1, key2, value2 }
+        : new Object[] { key2, value2, key1, value1 };
+    return new BitmapNode((1 << index1) | (1 << index2), array);
+  }
+
+  /**
+   * Walks the trie depth first, with an explicit stack of node arrays.
+   */
+  private static final class TrieIterator implements Iterator<Map.Entry<String, Object>> {
+    // 32 bits of hash at 5 bits per level, plus a collision node
+    private final Object[][] arrays = new Object[9][];
+    private final int[] positions = new int[9];
+    private int depth = -1;
+    private String nextKey;
+    private Object nextValue;
+
+    TrieIterator(Node root) {
+      if (root != null) {
+        arrays[++depth] = root.array;
+      }
+      advance();
+    }
+
+    private void advance() {
+      nextKey = null;
+      while (depth >= 0) {
+        Object[] array = arrays[depth];
+        int i = positions[depth];
+        if (i >= array.length) {
+          positions[depth--] = 0;
+          continue;
+        }
+        positions[depth] = i + 2;
+        if (array[i] == null) {
+          arrays[++depth] = ((Node)array[i + 1]).array;
+          positions[depth] = 0;
+        } else {
+          nextKey = (String)array[i];
+          nextValue = array[i + 1];
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextKey != null;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if (nextKey == null) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<>(nextKey, nextValue);
+      advance();
+      return entry;
+    }
+  }
+}
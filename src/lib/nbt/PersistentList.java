@@ -0,0 +1,282 @@
+package lib.nbt;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable NBT list, stored as a persistent vector: a 32-way trie
+ * of its elements plus a tail array holding the last ones.
+ *
+ * Updating a persistent list with {@link #assoc(int, Object)},
+ * {@link #conj(Object)}, {@link #pop()} or {@link #assocIn(List, Object)}
+ * returns a new list and leaves this one untouched, sharing every node
+ * off the path to the changed element. Reading an element takes at most
+ * a few array lookups.
+ *
+ * Elements are converted by {@link lib.nbt.PersistentCompound#freeze(Object)}
+ * when stored. The mutators inherited from {@link lib.nbt.NBTList} and
+ * {@link java.util.List} throw {@link java.lang.UnsupportedOperationException}.
+ *
+ * @see lib.nbt.PersistentCompound
+ * @author Kyrillos Tawadros
+ */
+public final class PersistentList extends NBTList {
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final Object[] EMPTY_NODE = new Object[WIDTH];
+  private static final Object[] EMPTY_TAIL = new Object[0];
+
+  private final int count;
+  private final int shift;
+  private final Object[] root;
+  private final Object[] tail;
+
+  /**
+   * The content hash once computed, 0 before.
+   */
+  private volatile long contentHash;
+
+  private PersistentList(NBTType type, int count, int shift, Object[] root, Object[] tail) {
+    this(type, count, shift, root, tail, new View());
+  }
+
+  private PersistentList(NBTType type, int count, int shift, Object[] root, Object[] tail, View view) {
+    super(type, view);
+    view.list = this;
+    this.count = count;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  /**
+   * @param type The type of the elements.
+   * @return A list without elements.
+   */
+  public static PersistentList empty(NBTType type) {
+    return new PersistentList(type, 0, BITS, EMPTY_NODE, EMPTY_TAIL);
+  }
+
+  /**
+   * @param list The list to convert.
+   * @return A persistent list holding the elements of <code>list</code>, with nested
+   *   values converted by {@link lib.nbt.PersistentCompound#freeze(Object)}
+   */
+  public static PersistentList of(NBTList list) {
+    if (list instanceof PersistentList) {
+      return (PersistentList)list;
+    }
+    PersistentList result = empty(list.type);
+    for (Object item : list) {
+      result = result.conj(item);
+    }
+    return result;
+  }
+
+  private int tailOffset() {
+    return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+  }
+
+  private Object[] arrayFor(int index) {
+    if (index >= tailOffset()) {
+      return tail;
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[])node[(index >>> level) & MASK];
+    }
+    return node;
+  }
+
+  @Override
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  @Override
+  public Object get(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, count));
+    }
+    return arrayFor(index)[index & MASK];
+  }
+
+  /**
+   * @param index The index of the element, or the size of the list to append.
+   * @param value The new value of the element.
+   * @return A list with the element at <code>index</code> replaced, <code>this</code> if it already was
+   * @throws IllegalArgumentException If <code>value</code> is not a valid value of the list type.
+   * @throws IndexOutOfBoundsException If <code>index</code> is not within the list or at its end.
+   */
+  public PersistentList assoc(int index, Object value) {
+    if (index == count) {
+      return conj(value);
+    }
+    Object stored = PersistentCompound.freeze(validate(value));
+    if (get(index) == stored) {
+      return this;
+    }
+    if (index >= tailOffset()) {
+      Object[] new_tail = tail.clone();
+      new_tail[index & MASK] = stored;
+      return new PersistentList(type, count, shift, root, new_tail);
+    }
+    return new PersistentList(type, count, shift, assocNode(shift, root, index, stored), tail);
+  }
+
+  private static Object[] assocNode(int level, Object[] node, int index, Object value) {
+    Object[] copy = node.clone();
+    if (level == 0) {
+      copy[index & MASK] = value;
+    } else {
+      int slot = (index >>> level) & MASK;
+      copy[slot] = assocNode(level - BITS, (Object[])node[slot], index, value);
+    }
+    return copy;
+  }
+
+  /**
+   * @param value The element to append.
+   * @return A list with <code>value</code> appended.
+   * @throws IllegalArgumentException If <code>value</code> is not a valid value of the list type.
+   */
+  public PersistentList conj(Object value) {
+    Object stored = PersistentCompound.freeze(validate(value));
+    if (count - tailOffset() < WIDTH) {
+      Object[] new_tail = Arrays.copyOf(tail, tail.length + 1);
+      new_tail[tail.length] = stored;
+      return new PersistentList(type, count + 1, shift, root, new_tail);
+    }
+    // the tail is full: push it into the trie, growing a level if the trie is full too
+    Object[] new_root;
+    int new_shift = shift;
+    if ((count >>> BITS) > (1 << shift)) {
+      new_root = new Object[WIDTH];
+      new_root[0] = root;
+      new_root[1] = newPath(shift, tail);
+      new_shift += BITS;
+    } else {
+      new_root = pushTail(shift, root, tail);
+    }
+    return new PersistentList(type, count + 1, new_shift, new_root, new Object[] { stored });
+  }
+
+  private Object[] pushTail(int level, Object[] parent, Object[] tail_node) {
+    int slot = ((count - 1) >>> level) & MASK;
+    Object[] copy = parent.clone();
+    if (level == BITS) {
+      copy[slot] = tail_node;
+    } else {
+      Object[] child = (Object[])parent[slot];
+      copy[slot] = child != null ? pushTail(level - BITS, child, tail_node) : newPath(level - BITS, tail_node);
+    }
+    return copy;
+  }
+
+  private static Object[] newPath(int level, Object[] node) {
+    if (level == 0) {
+      return node;
+    }
+    Object[] path = new Object[WIDTH];
+    path[0] = newPath(level - BITS, node);
+    return path;
+  }
+
+  /**
+   * @return A list without the last element.
+   * @throws IllegalStateException If the list is empty.
+   */
+  public PersistentList pop() {
+    if (count == 0) {
+      throw new IllegalStateException("Can't pop an empty list");
+    } else if (count == 1) {
+      return empty(type);
+    } else if (count - tailOffset() > 1) {
+      return new PersistentList(type, count - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+    }
+    Object[] new_tail = arrayFor(count - 2);
+    Object[] new_root = popTail(shift, root);
+    int new_shift = shift;
+    if (new_root == null) {
+      new_root = EMPTY_NODE;
+    }
+    if (shift > BITS && new_root[1] == null) {
+      new_root = (Object[])new_root[0];
+      new_shift -= BITS;
+    }
+    return new PersistentList(type, count - 1, new_shift, new_root, new_tail);
+  }
+
+  private Object[] popTail(int level, Object[] node) {
+    int slot = ((count - 2) >>> level) & MASK;
+    if (level > BITS) {
+      Object[] child = popTail(level - BITS, (Object[])node[slot]);
+      if (child == null && slot == 0) {
+        return null;
+      }
+      Object[] copy = node.clone();
+      copy[slot] = child;
+      return copy;
+    } else if (slot == 0) {
+      return null;
+    }
+    Object[] copy = node.clone();
+    copy[slot] = null;
+    return copy;
+  }
+
+  /**
+   * @param path The indices of the elements and names of the entries leading
+   *   to the value, starting in this list.
+   * @param value The value to store at the end of <code>path</code>.
+   * @return A list with the value at <code>path</code> replaced, sharing
+   *   everything off the path with this one
+   * @throws IllegalArgumentException If <code>path</code> is empty or does not
+   *   lead through existing compounds and lists, or <code>value</code> is invalid.
+   *
+   * @see lib.nbt.PersistentCompound#assocIn(List, Object)
+   */
+  public PersistentList assocIn(List<?> path, Object value) {
+    if (path.isEmpty()) {
+      throw new IllegalArgumentException("Path must not be empty!");
+    }
+    return (PersistentList)PersistentCompound.assocIn(this, path, 0, value);
+  }
+
+  /**
+   * @return The {@link lib.nbt.ContentHash} of this list, computed once.
+   */
+  public long contentHash() {
+    long h = contentHash;
+    if (h == 0) {
+      h = ContentHash.hashContainer(this, null);
+      contentHash = h;
+    }
+    return h;
+  }
+
+  /**
+   * The read-only {@link java.util.List} the inherited methods delegate to.
+   */
+  private static final class View extends AbstractList<Object> implements RandomAccess {
+    PersistentList list;
+
+    @Override
+    public Object get(int index) {
+      return list.get(index);
+    }
+
+    @Override
+    public int size() {
+      return list.count;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package lib.nbt;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A growable list backed by a primitive array, the editable form of the
+ * byte, int and long array tags and the storage of numeric {@link lib.nbt.NBTList}s.
+ *
+ * Elements are stored unboxed and edited in place. Appending is amortized
+ * constant time, like {@link java.util.ArrayList}, and inserting or removing
+ * shifts the elements after the index with a single
+ * {@link java.lang.System#arraycopy(Object, int, Object, int, int)}.
+ * The boxed {@link java.util.List} methods work as usual; the typed
+ * methods of each subclass avoid boxing altogether.
+ *
+ * @param <E> The boxed element type.
+ * @see lib.nbt.ByteArrayList
+ * @see lib.nbt.ShortArrayList
+ * @see lib.nbt.IntArrayList
+ * @see lib.nbt.LongArrayList
+ * @see lib.nbt.FloatArrayList
+ * @see lib.nbt.DoubleArrayList
+ * @author Kyrillos Tawadros
+ */
+public abstract class PrimitiveArrayList<E extends Number> extends AbstractList<E> implements RandomAccess {
+
+  /**
+   * The capacity of a list created without one.
+   */
+  protected static final int DEFAULT_CAPACITY = 10;
+
+  protected int size;
+
+  /**
+   * @param array A <code>byte[]</code>, <code>int[]</code> or <code>long[]</code>.
+   * @return A list holding a copy of the elements of <code>array</code>.
+   * @throws IllegalArgumentException If <code>array</code> is not one of those types.
+   */
+  public static PrimitiveArrayList<?> of(Object array) {
+    if (array instanceof byte[]) {
+      return new ByteArrayList((byte[])array);
+    } else if (array instanceof int[]) {
+      return new IntArrayList((int[])array);
+    } else if (array instanceof long[]) {
+      return new LongArrayList((long[])array);
+    }
+    throw new IllegalArgumentException("Invalid array " + String.valueOf(array));
+  }
+
+  /**
+   * @param type The element type of the list.
+   * @return An empty list storing elements of <code>type</code>,
+   *   <code>null</code> if <code>type</code> is not numeric
+   */
+  public static PrimitiveArrayList<?> forType(NBTType type) {
+    switch (type) {
+    case BYTE:
+      return new ByteArrayList();
+    case SHORT:
+      return new ShortArrayList();
+    case INT:
+      return new IntArrayList();
+    case LONG:
+      return new LongArrayList();
+    case FLOAT:
+      return new FloatArrayList();
+    case DOUBLE:
+      return new DoubleArrayList();
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * @return The type of the elements of this list.
+   */
+  public abstract NBTType getElementType();
+
+  /**
+   * @return A new primitive array of exactly {@link #size()} elements.
+   *   For byte, int and long lists it is a valid value of the
+   *   corresponding array tag.
+   */
+  public abstract Object toPrimitiveArray();
+
+  /**
+   * @return A list of the same type holding a copy of the elements,
+   *   with no spare capacity.
+   */
+  public abstract PrimitiveArrayList<E> copy();
+
+  /**
+   * @param capacity The number of elements the list should
+   *   hold without growing again.
+   */
+  public abstract void ensureCapacity(int capacity);
+
+  /**
+   * Shrinks the backing array to the size of the list.
+   */
+  public abstract void trimToSize();
+
+  /**
+   * @param minimum The capacity required.
+   * @param current The current capacity.
+   * @return The capacity to grow to: one and a half times
+   *   the current one, or the required one if larger
+   */
+  protected static int grow(int minimum, int current) {
+    if (minimum < 0) {
+      throw new OutOfMemoryError("Required array size too large");
+    }
+    int grown = current + (current >> 1);
+    if (grown < minimum || grown < 0) {
+      grown = minimum;
+    }
+    return Math.max(grown, DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    modCount++;
+    size = 0;
+  }
+
+  /**
+   * @throws IndexOutOfBoundsException If <code>index</code> is not an element index.
+   */
+  protected void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size));
+    }
+  }
+
+  /**
+   * @throws IndexOutOfBoundsException If <code>index</code> is not an insertion index.
+   */
+  protected void checkPosition(int index) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size));
+    }
+  }
+}
@@ -37,7 +37,7 @@ public class SyncTag extends Tag {
   @Override
   public void setValue(Object value) {
     super.setValue(value);
-    ref.set(index, value);
+    ref.set(index, this.value);
   }
   
   /**
@@ -45,7 +45,7 @@ public class SyncTag extends Tag {
    */
   @Override
   public SyncTag copy() {
-    return new SyncTag(name, value, ref, index);
+    return new SyncTag(name, getValue(), ref, index);
   }
 
 }
@@ -1,5 +1,7 @@
 package lib.nbt;
 
+import java.util.Objects;
+
 /**
  * A class representing a single NBT Tag.
  * 
@@ -26,6 +28,14 @@ public class Tag {
    * The type of this tag.
    */
   protected NBTType type;
+
+  /**
+   * The list holding edits of this tag's array that are not yet
+   * published to <code>value</code>, <code>null</code> if there are none.
+   *
+   * @see lib.nbt.NBTArrayList
+   */
+  NBTArrayList pending;
   
   /**
    * 
@@ -34,9 +44,11 @@ public class Tag {
    * @throws IllegalArgumentException if <code>value</code>
    *   does not match any known NBT type.
    *   
-   * This constructor infers <code>type</code> via {@link lib.nbt.NBTType#typeOf(Object)}
+   * This constructor infers <code>type</code> via {@link lib.nbt.NBTType#typeOf(Object)}.
+   * Boxed arrays are converted to their primitive equivalents.
    * 
    * @see lib.nbt.NBTType#typeOf(Object)
+   * @see lib.nbt.NBTType#unboxArray(Object)
    */
   public Tag(String name, Object value) throws IllegalArgumentException {
     this.name = name;
@@ -45,7 +57,7 @@ public class Tag {
       throw new IllegalArgumentException(String.format("Could not find NBT type for value '%s'.", String.valueOf(value)));
     }
     
-    this.value = value;
+    this.value = NBTType.unboxArray(value);
   }
   
   /**
@@ -79,19 +91,43 @@ public class Tag {
   
   /**
    * @return The value of this tag.
+   *
+   * Pending edits of an {@link lib.nbt.NBTArrayList} over
+   * this tag's array are published first.
    */
   public Object getValue() {
+    publish();
     return value;
   }
+
+  /**
+   * Publishes the pending edits of an {@link lib.nbt.NBTArrayList}
+   * over this tag's array, if there are any.
+   */
+  void publish() {
+    if (pending != null) {
+      pending.commit();
+    }
+  }
   
   /**
    * @param newValue The new value to set this tag to.
    * @throws IllegalArgumentException If <code>newValue</code>
    *   not a valid instance of {@link lib.nbt.Tag#type}
+   *   
+   * Boxed arrays are converted to their primitive equivalents. Pending
+   * edits of an {@link lib.nbt.NBTArrayList} over this tag's array are
+   * published first, so that <code>newValue</code> replaces them.
    */
   public void setValue(Object newValue) {
+    publish();
     if (type.isValidValue(newValue)) {
       this.value = newValue;
+      return;
+    }
+    Object unboxed = NBTType.unboxArray(newValue);
+    if (type.isValidValue(unboxed)) {
+      this.value = unboxed;
     } else {
       throw new IllegalArgumentException(String.format("Invalid value '%s' for NBT type %s", String.valueOf(newValue), type.toString()));
     }
@@ -110,13 +146,66 @@ public class Tag {
    */
   @Override
   public String toString() {
-    return String.format("Tag<%s> = %s", type.toString(), String.valueOf(value));
+    return String.format("Tag<%s> = %s", type.toString(), String.valueOf(getValue()));
+  }
+  
+  /**
+   * @param o The object to compare to.
+   * @return <code>true</code> if <code>o</code> is a tag with the same name and
+   *   type and a structurally equal value
+   *
+   * Compounds are compared regardless of their order or implementation and
+   * arrays by content. Comparing stops at the first difference, and persistent
+   * subtrees with different hashes are told apart without being walked.
+   *
+   * @see lib.nbt.ContentHash#equal(Object, Object)
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof Tag)) {
+      return false;
+    }
+    Tag other = (Tag)o;
+    return type == other.type && Objects.equals(name, other.name) && ContentHash.equal(getValue(), other.getValue());
+  }
+  
+  /**
+   * @return A hash of the name and the {@link lib.nbt.ContentHash} of the value.
+   *   Hashing a mutable compound or list walks it every time; persistent ones
+   *   remember their hash.
+   */
+  @Override
+  public int hashCode() {
+    long h = ContentHash.of(getValue());
+    return 31 * Objects.hashCode(name) + (int)(h ^ (h >>> 32));
   }
   
   /**
    * @return A shallow copy of this tag.
+   * @see #deepCopy()
    */
   public Tag copy() {
-    return new Tag(this.name, this.value);
+    return new Tag(this.name, getValue());
+  }
+  
+  /**
+   * @return A copy of this tag whose value shares no mutable state with this one.
+   * @see lib.nbt.Util#deepCopy(Object)
+   */
+  public Tag deepCopy() {
+    return new Tag(this.name, Util.deepCopy(getValue()));
+  }
+  
+  /**
+   * @return A copy of this tag whose value is a copy-on-write view of this one,
+   *   if it is a compound or a list. Changes to the view never reach this tag's
+   *   value, and only the containers that are modified get copied.
+   * @see lib.nbt.CopyOnWriteCompound
+   * @see lib.nbt.CopyOnWriteList
+   */
+  public Tag copyOnWrite() {
+    return new Tag(this.name, CopyOnWriteCompound.wrap(getValue()));
   }
 }
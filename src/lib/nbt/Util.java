@@ -1,6 +1,14 @@
 package lib.nbt;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A class miscellaneous utility methods.
@@ -9,6 +17,12 @@ import java.util.List;
  */
 public class Util {
   
+  /**
+   * The size, in bytes, of the scratch buffers used for bulk
+   * array transfers.
+   */
+  private static final int CHUNK_SIZE = 8192;
+  
   /**
    * @param l The list to format
    * @return A neatly formatted list bound by brackets
@@ -27,4 +41,229 @@ public class Util {
     result.append("]");
     return result.toString();
   }
+  
+  /**
+   * @param size The number of entries a map will hold.
+   * @return The initial capacity of a {@link java.util.HashMap}
+   *   holding <code>size</code> entries without resizing
+   */
+  public static int mapCapacity(int size) {
+    return size < 12 ? 16 : (int)(size / 0.75f) + 1;
+  }
+  
+  /**
+   * @param value An NBT value.
+   * @return A copy of <code>value</code> that shares no mutable state with it
+   * 
+   * Compounds and lists are copied into presized containers, numeric lists
+   * and arrays with a single array copy, and compact compounds keep their
+   * shape. The tree is walked with an explicit stack rather than recursion,
+   * so arbitrarily deep trees can be copied. Immutable values (numbers and
+   * strings) are shared. Persistent trees are copied into mutable ones.
+   */
+  public static Object deepCopy(Object value) {
+    Deque<Object[]> pending = new ArrayDeque<>();
+    Object copy = copyNode(value, pending);
+    Object[] frame;
+    while ((frame = pending.poll()) != null) {
+      Object source = frame[0];
+      if (frame[1] instanceof NBTList) {
+        NBTList dest = (NBTList)frame[1];
+        for (Object item : (NBTList)source) {
+          dest.add(copyNode(item, pending));
+        }
+        continue;
+      }
+      @SuppressWarnings("unchecked")
+      Map<String, Object> dest = (Map<String, Object>)frame[1];
+      if (source == null) {
+        // a compact copy holding the original values, replaced in place
+        for (Map.Entry<String, Object> entry : dest.entrySet()) {
+          Object item = entry.getValue();
+          Object item_copy = copyNode(item, pending);
+          if (item_copy != item) {
+            entry.setValue(item_copy);
+          }
+        }
+      } else {
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>)source).entrySet()) {
+          dest.put((String)entry.getKey(), copyNode(entry.getValue(), pending));
+        }
+      }
+    }
+    return copy;
+  }
+  
+  /**
+   * @return A copy of <code>value</code>, whose children are filled in
+   *   later if it is queued on <code>pending</code>
+   */
+  private static Object copyNode(Object value, Deque<Object[]> pending) {
+    if (value instanceof Map) {
+      if (value instanceof CompactCompound) {
+        CompactCompound compact = ((CompactCompound)value).copyShape();
+        if (compact != null) {
+          pending.push(new Object[] { null, compact });
+          return compact;
+        }
+      }
+      Map<String, Object> map = new HashMap<>(mapCapacity(((Map<?, ?>)value).size()));
+      pending.push(new Object[] { value, map });
+      return map;
+    } else if (value instanceof NBTList) {
+      NBTList source = (NBTList)value;
+      NBTList list = source.copyPrimitives();
+      if (list == null) {
+        list = new NBTList(source.type);
+        list.ensureCapacity(source.size());
+        pending.push(new Object[] { source, list });
+      }
+      return list;
+    } else if (value instanceof byte[]) {
+      return ((byte[])value).clone();
+    } else if (value instanceof int[]) {
+      return ((int[])value).clone();
+    } else if (value instanceof long[]) {
+      return ((long[])value).clone();
+    }
+    return value;
+  }
+  
+  /**
+   * @param str The string to measure.
+   * @return The number of bytes in the modified UTF-8 encoding of
+   *   <code>str</code>, as written by {@link java.io.DataOutput#writeUTF(String)},
+   *   not counting the two-byte length prefix
+   */
+  public static int modifiedUtf8Length(String str) {
+    int length = str.length();
+    int result = length;
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c >= 0x80 || c == 0) {
+        result += (c >= 0x800) ? 2 : 1;
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * @param source The input to read from.
+   * @param dest The array to fill.
+   * @throws IOException If <code>source</code> throws an
+   *   {@link java.io.IOException} on the read operation
+   * 
+   * Fills <code>dest</code> with big-endian ints read from <code>source</code>.
+   * The data is read in bulk and decoded through a {@link java.nio.ByteBuffer}
+   * view rather than one <code>readInt()</code> call per element.
+   */
+  public static void readInts(DataInput source, int[] dest) throws IOException {
+    readInts(source, dest, 0, dest.length);
+  }
+  
+  /**
+   * @param source The input to read from.
+   * @param dest The array to fill.
+   * @param offset The index of the first element to fill.
+   * @param length The number of elements to read.
+   * @throws IOException If <code>source</code> throws an
+   *   {@link java.io.IOException} on the read operation
+   * 
+   * Fills part of <code>dest</code> with big-endian ints read from <code>source</code>.
+   * 
+   * @see #readInts(DataInput, int[])
+   */
+  public static void readInts(DataInput source, int[] dest, int offset, int length) throws IOException {
+    byte[] chunk = new byte[(int)Math.min(CHUNK_SIZE, (long)length * Integer.BYTES)];
+    ByteBuffer view = ByteBuffer.wrap(chunk);
+    int end = offset + length;
+    while (offset < end) {
+      int count = Math.min(end - offset, chunk.length / Integer.BYTES);
+      source.readFully(chunk, 0, count * Integer.BYTES);
+      view.asIntBuffer().get(dest, offset, count);
+      offset += count;
+    }
+  }
+  
+  /**
+   * @param source The input to read from.
+   * @param dest The array to fill.
+   * @throws IOException If <code>source</code> throws an
+   *   {@link java.io.IOException} on the read operation
+   * 
+   * Fills <code>dest</code> with big-endian longs read from <code>source</code>.
+   * 
+   * @see #readInts(DataInput, int[])
+   */
+  public static void readLongs(DataInput source, long[] dest) throws IOException {
+    readLongs(source, dest, 0, dest.length);
+  }
+  
+  /**
+   * @param source The input to read from.
+   * @param dest The array to fill.
+   * @param offset The index of the first element to fill.
+   * @param length The number of elements to read.
+   * @throws IOException If <code>source</code> throws an
+   *   {@link java.io.IOException} on the read operation
+   * 
+   * Fills part of <code>dest</code> with big-endian longs read from <code>source</code>.
+   * 
+   * @see #readInts(DataInput, int[])
+   */
+  public static void readLongs(DataInput source, long[] dest, int offset, int length) throws IOException {
+    byte[] chunk = new byte[(int)Math.min(CHUNK_SIZE, (long)length * Long.BYTES)];
+    ByteBuffer view = ByteBuffer.wrap(chunk);
+    int end = offset + length;
+    while (offset < end) {
+      int count = Math.min(end - offset, chunk.length / Long.BYTES);
+      source.readFully(chunk, 0, count * Long.BYTES);
+      view.asLongBuffer().get(dest, offset, count);
+      offset += count;
+    }
+  }
+  
+  /**
+   * @param dest The output to write to.
+   * @param values The values to write.
+   * @throws IOException If <code>dest</code> throws an
+   *   {@link java.io.IOException} on the write operation
+   * 
+   * Writes <code>values</code> to <code>dest</code> as big-endian ints,
+   * encoding them through a {@link java.nio.ByteBuffer} view and writing
+   * whole chunks at a time.
+   */
+  public static void writeInts(DataOutput dest, int[] values) throws IOException {
+    byte[] chunk = new byte[(int)Math.min(CHUNK_SIZE, (long)values.length * Integer.BYTES)];
+    ByteBuffer view = ByteBuffer.wrap(chunk);
+    int offset = 0;
+    while (offset < values.length) {
+      int count = Math.min(values.length - offset, chunk.length / Integer.BYTES);
+      view.asIntBuffer().put(values, offset, count);
+      dest.write(chunk, 0, count * Integer.BYTES);
+      offset += count;
+    }
+  }
+  
+  /**
+   * @param dest The output to write to.
+   * @param values The values to write.
+   * @throws IOException If <code>dest</code> throws an
+   *   {@link java.io.IOException} on the write operation
+   * 
+   * Writes <code>values</code> to <code>dest</code> as big-endian longs.
+   * 
+   * @see #writeInts(DataOutput, int[])
+   */
+  public static void writeLongs(DataOutput dest, long[] values) throws IOException {
+    byte[] chunk = new byte[(int)Math.min(CHUNK_SIZE, (long)values.length * Long.BYTES)];
+    ByteBuffer view = ByteBuffer.wrap(chunk);
+    int offset = 0;
+    while (offset < values.length) {
+      int count = Math.min(values.length - offset, chunk.length / Long.BYTES);
+      view.asLongBuffer().put(values, offset, count);
+      dest.write(chunk, 0, count * Long.BYTES);
+      offset += count;
+    }
+  }
 }
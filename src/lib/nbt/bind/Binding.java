@@ -0,0 +1,336 @@
+package lib.nbt.bind;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.io.Compression;
+import lib.nbt.io.NBTEvent;
+import lib.nbt.io.NBTStreamReader;
+import lib.nbt.io.StringInterner;
+
+/**
+ * Converts objects with {@link lib.nbt.bind.NBTField} fields from and to
+ * NBT compounds.
+ *
+ * <pre>
+ * Binding&lt;Player&gt; players = Binding.of(Player.class);
+ * Player player = players.read(new FileInputStream("player.dat"));
+ * players.write(player, new FileOutputStream("player.dat"), Compression.GZIP);
+ * </pre>
+ *
+ * The binding of a class is built once, the first time it is asked for:
+ * each field gets method handles reading and writing it, and a codec for
+ * its NBT type. Decoding from an {@link lib.nbt.io.NBTStreamReader} then
+ * sets the fields directly from the stream, without building a compound
+ * first and without reflection. Entries without a bound field are skipped
+ * undecoded.
+ *
+ * Bound classes need a constructor without parameters, which may be private.
+ * Fields of superclasses are bound too. Field types map to NBT types as follows:
+ * <ul>
+ * <li>Numbers, primitive or boxed, to their NBT type or the type set by the
+ *   annotation. <code>boolean</code> to {@link lib.nbt.NBTType#BYTE}.</li>
+ * <li><code>String</code> and enums (by name) to {@link lib.nbt.NBTType#STRING}.</li>
+ * <li><code>byte[]</code>, <code>int[]</code> and <code>long[]</code> to the array types.</li>
+ * <li><code>List&lt;E&gt;</code> to a {@link lib.nbt.NBTList} of the type of
+ *   <code>E</code>, which may be any of these types.</li>
+ * <li><code>Map&lt;String, Object&gt;</code> and {@link lib.nbt.NBTList}
+ *   to compounds and lists kept as they are.</li>
+ * <li>Classes with {@link lib.nbt.bind.NBTField} fields to nested compounds.</li>
+ * </ul>
+ * Arrays, compounds and lists are shared between objects and trees, not copied.
+ *
+ * Bindings are thread-safe.
+ *
+ * @param <T> The bound class.
+ * @author Kyrillos Tawadros
+ */
+public final class Binding<T> {
+  private static final ClassValue<Binding<?>> BINDINGS = new ClassValue<Binding<?>>() {
+    @Override
+    protected Binding<?> computeValue(Class<?> type) {
+      return new Binding<>(type);
+    }
+  };
+
+  private final Class<T> type;
+  private final MethodHandle constructor;
+  private final Property[] properties;
+  private final Map<String, Property> byName;
+
+  /**
+   * The {@link lib.nbt.bind.Property#requiredBit} of every required property.
+   */
+  private final long requiredMask;
+
+  private Binding(Class<T> type) {
+    this.type = type;
+    if (!isBindable(type)) {
+      throw new IllegalArgumentException(String.format("%s has no @NBTField fields", type.getName()));
+    }
+    MethodHandles.Lookup lookup;
+    try {
+      lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+      this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+          .asType(MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(String.format("%s has no constructor without parameters", type.getName()), e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException(String.format("Can't access %s", type.getName()), e);
+    }
+
+    List<Property> found = new ArrayList<>();
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      MethodHandles.Lookup class_lookup = lookup;
+      if (c != type) {
+        try {
+          class_lookup = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+          throw new IllegalArgumentException(String.format("Can't access %s", c.getName()), e);
+        }
+      }
+      for (Field field : c.getDeclaredFields()) {
+        NBTField annotation = field.getAnnotation(NBTField.class);
+        if (annotation != null) {
+          found.add(new Property(field, annotation, class_lookup));
+        }
+      }
+    }
+    this.properties = found.toArray(new Property[found.size()]);
+    this.byName = new HashMap<>(properties.length * 2);
+    long mask = 0;
+    int required = 0;
+    for (int i = 0; i < properties.length; i++) {
+      Property property = properties[i];
+      if (byName.put(property.name, property) != null) {
+        throw new IllegalArgumentException(String.format("Entry '%s' of %s is bound twice", property.name,
+            type.getName()));
+      }
+      if (property.required) {
+        if (++required > Long.SIZE) {
+          throw new IllegalArgumentException(String.format("%s has more than %d required fields", type.getName(),
+              Long.SIZE));
+        }
+        property.requiredBit = 1L << (required - 1);
+        mask |= property.requiredBit;
+      }
+    }
+    this.requiredMask = mask;
+  }
+
+  /**
+   * @param type The class to bind.
+   * @return The binding of <code>type</code>, built on the first call.
+   * @throws IllegalArgumentException If <code>type</code> has no bound fields, no
+   *   constructor without parameters or a field that can't be bound.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Binding<T> of(Class<T> type) {
+    return (Binding<T>)BINDINGS.get(type);
+  }
+
+  static boolean isBindable(Class<?> type) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (field.isAnnotationPresent(NBTField.class)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The bound class.
+   */
+  public Class<T> getType() {
+    return type;
+  }
+
+  /**
+   * @param source The NBT data, with its compression detected.
+   * @return An object holding the root compound.
+   * @throws IOException If <code>source</code> throws an {@link java.io.IOException}
+   * @throws NBTException If the data is invalid or does not match the bound class.
+   */
+  public T read(InputStream source) throws IOException, NBTException {
+    try (NBTStreamReader reader = new NBTStreamReader(source)) {
+      reader.setInterner(StringInterner.global());
+      return read(reader);
+    }
+  }
+
+  /**
+   * @param source A reader at the start of a compound, or before the name or
+   *   start of one.
+   * @return An object holding the compound, after which the reader is at its end.
+   * @throws IOException If <code>source</code> throws an {@link java.io.IOException}
+   * @throws NBTException If the data is invalid or does not match the bound class.
+   *
+   * Entry names are decoded to look up their fields, so a reader sharing
+   * names through a {@link lib.nbt.io.StringInterner} decodes faster.
+   */
+  public T read(NBTStreamReader source) throws IOException, NBTException {
+    NBTEvent event = source.getEvent();
+    if (event != NBTEvent.START_COMPOUND) {
+      event = source.next();
+      if (event == NBTEvent.NAME) {
+        event = source.next();
+      }
+      if (event != NBTEvent.START_COMPOUND) {
+        throw new NBTException(String.format("Expected a compound for %s, found %s", type.getName(), event));
+      }
+    }
+    return type.cast(readBody(source));
+  }
+
+  /**
+   * Reads the entries of a compound whose start the reader is at, up to its end.
+   */
+  Object readBody(NBTStreamReader source) throws IOException, NBTException {
+    Object target = newInstance();
+    long seen = 0;
+    NBTEvent event;
+    while ((event = source.next()) == NBTEvent.NAME) {
+      Property property = byName.get(source.getName());
+      if (property == null) {
+        source.skip();
+        continue;
+      }
+      if (source.getType() != property.type) {
+        throw new NBTException(String.format("Expected %s for '%s' in %s, found %s", property.type, property.name,
+            type.getName(), source.getType()));
+      }
+      source.next();
+      try {
+        property.read(target, source);
+      } catch (NBTException e) {
+        throw new NBTException(String.format("%s in '%s' of %s", e.getMessage(), property.name, type.getName()));
+      }
+      seen |= property.requiredBit;
+    }
+    if (event != NBTEvent.END) {
+      throw new NBTException(String.format("Expected the end of a compound for %s, found %s", type.getName(), event));
+    }
+    checkRequired(seen);
+    return target;
+  }
+
+  private void checkRequired(long seen) throws NBTException {
+    long missing = requiredMask & ~seen;
+    if (missing != 0) {
+      for (Property property : properties) {
+        if ((property.requiredBit & missing) != 0) {
+          throw new NBTException(String.format("Missing '%s' in %s", property.name, type.getName()));
+        }
+      }
+    }
+  }
+
+  private Object newInstance() {
+    try {
+      return (Object)constructor.invokeExact();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(String.format("Constructing %s failed", type.getName()), e);
+    }
+  }
+
+  /**
+   * @param value The object to write.
+   * @param dest The stream to write to. It is closed afterwards.
+   * @param compression The compression to apply, e.g. {@link lib.nbt.io.Compression#GZIP}.
+   * @throws IOException If <code>dest</code> throws an {@link java.io.IOException}
+   *
+   * The object is written as a root compound named <code>""</code>.
+   */
+  public void write(T value, OutputStream dest, Compression compression) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(compression.compress(dest)))) {
+      write("", value, out);
+    }
+  }
+
+  /**
+   * @param name The name of the compound.
+   * @param value The object to write.
+   * @param dest The output to write the named compound to.
+   * @throws IOException If <code>dest</code> throws an {@link java.io.IOException}
+   */
+  public void write(String name, T value, DataOutput dest) throws IOException {
+    dest.writeByte(NBTType.COMPOUND.id);
+    dest.writeUTF(name);
+    writeBody(value, dest);
+  }
+
+  /**
+   * Writes the entries of <code>value</code> and the end of the compound.
+   */
+  void writeBody(Object value, DataOutput dest) throws IOException {
+    for (Property property : properties) {
+      property.write(value, dest);
+    }
+    dest.writeByte(NBTType.END.id);
+  }
+
+  /**
+   * @param compound The compound to convert.
+   * @return An object holding the entries of <code>compound</code>.
+   * @throws NBTException If <code>compound</code> lacks a required entry or has an
+   *   entry of the wrong type.
+   */
+  public T fromCompound(Map<String, ?> compound) throws NBTException {
+    Object target = newInstance();
+    for (Property property : properties) {
+      Object value = compound.get(property.name);
+      if (value == null) {
+        if (property.required) {
+          throw new NBTException(String.format("Missing '%s' in %s", property.name, type.getName()));
+        }
+        continue;
+      }
+      NBTType found = NBTType.typeOf(value);
+      if (found != property.type) {
+        throw new NBTException(String.format("Expected %s for '%s' in %s, found %s", property.type, property.name,
+            type.getName(), found));
+      }
+      try {
+        property.fromTree(target, value);
+      } catch (NBTException e) {
+        throw new NBTException(String.format("%s in '%s' of %s", e.getMessage(), property.name, type.getName()));
+      }
+    }
+    return type.cast(target);
+  }
+
+  /**
+   * @param value The object to convert.
+   * @return A compound holding the bound fields of <code>value</code>
+   *   that are not <code>null</code>.
+   */
+  public Map<String, Object> toCompound(T value) {
+    return toTreeUnchecked(value);
+  }
+
+  Map<String, Object> toTreeUnchecked(Object value) {
+    Map<String, Object> result = new HashMap<>(properties.length * 2);
+    for (Property property : properties) {
+      property.toTree(value, result);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,452 @@
+package lib.nbt.bind;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.io.NBTEvent;
+import lib.nbt.io.NBTStreamReader;
+
+/**
+ * Converts the values of one Java type from and to NBT, as bound fields
+ * holding objects and list elements.
+ *
+ * @author Kyrillos Tawadros
+ */
+abstract class Codec {
+  /**
+   * The most elements a decoded list is presized for, since lengths come from the data.
+   */
+  private static final int MAX_PRESIZE = 1 << 16;
+
+  final NBTType type;
+
+  Codec(NBTType type) {
+    this.type = type;
+  }
+
+  /**
+   * @param source A reader at the {@link lib.nbt.io.NBTEvent#VALUE} or start
+   *   event of a value of {@link #type}.
+   * @return The value read, after which the reader is at the end of the value.
+   */
+  abstract Object read(NBTStreamReader source) throws IOException, NBTException;
+
+  /**
+   * Writes the payload of <code>value</code>, without type or name.
+   */
+  abstract void write(Object value, DataOutput dest) throws IOException;
+
+  /**
+   * @param value A tree value of {@link #type}.
+   * @return The Java value of <code>value</code>.
+   */
+  abstract Object fromTree(Object value) throws NBTException;
+
+  /**
+   * @return The tree value of <code>value</code>.
+   */
+  abstract Object toTree(Object value);
+
+  /**
+   * @param type The type of a field or list element.
+   * @return The codec for values of <code>type</code>.
+   * @throws IllegalArgumentException If values of <code>type</code> can't be bound.
+   */
+  static Codec of(Type type) {
+    Class<?> raw = rawClass(type);
+    if (raw == byte.class || raw == Byte.class) {
+      return new NumberCodec(NBTType.BYTE);
+    } else if (raw == short.class || raw == Short.class) {
+      return new NumberCodec(NBTType.SHORT);
+    } else if (raw == int.class || raw == Integer.class) {
+      return new NumberCodec(NBTType.INT);
+    } else if (raw == long.class || raw == Long.class) {
+      return new NumberCodec(NBTType.LONG);
+    } else if (raw == float.class || raw == Float.class) {
+      return new NumberCodec(NBTType.FLOAT);
+    } else if (raw == double.class || raw == Double.class) {
+      return new NumberCodec(NBTType.DOUBLE);
+    } else if (raw == boolean.class || raw == Boolean.class) {
+      return new BooleanCodec();
+    } else if (raw == String.class) {
+      return new StringCodec();
+    } else if (raw.isEnum()) {
+      return new EnumCodec(raw);
+    } else if (raw == byte[].class) {
+      return new ArrayCodec(NBTType.BYTE_ARRAY);
+    } else if (raw == int[].class) {
+      return new ArrayCodec(NBTType.INT_ARRAY);
+    } else if (raw == long[].class) {
+      return new ArrayCodec(NBTType.LONG_ARRAY);
+    } else if (raw == NBTList.class) {
+      return new RawCodec(NBTType.LIST);
+    } else if (raw == Map.class) {
+      return new RawCodec(NBTType.COMPOUND);
+    } else if (raw == List.class || raw == Collection.class) {
+      if (!(type instanceof ParameterizedType)) {
+        throw new IllegalArgumentException(String.format("Element type of %s must be declared", type));
+      }
+      return new ListCodec(of(((ParameterizedType)type).getActualTypeArguments()[0]));
+    } else if (Binding.isBindable(raw)) {
+      return new BindingCodec(raw);
+    }
+    throw new IllegalArgumentException(String.format("Can't bind values of type %s", type.getTypeName()));
+  }
+
+  private static Class<?> rawClass(Type type) {
+    if (type instanceof Class) {
+      return (Class<?>)type;
+    } else if (type instanceof ParameterizedType) {
+      return rawClass(((ParameterizedType)type).getRawType());
+    } else if (type instanceof WildcardType) {
+      return rawClass(((WildcardType)type).getUpperBounds()[0]);
+    }
+    throw new IllegalArgumentException(String.format("Can't bind values of type %s", type.getTypeName()));
+  }
+
+  /**
+   * @return <code>value</code> as a number of <code>type</code>.
+   */
+  static Object box(NBTType type, long value) {
+    switch (type) {
+    case BYTE:
+      return (byte)value;
+    case SHORT:
+      return (short)value;
+    case INT:
+      return (int)value;
+    default:
+      return value;
+    }
+  }
+
+  static void writeLong(NBTType type, long value, DataOutput dest) throws IOException {
+    switch (type) {
+    case BYTE:
+      dest.writeByte((int)value);
+      break;
+    case SHORT:
+      dest.writeShort((int)value);
+      break;
+    case INT:
+      dest.writeInt((int)value);
+      break;
+    default:
+      dest.writeLong(value);
+      break;
+    }
+  }
+
+  /**
+   * Numbers of a single type, as list elements.
+   */
+  private static final class NumberCodec extends Codec {
+    NumberCodec(NBTType type) {
+      super(type);
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException {
+      switch (type) {
+      case BYTE:
+        return source.readByte();
+      case SHORT:
+        return source.readShort();
+      case INT:
+        return source.readInt();
+      case LONG:
+        return source.readLong();
+      case FLOAT:
+        return source.readFloat();
+      default:
+        return source.readDouble();
+      }
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      type.writePayload(value, dest);
+    }
+
+    @Override
+    Object fromTree(Object value) {
+      return value;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return value;
+    }
+  }
+
+  private static final class BooleanCodec extends Codec {
+    BooleanCodec() {
+      super(NBTType.BYTE);
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException {
+      return source.readByte() != 0;
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      dest.writeByte((Boolean)value ? 1 : 0);
+    }
+
+    @Override
+    Object fromTree(Object value) {
+      return (Byte)value != 0;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return (byte)((Boolean)value ? 1 : 0);
+    }
+  }
+
+  private static final class StringCodec extends Codec {
+    StringCodec() {
+      super(NBTType.STRING);
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException {
+      return source.readString();
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      dest.writeUTF((String)value);
+    }
+
+    @Override
+    Object fromTree(Object value) {
+      return value;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return value;
+    }
+  }
+
+  /**
+   * Enum constants, stored by name.
+   */
+  private static final class EnumCodec extends Codec {
+    private final Class<?> enumType;
+    private final Map<String, Object> constants = new java.util.HashMap<>();
+
+    EnumCodec(Class<?> enumType) {
+      super(NBTType.STRING);
+      this.enumType = enumType;
+      for (Object constant : enumType.getEnumConstants()) {
+        constants.put(((Enum<?>)constant).name(), constant);
+      }
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException, NBTException {
+      return fromTree(source.readString());
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      dest.writeUTF(((Enum<?>)value).name());
+    }
+
+    @Override
+    Object fromTree(Object value) throws NBTException {
+      Object constant = constants.get(value);
+      if (constant == null) {
+        throw new NBTException(String.format("No constant %s in %s", value, enumType.getName()));
+      }
+      return constant;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return ((Enum<?>)value).name();
+    }
+  }
+
+  private static final class ArrayCodec extends Codec {
+    ArrayCodec(NBTType type) {
+      super(type);
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException {
+      switch (type) {
+      case BYTE_ARRAY:
+        return source.readByteArray();
+      case INT_ARRAY:
+        return source.readIntArray();
+      default:
+        return source.readLongArray();
+      }
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      type.writePayload(value, dest);
+    }
+
+    @Override
+    Object fromTree(Object value) {
+      return value;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return value;
+    }
+  }
+
+  /**
+   * Compounds and lists kept as the library's tree types.
+   */
+  private static final class RawCodec extends Codec {
+    RawCodec(NBTType type) {
+      super(type);
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException, NBTException {
+      return source.readValue();
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      type.writePayload(value, dest);
+    }
+
+    @Override
+    Object fromTree(Object value) {
+      return value;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return value;
+    }
+  }
+
+  /**
+   * {@link java.util.List}s, read into {@link java.util.ArrayList}s.
+   */
+  private static final class ListCodec extends Codec {
+    private final Codec element;
+
+    ListCodec(Codec element) {
+      super(NBTType.LIST);
+      this.element = element;
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException, NBTException {
+      int length = source.getLength();
+      if (length > 0 && source.getElementType() != element.type) {
+        throw new NBTException(String.format("Expected a list of %s, found a list of %s", element.type,
+            source.getElementType()));
+      }
+      List<Object> result = new ArrayList<>(Math.min(length, MAX_PRESIZE));
+      for (int i = 0; i < length; i++) {
+        source.next();
+        result.add(element.read(source));
+      }
+      if (source.next() != NBTEvent.END) {
+        throw new NBTException("Expected the end of a list");
+      }
+      return result;
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      Collection<?> items = (Collection<?>)value;
+      dest.writeByte(items.isEmpty() ? NBTType.END.id : element.type.id);
+      dest.writeInt(items.size());
+      for (Object item : items) {
+        element.write(item, dest);
+      }
+    }
+
+    @Override
+    Object fromTree(Object value) throws NBTException {
+      NBTList list = (NBTList)value;
+      if (!list.isEmpty() && list.type != element.type) {
+        throw new NBTException(String.format("Expected a list of %s, found a list of %s", element.type, list.type));
+      }
+      List<Object> result = new ArrayList<>(list.size());
+      for (Object item : list) {
+        result.add(element.fromTree(item));
+      }
+      return result;
+    }
+
+    @Override
+    Object toTree(Object value) {
+      Collection<?> items = (Collection<?>)value;
+      NBTList list = new NBTList(element.type);
+      list.ensureCapacity(items.size());
+      for (Object item : items) {
+        list.add(element.toTree(item));
+      }
+      return list;
+    }
+  }
+
+  /**
+   * Nested bound objects, stored as compounds. The binding is looked up
+   * on first use, so that types may nest themselves.
+   */
+  private static final class BindingCodec extends Codec {
+    private final Class<?> boundType;
+    private Binding<?> binding;
+
+    BindingCodec(Class<?> boundType) {
+      super(NBTType.COMPOUND);
+      this.boundType = boundType;
+    }
+
+    private Binding<?> binding() {
+      if (binding == null) {
+        binding = Binding.of(boundType);
+      }
+      return binding;
+    }
+
+    @Override
+    Object read(NBTStreamReader source) throws IOException, NBTException {
+      return binding().readBody(source);
+    }
+
+    @Override
+    void write(Object value, DataOutput dest) throws IOException {
+      binding().writeBody(value, dest);
+    }
+
+    @Override
+    Object fromTree(Object value) throws NBTException {
+      @SuppressWarnings("unchecked")
+      Map<String, ?> compound = (Map<String, ?>)value;
+      return binding().fromCompound(compound);
+    }
+
+    @Override
+    Object toTree(Object value) {
+      return binding().toTreeUnchecked(value);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package lib.nbt.bind;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import lib.nbt.NBTType;
+
+/**
+ * Marks a field bound to an entry of a compound by {@link lib.nbt.bind.Binding}.
+ *
+ * For example:
+ * <pre>
+ * public class Item {
+ *   &#64;NBTField("id") String id;
+ *   &#64;NBTField(value = "Count", type = NBTType.BYTE) int count;
+ *   &#64;NBTField("tag") Map&lt;String, Object&gt; tag;
+ * }
+ * </pre>
+ *
+ * Fields may be private and final is not allowed. Fields without this
+ * annotation are left alone.
+ *
+ * @author Kyrillos Tawadros
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface NBTField {
+  /**
+   * @return The name of the entry, the name of the field if empty.
+   */
+  String value() default "";
+
+  /**
+   * @return The NBT type of the entry, inferred from the type of the field
+   *   if {@link lib.nbt.NBTType#END}.
+   *
+   * Numeric fields, primitive or boxed, may be stored as any numeric type:
+   * values are converted as by a Java cast. Other fields must use the
+   * inferred type.
+   */
+  NBTType type() default NBTType.END;
+
+  /**
+   * @return <code>true</code> if decoding a compound without this entry fails,
+   *   <code>false</code> to leave the field unchanged
+   */
+  boolean required() default false;
+}
@@ -0,0 +1,298 @@
+package lib.nbt.bind;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.io.NBTStreamReader;
+
+/**
+ * One bound field: the entry it is stored in and the method handles
+ * reading and writing it.
+ *
+ * Numeric fields, primitive or boxed, are accessed through handles typed
+ * <code>(Object, long)void</code> or <code>(Object, double)void</code>
+ * by the NBT type of the entry, so values go from the reader into the
+ * field without boxing. Other fields go through their {@link lib.nbt.bind.Codec}.
+ *
+ * @author Kyrillos Tawadros
+ */
+final class Property {
+  private static final MethodType SET_LONG = MethodType.methodType(void.class, Object.class, long.class);
+  private static final MethodType SET_DOUBLE = MethodType.methodType(void.class, Object.class, double.class);
+  private static final MethodType SET_OBJECT = MethodType.methodType(void.class, Object.class, Object.class);
+  private static final MethodType GET_LONG = MethodType.methodType(long.class, Object.class);
+  private static final MethodType GET_DOUBLE = MethodType.methodType(double.class, Object.class);
+  private static final MethodType GET_OBJECT = MethodType.methodType(Object.class, Object.class);
+  private static final MethodHandle NON_ZERO;
+
+  static {
+    try {
+      NON_ZERO = MethodHandles.lookup().findStatic(Property.class, "nonZero",
+          MethodType.methodType(boolean.class, long.class));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * The name of the entry.
+   */
+  final String name;
+  final NBTType type;
+  final boolean required;
+
+  /**
+   * The bit marking this property as seen when it is required, 0 otherwise.
+   * Set by {@link lib.nbt.bind.Binding}.
+   */
+  long requiredBit;
+
+  /**
+   * The field, as <code>Class.field</code>, for error messages.
+   */
+  final String fieldName;
+
+  /**
+   * The codec of reference fields, <code>null</code> for numeric ones.
+   */
+  private final Codec codec;
+
+  /**
+   * <code>true</code> for boxed numeric fields, which are skipped when <code>null</code>.
+   */
+  private final boolean boxed;
+
+  /**
+   * Typed {@link #SET_LONG}, {@link #SET_DOUBLE} or {@link #SET_OBJECT}.
+   */
+  private final MethodHandle setter;
+
+  /**
+   * Typed {@link #GET_LONG} or {@link #GET_DOUBLE} for primitive numeric
+   * fields, {@link #GET_OBJECT} for the rest.
+   */
+  private final MethodHandle getter;
+
+  /**
+   * @param field The annotated field.
+   * @param annotation The annotation of <code>field</code>.
+   * @param lookup A lookup with private access to the declaring class.
+   * @throws IllegalArgumentException If the field can't be bound.
+   */
+  Property(Field field, NBTField annotation, MethodHandles.Lookup lookup) {
+    this.fieldName = field.getDeclaringClass().getSimpleName() + "." + field.getName();
+    if (Modifier.isFinal(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
+      throw new IllegalArgumentException(String.format("Bound field %s must not be final or static", fieldName));
+    }
+    this.name = annotation.value().isEmpty() ? field.getName() : annotation.value();
+    this.required = annotation.required();
+
+    Class<?> field_type = field.getType();
+    Class<?> primitive = MethodType.methodType(field_type).unwrap().returnType();
+    boolean numeric = primitive.isPrimitive() && primitive != void.class && primitive != char.class;
+    Codec inferred = Codec.of(field.getGenericType());
+    NBTType declared = annotation.type();
+    if (declared == NBTType.END) {
+      declared = inferred.type;
+    } else if (declared != inferred.type && !(numeric && isNumeric(declared))) {
+      throw new IllegalArgumentException(String.format("Field %s can't be stored as %s", fieldName, declared));
+    }
+    this.type = declared;
+    this.boxed = numeric && !field_type.isPrimitive();
+
+    MethodHandle set;
+    MethodHandle get;
+    try {
+      set = lookup.unreflectSetter(field);
+      get = lookup.unreflectGetter(field);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException(String.format("Can't access field %s", fieldName), e);
+    }
+    if (numeric) {
+      boolean integral = type != NBTType.FLOAT && type != NBTType.DOUBLE;
+      set = set.asType(MethodType.methodType(void.class, Object.class, primitive));
+      if (primitive == boolean.class) {
+        set = MethodHandles.filterArguments(set, 1, NON_ZERO);
+      }
+      this.setter = MethodHandles.explicitCastArguments(set, integral ? SET_LONG : SET_DOUBLE);
+      if (boxed) {
+        this.getter = get.asType(GET_OBJECT);
+      } else {
+        get = get.asType(MethodType.methodType(primitive, Object.class));
+        this.getter = MethodHandles.explicitCastArguments(get, integral ? GET_LONG : GET_DOUBLE);
+      }
+      this.codec = null;
+    } else {
+      this.setter = set.asType(SET_OBJECT);
+      this.getter = get.asType(GET_OBJECT);
+      this.codec = inferred;
+    }
+  }
+
+  private static boolean nonZero(long value) {
+    return value != 0;
+  }
+
+  private static boolean isNumeric(NBTType type) {
+    switch (type) {
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * @param target The object to set the field of.
+   * @param source A reader at the value of the entry.
+   */
+  void read(Object target, NBTStreamReader source) throws IOException, NBTException {
+    try {
+      switch (type) {
+      case BYTE:
+        setter.invokeExact(target, (long)source.readByte());
+        break;
+      case SHORT:
+        setter.invokeExact(target, (long)source.readShort());
+        break;
+      case INT:
+        setter.invokeExact(target, (long)source.readInt());
+        break;
+      case LONG:
+        setter.invokeExact(target, source.readLong());
+        break;
+      case FLOAT:
+        setter.invokeExact(target, (double)source.readFloat());
+        break;
+      case DOUBLE:
+        setter.invokeExact(target, source.readDouble());
+        break;
+      default:
+        setter.invokeExact(target, codec.read(source));
+        break;
+      }
+    } catch (IOException | NBTException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes the field of <code>target</code> as a named entry, nothing if it is <code>null</code>.
+   */
+  void write(Object target, DataOutput dest) throws IOException {
+    try {
+      if (codec != null || boxed) {
+        Object value = (Object)getter.invokeExact(target);
+        if (value == null) {
+          return;
+        }
+        writeHeader(dest);
+        if (codec != null) {
+          codec.write(value, dest);
+        } else if (type == NBTType.FLOAT || type == NBTType.DOUBLE) {
+          writeDouble(((Number)value).doubleValue(), dest);
+        } else {
+          Codec.writeLong(type, toLong(value), dest);
+        }
+      } else if (type == NBTType.FLOAT || type == NBTType.DOUBLE) {
+        double value = (double)getter.invokeExact(target);
+        writeHeader(dest);
+        writeDouble(value, dest);
+      } else {
+        long value = (long)getter.invokeExact(target);
+        writeHeader(dest);
+        Codec.writeLong(type, value, dest);
+      }
+    } catch (IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void writeHeader(DataOutput dest) throws IOException {
+    dest.writeByte(type.id);
+    dest.writeUTF(name);
+  }
+
+  private void writeDouble(double value, DataOutput dest) throws IOException {
+    if (type == NBTType.FLOAT) {
+      dest.writeFloat((float)value);
+    } else {
+      dest.writeDouble(value);
+    }
+  }
+
+  private static long toLong(Object value) {
+    return value instanceof Boolean ? ((Boolean)value ? 1 : 0) : ((Number)value).longValue();
+  }
+
+  /**
+   * @param target The object to set the field of.
+   * @param value The value of the entry, of {@link #type}.
+   */
+  void fromTree(Object target, Object value) throws NBTException {
+    try {
+      if (codec != null) {
+        setter.invokeExact(target, codec.fromTree(value));
+      } else if (type == NBTType.FLOAT || type == NBTType.DOUBLE) {
+        setter.invokeExact(target, ((Number)value).doubleValue());
+      } else {
+        setter.invokeExact(target, ((Number)value).longValue());
+      }
+    } catch (NBTException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Puts the field of <code>target</code> into <code>dest</code>, nothing if it is <code>null</code>.
+   */
+  void toTree(Object target, Map<String, Object> dest) {
+    try {
+      Object value;
+      if (codec != null || boxed) {
+        value = (Object)getter.invokeExact(target);
+        if (value == null) {
+          return;
+        } else if (codec != null) {
+          value = codec.toTree(value);
+        } else if (type == NBTType.FLOAT) {
+          value = ((Number)value).floatValue();
+        } else if (type == NBTType.DOUBLE) {
+          value = ((Number)value).doubleValue();
+        } else {
+          value = Codec.box(type, toLong(value));
+        }
+      } else if (type == NBTType.FLOAT) {
+        value = (float)(double)getter.invokeExact(target);
+      } else if (type == NBTType.DOUBLE) {
+        value = (double)getter.invokeExact(target);
+      } else {
+        value = Codec.box(type, (long)getter.invokeExact(target));
+      }
+      dest.put(name, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,475 @@
+package lib.nbt.diff;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import lib.nbt.ContentHash;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.PersistentCompound;
+import lib.nbt.PersistentList;
+import lib.nbt.Tag;
+import lib.nbt.Util;
+
+/**
+ * Computes the differences between two compound trees as a
+ * {@link lib.nbt.diff.Patch}, and replays patches.
+ *
+ * Compounds are compared entry by entry, emitting additions, removals
+ * and nested edits. Lists are trimmed of their common prefix and suffix:
+ * when the parts in between have the same length, their elements are
+ * compared pairwise, otherwise they are aligned by the longest common
+ * subsequence of their element hashes, and each gap between matches is
+ * compared pairwise or spliced. Arrays of the same length get a splice per
+ * run of changed elements, others a single splice. Values of different
+ * types are replaced.
+ *
+ * Subtrees that are the same object, as persistent trees share them, are
+ * skipped outright, and two persistent trees are only descended along
+ * the paths where they stop sharing. Other compounds and lists are compared by their
+ * {@link lib.nbt.ContentHash} first, each hashed at most once per diff, and
+ * only descended into when the hashes differ, so two large trees differing
+ * in a few places cost little more than hashing them once. Subtrees with
+ * equal 64-bit hashes are taken to be equal.
+ *
+ * @author Kyrillos Tawadros
+ */
+public final class NBTDiff {
+
+  /**
+   * The largest product of the lengths of two differing list ranges that
+   * are aligned element by element, rather than replaced by one splice.
+   */
+  private static final long ALIGN_LIMIT = 1 << 16;
+
+  /**
+   * Changed array elements fewer than this many apart are spliced together.
+   */
+  private static final int RUN_GAP = 8;
+
+  private final ContentHash hashes = new ContentHash();
+  private final List<Object> path = new ArrayList<>();
+  private final List<Patch.Edit> edits = new ArrayList<>();
+
+  private NBTDiff() {
+  }
+
+  /**
+   * @param before The compound tag to compare from.
+   * @param after The compound tag to compare to.
+   * @return The edits turning the value of <code>before</code> into that of <code>after</code>.
+   * @throws IllegalArgumentException If either tag is not a compound.
+   */
+  @SuppressWarnings("unchecked")
+  public static Patch diff(Tag before, Tag after) {
+    if (before.getType() != NBTType.COMPOUND || after.getType() != NBTType.COMPOUND) {
+      throw new IllegalArgumentException("Only compound tags can be compared!");
+    }
+    return diff((Map<String, ?>)before.getValue(), (Map<String, ?>)after.getValue());
+  }
+
+  /**
+   * @param before The compound to compare from.
+   * @param after The compound to compare to.
+   * @return The edits turning <code>before</code> into <code>after</code>.
+   *   The values in the patch are copies, sharing nothing with <code>after</code>.
+   */
+  public static Patch diff(Map<String, ?> before, Map<String, ?> after) {
+    NBTDiff diff = new NBTDiff();
+    diff.compare(before, after);
+    return new Patch(diff.edits);
+  }
+
+  private void emit(Patch.Kind kind, Object value, int start, int deleted) {
+    edits.add(new Patch.Edit(kind, path, value == null ? null : Util.deepCopy(value), start, deleted));
+  }
+
+  /**
+   * @return <code>true</code> if the two values are known to be equal without descending into them
+   */
+  private boolean same(Object a, Object b) {
+    if (a == b) {
+      return true;
+    }
+    NBTType type = NBTType.typeOf(a);
+    if (type != NBTType.typeOf(b)) {
+      return false;
+    }
+    switch (type) {
+    case COMPOUND:
+    case LIST:
+      if (isPersistent(a) && isPersistent(b)) {
+        // shared subtrees were caught above, and hashing would walk the whole tree
+        return false;
+      }
+      return hashes.hash(a) == hashes.hash(b);
+    case BYTE_ARRAY:
+      return Arrays.equals((byte[])NBTType.unboxArray(a), (byte[])NBTType.unboxArray(b));
+    case INT_ARRAY:
+      return Arrays.equals((int[])NBTType.unboxArray(a), (int[])NBTType.unboxArray(b));
+    case LONG_ARRAY:
+      return Arrays.equals((long[])NBTType.unboxArray(a), (long[])NBTType.unboxArray(b));
+    default:
+      return a.equals(b);
+    }
+  }
+
+  private static boolean isPersistent(Object value) {
+    return value instanceof PersistentCompound || value instanceof PersistentList;
+  }
+
+  private void compare(Object a, Object b) {
+    if (same(a, b)) {
+      return;
+    }
+    NBTType type = NBTType.typeOf(a);
+    if (type != NBTType.typeOf(b)) {
+      emit(Patch.Kind.REPLACE, b, 0, 0);
+      return;
+    }
+    switch (type) {
+    case COMPOUND:
+      compareCompounds((Map<?, ?>)a, (Map<?, ?>)b);
+      break;
+    case LIST:
+      NBTList la = (NBTList)a;
+      NBTList lb = (NBTList)b;
+      if (la.type != lb.type) {
+        emit(Patch.Kind.REPLACE, b, 0, 0);
+      } else {
+        compareLists(la, lb);
+      }
+      break;
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      // boxed arrays are valid values too
+      compareArrays(NBTType.unboxArray(a), NBTType.unboxArray(b));
+      break;
+    default:
+      emit(Patch.Kind.REPLACE, b, 0, 0);
+    }
+  }
+
+  private void compareCompounds(Map<?, ?> a, Map<?, ?> b) {
+    for (Map.Entry<?, ?> entry : a.entrySet()) {
+      path.add(entry.getKey());
+      Object other = b.get(entry.getKey());
+      if (other == null) {
+        emit(Patch.Kind.REMOVE, null, 0, 0);
+      } else {
+        compare(entry.getValue(), other);
+      }
+      path.remove(path.size() - 1);
+    }
+    for (Map.Entry<?, ?> entry : b.entrySet()) {
+      if (!a.containsKey(entry.getKey())) {
+        path.add(entry.getKey());
+        emit(Patch.Kind.ADD, entry.getValue(), 0, 0);
+        path.remove(path.size() - 1);
+      }
+    }
+  }
+
+  private void compareLists(NBTList a, NBTList b) {
+    int a_size = a.size();
+    int b_size = b.size();
+    int prefix = 0;
+    while (prefix < a_size && prefix < b_size && same(a.get(prefix), b.get(prefix))) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < a_size - prefix && suffix < b_size - prefix
+        && same(a.get(a_size - 1 - suffix), b.get(b_size - 1 - suffix))) {
+      suffix++;
+    }
+    int a_length = a_size - suffix - prefix;
+    int b_length = b_size - suffix - prefix;
+    if (a_length == b_length) {
+      compareRange(a, prefix, b, prefix, a_length);
+    } else if ((long)a_length * b_length <= ALIGN_LIMIT) {
+      align(a, b, prefix, a_length, b_length);
+    } else {
+      splice(b, prefix, a_length, prefix, b_length);
+    }
+  }
+
+  /**
+   * Compares <code>length</code> elements pairwise.
+   */
+  private void compareRange(NBTList a, int a_start, NBTList b, int b_start, int length) {
+    for (int i = 0; i < length; i++) {
+      path.add(a_start + i);
+      compare(a.get(a_start + i), b.get(b_start + i));
+      path.remove(path.size() - 1);
+    }
+  }
+
+  private void splice(NBTList b, int start, int deleted, int b_start, int b_length) {
+    NBTList inserted = new NBTList(b.type);
+    inserted.addAll(b.subList(b_start, b_start + b_length));
+    emit(Patch.Kind.SPLICE, inserted, start, deleted);
+  }
+
+  /**
+   * Matches the elements of the two ranges starting at <code>start</code> by
+   * their longest common subsequence of hashes, and emits an edit for each gap
+   * between matches. Gaps are emitted from the last to the first, so the
+   * indices of each edit are still those of the original list when it applies.
+   */
+  private void align(NBTList a, NBTList b, int start, int a_length, int b_length) {
+    long[] a_hashes = new long[a_length];
+    long[] b_hashes = new long[b_length];
+    for (int i = 0; i < a_length; i++) {
+      a_hashes[i] = hashes.hash(a.get(start + i));
+    }
+    for (int j = 0; j < b_length; j++) {
+      b_hashes[j] = hashes.hash(b.get(start + j));
+    }
+    // lcs[i][j] is the length of the common subsequence of the suffixes from i and j
+    int[][] lcs = new int[a_length + 1][b_length + 1];
+    for (int i = a_length - 1; i >= 0; i--) {
+      for (int j = b_length - 1; j >= 0; j--) {
+        lcs[i][j] = a_hashes[i] == b_hashes[j] ? lcs[i + 1][j + 1] + 1 : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+      }
+    }
+    List<int[]> gaps = new ArrayList<>();
+    int i = 0;
+    int j = 0;
+    int gap_i = 0;
+    int gap_j = 0;
+    while (i < a_length || j < b_length) {
+      if (i < a_length && j < b_length && a_hashes[i] == b_hashes[j]) {
+        if (gap_i < i || gap_j < j) {
+          gaps.add(new int[] { gap_i, i, gap_j, j });
+        }
+        gap_i = ++i;
+        gap_j = ++j;
+      } else if (j == b_length || (i < a_length && lcs[i + 1][j] >= lcs[i][j + 1])) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    if (gap_i < a_length || gap_j < b_length) {
+      gaps.add(new int[] { gap_i, a_length, gap_j, b_length });
+    }
+    for (int k = gaps.size() - 1; k >= 0; k--) {
+      int[] gap = gaps.get(k);
+      int deleted = gap[1] - gap[0];
+      int inserted = gap[3] - gap[2];
+      if (deleted == inserted) {
+        compareRange(a, start + gap[0], b, start + gap[2], deleted);
+      } else {
+        splice(b, start + gap[0], deleted, start + gap[2], inserted);
+      }
+    }
+  }
+
+  private void compareArrays(Object a, Object b) {
+    int a_size = Array.getLength(a);
+    int b_size = Array.getLength(b);
+    if (a_size == b_size) {
+      // emit each run of changed elements, merging runs less than RUN_GAP apart
+      List<int[]> runs = new ArrayList<>();
+      for (int i = 0; i < a_size; i++) {
+        if (!elementEquals(a, i, b, i)) {
+          int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+          if (last != null && i - last[1] < RUN_GAP) {
+            last[1] = i + 1;
+          } else {
+            runs.add(new int[] { i, i + 1 });
+          }
+        }
+      }
+      for (int[] run : runs) {
+        emit(Patch.Kind.SPLICE, range(b, run[0], run[1]), run[0], run[1] - run[0]);
+      }
+      return;
+    }
+    int prefix = 0;
+    while (prefix < a_size && prefix < b_size && elementEquals(a, prefix, b, prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < a_size - prefix && suffix < b_size - prefix
+        && elementEquals(a, a_size - 1 - suffix, b, b_size - 1 - suffix)) {
+      suffix++;
+    }
+    emit(Patch.Kind.SPLICE, range(b, prefix, b_size - suffix), prefix, a_size - suffix - prefix);
+  }
+
+  private static boolean elementEquals(Object a, int i, Object b, int j) {
+    if (a instanceof byte[]) {
+      return ((byte[])a)[i] == ((byte[])b)[j];
+    } else if (a instanceof int[]) {
+      return ((int[])a)[i] == ((int[])b)[j];
+    }
+    return ((long[])a)[i] == ((long[])b)[j];
+  }
+
+  private static Object range(Object array, int from, int to) {
+    if (array instanceof byte[]) {
+      return Arrays.copyOfRange((byte[])array, from, to);
+    } else if (array instanceof int[]) {
+      return Arrays.copyOfRange((int[])array, from, to);
+    }
+    return Arrays.copyOfRange((long[])array, from, to);
+  }
+
+  /**
+   * @param patch The patch to apply.
+   * @param root The compound tag to apply it to. Its value is
+   *   modified in place, or replaced if it is persistent.
+   * @throws IllegalArgumentException If the patch does not match the tree.
+   */
+  @SuppressWarnings("unchecked")
+  public static void apply(Patch patch, Tag root) {
+    if (root.getType() != NBTType.COMPOUND) {
+      throw new IllegalArgumentException("Patches only apply to compound tags!");
+    }
+    root.setValue(apply(patch, (Map<String, Object>)root.getValue()));
+  }
+
+  /**
+   * @param patch The patch to apply.
+   * @param root The compound to apply it to.
+   * @return <code>root</code>, modified in place, or a new compound if
+   *   <code>root</code> is a {@link lib.nbt.PersistentCompound}, which
+   *   shares everything the patch does not touch
+   * @throws IllegalArgumentException If the patch does not match the tree.
+   *   Edits before the failing one have been applied to mutable trees.
+   */
+  @SuppressWarnings("unchecked")
+  public static Map<String, Object> apply(Patch patch, Map<String, Object> root) {
+    Object result = root;
+    for (Patch.Edit edit : patch) {
+      result = update(result, edit, 0);
+    }
+    return (Map<String, Object>)result;
+  }
+
+  private static IllegalArgumentException mismatch(Patch.Edit edit) {
+    return new IllegalArgumentException(String.format("Patch does not apply: %s", edit));
+  }
+
+  /**
+   * Applies <code>edit</code> to <code>node</code>, the value at <code>depth</code> along its path.
+   *
+   * @return <code>node</code>, or its replacement if it is persistent or an array
+   */
+  private static Object update(Object node, Patch.Edit edit, int depth) {
+    List<Object> path = edit.getPath();
+    if (depth == path.size()) {
+      if (edit.getKind() != Patch.Kind.SPLICE) {
+        throw mismatch(edit);
+      }
+      return splice(node, edit);
+    }
+    Object step = path.get(depth);
+    boolean last = depth == path.size() - 1 && edit.getKind() != Patch.Kind.SPLICE;
+    if (node instanceof Map && step instanceof String) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> compound = (Map<String, Object>)node;
+      String key = (String)step;
+      Object child = compound.get(key);
+      Object updated;
+      if (!last) {
+        if (child == null) {
+          throw mismatch(edit);
+        }
+        updated = update(child, edit, depth + 1);
+        if (updated == child) {
+          return compound;
+        }
+      } else if (edit.getKind() == Patch.Kind.REMOVE) {
+        if (child == null) {
+          throw mismatch(edit);
+        } else if (compound instanceof PersistentCompound) {
+          return ((PersistentCompound)compound).dissoc(key);
+        }
+        compound.remove(key);
+        return compound;
+      } else if ((child == null) != (edit.getKind() == Patch.Kind.ADD)) {
+        throw mismatch(edit);
+      } else {
+        updated = edit.getValue();
+      }
+      if (compound instanceof PersistentCompound) {
+        return ((PersistentCompound)compound).assoc(key, updated);
+      }
+      compound.put(key, last ? Util.deepCopy(updated) : updated);
+      return compound;
+    } else if (node instanceof NBTList && step instanceof Integer) {
+      NBTList list = (NBTList)node;
+      int index = (Integer)step;
+      if (index < 0 || index >= list.size() || (last && edit.getKind() != Patch.Kind.REPLACE)) {
+        throw mismatch(edit);
+      }
+      Object child = list.get(index);
+      Object updated = last ? edit.getValue() : update(child, edit, depth + 1);
+      if (updated == child) {
+        return list;
+      } else if (list instanceof PersistentList) {
+        return ((PersistentList)list).assoc(index, updated);
+      }
+      list.set(index, last ? Util.deepCopy(updated) : updated);
+      return list;
+    }
+    throw mismatch(edit);
+  }
+
+  private static Object splice(Object node, Patch.Edit edit) {
+    int start = edit.getStart();
+    int deleted = edit.getDeleted();
+    Object inserted = edit.getValue();
+    if (node instanceof NBTList && inserted instanceof NBTList) {
+      NBTList list = (NBTList)node;
+      NBTList items = (NBTList)inserted;
+      if (start < 0 || deleted < 0 || start + deleted > list.size()
+          || (!items.isEmpty() && items.type != list.type)) {
+        throw mismatch(edit);
+      }
+      if (list instanceof PersistentList) {
+        PersistentList result = PersistentList.empty(list.type);
+        for (int i = 0; i < start; i++) {
+          result = result.conj(list.get(i));
+        }
+        for (Object item : items) {
+          result = result.conj(item);
+        }
+        for (int i = start + deleted; i < list.size(); i++) {
+          result = result.conj(list.get(i));
+        }
+        return result;
+      }
+      for (int i = 0; i < deleted; i++) {
+        list.remove(start);
+      }
+      for (int i = 0; i < items.size(); i++) {
+        list.add(start + i, Util.deepCopy(items.get(i)));
+      }
+      return list;
+    }
+    NBTType type = NBTType.typeOf(node);
+    if (!type.isMultiple() || type == NBTType.LIST || type == NBTType.COMPOUND
+        || NBTType.typeOf(inserted) != type) {
+      throw mismatch(edit);
+    }
+    node = NBTType.unboxArray(node);
+    inserted = NBTType.unboxArray(inserted);
+    int length = Array.getLength(node);
+    int count = Array.getLength(inserted);
+    if (start < 0 || deleted < 0 || start + deleted > length) {
+      throw mismatch(edit);
+    }
+    Object result = Array.newInstance(node.getClass().getComponentType(), length - deleted + count);
+    System.arraycopy(node, 0, result, 0, start);
+    System.arraycopy(inserted, 0, result, start, count);
+    System.arraycopy(node, start + deleted, result, start + count, length - start - deleted);
+    return result;
+  }
+}
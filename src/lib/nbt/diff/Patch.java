@@ -0,0 +1,272 @@
+package lib.nbt.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+
+/**
+ * The differences between two compound trees, as an ordered list of edits.
+ *
+ * Each edit addresses a value by its path from the root: entry names
+ * (<code>String</code>s) for steps into compounds, and indices
+ * (<code>Integer</code>s) for steps into lists.
+ *
+ * Patches are created by {@link lib.nbt.diff.NBTDiff#diff(Map, Map)} and
+ * replayed by {@link lib.nbt.diff.NBTDiff#apply(Patch, Map)}. They can be
+ * stored as NBT themselves, through {@link #toTag()} and {@link #fromTag(Tag)}.
+ *
+ * @author Kyrillos Tawadros
+ */
+public final class Patch implements Iterable<Patch.Edit> {
+
+  /**
+   * The kinds of edits.
+   */
+  public enum Kind {
+    /**
+     * An entry was added to the compound at the parent of the path.
+     */
+    ADD,
+
+    /**
+     * An entry was removed from the compound at the parent of the path.
+     */
+    REMOVE,
+
+    /**
+     * The value at the path was replaced.
+     */
+    REPLACE,
+
+    /**
+     * Elements of the list or array at the path were replaced by others:
+     * {@link Edit#getDeleted()} elements from {@link Edit#getStart()} on were
+     * removed, and the elements of {@link Edit#getValue()} inserted in their place.
+     */
+    SPLICE
+  }
+
+  /**
+   * A single edit of a patch.
+   */
+  public static final class Edit {
+    private final Kind kind;
+    private final List<Object> path;
+    private final Object value;
+    private final int start;
+    private final int deleted;
+
+    /**
+     * @param kind The kind of edit.
+     * @param path The path of the edited value.
+     * @param value The new value, or the inserted elements of a splice,
+     *   <code>null</code> for removals
+     * @param start The index of the first element spliced.
+     * @param deleted The number of elements removed by a splice.
+     */
+    Edit(Kind kind, List<Object> path, Object value, int start, int deleted) {
+      this.kind = kind;
+      this.path = Collections.unmodifiableList(new ArrayList<>(path));
+      this.value = value;
+      this.start = start;
+      this.deleted = deleted;
+    }
+
+    /**
+     * @return The kind of this edit.
+     */
+    public Kind getKind() {
+      return kind;
+    }
+
+    /**
+     * @return The path of the edited value.
+     */
+    public List<Object> getPath() {
+      return path;
+    }
+
+    /**
+     * @return The value added or replaced, the {@link lib.nbt.NBTList} or array
+     *   of the elements inserted by a splice, <code>null</code> for removals
+     */
+    public Object getValue() {
+      return value;
+    }
+
+    /**
+     * @return The index of the first element spliced, 0 for other edits.
+     */
+    public int getStart() {
+      return start;
+    }
+
+    /**
+     * @return The number of elements removed by a splice, 0 for other edits.
+     */
+    public int getDeleted() {
+      return deleted;
+    }
+
+    private static String format(Object value) {
+      if (value instanceof byte[]) {
+        return Arrays.toString((byte[])value);
+      } else if (value instanceof int[]) {
+        return Arrays.toString((int[])value);
+      } else if (value instanceof long[]) {
+        return Arrays.toString((long[])value);
+      }
+      return String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+      if (kind == Kind.SPLICE) {
+        return String.format("%s %s [%d, %d) <- %s", kind, path, start, start + deleted,
+            format(value));
+      }
+      return value == null ? String.format("%s %s", kind, path)
+          : String.format("%s %s = %s", kind, path, format(value));
+    }
+  }
+
+  private final List<Edit> edits;
+
+  Patch(List<Edit> edits) {
+    this.edits = Collections.unmodifiableList(edits);
+  }
+
+  /**
+   * @return The edits of this patch, in the order they are applied.
+   */
+  public List<Edit> getEdits() {
+    return edits;
+  }
+
+  /**
+   * @return <code>true</code> if the trees compared were equal
+   */
+  public boolean isEmpty() {
+    return edits.isEmpty();
+  }
+
+  /**
+   * @return The number of edits.
+   */
+  public int size() {
+    return edits.size();
+  }
+
+  @Override
+  public Iterator<Edit> iterator() {
+    return edits.iterator();
+  }
+
+  /**
+   * @return A compound tag holding this patch, which {@link #fromTag(Tag)} reads back.
+   *
+   * Each edit is a compound with its kind (<code>op</code>), the names and
+   * indices of its path (<code>path</code> and <code>indices</code>, an index
+   * of -1 marking a name) and, as applicable, <code>value</code>,
+   * <code>start</code> and <code>deleted</code>.
+   */
+  public Tag toTag() {
+    NBTList list = new NBTList(NBTType.COMPOUND);
+    for (Edit edit : edits) {
+      Map<String, Object> compound = new HashMap<>();
+      compound.put("op", (byte)edit.kind.ordinal());
+      NBTList names = new NBTList(NBTType.STRING);
+      int[] indices = new int[edit.path.size()];
+      for (int i = 0; i < indices.length; i++) {
+        Object step = edit.path.get(i);
+        if (step instanceof Integer) {
+          names.add("");
+          indices[i] = (Integer)step;
+        } else {
+          names.add(step);
+          indices[i] = -1;
+        }
+      }
+      compound.put("path", names);
+      compound.put("indices", indices);
+      if (edit.value != null) {
+        compound.put("value", edit.value);
+      }
+      if (edit.kind == Kind.SPLICE) {
+        compound.put("start", edit.start);
+        compound.put("deleted", edit.deleted);
+      }
+      list.add(compound);
+    }
+    Map<String, Object> root = new HashMap<>();
+    root.put("edits", list);
+    return new Tag("patch", root);
+  }
+
+  /**
+   * @param tag A tag written by {@link #toTag()}.
+   * @return The patch held by <code>tag</code>.
+   * @throws NBTException If <code>tag</code> does not hold a valid patch.
+   */
+  public static Patch fromTag(Tag tag) throws NBTException {
+    Object edits = tag.getType() == NBTType.COMPOUND ? ((Map<?, ?>)tag.getValue()).get("edits") : null;
+    if (!(edits instanceof NBTList)) {
+      throw new NBTException("Patch must be a compound with a list of edits");
+    }
+    List<Edit> result = new ArrayList<>();
+    for (Object item : (NBTList)edits) {
+      if (!(item instanceof Map)) {
+        throw new NBTException("Patch edits must be compounds");
+      }
+      Map<?, ?> compound = (Map<?, ?>)item;
+      Object op = compound.get("op");
+      Object names = compound.get("path");
+      Object indices = compound.get("indices");
+      if (!(op instanceof Byte) || (Byte)op < 0 || (Byte)op >= Kind.values().length
+          || !(names instanceof NBTList) || !(indices instanceof int[])
+          || ((NBTList)names).size() != ((int[])indices).length) {
+        throw new NBTException(String.format("Invalid patch edit %s", String.valueOf(item)));
+      }
+      Kind kind = Kind.values()[(Byte)op];
+      List<Object> path = new ArrayList<>();
+      for (int i = 0; i < ((int[])indices).length; i++) {
+        int index = ((int[])indices)[i];
+        path.add(index < 0 ? ((NBTList)names).get(i) : (Object)index);
+      }
+      Object value = compound.get("value");
+      int start = 0;
+      int deleted = 0;
+      if (kind == Kind.SPLICE) {
+        Object start_value = compound.get("start");
+        Object deleted_value = compound.get("deleted");
+        if (!(start_value instanceof Integer) || !(deleted_value instanceof Integer) || value == null) {
+          throw new NBTException(String.format("Invalid patch splice %s", String.valueOf(item)));
+        }
+        start = (Integer)start_value;
+        deleted = (Integer)deleted_value;
+      } else if ((value == null) != (kind == Kind.REMOVE) || path.isEmpty()) {
+        throw new NBTException(String.format("Invalid patch edit %s", String.valueOf(item)));
+      }
+      result.add(new Edit(kind, path, value, start, deleted));
+    }
+    return new Patch(result);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("Patch[");
+    for (Edit edit : edits) {
+      result.append("\n  ").append(edit);
+    }
+    return result.append(edits.isEmpty() ? "]" : "\n]").toString();
+  }
+}
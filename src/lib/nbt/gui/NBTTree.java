@@ -6,10 +6,13 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.swing.*;
+import javax.swing.event.CellEditorListener;
+import javax.swing.event.ChangeEvent;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
@@ -48,8 +51,11 @@ public class NBTTree extends JTree {
   /**
    * @param root A compound tag containing the data to populate this tree with.
    * 
-   * <b>NOTICE:</b> All changes to this tree will be reflected in <code>root</code>.
-   * You must make a deep copy of <code>root</code> if you want to avoid this.
+   * <b>NOTICE:</b> All changes to this tree will be reflected in <code>root</code>
+   * as soon as each edit is done.
+   * Pass {@link lib.nbt.Tag#copyOnWrite()} to leave <code>root</code> untouched
+   * while only copying what gets edited, or {@link lib.nbt.Tag#deepCopy()}
+   * for a fully independent tree.
    */
   public NBTTree(Tag root) {
     super();
@@ -65,6 +71,15 @@ public class NBTTree extends JTree {
 
     editor = new NBTTreeCellEditor(this);
     setCellEditor(editor);
+    editor.addCellEditorListener(new CellEditorListener() {
+      @Override
+      public void editingStopped(ChangeEvent evt) {
+        commitArrays();
+      }
+
+      @Override
+      public void editingCanceled(ChangeEvent evt) {}
+    });
 
     this.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
 
@@ -130,6 +145,21 @@ public class NBTTree extends JTree {
   }
   
   private HashMap<DefaultMutableTreeNode, NBTArrayList> nbt_arrays = new HashMap<>();
+
+  /**
+   * Array edits are kept in the lists and published to their tags, and
+   * so to the containers the tags write through to, by {@link #commitArrays()}
+   * once each edit action is done.
+   */
+  private NBTArrayList arrayList(DefaultMutableTreeNode node, Tag array_tag) {
+    NBTArrayList list = nbt_arrays.get(node);
+    if (list == null) {
+      list = new NBTArrayList(array_tag);
+      nbt_arrays.put(node, list);
+    }
+    return list;
+  }
+
   private void configureContext() {
     compound_context = new JPopupMenu();
 
@@ -214,12 +244,7 @@ public class NBTTree extends JTree {
         
         NBTList list;
         if (type != NBTType.LIST) {
-          if (nbt_arrays.containsKey(selected)) {
-            list = nbt_arrays.get(selected);
-          } else {
-            list = new NBTArrayList(list_tag);
-            nbt_arrays.put(selected, (NBTArrayList)list);
-          }
+          list = arrayList(selected, list_tag);
         } else {
           list = (NBTList) list_tag.getValue();
         }
@@ -236,6 +261,7 @@ public class NBTTree extends JTree {
         }
         SyncTag new_tag = new SyncTag(null, defaultValue, list, list.size());
         list.add(new_tag.getValue());
+        commitArrays();
 
         // Need to sync changes to list with NBT model
         DefaultMutableTreeNode dmtn = new DefaultMutableTreeNode(new_tag);
@@ -274,12 +300,17 @@ public class NBTTree extends JTree {
             SyncTag st = (SyncTag) ((DefaultMutableTreeNode)parent.getChildAt(i)).getUserObject();
             st.index -= 1;
           }
+          commitArrays();
         } else {
           @SuppressWarnings("unchecked")
           Map<String, Object> parent_compound = (Map<String, Object>)parent_tag.getValue();
           MapSyncTag mst = (MapSyncTag) selected.getUserObject();
           parent_compound.remove(mst.getName());
         }
+        // Drop the arrays of the deleted subtree so later commits do not restore them
+        for (Enumeration<?> nodes = selected.depthFirstEnumeration(); nodes.hasMoreElements();) {
+          nbt_arrays.remove(nodes.nextElement());
+        }
         
         selected.removeFromParent();
         ((DefaultTreeModel)NBTTree.this.model).reload(parent);
@@ -315,8 +346,12 @@ public class NBTTree extends JTree {
       throw new IllegalArgumentException("Root must be a compound tag (or null)!");
     }
 
+    // publish edits to the previous root before its arrays are dropped
+    commitArrays();
+    nbt_arrays.clear();
     if (this.root != null) {
       this.root.removeAllChildren();
+      this.root.setUserObject(root);
     } else {
       this.root = new DefaultMutableTreeNode(root);
       model.setRoot(this.root);
@@ -365,13 +400,11 @@ public class NBTTree extends JTree {
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private <E extends Number> void createArrayNodes(Tag numbers, DefaultMutableTreeNode parent) {
+  private void createArrayNodes(Tag numbers, DefaultMutableTreeNode parent) {
     DefaultMutableTreeNode node = new DefaultMutableTreeNode(numbers);
-    NBTArrayList nbt_array = new NBTArrayList(numbers);
-    nbt_arrays.put(node, nbt_array);
+    NBTArrayList nbt_array = arrayList(node, numbers);
     int idx = 0;
-    for (E num : (E[]) numbers.getValue()) {
+    for (Object num : nbt_array) {
       node.add(new DefaultMutableTreeNode(new SyncTag(null, num, nbt_array, idx++)));
     }
     parent.add(node);
@@ -400,6 +433,16 @@ public class NBTTree extends JTree {
    * @return The current data represented by this tree.
    */
   public Tag getRoot() {
+    commitArrays();
     return (Tag) root.getUserObject();
   }
+
+  /**
+   * Publishes the pending edits of every array to its tag, and so to the root.
+   */
+  private void commitArrays() {
+    for (NBTArrayList nbt_array : nbt_arrays.values()) {
+      nbt_array.commit();
+    }
+  }
 }
@@ -0,0 +1,164 @@
+package lib.nbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An {@link lib.nbt.io.NBTInput} decoding directly from a {@link java.nio.ByteBuffer}
+ * with absolute big-endian reads. The buffer's own position and limit
+ * are never changed.
+ *
+ * @author Kyrillos Tawadros
+ */
+class BufferInput extends NBTInput {
+  private final ByteBuffer data;
+  private int position;
+  private final int limit;
+  private byte[] scratch;
+
+  /**
+   * @param data The buffer to read from.
+   * @param position The index of the first byte to read.
+   * @param limit The index after the last byte to read.
+   */
+  BufferInput(ByteBuffer data, int position, int limit) {
+    this.data = data.order() == ByteOrder.BIG_ENDIAN ? data : data.duplicate().order(ByteOrder.BIG_ENDIAN);
+    this.position = position;
+    this.limit = limit;
+  }
+
+  /**
+   * @param data The buffer to read, from its position to its limit.
+   */
+  BufferInput(ByteBuffer data) {
+    this(data, data.position(), data.limit());
+  }
+
+  /**
+   * @return The buffer this input reads from.
+   */
+  ByteBuffer buffer() {
+    return data;
+  }
+
+  /**
+   * @return The index of the next byte to read.
+   */
+  int position() {
+    return position;
+  }
+
+  /**
+   * @param count The number of bytes about to be read.
+   * @return The index of the first of them.
+   */
+  private int advance(int count) throws EOFException {
+    int at = position;
+    if (count > limit - at) {
+      throw new EOFException();
+    }
+    position = at + count;
+    return at;
+  }
+
+  @Override
+  int read() {
+    return position < limit ? data.get(position++) & 0xFF : -1;
+  }
+
+  @Override
+  byte readByte() throws IOException {
+    return data.get(advance(Byte.BYTES));
+  }
+
+  @Override
+  short readShort() throws IOException {
+    return data.getShort(advance(Short.BYTES));
+  }
+
+  @Override
+  int readUnsignedShort() throws IOException {
+    return data.getShort(advance(Short.BYTES)) & 0xFFFF;
+  }
+
+  @Override
+  int readInt() throws IOException {
+    return data.getInt(advance(Integer.BYTES));
+  }
+
+  @Override
+  long readLong() throws IOException {
+    return data.getLong(advance(Long.BYTES));
+  }
+
+  @Override
+  float readFloat() throws IOException {
+    return data.getFloat(advance(Float.BYTES));
+  }
+
+  @Override
+  double readDouble() throws IOException {
+    return data.getDouble(advance(Double.BYTES));
+  }
+
+  @Override
+  String readUTF(StringInterner interner) throws IOException {
+    int length = readUnsignedShort();
+    int at = advance(length);
+    byte[] bytes;
+    int offset;
+    if (data.hasArray()) {
+      bytes = data.array();
+      offset = data.arrayOffset() + at;
+    } else {
+      if (scratch == null || length > scratch.length) {
+        scratch = new byte[Math.max(length, 128)];
+      }
+      ByteBuffer view = data.duplicate();
+      view.position(at);
+      view.get(scratch, 0, length);
+      bytes = scratch;
+      offset = 0;
+    }
+    return interner != null ? interner.intern(bytes, offset, length) : ModifiedUtf8.decode(bytes, offset, length);
+  }
+
+  @Override
+  void readFully(byte[] dest, int offset, int length) throws IOException {
+    int at = advance(length);
+    if (data.hasArray()) {
+      System.arraycopy(data.array(), data.arrayOffset() + at, dest, offset, length);
+      return;
+    }
+    ByteBuffer view = data.duplicate();
+    view.position(at);
+    view.get(dest, offset, length);
+  }
+
+  @Override
+  void readInts(int[] dest, int offset, int length) throws IOException {
+    int at = advance(Math.multiplyExact(length, Integer.BYTES));
+    ByteBuffer view = data.duplicate();
+    view.position(at);
+    view.asIntBuffer().get(dest, offset, length);
+  }
+
+  @Override
+  void readLongs(long[] dest, int offset, int length) throws IOException {
+    int at = advance(Math.multiplyExact(length, Long.BYTES));
+    ByteBuffer view = data.duplicate();
+    view.position(at);
+    view.asLongBuffer().get(dest, offset, length);
+  }
+
+  @Override
+  void skipBytes(long count) throws IOException {
+    if (count > limit - position) {
+      position = limit;
+      throw new EOFException();
+    }
+    position += (int)count;
+  }
+}
@@ -0,0 +1,136 @@
+package lib.nbt.io;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import lib.nbt.Util;
+
+/**
+ * A {@link java.io.DataOutput} encoding directly into a {@link java.nio.ByteBuffer}.
+ *
+ * Values are written big-endian whatever the buffer's byte order. The
+ * buffer's position is brought up to date when this output is closed.
+ * Writing past the buffer's limit throws a {@link java.nio.BufferOverflowException}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class BufferOutput implements DataOutput, Closeable {
+  private final ByteBuffer target;
+  private final ByteBuffer data;
+
+  /**
+   * @param target The buffer to write to, from its position to its limit.
+   */
+  BufferOutput(ByteBuffer target) {
+    this.target = target;
+    this.data = target.duplicate().order(ByteOrder.BIG_ENDIAN);
+  }
+
+  @Override
+  public void write(int b) {
+    data.put((byte)b);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    data.put(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    data.put(b, off, len);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    data.put(v ? (byte)1 : (byte)0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    data.put((byte)v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    data.putShort((short)v);
+  }
+
+  @Override
+  public void writeChar(int v) {
+    data.putChar((char)v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    data.putInt(v);
+  }
+
+  @Override
+  public void writeLong(long v) {
+    data.putLong(v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    data.putFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    data.putDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      data.put((byte)s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      data.putChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws UTFDataFormatException {
+    byte[] cached = ModifiedUtf8.cached(s);
+    if (cached != null) {
+      data.put(cached);
+      return;
+    }
+
+    int length = Util.modifiedUtf8Length(s);
+    if (length > 0xFFFF) {
+      throw new UTFDataFormatException(String.format("Encoded string too long: %d bytes", length));
+    }
+    data.putShort((short)length);
+    if (data.hasArray()) {
+      int at = data.position();
+      if (length > data.remaining()) {
+        throw new BufferOverflowException();
+      }
+      ModifiedUtf8.encode(s, data.array(), data.arrayOffset() + at);
+      data.position(at + length);
+    } else {
+      byte[] encoded = new byte[length];
+      ModifiedUtf8.encode(s, encoded, 0);
+      data.put(encoded);
+    }
+  }
+
+  /**
+   * Moves the target buffer's position past the bytes written.
+   */
+  @Override
+  public void close() {
+    target.position(data.position());
+  }
+}
@@ -0,0 +1,207 @@
+package lib.nbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * An {@link lib.nbt.io.NBTInput} reading from an {@link java.io.InputStream}
+ * through its own buffer, in place of a {@link java.io.DataInputStream}
+ * over a {@link java.io.BufferedInputStream}. It can be reset to a new
+ * stream, so its buffer serves any number of documents.
+ *
+ * Unlike {@link lib.nbt.io.StreamInput}, it may read past the end of
+ * the document.
+ *
+ * @author Kyrillos Tawadros
+ */
+final class BufferedStreamInput extends NBTInput {
+  private static final VarHandle SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private final byte[] buffer;
+  private byte[] scratch = new byte[0];
+  private InputStream source;
+  private int position;
+  private int count;
+
+  /**
+   * @param bufferSize The size of the buffer, at least 8 bytes.
+   */
+  BufferedStreamInput(int bufferSize) {
+    this.buffer = new byte[Math.max(bufferSize, Long.BYTES)];
+  }
+
+  /**
+   * @param source The stream to read from next, <code>null</code> to
+   *   drop the reference to the previous one.
+   */
+  void reset(InputStream source) {
+    this.source = source;
+    this.position = 0;
+    this.count = 0;
+  }
+
+  /**
+   * @return <code>false</code> if the stream has ended.
+   */
+  private boolean fill() throws IOException {
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, count - position);
+      count -= position;
+      position = 0;
+    }
+    int read = source.read(buffer, count, buffer.length - count);
+    if (read < 0) {
+      return false;
+    }
+    count += read;
+    return true;
+  }
+
+  /**
+   * Makes at least <code>length</code> bytes available in the buffer.
+   */
+  private void require(int length) throws IOException {
+    while (count - position < length) {
+      if (!fill()) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  @Override
+  int read() throws IOException {
+    if (position == count && !fill()) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  byte readByte() throws IOException {
+    require(Byte.BYTES);
+    return buffer[position++];
+  }
+
+  @Override
+  short readShort() throws IOException {
+    require(Short.BYTES);
+    short v = (short)SHORTS.get(buffer, position);
+    position += Short.BYTES;
+    return v;
+  }
+
+  @Override
+  int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  int readInt() throws IOException {
+    require(Integer.BYTES);
+    int v = (int)INTS.get(buffer, position);
+    position += Integer.BYTES;
+    return v;
+  }
+
+  @Override
+  long readLong() throws IOException {
+    require(Long.BYTES);
+    long v = (long)LONGS.get(buffer, position);
+    position += Long.BYTES;
+    return v;
+  }
+
+  @Override
+  String readUTF(StringInterner interner) throws IOException {
+    int length = readUnsignedShort();
+    byte[] bytes;
+    int offset;
+    if (length <= buffer.length) {
+      require(length);
+      bytes = buffer;
+      offset = position;
+      position += length;
+    } else {
+      if (scratch.length < length) {
+        scratch = new byte[length];
+      }
+      readFully(scratch, 0, length);
+      bytes = scratch;
+      offset = 0;
+    }
+    return interner != null ? interner.intern(bytes, offset, length) : ModifiedUtf8.decode(bytes, offset, length);
+  }
+
+  @Override
+  void readFully(byte[] dest, int offset, int length) throws IOException {
+    int buffered = Math.min(length, count - position);
+    System.arraycopy(buffer, position, dest, offset, buffered);
+    position += buffered;
+    offset += buffered;
+    length -= buffered;
+    while (length > 0) {
+      int read = source.read(dest, offset, length);
+      if (read < 0) {
+        throw new EOFException();
+      }
+      offset += read;
+      length -= read;
+    }
+  }
+
+  @Override
+  void readInts(int[] dest, int offset, int length) throws IOException {
+    int end = offset + length;
+    while (offset < end) {
+      require(Integer.BYTES);
+      int n = Math.min(end - offset, (count - position) / Integer.BYTES);
+      for (int i = 0; i < n; i++) {
+        dest[offset++] = (int)INTS.get(buffer, position);
+        position += Integer.BYTES;
+      }
+    }
+  }
+
+  @Override
+  void readLongs(long[] dest, int offset, int length) throws IOException {
+    int end = offset + length;
+    while (offset < end) {
+      require(Long.BYTES);
+      int n = Math.min(end - offset, (count - position) / Long.BYTES);
+      for (int i = 0; i < n; i++) {
+        dest[offset++] = (long)LONGS.get(buffer, position);
+        position += Long.BYTES;
+      }
+    }
+  }
+
+  @Override
+  void skipBytes(long count) throws IOException {
+    int buffered = (int)Math.min(count, this.count - position);
+    position += buffered;
+    count -= buffered;
+    while (count > 0) {
+      long skipped = source.skip(count);
+      if (skipped <= 0) {
+        // skip may give up early; read a byte to detect the end of the stream
+        if (source.read() < 0) {
+          throw new EOFException();
+        }
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+
+  /**
+   * Does nothing: the source belongs to the caller.
+   */
+  @Override
+  public void close() {}
+}
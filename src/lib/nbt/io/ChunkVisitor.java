@@ -0,0 +1,42 @@
+package lib.nbt.io;
+
+import java.nio.file.Path;
+
+import lib.nbt.Tag;
+
+/**
+ * A callback for the chunks found by {@link lib.nbt.io.WorldScanner}.
+ *
+ * Chunks are visited concurrently, in no particular order,
+ * so implementations must be thread-safe.
+ *
+ * @see lib.nbt.io.WorldScanner#scan(Path, ChunkVisitor)
+ * @author Kyrillos Tawadros
+ */
+public interface ChunkVisitor {
+
+  /**
+   * @param region The region file containing the chunk.
+   * @param x The chunk's X coordinate in the world.
+   * @param z The chunk's Z coordinate in the world.
+   * @param chunk The root tag of the chunk.
+   * @throws Exception To report that the chunk could not be processed.
+   *   It is passed to {@link #failed(Path, int, int, Exception)}.
+   */
+  void visit(Path region, int x, int z, Tag chunk) throws Exception;
+
+  /**
+   * @param region The region file containing the chunk.
+   * @param x The chunk's X coordinate in the world.
+   * @param z The chunk's Z coordinate in the world.
+   * @param cause The exception thrown while reading, decoding or visiting the chunk.
+   * @throws Exception To abort the scan.
+   *
+   * Called when a chunk could not be read, decoded or visited.
+   * By default <code>cause</code> is rethrown, aborting the scan.
+   * Override this method to log or count corrupt chunks and continue.
+   */
+  default void failed(Path region, int x, int z, Exception cause) throws Exception {
+    throw cause;
+  }
+}
@@ -0,0 +1,137 @@
+package lib.nbt.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * A compression format NBT data can be stored in.
+ *
+ * The formats used by Minecraft are provided as constants. Other
+ * formats can be plugged into {@link lib.nbt.io.NBTReader} and
+ * {@link lib.nbt.io.NBTWriter} by implementing this interface.
+ *
+ * @see #detect(InputStream)
+ * @author Kyrillos Tawadros
+ */
+public interface Compression {
+
+  /**
+   * No compression. The data is passed through unchanged.
+   */
+  Compression NONE = new NoCompression();
+
+  /**
+   * GZIP at the default level, used by <code>level.dat</code>
+   * and most other standalone NBT files.
+   */
+  Compression GZIP = gzip(Deflater.DEFAULT_COMPRESSION);
+
+  /**
+   * Zlib at the default level and strategy, used by most region file chunks.
+   */
+  Compression ZLIB = zlib(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+  /**
+   * LZ4 in the block stream format of the <code>lz4-java</code> library,
+   * used by region file chunks of compression type 4.
+   */
+  Compression LZ4 = new LZ4Compression();
+
+  /**
+   * The number of bytes {@link #detect(InputStream)} looks at.
+   */
+  int MAGIC_LENGTH = 8;
+
+  /**
+   * @return The name of this format, e.g. <code>"gzip"</code>.
+   */
+  String getName();
+
+  /**
+   * @param header The first bytes of the data.
+   * @param length The number of bytes in <code>header</code>,
+   *   at most {@link #MAGIC_LENGTH}.
+   * @return <code>true</code> if the data starts with this format's magic bytes.
+   */
+  boolean matches(byte[] header, int length);
+
+  /**
+   * @param source The compressed data.
+   * @return A stream of the decompressed data. Closing it closes <code>source</code>.
+   * @throws IOException If the data's header cannot be read or is invalid.
+   */
+  InputStream decompress(InputStream source) throws IOException;
+
+  /**
+   * @param dest The stream to write the compressed data to.
+   * @return A stream compressing everything written to it into <code>dest</code>.
+   *   Closing it finishes the compressed data and closes <code>dest</code>.
+   * @throws IOException If writing a header to <code>dest</code> fails.
+   */
+  OutputStream compress(OutputStream dest) throws IOException;
+
+  /**
+   * @param level The compression level, from {@link java.util.zip.Deflater#BEST_SPEED}
+   *   to {@link java.util.zip.Deflater#BEST_COMPRESSION}, or
+   *   {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+   * @return The GZIP format, compressing at <code>level</code>.
+   */
+  static Compression gzip(int level) {
+    return new DeflateCompression(true, level, Deflater.DEFAULT_STRATEGY);
+  }
+
+  /**
+   * @param level The compression level, from {@link java.util.zip.Deflater#BEST_SPEED}
+   *   to {@link java.util.zip.Deflater#BEST_COMPRESSION}, or
+   *   {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+   * @param strategy The {@link java.util.zip.Deflater} strategy, e.g.
+   *   {@link java.util.zip.Deflater#FILTERED}.
+   * @return The zlib format, compressing at <code>level</code> with <code>strategy</code>.
+   */
+  static Compression zlib(int level, int strategy) {
+    return new DeflateCompression(false, level, strategy);
+  }
+
+  /**
+   * @param source The data, which must support
+   *   {@link java.io.InputStream#mark(int)}.
+   * @return The format of the data, {@link #NONE} if no magic bytes match.
+   * @throws IOException If reading from <code>source</code> fails.
+   *
+   * Peeks at the first {@link #MAGIC_LENGTH} bytes of <code>source</code>
+   * and resets it, so nothing is consumed and nothing is read twice.
+   */
+  static Compression detect(InputStream source) throws IOException {
+    if (!source.markSupported()) {
+      throw new IllegalArgumentException("Detecting compression requires a stream supporting mark()");
+    }
+    byte[] header = new byte[MAGIC_LENGTH];
+    source.mark(MAGIC_LENGTH);
+    int length = 0;
+    try {
+      int read;
+      while (length < MAGIC_LENGTH && (read = source.read(header, length, MAGIC_LENGTH - length)) > 0) {
+        length += read;
+      }
+    } finally {
+      source.reset();
+    }
+    return detect(header, length);
+  }
+
+  /**
+   * @param header The first bytes of the data.
+   * @param length The number of bytes in <code>header</code>.
+   * @return The format of the data, {@link #NONE} if no magic bytes match.
+   */
+  static Compression detect(byte[] header, int length) {
+    for (Compression compression : new Compression[] { GZIP, ZLIB, LZ4 }) {
+      if (compression.matches(header, length)) {
+        return compression;
+      }
+    }
+    return NONE;
+  }
+}
@@ -0,0 +1,122 @@
+package lib.nbt.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The GZIP and zlib {@link lib.nbt.io.Compression}s, both
+ * built on {@link java.util.zip.Deflater}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class DeflateCompression implements Compression {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final boolean gzip;
+  private final int level;
+  private final int strategy;
+
+  /**
+   * @param gzip <code>true</code> for the GZIP format, <code>false</code> for zlib
+   * @param level The compression level.
+   * @param strategy The compression strategy.
+   */
+  DeflateCompression(boolean gzip, int level, int strategy) {
+    if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION
+        && level != Deflater.NO_COMPRESSION) {
+      throw new IllegalArgumentException(String.format("Invalid compression level %d", level));
+    }
+    if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+      throw new IllegalArgumentException(String.format("Invalid compression strategy %d", strategy));
+    }
+    this.gzip = gzip;
+    this.level = level;
+    this.strategy = strategy;
+  }
+
+  /**
+   * @return <code>true</code> for the GZIP format, <code>false</code> for zlib
+   */
+  boolean isGzip() {
+    return gzip;
+  }
+
+  /**
+   * @return A new deflater for this format's level and strategy.
+   */
+  Deflater newDeflater() {
+    Deflater deflater = new Deflater(level, gzip);
+    deflater.setStrategy(strategy);
+    return deflater;
+  }
+
+  @Override
+  public String getName() {
+    return gzip ? "gzip" : "zlib";
+  }
+
+  @Override
+  public boolean matches(byte[] header, int length) {
+    if (length < 2) {
+      return false;
+    }
+    int b0 = header[0] & 0xFF;
+    int b1 = header[1] & 0xFF;
+    if (gzip) {
+      return b0 == 0x1F && b1 == 0x8B;
+    }
+    // deflate method with a valid header checksum
+    return (b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0;
+  }
+
+  @Override
+  public InputStream decompress(InputStream source) throws IOException {
+    if (gzip) {
+      return new GZIPInputStream(source, BUFFER_SIZE);
+    }
+    return new InflaterInputStream(source, new Inflater(), BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inf.end();
+        }
+      }
+    };
+  }
+
+  @Override
+  public OutputStream compress(OutputStream dest) throws IOException {
+    if (gzip) {
+      return new GZIPOutputStream(dest, BUFFER_SIZE) {
+        {
+          def.setLevel(level);
+          def.setStrategy(strategy);
+        }
+      };
+    }
+    return new DeflaterOutputStream(dest, newDeflater(), BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          def.end();
+        }
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s(level=%d, strategy=%d)", getName(), level, strategy);
+  }
+}
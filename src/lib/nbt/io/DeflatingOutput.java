@@ -0,0 +1,130 @@
+package lib.nbt.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A resettable output stream that compresses to GZIP or zlib with a
+ * caller-supplied {@link java.util.zip.Deflater}, or passes data through
+ * unchanged. It is the writing counterpart of {@link lib.nbt.io.InflatingInput}.
+ *
+ * The GZIP header and trailer are written here, and the deflater must
+ * have been created with <code>nowrap</code> set for GZIP data.
+ * Closing this stream does not close its destination.
+ *
+ * @see lib.nbt.io.NBTCodec
+ * @author Kyrillos Tawadros
+ */
+final class DeflatingOutput extends OutputStream {
+  private static final byte[] GZIP_HEADER = { 0x1F, (byte)0x8B, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+  private final byte[] buffer;
+  private final byte[] single = new byte[1];
+  private final CRC32 crc = new CRC32();
+  private OutputStream dest;
+
+  /**
+   * The deflater in use, <code>null</code> to pass data through.
+   */
+  private Deflater deflater;
+  private boolean gzip;
+
+  /**
+   * @param bufferSize The size of the compressed data buffer.
+   */
+  DeflatingOutput(int bufferSize) {
+    this.buffer = new byte[bufferSize];
+  }
+
+  /**
+   * @param dest The stream to write to next, <code>null</code> to
+   *   drop the reference to the previous one.
+   * @param deflater The deflater to compress with, reset here,
+   *   <code>null</code> to pass data through
+   * @param gzip <code>true</code> for GZIP data, <code>false</code> for zlib
+   * @throws IOException If writing the GZIP header throws an {@link java.io.IOException}
+   *
+   * Starts a new document.
+   */
+  void reset(OutputStream dest, Deflater deflater, boolean gzip) throws IOException {
+    this.dest = dest;
+    this.deflater = deflater;
+    this.gzip = gzip;
+    if (deflater != null) {
+      deflater.reset();
+      crc.reset();
+      if (gzip) {
+        dest.write(GZIP_HEADER);
+      }
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    single[0] = (byte)b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (deflater == null) {
+      dest.write(b, off, len);
+      return;
+    }
+    if (gzip) {
+      crc.update(b, off, len);
+    }
+    deflater.setInput(b, off, len);
+    while (!deflater.needsInput()) {
+      deflate();
+    }
+  }
+
+  private void deflate() throws IOException {
+    int length = deflater.deflate(buffer, 0, buffer.length);
+    if (length > 0) {
+      dest.write(buffer, 0, length);
+    }
+  }
+
+  private void writeTrailerInt(long v) throws IOException {
+    buffer[0] = (byte)v;
+    buffer[1] = (byte)(v >>> 8);
+    buffer[2] = (byte)(v >>> 16);
+    buffer[3] = (byte)(v >>> 24);
+    dest.write(buffer, 0, Integer.BYTES);
+  }
+
+  /**
+   * @throws IOException If writing throws an {@link java.io.IOException}
+   *
+   * Writes the rest of the compressed data and the GZIP trailer.
+   */
+  void finish() throws IOException {
+    if (deflater == null) {
+      return;
+    }
+    deflater.finish();
+    while (!deflater.finished()) {
+      deflate();
+    }
+    if (gzip) {
+      writeTrailerInt(crc.getValue());
+      writeTrailerInt(deflater.getBytesRead());
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    dest.flush();
+  }
+
+  /**
+   * Does nothing: the destination belongs to the caller
+   * and the deflater to the owner of this stream.
+   */
+  @Override
+  public void close() {}
+}
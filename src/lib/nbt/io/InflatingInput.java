@@ -0,0 +1,278 @@
+package lib.nbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A resettable input stream that decompresses GZIP or zlib data with a
+ * caller-supplied {@link java.util.zip.Inflater}, or passes data through
+ * unchanged. Unlike {@link java.util.zip.GZIPInputStream}, it allocates
+ * nothing per document, so one instance and one inflater serve any number
+ * of documents.
+ *
+ * The GZIP header and trailer are parsed here, and the inflater
+ * must have been created with <code>nowrap</code> set for GZIP data.
+ * Closing this stream does not close its source.
+ *
+ * @see lib.nbt.io.NBTCodec
+ * @author Kyrillos Tawadros
+ */
+final class InflatingInput extends InputStream {
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final byte[] buffer;
+  private final byte[] single = new byte[1];
+  private final CRC32 crc = new CRC32();
+  private InputStream source;
+  private int position;
+  private int count;
+
+  /**
+   * The inflater in use, <code>null</code> to pass data through.
+   */
+  private Inflater inflater;
+  private boolean gzip;
+  private boolean finished;
+
+  /**
+   * @param bufferSize The size of the compressed data buffer.
+   */
+  InflatingInput(int bufferSize) {
+    this.buffer = new byte[bufferSize];
+  }
+
+  /**
+   * @param source The stream to read from next, <code>null</code> to
+   *   drop the reference to the previous one.
+   *
+   * Starts a new document, initially passing data through unchanged.
+   */
+  void reset(InputStream source) {
+    this.source = source;
+    this.position = 0;
+    this.count = 0;
+    this.inflater = null;
+    this.finished = false;
+  }
+
+  /**
+   * @param dest The array to copy the first bytes to.
+   * @param length The number of bytes to look at.
+   * @return The number of bytes copied, less than <code>length</code> only at the end of the data.
+   * @throws IOException If reading the source throws an {@link java.io.IOException}
+   *
+   * Looks at the next bytes without consuming them.
+   */
+  int peek(byte[] dest, int length) throws IOException {
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, count - position);
+      count -= position;
+      position = 0;
+    }
+    while (count < length) {
+      int read = source.read(buffer, count, buffer.length - count);
+      if (read < 0) {
+        break;
+      }
+      count += read;
+    }
+    int available = Math.min(length, count);
+    System.arraycopy(buffer, 0, dest, 0, available);
+    return available;
+  }
+
+  /**
+   * @param inflater The inflater to decompress with, reset here.
+   * @param gzip <code>true</code> for GZIP data, <code>false</code> for zlib
+   * @throws IOException If the GZIP header is invalid or cannot be read.
+   *
+   * Decompresses the rest of the data.
+   */
+  void inflate(Inflater inflater, boolean gzip) throws IOException {
+    inflater.reset();
+    crc.reset();
+    this.inflater = inflater;
+    this.gzip = gzip;
+    if (gzip) {
+      readGzipHeader();
+    }
+    inflater.setInput(buffer, position, count - position);
+    position = count;
+  }
+
+  /**
+   * @throws IOException If the rest of the data is invalid, or a GZIP trailer does not match.
+   *
+   * Inflates and discards what is left of the data, so that the checksums
+   * and sizes in the trailers are checked even when the reader stopped at
+   * the end of the root tag. Documents rarely have anything after it, so
+   * this reads one byte at a time rather than allocating a buffer.
+   */
+  void drain() throws IOException {
+    if (inflater == null) {
+      return;
+    }
+    while (read(single, 0, 1) >= 0) {
+      // discarded
+    }
+  }
+
+  private void fill() throws IOException {
+    int read = source.read(buffer, 0, buffer.length);
+    if (read < 0) {
+      throw new EOFException("Unexpected end of compressed data");
+    }
+    position = 0;
+    count = read;
+  }
+
+  private int nextByte() throws IOException {
+    if (position == count) {
+      fill();
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  private void skip(int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      nextByte();
+    }
+  }
+
+  private void readGzipHeader() throws IOException {
+    if (nextByte() != 0x1F || nextByte() != 0x8B) {
+      throw new ZipException("Not in GZIP format");
+    }
+    if (nextByte() != 8) {
+      throw new ZipException("Unsupported GZIP compression method");
+    }
+    int flags = nextByte();
+    // modification time, extra flags and operating system
+    skip(6);
+    if ((flags & FEXTRA) != 0) {
+      skip(nextByte() | nextByte() << 8);
+    }
+    if ((flags & FNAME) != 0) {
+      while (nextByte() != 0) {}
+    }
+    if ((flags & FCOMMENT) != 0) {
+      while (nextByte() != 0) {}
+    }
+    if ((flags & FHCRC) != 0) {
+      skip(2);
+    }
+  }
+
+  private long readTrailerInt() throws IOException {
+    return (nextByte() | nextByte() << 8 | nextByte() << 16 | (long)nextByte() << 24);
+  }
+
+  private void readGzipTrailer() throws IOException {
+    if (readTrailerInt() != crc.getValue()) {
+      throw new ZipException("Corrupt GZIP trailer: CRC mismatch");
+    }
+    if (readTrailerInt() != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+      throw new ZipException("Corrupt GZIP trailer: size mismatch");
+    }
+  }
+
+  /**
+   * @return <code>true</code> if another GZIP member follows the one just
+   *   finished, whose header has then been read.
+   *
+   * Concatenated members decompress to the concatenation of their data,
+   * as with {@link java.util.zip.GZIPInputStream}.
+   */
+  private boolean nextMember() throws IOException {
+    if (position == count) {
+      int read = source.read(buffer, 0, buffer.length);
+      if (read <= 0) {
+        return false;
+      }
+      position = 0;
+      count = read;
+    }
+    if ((buffer[position] & 0xFF) != 0x1F) {
+      return false;
+    }
+    inflater.reset();
+    crc.reset();
+    readGzipHeader();
+    inflater.setInput(buffer, position, count - position);
+    position = count;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (inflater == null) {
+      if (position < count) {
+        int available = Math.min(len, count - position);
+        System.arraycopy(buffer, position, b, off, available);
+        position += available;
+        return available;
+      }
+      return source.read(b, off, len);
+    }
+    if (finished) {
+      return -1;
+    }
+    while (true) {
+      int inflated;
+      try {
+        inflated = inflater.inflate(b, off, len);
+      } catch (DataFormatException dfe) {
+        throw new ZipException(dfe.getMessage());
+      }
+      if (inflated > 0) {
+        if (gzip) {
+          crc.update(b, off, inflated);
+        }
+        return inflated;
+      }
+      if (inflater.finished()) {
+        // the trailer follows in the unconsumed part of the buffer
+        position = count - inflater.getRemaining();
+        if (gzip) {
+          readGzipTrailer();
+          if (nextMember()) {
+            continue;
+          }
+        }
+        finished = true;
+        return -1;
+      }
+      if (inflater.needsDictionary()) {
+        throw new ZipException("Preset dictionaries are not supported");
+      }
+      if (inflater.needsInput()) {
+        fill();
+        inflater.setInput(buffer, 0, count);
+        position = count;
+      }
+    }
+  }
+
+  /**
+   * Does nothing: the source belongs to the caller
+   * and the inflater to the owner of this stream.
+   */
+  @Override
+  public void close() {}
+}
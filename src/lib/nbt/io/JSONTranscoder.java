@@ -0,0 +1,1075 @@
+package lib.nbt.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+
+/**
+ * A streaming converter between binary NBT and JSON text, in both
+ * directions, which never builds a tree of the document.
+ *
+ * {@link #toJSON(NBTStreamReader, Appendable)} follows the events of an
+ * {@link lib.nbt.io.NBTStreamReader}, and writes each value as soon as it is
+ * read. {@link #toNBT(Reader, OutputStream, Compression)} parses the JSON text
+ * in a single pass and writes compounds straight through. Since an NBT list
+ * starts with its length, the encoded elements of a list are held until the
+ * list ends, so memory use is bounded by the largest list or array of the
+ * document rather than its size.
+ *
+ * Compounds map to JSON objects, lists and arrays to JSON arrays, strings
+ * to JSON strings and numbers to JSON numbers. Floats and doubles that are not
+ * finite, which JSON numbers can't hold, are written as the strings
+ * <code>"NaN"</code>, <code>"Infinity"</code> and <code>"-Infinity"</code>.
+ * The name of the root tag is not part of the JSON text, and is empty when
+ * reading back. Several root tags are written as one JSON value per line.
+ *
+ * Reading JSON gives ints for unmarked whole numbers (longs if they don't
+ * fit), doubles for other numbers, bytes 1 and 0 for booleans, and skips
+ * <code>null</code> entries. Lists of such numbers take the widest type of
+ * their elements, and the strings naming numbers that are not finite are
+ * read as doubles in them, so plain lists of doubles survive a round trip.
+ * A list holding only such strings stays a list of strings.
+ *
+ * Without type preservation, the JSON text is plain, and numeric widths and
+ * array kinds are lost. With it, they survive a round trip.
+ * Ints, doubles (always written with a decimal point or an exponent), strings,
+ * compounds and other lists are written as above, and other values as an
+ * object with a single key marked by a <code>$</code>, after the SNBT suffixes:
+ * <ul>
+ * <li><code>{"$b":1}</code>, <code>{"$s":1}</code>, <code>{"$l":1}</code> and
+ *   <code>{"$f":1.5}</code> for bytes, shorts, longs and floats, and
+ *   <code>{"$d":"NaN"}</code> for doubles that are not finite</li>
+ * <li><code>{"$b":[1,2]}</code> and so on for lists of those types</li>
+ * <li><code>{"$B":[1,2]}</code>, <code>{"$I":[1,2]}</code> and <code>{"$L":[1,2]}</code>
+ *   for byte, int and long arrays</li>
+ * </ul>
+ * Compound keys starting with <code>$</code> are written with another
+ * <code>$</code> in front, which is removed when reading back.
+ *
+ * @see lib.nbt.io.SNBTWriter
+ * @author Kyrillos Tawadros
+ */
+public class JSONTranscoder {
+  /**
+   * The deepest nesting of compounds and lists accepted from JSON.
+   */
+  public static final int MAX_DEPTH = 512;
+
+  private static final int FLUSH_SIZE = 8192;
+
+  private final boolean preserveTypes;
+
+  /**
+   * @param preserveTypes <code>true</code> to mark the types that JSON can't
+   *   tell apart, so that converting back to NBT restores them exactly
+   */
+  public JSONTranscoder(boolean preserveTypes) {
+    this.preserveTypes = preserveTypes;
+  }
+
+  /**
+   * @return <code>true</code> if this transcoder preserves numeric widths and array kinds
+   */
+  public boolean isPreservingTypes() {
+    return preserveTypes;
+  }
+
+  /**
+   * @param source The NBT data, GZIPped, zlib, LZ4 or uncompressed.
+   * @param dest The destination of the JSON text.
+   * @throws IOException If reading or writing fails.
+   * @throws NBTException If the NBT data is invalid.
+   */
+  public void toJSON(InputStream source, Appendable dest) throws IOException, NBTException {
+    toJSON(new NBTStreamReader(source), dest);
+  }
+
+  /**
+   * @param source The reader positioned before the root tags to convert.
+   * @param dest The destination of the JSON text.
+   * @throws IOException If reading or writing fails.
+   * @throws NBTException If the NBT data is invalid.
+   *
+   * Reads <code>source</code> up to the end of its input.
+   */
+  public void toJSON(NBTStreamReader source, Appendable dest) throws IOException, NBTException {
+    new JSONOutput(source, dest).run();
+  }
+
+  /**
+   * @param source The JSON text, holding one or more objects.
+   * @param dest The stream to write the NBT data to, which is closed at the end.
+   * @param compression The compression to apply, e.g. {@link lib.nbt.io.Compression#GZIP}.
+   * @throws IOException If reading or writing fails.
+   * @throws NBTException If the JSON text is invalid, or holds values NBT can't,
+   *   such as lists of mixed types.
+   */
+  public void toNBT(Reader source, OutputStream dest, Compression compression) throws IOException, NBTException {
+    try (StreamOutput out = new StreamOutput(compression.compress(dest))) {
+      new JSONInput(source, out).run();
+    }
+  }
+
+  /**
+   * Writes JSON text from the events of an {@link lib.nbt.io.NBTStreamReader}.
+   */
+  private final class JSONOutput {
+    private final NBTStreamReader source;
+    private final Appendable dest;
+    private final StringBuilder out;
+
+    /**
+     * The closing text of every open compound and list.
+     */
+    private String[] closers = new String[16];
+
+    /**
+     * The number of entries or elements written to every open compound and list.
+     */
+    private int[] counts = new int[16];
+    private int depth;
+    private int documents;
+
+    private byte[] bytes = new byte[0];
+    private int[] ints = new int[0];
+    private long[] longs = new long[0];
+
+    JSONOutput(NBTStreamReader source, Appendable dest) {
+      this.source = source;
+      this.dest = dest;
+      this.out = dest instanceof StringBuilder ? (StringBuilder)dest : new StringBuilder(FLUSH_SIZE + 256);
+    }
+
+    void run() throws IOException, NBTException {
+      boolean named = false;
+      NBTEvent event;
+      while ((event = source.next()) != NBTEvent.END_DOCUMENT) {
+        if (event == NBTEvent.NAME) {
+          if (depth > 0) {
+            separate();
+            writeKey(source.getName());
+            out.append(':');
+          }
+          named = true;
+          continue;
+        } else if (event == NBTEvent.END) {
+          if (depth > 0) {
+            out.append(closers[--depth]);
+          }
+          continue;
+        }
+
+        if (depth == 0) {
+          if (documents++ > 0) {
+            out.append('\n');
+          }
+        } else if (!named) {
+          separate();
+        }
+        named = false;
+        switch (event) {
+        case START_COMPOUND:
+          out.append('{');
+          push("}");
+          break;
+        case START_LIST:
+          NBTType element = source.getElementType();
+          boolean scalar = element == NBTType.BYTE || element == NBTType.SHORT || element == NBTType.LONG
+              || element == NBTType.FLOAT;
+          String marker = preserveTypes && scalar && source.getLength() > 0 ? marker(element) : null;
+          if (marker != null) {
+            out.append("{\"").append(marker).append("\":[");
+            push("]}");
+          } else {
+            out.append('[');
+            push("]");
+          }
+          break;
+        default:
+          writeValue();
+          break;
+        }
+        if (out.length() > FLUSH_SIZE) {
+          flush();
+        }
+      }
+      flush();
+    }
+
+    private void push(String closer) {
+      if (depth == closers.length) {
+        closers = Arrays.copyOf(closers, depth * 2);
+        counts = Arrays.copyOf(counts, depth * 2);
+      }
+      closers[depth] = closer;
+      counts[depth++] = 0;
+    }
+
+    private void separate() {
+      if (counts[depth - 1]++ > 0) {
+        out.append(',');
+      }
+    }
+
+    private void flush() throws IOException {
+      if (out != dest && out.length() > 0) {
+        dest.append(out);
+        out.setLength(0);
+      }
+    }
+
+    private void writeValue() throws IOException, NBTException {
+      NBTType type = source.getType();
+      // inside a list marked with its type, elements are written bare
+      boolean bare = depth > 0 && closers[depth - 1].equals("]}");
+      String marker = preserveTypes && !bare ? marker(type) : null;
+      if (type == NBTType.DOUBLE) {
+        double value = source.readDouble();
+        marker = preserveTypes && !bare && !Double.isFinite(value) ? "$d" : null;
+        open(marker);
+        writeDecimal(value, Double.isFinite(value));
+      } else if (type == NBTType.FLOAT) {
+        float value = source.readFloat();
+        open(marker);
+        writeDecimal(value, Float.isFinite(value));
+      } else {
+        open(marker);
+        switch (type) {
+        case BYTE:
+          out.append(source.readByte());
+          break;
+        case SHORT:
+          out.append(source.readShort());
+          break;
+        case INT:
+          out.append(source.readInt());
+          break;
+        case LONG:
+          out.append(source.readLong());
+          break;
+        case STRING:
+          writeString(source.readString());
+          break;
+        case BYTE_ARRAY:
+          writeByteArray();
+          break;
+        case INT_ARRAY:
+          writeIntArray();
+          break;
+        case LONG_ARRAY:
+          writeLongArray();
+          break;
+        default:
+          throw new NBTException("Unexpected value of type " + type);
+        }
+      }
+      if (marker != null) {
+        out.append('}');
+      }
+    }
+
+    private void open(String marker) {
+      if (marker != null) {
+        out.append("{\"").append(marker).append("\":");
+      }
+    }
+
+    private void writeDecimal(double value, boolean finite) {
+      if (finite) {
+        out.append(value);
+      } else {
+        out.append('"').append(value).append('"');
+      }
+    }
+
+    private void writeDecimal(float value, boolean finite) {
+      if (finite) {
+        out.append(value);
+      } else {
+        out.append('"').append(value).append('"');
+      }
+    }
+
+    // the scratch arrays are reused, and only grow up to the largest array of the document
+
+    private void writeByteArray() throws IOException {
+      int length = source.getLength();
+      if (bytes.length < length) {
+        bytes = new byte[length];
+      }
+      source.readByteArray(bytes);
+      out.append('[');
+      for (int i = 0; i < length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append(bytes[i]);
+      }
+      out.append(']');
+    }
+
+    private void writeIntArray() throws IOException {
+      int length = source.getLength();
+      if (ints.length < length) {
+        ints = new int[length];
+      }
+      source.readIntArray(ints);
+      out.append('[');
+      for (int i = 0; i < length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append(ints[i]);
+        if ((i & 1023) == 1023) {
+          flush();
+        }
+      }
+      out.append(']');
+    }
+
+    private void writeLongArray() throws IOException {
+      int length = source.getLength();
+      if (longs.length < length) {
+        longs = new long[length];
+      }
+      source.readLongArray(longs);
+      out.append('[');
+      for (int i = 0; i < length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append(longs[i]);
+        if ((i & 511) == 511) {
+          flush();
+        }
+      }
+      out.append(']');
+    }
+
+    private void writeKey(String key) {
+      if (preserveTypes && key.startsWith("$")) {
+        out.append("\"$");
+        writeStringBody(key);
+        out.append('"');
+      } else {
+        writeString(key);
+      }
+    }
+
+    private void writeString(String str) {
+      out.append('"');
+      writeStringBody(str);
+      out.append('"');
+    }
+
+    private void writeStringBody(String str) {
+      TextFormat.appendEscaped(out, str, '"', true);
+    }
+  }
+
+  /**
+   * @return The key marking values or list elements of <code>type</code>
+   *   with type preservation, <code>null</code> if they are written bare
+   */
+  private static String marker(NBTType type) {
+    switch (type) {
+    case BYTE:
+      return "$b";
+    case SHORT:
+      return "$s";
+    case LONG:
+      return "$l";
+    case FLOAT:
+      return "$f";
+    case BYTE_ARRAY:
+      return "$B";
+    case INT_ARRAY:
+      return "$I";
+    case LONG_ARRAY:
+      return "$L";
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * @return The type marked by <code>key</code>, <code>null</code> if there is none
+   */
+  private static NBTType markedType(String key) {
+    if (key.length() != 2 || key.charAt(0) != '$') {
+      return null;
+    }
+    switch (key.charAt(1)) {
+    case 'b':
+      return NBTType.BYTE;
+    case 's':
+      return NBTType.SHORT;
+    case 'l':
+      return NBTType.LONG;
+    case 'f':
+      return NBTType.FLOAT;
+    case 'd':
+      return NBTType.DOUBLE;
+    case 'B':
+      return NBTType.BYTE_ARRAY;
+    case 'I':
+      return NBTType.INT_ARRAY;
+    case 'L':
+      return NBTType.LONG_ARRAY;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * The encoded elements of a list or array, held until its length is known.
+   */
+  private static final class Frame {
+    final Buffer bytes = new Buffer();
+    final DataOutputStream data = new DataOutputStream(bytes);
+    NBTType elementType;
+    int count;
+
+    /**
+     * <code>true</code> if the element type is fixed by a type marker or an array kind.
+     */
+    boolean fixed;
+
+    /**
+     * <code>true</code> if the elements so far are all strings naming doubles that
+     * are not finite, which become doubles if a number follows.
+     */
+    boolean nonFinite;
+
+    void reset(NBTType type) {
+      bytes.reset();
+      elementType = type;
+      count = 0;
+      fixed = type != null;
+      nonFinite = false;
+    }
+  }
+
+  private static final class Buffer extends ByteArrayOutputStream {
+    void writeTo(DataOutput dest) throws IOException {
+      dest.write(buf, 0, count);
+    }
+
+    ByteBuffer contents() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+
+  /**
+   * Parses JSON text and writes NBT data as it goes.
+   */
+  private final class JSONInput {
+    private final Reader source;
+    private final DataOutput dest;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    private long offset;
+
+    private final StringBuilder token = new StringBuilder();
+    private Frame[] frames = new Frame[8];
+    private int frame_count;
+    private int depth;
+
+    JSONInput(Reader source, DataOutput dest) {
+      this.source = source;
+      this.dest = dest;
+    }
+
+    void run() throws IOException, NBTException {
+      int c;
+      while ((c = peek()) != -1) {
+        if (c != '{') {
+          throw error("Expected an object");
+        }
+        pos++;
+        enter();
+        dest.writeByte(NBTType.COMPOUND.id);
+        dest.writeUTF("");
+        int first = peek();
+        if (first == '}') {
+          pos++;
+        } else {
+          readEntries(readKey());
+        }
+        dest.writeByte(NBTType.END.id);
+        depth--;
+      }
+    }
+
+    private DataOutput out() {
+      return frame_count > 0 ? frames[frame_count - 1].data : dest;
+    }
+
+    /**
+     * Reads the entries of a compound up to its closing brace, from the
+     * value of the first one, whose key is already read.
+     */
+    private void readEntries(String key) throws IOException, NBTException {
+      while (true) {
+        expect(':');
+        readValue(unescape(key), null);
+        int c = next();
+        if (c == '}') {
+          return;
+        } else if (c != ',') {
+          throw error("Expected ',' or '}'");
+        }
+        if (peek() != '"') {
+          throw error("Expected a key");
+        }
+        key = readString();
+      }
+    }
+
+    private String readKey() throws IOException, NBTException {
+      if (peek() != '"') {
+        throw error("Expected a key");
+      }
+      return readString();
+    }
+
+    private String unescape(String key) {
+      return preserveTypes && key.startsWith("$$") ? key.substring(1) : key;
+    }
+
+    /**
+     * @param name The name of the value, <code>null</code> for a list element.
+     * @param list The list the value is an element of, <code>null</code> for a compound entry.
+     */
+    private void readValue(String name, Frame list) throws IOException, NBTException {
+      int c = peek();
+      switch (c) {
+      case '{':
+        pos++;
+        enter();
+        if (peek() == '}') {
+          pos++;
+          header(NBTType.COMPOUND, name, list);
+          out().writeByte(NBTType.END.id);
+        } else {
+          String key = readKey();
+          NBTType marked = preserveTypes && !key.startsWith("$$") ? markedType(key) : null;
+          if (marked != null) {
+            expect(':');
+            readMarked(marked, name, list);
+            expect('}');
+          } else if (preserveTypes && key.startsWith("$") && !key.startsWith("$$")) {
+            throw error(String.format("Unknown type marker '%s'", key));
+          } else {
+            header(NBTType.COMPOUND, name, list);
+            readEntries(key);
+            out().writeByte(NBTType.END.id);
+          }
+        }
+        depth--;
+        break;
+      case '[':
+        pos++;
+        header(NBTType.LIST, name, list);
+        readElements(push(null), false);
+        break;
+      case '"':
+        String str = readString();
+        if (list != null && isNonFinite(str) && rank(list.elementType) >= 0) {
+          header(widen(list, NBTType.DOUBLE), name, list);
+          out().writeDouble(Double.parseDouble(str));
+          break;
+        }
+        header(NBTType.STRING, name, list);
+        out().writeUTF(str);
+        if (list != null) {
+          list.nonFinite = (list.count == 1 || list.nonFinite) && isNonFinite(str);
+        }
+        break;
+      case 't':
+      case 'f':
+        readLiteral(c == 't' ? "true" : "false");
+        header(NBTType.BYTE, name, list);
+        out().writeByte(c == 't' ? 1 : 0);
+        break;
+      case 'n':
+        readLiteral("null");
+        if (list != null) {
+          throw error("NBT lists can't hold null");
+        }
+        break;
+      default:
+        readNumber(name, list);
+        break;
+      }
+    }
+
+    private void readMarked(NBTType type, String name, Frame list) throws IOException, NBTException {
+      boolean array = type == NBTType.BYTE_ARRAY || type == NBTType.INT_ARRAY || type == NBTType.LONG_ARRAY;
+      if (peek() == '[') {
+        pos++;
+        header(array ? type : NBTType.LIST, name, list);
+        NBTType element = type == NBTType.BYTE_ARRAY ? NBTType.BYTE : type == NBTType.INT_ARRAY ? NBTType.INT
+            : type == NBTType.LONG_ARRAY ? NBTType.LONG : type;
+        readElements(push(element), array);
+      } else if (array) {
+        throw error("Expected an array");
+      } else {
+        readScalar(type, name, list);
+      }
+    }
+
+    /**
+     * Reads a number, or a string naming a float or double that is not finite, as <code>type</code>.
+     */
+    private void readScalar(NBTType type, String name, Frame list) throws IOException, NBTException {
+      if (peek() == '"' && (type == NBTType.FLOAT || type == NBTType.DOUBLE)) {
+        String special = readString();
+        double value;
+        if (special.equals("NaN")) {
+          value = Double.NaN;
+        } else if (special.equals("Infinity")) {
+          value = Double.POSITIVE_INFINITY;
+        } else if (special.equals("-Infinity")) {
+          value = Double.NEGATIVE_INFINITY;
+        } else {
+          throw error(String.format("Invalid %s '%s'", type, special));
+        }
+        header(type, name, list);
+        if (type == NBTType.FLOAT) {
+          out().writeFloat((float)value);
+        } else {
+          out().writeDouble(value);
+        }
+        return;
+      }
+      readToken();
+      writeNumber(type, name, list);
+    }
+
+    /**
+     * Reads the elements of a list or array up to its closing bracket, and writes it.
+     */
+    private void readElements(Frame frame, boolean array) throws IOException, NBTException {
+      if (peek() == ']') {
+        pos++;
+      } else {
+        do {
+          if (frame.fixed) {
+            readScalar(frame.elementType, null, frame);
+          } else {
+            readValue(null, frame);
+          }
+        } while (separator(']'));
+      }
+      pop(!array);
+    }
+
+    /**
+     * @return <code>true</code> if a comma was read, <code>false</code> if the closing character
+     */
+    private boolean separator(char close) throws IOException, NBTException {
+      int c = next();
+      if (c == ',') {
+        return true;
+      } else if (c != close) {
+        throw error(String.format("Expected ',' or '%c'", close));
+      }
+      return false;
+    }
+
+    /**
+     * Writes the type and name of a compound entry, or checks the type
+     * of a list element against the list's.
+     */
+    private void header(NBTType type, String name, Frame list) throws IOException, NBTException {
+      if (list == null) {
+        DataOutput out = out();
+        out.writeByte(type.id);
+        out.writeUTF(name);
+        return;
+      }
+      if (list.elementType == null) {
+        list.elementType = type;
+      } else if (list.elementType != type) {
+        throw error(String.format("List of %s can't hold %s", list.elementType, type));
+      }
+      list.count++;
+    }
+
+    private Frame push(NBTType element) throws NBTException {
+      enter();
+      if (frame_count == frames.length) {
+        frames = Arrays.copyOf(frames, frame_count * 2);
+      }
+      Frame frame = frames[frame_count];
+      if (frame == null) {
+        frame = frames[frame_count] = new Frame();
+      }
+      frame.reset(element);
+      frame_count++;
+      return frame;
+    }
+
+    /**
+     * Writes the length and elements of the innermost list or array to its parent.
+     */
+    private void pop(boolean list) throws IOException {
+      Frame frame = frames[--frame_count];
+      DataOutput out = out();
+      if (list) {
+        out.writeByte(frame.elementType == null ? NBTType.END.id : frame.elementType.id);
+      }
+      out.writeInt(frame.count);
+      frame.bytes.writeTo(out);
+      depth--;
+    }
+
+    private void enter() throws NBTException {
+      if (++depth > MAX_DEPTH) {
+        throw error(String.format("Nesting deeper than %d", MAX_DEPTH));
+      }
+    }
+
+    private void readNumber(String name, Frame list) throws IOException, NBTException {
+      readToken();
+      NBTType type;
+      if (!isWhole()) {
+        type = NBTType.DOUBLE;
+      } else {
+        long value = parseLong();
+        type = value == (int)value ? NBTType.INT : NBTType.LONG;
+      }
+      if (list != null && list.nonFinite) {
+        toDoubles(list);
+      }
+      if (list != null && list.elementType != null && list.elementType != type) {
+        type = widen(list, type);
+      }
+      writeNumber(type, name, list);
+    }
+
+    /**
+     * @return The type for a number of <code>type</code> in a numeric list
+     *   without type preservation, widening the elements already written if needed
+     */
+    private NBTType widen(Frame list, NBTType type) throws NBTException {
+      NBTType current = list.elementType;
+      if (rank(current) < 0 || rank(type) < 0) {
+        return type;
+      } else if (rank(type) <= rank(current)) {
+        return current;
+      }
+      ByteBuffer old = list.bytes.contents();
+      byte[] copy = new byte[old.remaining()];
+      old.get(copy);
+      ByteBuffer elements = ByteBuffer.wrap(copy);
+      list.bytes.reset();
+      try {
+        for (int i = 0; i < list.count; i++) {
+          long whole = current == NBTType.INT ? elements.getInt() : elements.getLong();
+          if (type == NBTType.LONG) {
+            list.data.writeLong(whole);
+          } else {
+            list.data.writeDouble(whole);
+          }
+        }
+      } catch (IOException e) {
+        // a ByteArrayOutputStream never throws
+        throw new IllegalStateException(e);
+      }
+      list.elementType = type;
+      return type;
+    }
+
+    /**
+     * Rewrites the strings held by <code>list</code>, which all name doubles
+     * that are not finite, as those doubles.
+     */
+    private void toDoubles(Frame list) throws IOException {
+      ByteBuffer old = list.bytes.contents();
+      DataInputStream elements = new DataInputStream(
+          new ByteArrayInputStream(old.array(), old.position(), old.remaining()));
+      String[] names = new String[list.count];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = elements.readUTF();
+      }
+      list.bytes.reset();
+      for (String str : names) {
+        list.data.writeDouble(Double.parseDouble(str));
+      }
+      list.elementType = NBTType.DOUBLE;
+      list.nonFinite = false;
+    }
+
+    private boolean isNonFinite(String str) {
+      return str.equals("NaN") || str.equals("Infinity") || str.equals("-Infinity");
+    }
+
+    /**
+     * @return The order of the types numeric lists are widened through, -1 for other types
+     */
+    private int rank(NBTType type) {
+      return type == NBTType.INT ? 0 : type == NBTType.LONG ? 1 : type == NBTType.DOUBLE ? 2 : -1;
+    }
+
+    /**
+     * Writes the number in {@link #token} as <code>type</code>.
+     */
+    private void writeNumber(NBTType type, String name, Frame list) throws IOException, NBTException {
+      boolean whole = isWhole();
+      long value = 0;
+      if (whole && type != NBTType.FLOAT && type != NBTType.DOUBLE) {
+        value = parseLong();
+      } else if (!whole && type != NBTType.FLOAT && type != NBTType.DOUBLE) {
+        throw error(String.format("Invalid %s %s", type, token));
+      }
+      header(type, name, list);
+      DataOutput out = out();
+      switch (type) {
+      case BYTE:
+        checkRange(value, Byte.MIN_VALUE, Byte.MAX_VALUE, type);
+        out.writeByte((int)value);
+        break;
+      case SHORT:
+        checkRange(value, Short.MIN_VALUE, Short.MAX_VALUE, type);
+        out.writeShort((int)value);
+        break;
+      case INT:
+        checkRange(value, Integer.MIN_VALUE, Integer.MAX_VALUE, type);
+        out.writeInt((int)value);
+        break;
+      case LONG:
+        out.writeLong(value);
+        break;
+      case FLOAT:
+        out.writeFloat(Float.parseFloat(token.toString()));
+        break;
+      default:
+        out.writeDouble(Double.parseDouble(token.toString()));
+        break;
+      }
+    }
+
+    private void checkRange(long value, long min, long max, NBTType type) throws NBTException {
+      if (value < min || value > max) {
+        throw error(String.format("%s out of range: %s", type, token));
+      }
+    }
+
+    /**
+     * Reads a JSON number into {@link #token}.
+     */
+    private void readToken() throws IOException, NBTException {
+      token.setLength(0);
+      int c = peek();
+      while (c == '-' || c == '+' || c == '.' || c >= '0' && c <= '9' || c == 'e' || c == 'E') {
+        token.append((char)c);
+        pos++;
+        c = pos < limit ? buffer[pos] : fill() ? buffer[pos] : -1;
+      }
+      if (token.length() == 0 || !isNumber()) {
+        throw error(c == -1 && token.length() == 0 ? "Expected a value" : "Invalid number " + token);
+      }
+    }
+
+    private boolean isNumber() {
+      int i = token.charAt(0) == '-' ? 1 : 0;
+      int digits = 0;
+      while (i < token.length() && Character.isDigit(token.charAt(i))) {
+        i++;
+        digits++;
+      }
+      if (digits == 0) {
+        return false;
+      }
+      if (i < token.length() && token.charAt(i) == '.') {
+        i++;
+        digits = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+          i++;
+          digits++;
+        }
+        if (digits == 0) {
+          return false;
+        }
+      }
+      if (i < token.length() && (token.charAt(i) == 'e' || token.charAt(i) == 'E')) {
+        i++;
+        if (i < token.length() && (token.charAt(i) == '-' || token.charAt(i) == '+')) {
+          i++;
+        }
+        digits = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+          i++;
+          digits++;
+        }
+        if (digits == 0) {
+          return false;
+        }
+      }
+      return i == token.length();
+    }
+
+    private boolean isWhole() {
+      for (int i = 0; i < token.length(); i++) {
+        char c = token.charAt(i);
+        if (c == '.' || c == 'e' || c == 'E') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private long parseLong() throws NBTException {
+      int negative = token.charAt(0) == '-' ? 1 : 0;
+      if (token.length() - negative <= TextFormat.SAFE_DIGITS) {
+        long value = TextFormat.parseDigits(token, negative, token.length());
+        return negative == 1 ? -value : value;
+      }
+      try {
+        return Long.parseLong(token.toString());
+      } catch (NumberFormatException e) {
+        throw error("Number out of range: " + token);
+      }
+    }
+
+    private void readLiteral(String literal) throws IOException, NBTException {
+      for (int i = 0; i < literal.length(); i++) {
+        if (next() != literal.charAt(i)) {
+          throw error("Expected " + literal);
+        }
+      }
+    }
+
+    private String readString() throws IOException, NBTException {
+      pos++;
+      token.setLength(0);
+      while (true) {
+        int start = pos;
+        // copy runs of plain characters at once
+        while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\') {
+          pos++;
+        }
+        token.append(buffer, start, pos - start);
+        if (pos == limit) {
+          if (!fill()) {
+            throw error("Unterminated string");
+          }
+          continue;
+        }
+        char c = buffer[pos++];
+        if (c == '"') {
+          return token.toString();
+        }
+        int escaped = read();
+        switch (escaped) {
+        case '"':
+        case '\\':
+        case '/':
+          token.append((char)escaped);
+          break;
+        case 'n':
+          token.append('\n');
+          break;
+        case 't':
+          token.append('\t');
+          break;
+        case 'r':
+          token.append('\r');
+          break;
+        case 'b':
+          token.append('\b');
+          break;
+        case 'f':
+          token.append('\f');
+          break;
+        case 'u':
+          int code = 0;
+          for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+              throw error("Invalid unicode escape");
+            }
+            code = code << 4 | digit;
+          }
+          token.append((char)code);
+          break;
+        default:
+          throw error("Invalid escape sequence");
+        }
+      }
+    }
+
+    private void expect(char expected) throws IOException, NBTException {
+      if (next() != expected) {
+        throw error(String.format("Expected '%c'", expected));
+      }
+    }
+
+    /**
+     * @return The next character after whitespace, without consuming it, -1 at the end of the text
+     */
+    private int peek() throws IOException {
+      while (true) {
+        if (pos == limit && !fill()) {
+          return -1;
+        }
+        char c = buffer[pos];
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          return c;
+        }
+        pos++;
+      }
+    }
+
+    /**
+     * @return The next character after whitespace, -1 at the end of the text
+     */
+    private int next() throws IOException {
+      int c = peek();
+      if (c != -1) {
+        pos++;
+      }
+      return c;
+    }
+
+    /**
+     * @return The next character, whitespace included, -1 at the end of the text
+     */
+    private int read() throws IOException {
+      if (pos == limit && !fill()) {
+        return -1;
+      }
+      return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+      offset += limit;
+      pos = 0;
+      limit = 0;
+      int read = source.read(buffer);
+      if (read <= 0) {
+        return false;
+      }
+      limit = read;
+      return true;
+    }
+
+    private NBTException error(String message) {
+      return new NBTException(String.format("%s at character %d", message, offset + pos));
+    }
+  }
+}
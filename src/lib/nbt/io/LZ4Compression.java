@@ -0,0 +1,509 @@
+package lib.nbt.io;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The LZ4 {@link lib.nbt.io.Compression}, implemented in pure Java.
+ *
+ * The data is framed like the <code>LZ4BlockOutputStream</code> of the
+ * <code>lz4-java</code> library, which Minecraft uses for region file
+ * chunks. Each block has a 21-byte header: the magic <code>"LZ4Block"</code>,
+ * a token holding the method and block size, the compressed and original
+ * lengths, and an XXH32 checksum of the original bytes, all little-endian.
+ * An empty block ends the stream.
+ *
+ * @author Kyrillos Tawadros
+ */
+class LZ4Compression implements Compression {
+  private static final byte[] MAGIC = { 'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k' };
+  private static final int HEADER_LENGTH = MAGIC.length + 1 + 3 * Integer.BYTES;
+  private static final int METHOD_RAW = 0x10;
+  private static final int METHOD_LZ4 = 0x20;
+  private static final int LEVEL_BASE = 10;
+  private static final int BLOCK_SIZE = 1 << 16;
+  private static final int MAX_BLOCK_SIZE = 1 << (LEVEL_BASE + 0x0F);
+  private static final int CHECKSUM_SEED = 0x9747B28C;
+
+  /**
+   * The shortest match, and the number of bytes hashed to find one.
+   */
+  private static final int MIN_MATCH = 4;
+
+  /**
+   * The last match must start at least this many bytes before the end of a block.
+   */
+  private static final int MATCH_FIND_LIMIT = 12;
+
+  /**
+   * The last bytes of a block are always literals.
+   */
+  private static final int LAST_LITERALS = 5;
+
+  private static final int MAX_OFFSET = 0xFFFF;
+  private static final int HASH_LOG = 12;
+
+  private static final int PRIME1 = 0x9E3779B1;
+  private static final int PRIME2 = 0x85EBCA77;
+  private static final int PRIME3 = 0xC2B2AE3D;
+  private static final int PRIME4 = 0x27D4EB2F;
+  private static final int PRIME5 = 0x165667B1;
+
+  @Override
+  public String getName() {
+    return "lz4";
+  }
+
+  @Override
+  public boolean matches(byte[] header, int length) {
+    if (length < MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (header[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public InputStream decompress(InputStream source) {
+    return new BlockInputStream(source);
+  }
+
+  @Override
+  public OutputStream compress(OutputStream dest) {
+    return new BlockOutputStream(dest, BLOCK_SIZE);
+  }
+
+  @Override
+  public String toString() {
+    return getName();
+  }
+
+  /**
+   * @return The largest size <code>length</code> bytes can compress to.
+   */
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  private static int readIntLE(byte[] b, int i) {
+    return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+  }
+
+  private static void writeIntLE(byte[] b, int i, int v) {
+    b[i] = (byte)v;
+    b[i + 1] = (byte)(v >>> 8);
+    b[i + 2] = (byte)(v >>> 16);
+    b[i + 3] = (byte)(v >>> 24);
+  }
+
+  /**
+   * @return The 32-bit xxHash of the bytes.
+   */
+  static int xxHash32(byte[] b, int offset, int length, int seed) {
+    int end = offset + length;
+    int i = offset;
+    int h;
+    if (length >= 16) {
+      int v1 = seed + PRIME1 + PRIME2;
+      int v2 = seed + PRIME2;
+      int v3 = seed;
+      int v4 = seed - PRIME1;
+      for (int limit = end - 16; i <= limit; i += 16) {
+        v1 = Integer.rotateLeft(v1 + readIntLE(b, i) * PRIME2, 13) * PRIME1;
+        v2 = Integer.rotateLeft(v2 + readIntLE(b, i + 4) * PRIME2, 13) * PRIME1;
+        v3 = Integer.rotateLeft(v3 + readIntLE(b, i + 8) * PRIME2, 13) * PRIME1;
+        v4 = Integer.rotateLeft(v4 + readIntLE(b, i + 12) * PRIME2, 13) * PRIME1;
+      }
+      h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+    } else {
+      h = seed + PRIME5;
+    }
+    h += length;
+    for (; i <= end - 4; i += 4) {
+      h = Integer.rotateLeft(h + readIntLE(b, i) * PRIME3, 17) * PRIME4;
+    }
+    for (; i < end; i++) {
+      h = Integer.rotateLeft(h + (b[i] & 0xFF) * PRIME5, 11) * PRIME1;
+    }
+    h ^= h >>> 15;
+    h *= PRIME2;
+    h ^= h >>> 13;
+    h *= PRIME3;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /**
+   * The checksum stored in block headers: the low 28 bits of the xxHash,
+   * as computed by <code>lz4-java</code>'s checksum adapter.
+   */
+  private static int checksum(byte[] b, int offset, int length) {
+    return xxHash32(b, offset, length, CHECKSUM_SEED) & 0x0FFFFFFF;
+  }
+
+  /**
+   * @param src The bytes to compress.
+   * @param length The number of bytes to compress, starting at index <code>0</code>.
+   * @param dest The array to compress into, at least
+   *   {@link #maxCompressedLength(int)} long.
+   * @param table A hash table of {@code 1 << HASH_LOG} entries, overwritten.
+   * @return The compressed length.
+   *
+   * Compresses a single LZ4 block greedily, like the fast LZ4 compressor.
+   */
+  static int compressBlock(byte[] src, int length, byte[] dest, int[] table) {
+    Arrays.fill(table, -1);
+    int anchor = 0;
+    int d = 0;
+    int i = 0;
+    int match_limit = length - MATCH_FIND_LIMIT;
+    int extend_limit = length - LAST_LITERALS;
+    while (i <= match_limit) {
+      int sequence = readIntLE(src, i);
+      int h = (sequence * -1640531535) >>> (32 - HASH_LOG);
+      int ref = table[h];
+      table[h] = i;
+      if (ref < 0 || i - ref > MAX_OFFSET || readIntLE(src, ref) != sequence) {
+        i++;
+        continue;
+      }
+
+      int match_length = MIN_MATCH;
+      while (i + match_length < extend_limit && src[ref + match_length] == src[i + match_length]) {
+        match_length++;
+      }
+
+      d = writeSequence(src, anchor, i - anchor, dest, d, i - ref, match_length);
+      i += match_length;
+      anchor = i;
+    }
+    return writeLiterals(src, anchor, length - anchor, dest, d);
+  }
+
+  private static int writeLength(byte[] dest, int d, int length) {
+    while (length >= 255) {
+      dest[d++] = (byte)255;
+      length -= 255;
+    }
+    dest[d++] = (byte)length;
+    return d;
+  }
+
+  private static int writeSequence(byte[] src, int literal_start, int literals, byte[] dest, int d, int offset,
+      int match_length) {
+    int token = d++;
+    int extra_match = match_length - MIN_MATCH;
+    dest[token] = (byte)((Math.min(literals, 15) << 4) | Math.min(extra_match, 15));
+    if (literals >= 15) {
+      d = writeLength(dest, d, literals - 15);
+    }
+    System.arraycopy(src, literal_start, dest, d, literals);
+    d += literals;
+    dest[d++] = (byte)offset;
+    dest[d++] = (byte)(offset >>> 8);
+    if (extra_match >= 15) {
+      d = writeLength(dest, d, extra_match - 15);
+    }
+    return d;
+  }
+
+  private static int writeLiterals(byte[] src, int literal_start, int literals, byte[] dest, int d) {
+    dest[d++] = (byte)(Math.min(literals, 15) << 4);
+    if (literals >= 15) {
+      d = writeLength(dest, d, literals - 15);
+    }
+    System.arraycopy(src, literal_start, dest, d, literals);
+    return d + literals;
+  }
+
+  /**
+   * @param src The array holding the compressed block.
+   * @param offset The index of the block.
+   * @param length The compressed length.
+   * @param dest The array to decompress into.
+   * @param original The original length, which the block must decompress to exactly.
+   * @throws IOException If the block is malformed.
+   */
+  static void decompressBlock(byte[] src, int offset, int length, byte[] dest, int original) throws IOException {
+    int s = offset;
+    int end = offset + length;
+    int d = 0;
+    try {
+      while (true) {
+        int token = src[s++] & 0xFF;
+        int literals = token >>> 4;
+        if (literals == 15) {
+          int b;
+          do {
+            b = src[s++] & 0xFF;
+            literals += b;
+          } while (b == 255);
+        }
+        if (literals > end - s || literals > original - d) {
+          throw new IOException("Malformed LZ4 block: literals overrun");
+        }
+        System.arraycopy(src, s, dest, d, literals);
+        s += literals;
+        d += literals;
+        if (s == end) {
+          break;
+        }
+
+        int match_offset = (src[s] & 0xFF) | (src[s + 1] & 0xFF) << 8;
+        s += 2;
+        if (match_offset == 0 || match_offset > d) {
+          throw new IOException(String.format("Malformed LZ4 block: invalid offset %d", match_offset));
+        }
+        int match_length = token & 0x0F;
+        if (match_length == 15) {
+          int b;
+          do {
+            b = src[s++] & 0xFF;
+            match_length += b;
+          } while (b == 255);
+        }
+        match_length += MIN_MATCH;
+        if (match_length > original - d) {
+          throw new IOException("Malformed LZ4 block: match overrun");
+        }
+        int from = d - match_offset;
+        if (match_offset >= match_length) {
+          System.arraycopy(dest, from, dest, d, match_length);
+          d += match_length;
+        } else {
+          // overlapping copy repeats the last match_offset bytes
+          for (int k = 0; k < match_length; k++) {
+            dest[d++] = dest[from + k];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Malformed LZ4 block: unexpected end", e);
+    }
+    if (d != original) {
+      throw new IOException(String.format("Malformed LZ4 block: %d bytes decoded, %d expected", d, original));
+    }
+  }
+
+  /**
+   * Reads a stream of LZ4 blocks.
+   */
+  private static final class BlockInputStream extends FilterInputStream {
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private byte[] compressed = new byte[0];
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int limit;
+    private boolean finished;
+
+    BlockInputStream(InputStream source) {
+      super(source);
+    }
+
+    /**
+     * @return <code>false</code> at the end of the stream
+     */
+    private boolean refill() throws IOException {
+      while (position == limit) {
+        if (finished) {
+          return false;
+        }
+        readBlock();
+      }
+      return true;
+    }
+
+    private void readBlock() throws IOException {
+      readFully(header, HEADER_LENGTH);
+      for (int i = 0; i < MAGIC.length; i++) {
+        if (header[i] != MAGIC[i]) {
+          throw new IOException("Invalid LZ4 block magic");
+        }
+      }
+      int token = header[MAGIC.length] & 0xFF;
+      int method = token & 0xF0;
+      int block_size = 1 << (LEVEL_BASE + (token & 0x0F));
+      int compressed_length = readIntLE(header, MAGIC.length + 1);
+      int original_length = readIntLE(header, MAGIC.length + 5);
+      int check = readIntLE(header, MAGIC.length + 9);
+      if ((method != METHOD_RAW && method != METHOD_LZ4) || original_length < 0 || original_length > block_size
+          || compressed_length < 0 || compressed_length > maxCompressedLength(block_size)
+          || (method == METHOD_RAW && compressed_length != original_length)
+          || (original_length == 0) != (compressed_length == 0)) {
+        throw new IOException("Invalid LZ4 block header");
+      }
+      if (original_length == 0) {
+        if (check != 0) {
+          throw new IOException("Invalid LZ4 end block");
+        }
+        finished = true;
+        return;
+      }
+
+      if (buffer.length < original_length) {
+        buffer = new byte[Math.max(original_length, Math.min(block_size, MAX_BLOCK_SIZE))];
+      }
+      if (method == METHOD_RAW) {
+        readFully(buffer, original_length);
+      } else {
+        if (compressed.length < compressed_length) {
+          compressed = new byte[Math.max(compressed_length, maxCompressedLength(block_size))];
+        }
+        readFully(compressed, compressed_length);
+        decompressBlock(compressed, 0, compressed_length, buffer, original_length);
+      }
+      if (checksum(buffer, 0, original_length) != check) {
+        throw new IOException("LZ4 block checksum mismatch");
+      }
+      position = 0;
+      limit = original_length;
+    }
+
+    private void readFully(byte[] dest, int length) throws IOException {
+      int read = 0;
+      while (read < length) {
+        int count = in.read(dest, read, length - read);
+        if (count < 0) {
+          throw new EOFException("Unexpected end of LZ4 stream");
+        }
+        read += count;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      return refill() ? buffer[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!refill()) {
+        return -1;
+      }
+      int count = Math.min(len, limit - position);
+      System.arraycopy(buffer, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      if (n <= 0 || !refill()) {
+        return 0;
+      }
+      int count = (int)Math.min(n, limit - position);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return limit - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+  /**
+   * Writes a stream of LZ4 blocks.
+   */
+  private static final class BlockOutputStream extends FilterOutputStream {
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private final byte[] buffer;
+    private final byte[] compressed;
+    private final int[] table = new int[1 << HASH_LOG];
+    private final int level;
+    private int count;
+    private boolean closed;
+
+    BlockOutputStream(OutputStream dest, int block_size) {
+      super(dest);
+      this.buffer = new byte[block_size];
+      this.compressed = new byte[maxCompressedLength(block_size)];
+      System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+      this.level = 32 - Integer.numberOfLeadingZeros(block_size - 1) - LEVEL_BASE;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        writeBlock();
+      }
+      buffer[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (count == buffer.length) {
+          writeBlock();
+        }
+        int n = Math.min(len, buffer.length - count);
+        System.arraycopy(b, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    private void writeBlock() throws IOException {
+      if (count == 0) {
+        return;
+      }
+      int length = compressBlock(buffer, count, compressed, table);
+      int method = METHOD_LZ4;
+      if (length >= count) {
+        method = METHOD_RAW;
+        length = count;
+      }
+      header[MAGIC.length] = (byte)(method | level);
+      writeIntLE(header, MAGIC.length + 1, length);
+      writeIntLE(header, MAGIC.length + 5, count);
+      writeIntLE(header, MAGIC.length + 9, checksum(buffer, 0, count));
+      out.write(header);
+      out.write(method == METHOD_RAW ? buffer : compressed, 0, length);
+      count = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writeBlock();
+      out.flush();
+    }
+
+    /**
+     * Writes the remaining data and the end block, and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        writeBlock();
+        byte[] end = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, end, 0, MAGIC.length);
+        end[MAGIC.length] = (byte)(METHOD_RAW | level);
+        out.write(end);
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package lib.nbt.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import lib.nbt.EncodedPayload;
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+
+/**
+ * A compound that keeps a slice of the encoded NBT data it was read from
+ * and decodes its entries only when they are first accessed.
+ *
+ * The names and offsets of the entries are indexed on first use. A value
+ * is decoded the first time it is retrieved, and compounds nested in it
+ * are themselves lazy. Changes are stored like in any other map. An
+ * untouched compound is written back by copying its original bytes,
+ * and untouched entries of a changed compound are copied the same way.
+ *
+ * Instances are created by {@link lib.nbt.io.NBTReader} in lazy mode.
+ *
+ * @see lib.nbt.io.NBTReader#NBTReader(java.io.InputStream, boolean, boolean)
+ * @author Kyrillos Tawadros
+ */
+public class LazyCompound extends AbstractMap<String, Object> implements EncodedPayload {
+
+  /**
+   * The location of an entry that has not been decoded yet.
+   */
+  private static final class Slice {
+    final NBTType type;
+    final int entry;
+    final int payload;
+    final int end;
+
+    Slice(NBTType type, int entry, int payload, int end) {
+      this.type = type;
+      this.entry = entry;
+      this.payload = payload;
+      this.end = end;
+    }
+  }
+
+  private final ByteBuffer data;
+  private final int start;
+  private final int end;
+  private final StringInterner interner;
+
+  /**
+   * The entries in their encoded order, <code>null</code> until indexed.
+   * Entries that have not been decoded hold a {@link Slice}.
+   */
+  private Map<String, Object> entries;
+
+  private boolean modified;
+
+  /**
+   * @param data The buffer holding the encoded data.
+   * @param start The index of the compound's first entry.
+   * @param end The index after the compound's end tag.
+   * @param interner The table to share decoded strings through, <code>null</code> for none.
+   */
+  LazyCompound(ByteBuffer data, int start, int end, StringInterner interner) {
+    this.data = data;
+    this.start = start;
+    this.end = end;
+    this.interner = interner;
+  }
+
+  private Map<String, Object> entries() {
+    if (entries == null) {
+      Map<String, Object> index = new LinkedHashMap<>();
+      BufferInput input = new BufferInput(data, start, end);
+      NBTStreamReader reader = new NBTStreamReader(input, true);
+      reader.setInterner(interner);
+      try {
+        while (true) {
+          int entry = input.position();
+          byte tag_id = input.readByte();
+          if (tag_id == NBTType.END.id) {
+            break;
+          }
+          NBTType type = NBTType.getById(tag_id);
+          String name = input.readUTF(interner);
+          int payload = input.position();
+          reader.skipPayload(type);
+          index.put(name, new Slice(type, entry, payload, input.position()));
+        }
+      } catch (IOException | NBTException e) {
+        throw new IllegalStateException("Could not index lazy compound", e);
+      }
+      entries = index;
+    }
+    return entries;
+  }
+
+  /**
+   * @return <code>value</code>, decoded if it is a {@link Slice}
+   */
+  private Object resolve(String key, Object value) {
+    if (value instanceof Slice) {
+      Slice slice = (Slice)value;
+      NBTStreamReader reader = new NBTStreamReader(new BufferInput(data, slice.payload, slice.end), true);
+      reader.setInterner(interner);
+      try {
+        return reader.readPayload(slice.type);
+      } catch (IOException | NBTException e) {
+        throw new IllegalStateException(String.format("Could not decode lazy compound entry '%s'", key), e);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public int size() {
+    return entries().size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return entries().containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    Object value = entries().get(key);
+    if (value instanceof Slice) {
+      value = resolve((String)key, value);
+      // replacing the value of an existing key is not a structural change
+      entries.put((String)key, value);
+    }
+    return value;
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    modified = true;
+    return resolve(key, entries().put(key, value));
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (!entries().containsKey(key)) {
+      return null;
+    }
+    modified = true;
+    return resolve((String)key, entries.remove(key));
+  }
+
+  @Override
+  public void clear() {
+    modified = true;
+    entries().clear();
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public int size() {
+        return entries().size();
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        final Iterator<Map.Entry<String, Object>> internal = entries().entrySet().iterator();
+        return new Iterator<Map.Entry<String, Object>>() {
+          @Override
+          public boolean hasNext() {
+            return internal.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, Object> next() {
+            final Map.Entry<String, Object> entry = internal.next();
+            return new Map.Entry<String, Object>() {
+              @Override
+              public String getKey() {
+                return entry.getKey();
+              }
+
+              @Override
+              public Object getValue() {
+                Object value = entry.getValue();
+                if (value instanceof Slice) {
+                  value = resolve(entry.getKey(), value);
+                  entry.setValue(value);
+                }
+                return value;
+              }
+
+              @Override
+              public Object setValue(Object value) {
+                Object old = getValue();
+                modified = true;
+                entry.setValue(value);
+                return old;
+              }
+
+              @Override
+              public boolean equals(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                  return false;
+                }
+                Map.Entry<?, ?> other = (Map.Entry<?, ?>)o;
+                return getKey().equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+              }
+
+              @Override
+              public int hashCode() {
+                return getKey().hashCode() ^ Objects.hashCode(getValue());
+              }
+
+              @Override
+              public String toString() {
+                return getKey() + "=" + getValue();
+              }
+            };
+          }
+
+          @Override
+          public void remove() {
+            modified = true;
+            internal.remove();
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * @return <code>true</code> if this compound still matches the bytes it was
+   *   read from. Decoded lists and arrays may have been changed in place,
+   *   so they count as changes.
+   */
+  public boolean isPristine() {
+    if (modified) {
+      return false;
+    }
+    if (entries == null) {
+      return true;
+    }
+    for (Object value : entries.values()) {
+      if (value instanceof Slice || value instanceof Number || value instanceof String) {
+        continue;
+      } else if (value instanceof LazyCompound && ((LazyCompound)value).isPristine()) {
+        continue;
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param dest The stream to write to.
+   * @throws IOException If <code>dest</code> throws an
+   *   {@link java.io.IOException} on the write operation
+   *
+   * Writes this compound as a compound payload. A pristine compound is
+   * copied verbatim from its source bytes, otherwise only the entries
+   * that were never decoded are.
+   *
+   * @see #isPristine()
+   */
+  @Override
+  public void writePayload(DataOutput dest) throws IOException {
+    if (isPristine()) {
+      copy(start, end, dest);
+      return;
+    }
+    for (Map.Entry<String, Object> entry : entries.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Slice) {
+        Slice slice = (Slice)value;
+        copy(slice.entry, slice.end, dest);
+      } else {
+        NBTType type = NBTType.typeOf(value);
+        if (type == null) {
+          throw new IllegalArgumentException("Invalid object " + String.valueOf(value));
+        }
+        type.writeTo(entry.getKey(), value, dest);
+      }
+    }
+    dest.writeByte(NBTType.END.id);
+  }
+
+  /**
+   * @return The exact number of bytes {@link #writePayload(DataOutput)} writes,
+   *   computed without decoding any entry that has not been decoded yet.
+   */
+  @Override
+  public long sizeOf() {
+    if (isPristine()) {
+      return end - start;
+    }
+    long size = Byte.BYTES;
+    for (Map.Entry<String, Object> entry : entries.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Slice) {
+        Slice slice = (Slice)value;
+        size += slice.end - slice.entry;
+      } else {
+        NBTType type = NBTType.typeOf(value);
+        if (type == null) {
+          throw new IllegalArgumentException("Invalid object " + String.valueOf(value));
+        }
+        size += type.sizeOf(entry.getKey(), value);
+      }
+    }
+    return size;
+  }
+
+  private void copy(int from, int to, DataOutput dest) throws IOException {
+    if (data.hasArray()) {
+      dest.write(data.array(), data.arrayOffset() + from, to - from);
+    } else {
+      byte[] chunk = new byte[Math.min(8192, to - from)];
+      ByteBuffer view = data.duplicate();
+      view.position(from);
+      while (from < to) {
+        int count = Math.min(chunk.length, to - from);
+        view.get(chunk, 0, count);
+        dest.write(chunk, 0, count);
+        from += count;
+      }
+    }
+  }
+}
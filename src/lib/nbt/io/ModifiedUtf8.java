@@ -0,0 +1,147 @@
+package lib.nbt.io;
+
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+
+import lib.nbt.Util;
+
+/**
+ * Encoding and decoding of Java's modified UTF-8, the string
+ * format used by NBT and by {@link java.io.DataInput#readUTF()}.
+ *
+ * Decoding takes a fast path for pure ASCII input, which covers
+ * almost every compound key. Encoding goes through a small cache
+ * of recently encoded short strings, so hot keys such as
+ * <code>"id"</code> or <code>"Pos"</code> are encoded once.
+ *
+ * @author Kyrillos Tawadros
+ */
+final class ModifiedUtf8 {
+
+  /**
+   * The longest string, in chars, kept by the encoder cache.
+   */
+  static final int MAX_CACHED_LENGTH = 32;
+
+  private static final class Encoded {
+    final String value;
+    final byte[] bytes;
+
+    Encoded(String value, byte[] bytes) {
+      this.value = value;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * A direct-mapped cache of encoded strings. Entries are immutable,
+   * so racing threads can only cause misses.
+   */
+  private static final Encoded[] ENCODED = new Encoded[1024];
+
+  private ModifiedUtf8() {}
+
+  /**
+   * @param bytes The array holding the encoded string.
+   * @param offset The index of the first encoded byte.
+   * @param length The number of encoded bytes, not counting a length prefix.
+   * @return The decoded string.
+   * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+   */
+  static String decode(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+    int end = offset + length;
+    int i = offset;
+    while (i < end && bytes[i] >= 0) {
+      i++;
+    }
+    if (i == end) {
+      // pure ASCII, which Latin-1 decodes by copying the bytes
+      return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    char[] chars = new char[length];
+    int count = 0;
+    for (int j = offset; j < i; j++) {
+      chars[count++] = (char)bytes[j];
+    }
+    while (i < end) {
+      int c = bytes[i] & 0xFF;
+      if (c < 0x80) {
+        chars[count++] = (char)c;
+        i += 1;
+      } else if ((c & 0xE0) == 0xC0) {
+        if (i + 2 > end) {
+          throw new UTFDataFormatException("Malformed input: partial character at end");
+        }
+        int c2 = bytes[i + 1];
+        if ((c2 & 0xC0) != 0x80) {
+          throw new UTFDataFormatException(String.format("Malformed input around byte %d", i - offset));
+        }
+        chars[count++] = (char)(((c & 0x1F) << 6) | (c2 & 0x3F));
+        i += 2;
+      } else if ((c & 0xF0) == 0xE0) {
+        if (i + 3 > end) {
+          throw new UTFDataFormatException("Malformed input: partial character at end");
+        }
+        int c2 = bytes[i + 1];
+        int c3 = bytes[i + 2];
+        if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80) {
+          throw new UTFDataFormatException(String.format("Malformed input around byte %d", i - offset));
+        }
+        chars[count++] = (char)(((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+        i += 3;
+      } else {
+        throw new UTFDataFormatException(String.format("Malformed input around byte %d", i - offset));
+      }
+    }
+    return new String(chars, 0, count);
+  }
+
+  /**
+   * @param str The string to encode.
+   * @return The encoding of <code>str</code> with its two-byte length prefix,
+   *   shared through the encoder cache, or <code>null</code> if
+   *   <code>str</code> is too long to be cached. The array must not be modified.
+   */
+  static byte[] cached(String str) {
+    if (str.length() > MAX_CACHED_LENGTH) {
+      return null;
+    }
+    int slot = str.hashCode() & (ENCODED.length - 1);
+    Encoded entry = ENCODED[slot];
+    if (entry != null && (entry.value == str || entry.value.equals(str))) {
+      return entry.bytes;
+    }
+    byte[] bytes = new byte[Short.BYTES + Util.modifiedUtf8Length(str)];
+    bytes[0] = (byte)((bytes.length - Short.BYTES) >>> 8);
+    bytes[1] = (byte)(bytes.length - Short.BYTES);
+    encode(str, bytes, Short.BYTES);
+    ENCODED[slot] = new Encoded(str, bytes);
+    return bytes;
+  }
+
+  /**
+   * @param str The string to encode.
+   * @param dest The array to encode into, with room for
+   *   {@link lib.nbt.Util#modifiedUtf8Length(String)} bytes.
+   * @param offset The index to start encoding at.
+   * @return The index after the last encoded byte.
+   */
+  static int encode(String str, byte[] dest, int offset) {
+    int length = str.length();
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c != 0 && c < 0x80) {
+        dest[offset++] = (byte)c;
+      } else if (c < 0x800) {
+        dest[offset++] = (byte)(0xC0 | (c >> 6));
+        dest[offset++] = (byte)(0x80 | (c & 0x3F));
+      } else {
+        dest[offset++] = (byte)(0xE0 | (c >> 12));
+        dest[offset++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+        dest[offset++] = (byte)(0x80 | (c & 0x3F));
+      }
+    }
+    return offset;
+  }
+}
@@ -0,0 +1,243 @@
+package lib.nbt.io;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+
+/**
+ * A reusable reader and writer for batches of NBT documents.
+ *
+ * Every {@link lib.nbt.io.NBTReader} and {@link lib.nbt.io.NBTWriter} creates a
+ * fresh GZIP stream, whose native zlib state is only freed when it is closed
+ * or collected, plus its own I/O buffers. A codec instead keeps one
+ * {@link java.util.zip.Inflater} per format, one {@link java.util.zip.Deflater}
+ * and all of its buffers, and resets them between documents, so reading or
+ * writing one more file allocates little beyond the tree itself.
+ *
+ * The compression of documents read is detected from their magic bytes.
+ * GZIP, zlib and uncompressed documents go through the reused state; other
+ * formats are decoded through {@link lib.nbt.io.Compression#decompress(InputStream)}.
+ *
+ * A codec is not thread-safe: use one per thread, and close it when done
+ * to release the native state right away.
+ *
+ * @author Kyrillos Tawadros
+ */
+public class NBTCodec implements Closeable {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Compression compression;
+  private final byte[] header = new byte[Compression.MAGIC_LENGTH];
+  private final InflatingInput inflating = new InflatingInput(BUFFER_SIZE);
+  private final BufferedStreamInput input = new BufferedStreamInput(BUFFER_SIZE);
+  private final DeflatingOutput deflating = new DeflatingOutput(BUFFER_SIZE);
+  private final StreamOutput output = new StreamOutput(null);
+  private Inflater gzipInflater;
+  private Inflater zlibInflater;
+  private Deflater deflater;
+  private boolean compact;
+  private StringInterner interner;
+  private boolean closed;
+
+  /**
+   * @param compression The compression applied to the documents written.
+   */
+  public NBTCodec(Compression compression) {
+    if (compression == null) {
+      throw new IllegalArgumentException("Compression must not be null!");
+    }
+    this.compression = compression;
+  }
+
+  /**
+   * Initializes a codec writing GZIPped documents.
+   */
+  public NBTCodec() {
+    this(Compression.GZIP);
+  }
+
+  /**
+   * @param compact <code>true</code> to read compounds as {@link lib.nbt.CompactCompound}s
+   */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  /**
+   * @param interner The table to share decoded names and short strings
+   *   through, <code>null</code> to decode each one separately
+   */
+  public void setInterner(StringInterner interner) {
+    this.interner = interner;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Codec is closed");
+    }
+  }
+
+  /**
+   * @param source The stream holding the document. It is not closed.
+   * @return The root tag of the document, <code>null</code> if <code>source</code> is empty.
+   * @throws IOException If reading <code>source</code> throws an {@link java.io.IOException},
+   *   or its GZIP or zlib checksum does not match
+   * @throws NBTException If the NBT data is invalid.
+   *
+   * Compressed documents are read to the end of their data, so that
+   * their checksums are checked.
+   */
+  public Tag read(InputStream source) throws IOException, NBTException {
+    ensureOpen();
+    inflating.reset(source);
+    try {
+      Compression detected = Compression.detect(header, inflating.peek(header, header.length));
+      InputStream data = inflating;
+      if (detected instanceof DeflateCompression) {
+        boolean gzip = ((DeflateCompression)detected).isGzip();
+        inflating.inflate(gzip ? gzipInflater() : zlibInflater(), gzip);
+      } else if (detected != Compression.NONE) {
+        data = detected.decompress(inflating);
+      }
+      input.reset(data);
+      NBTStreamReader reader = new NBTStreamReader(input, false);
+      reader.setCompact(compact);
+      reader.setInterner(interner);
+      Tag root = NBTReader.readTag(reader);
+      // the reader stops at the end of the root tag, before the trailer is reached
+      inflating.drain();
+      return root;
+    } finally {
+      input.reset(null);
+      inflating.reset(null);
+    }
+  }
+
+  /**
+   * @param file The file holding the document.
+   * @return The root tag of the document, <code>null</code> if the file is empty.
+   * @throws IOException If reading the file throws an {@link java.io.IOException}
+   * @throws NBTException If the NBT data is invalid.
+   */
+  public Tag read(Path file) throws IOException, NBTException {
+    try (InputStream source = Files.newInputStream(file)) {
+      return read(source);
+    }
+  }
+
+  /**
+   * @param root The root compound Tag to write.
+   * @param dest The stream to write to. It is flushed, but not closed.
+   * @throws IOException If writing to <code>dest</code> throws an {@link java.io.IOException}
+   */
+  public void write(Tag root, OutputStream dest) throws IOException {
+    ensureOpen();
+    if (!root.getType().equals(NBTType.COMPOUND)) {
+      throw new IllegalArgumentException("Root must be a compound tag!");
+    }
+
+    OutputStream target = deflating;
+    if (compression instanceof DeflateCompression) {
+      deflating.reset(dest, deflater(), ((DeflateCompression)compression).isGzip());
+    } else if (compression == Compression.NONE) {
+      deflating.reset(dest, null, false);
+    } else {
+      target = compression.compress(new Unclosable(dest));
+    }
+    output.reset(target);
+    try {
+      NBTType.COMPOUND.writeTo(root.getName(), root.getValue(), output);
+      output.flushBuffer();
+      if (target == deflating) {
+        deflating.finish();
+      } else {
+        target.close();
+      }
+      dest.flush();
+    } finally {
+      output.reset(null);
+      deflating.reset(null, null, false);
+    }
+  }
+
+  /**
+   * @param root The root compound Tag to write.
+   * @param file The file to write to, replaced if it exists.
+   * @throws IOException If writing the file throws an {@link java.io.IOException}
+   */
+  public void write(Tag root, Path file) throws IOException {
+    try (OutputStream dest = Files.newOutputStream(file)) {
+      write(root, dest);
+    }
+  }
+
+  private Inflater gzipInflater() {
+    if (gzipInflater == null) {
+      gzipInflater = new Inflater(true);
+    }
+    return gzipInflater;
+  }
+
+  private Inflater zlibInflater() {
+    if (zlibInflater == null) {
+      zlibInflater = new Inflater();
+    }
+    return zlibInflater;
+  }
+
+  private Deflater deflater() {
+    if (deflater == null) {
+      deflater = ((DeflateCompression)compression).newDeflater();
+    }
+    return deflater;
+  }
+
+  /**
+   * Releases the native state of the inflaters and deflater.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (gzipInflater != null) {
+      gzipInflater.end();
+    }
+    if (zlibInflater != null) {
+      zlibInflater.end();
+    }
+    if (deflater != null) {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Keeps compressors of other formats from closing the caller's stream.
+   */
+  private static final class Unclosable extends FilterOutputStream {
+    Unclosable(OutputStream dest) {
+      super(dest);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+}
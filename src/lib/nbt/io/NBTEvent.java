@@ -0,0 +1,45 @@
+package lib.nbt.io;
+
+/**
+ * An enumeration of the events reported by {@link lib.nbt.io.NBTStreamReader}.
+ *
+ * @see lib.nbt.io.NBTStreamReader#next()
+ * @author Kyrillos Tawadros
+ */
+public enum NBTEvent {
+  /**
+   * The name of a tag inside a compound (or of a root tag) has been read.
+   * The tag's type is available, the event for its value follows.
+   */
+  NAME,
+
+  /**
+   * A single value or array has been reached. Its payload is read
+   * by one of the typed accessors, or skipped by calling
+   * {@link lib.nbt.io.NBTStreamReader#next()} again.
+   */
+  VALUE,
+
+  /**
+   * A compound has been entered. Its entries follow, each
+   * starting with a {@link #NAME} event.
+   */
+  START_COMPOUND,
+
+  /**
+   * A list has been entered. Its element type and length are
+   * available, and its elements follow without names.
+   */
+  START_LIST,
+
+  /**
+   * The innermost open compound or list has ended. Also reported
+   * for a bare end tag at the top level of the input.
+   */
+  END,
+
+  /**
+   * The input is exhausted.
+   */
+  END_DOCUMENT
+}
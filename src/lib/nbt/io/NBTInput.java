@@ -0,0 +1,65 @@
+package lib.nbt.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The source of the bytes decoded by {@link lib.nbt.io.NBTStreamReader}.
+ * All multi-byte values are big-endian, and strings are in
+ * Java's modified UTF-8, as in {@link java.io.DataInput}.
+ *
+ * @see lib.nbt.io.StreamInput
+ * @see lib.nbt.io.BufferInput
+ * @author Kyrillos Tawadros
+ */
+abstract class NBTInput implements Closeable {
+
+  /**
+   * @return The next byte as an unsigned value,
+   *   <code>-1</code> at the end of the input
+   */
+  abstract int read() throws IOException;
+
+  abstract byte readByte() throws IOException;
+
+  abstract short readShort() throws IOException;
+
+  abstract int readUnsignedShort() throws IOException;
+
+  abstract int readInt() throws IOException;
+
+  abstract long readLong() throws IOException;
+
+  float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  String readUTF() throws IOException {
+    return readUTF(null);
+  }
+
+  /**
+   * @param interner The table to share short strings through,
+   *   <code>null</code> to decode every string separately
+   */
+  abstract String readUTF(StringInterner interner) throws IOException;
+
+  abstract void readFully(byte[] dest, int offset, int length) throws IOException;
+
+  abstract void readInts(int[] dest, int offset, int length) throws IOException;
+
+  abstract void readLongs(long[] dest, int offset, int length) throws IOException;
+
+  /**
+   * Skips exactly <code>count</code> bytes, throwing an
+   * {@link java.io.EOFException} if the input ends first.
+   */
+  abstract void skipBytes(long count) throws IOException;
+
+  @Override
+  public void close() throws IOException {}
+}
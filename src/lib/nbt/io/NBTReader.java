@@ -1,23 +1,24 @@
 package lib.nbt.io;
 
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 import lib.nbt.NBTException;
-import lib.nbt.NBTType;
 import lib.nbt.Tag;
 
 /**
  * A class used for reading NBT data into
  * a {@link lib.nbt.Tag} instance.
  * 
+ * The data is decoded by an {@link lib.nbt.io.NBTStreamReader}.
+ * 
  * @author Kyrillos Tawadros
  */
 public class NBTReader {
-  private DataInputStream source;
+  private NBTStreamReader source;
   
   /**
    * @param source The source of the input NBT data.
@@ -28,25 +29,123 @@ public class NBTReader {
    *   throws an {@link java.io.IOException}
    */
   public NBTReader(InputStream source, boolean compressed) throws IOException {
-    if (source == null) {
-      throw new IllegalArgumentException("Input stream must not be null!");
-    }
-    if (compressed) {
-      source = new GZIPInputStream(source);
-    }
-    this.source = new DataInputStream(source);
+    this(source, compressed, false);
   }
   
   /**
    * @param source The source of the input NBT data.
+   * @param compressed <code>true</code> if the data is GZIPped,
+   *   <code>false</code> otherwise
+   * @param lazy <code>true</code> to read compounds as {@link lib.nbt.io.LazyCompound}s
    * @throws IOException If creating a {@link java.util.zip.GZIPInputStream}
+   *   or reading <code>source</code> throws an {@link java.io.IOException}
+   */
+  public NBTReader(InputStream source, boolean compressed, boolean lazy) throws IOException {
+    this(source, compressed ? Compression.GZIP : Compression.NONE, lazy);
+  }
+  
+  /**
+   * @param source The source of the input NBT data.
+   * @param compression The compression of the data, <code>null</code>
+   *   to detect it from its magic bytes
+   * @throws IOException If reading the compression header
    *   throws an {@link java.io.IOException}
+   */
+  public NBTReader(InputStream source, Compression compression) throws IOException {
+    this(source, compression, false);
+  }
+  
+  /**
+   * @param source The source of the input NBT data.
+   * @param compression The compression of the data, <code>null</code>
+   *   to detect it from its magic bytes
+   * @param lazy <code>true</code> to read compounds as {@link lib.nbt.io.LazyCompound}s
+   * @throws IOException If reading the compression header
+   *   or reading <code>source</code> throws an {@link java.io.IOException}
    *   
-   * This constructor assumes <code>compressed=true</code>, so the internal
-   * {@link java.io.DataInputStream} will be wrapped in a {@link java.util.zip.GZIPInputStream}
+   * In lazy mode the rest of <code>source</code> is read into memory up front,
+   * and compound values only decode an entry when it is first accessed.
+   */
+  public NBTReader(InputStream source, Compression compression, boolean lazy) throws IOException {
+    if (!lazy) {
+      this.source = new NBTStreamReader(source, compression);
+      return;
+    }
+    InputStream data = NBTStreamReader.decompress(source, compression);
+    byte[] bytes = data.readAllBytes();
+    data.close();
+    this.source = new NBTStreamReader(new BufferInput(ByteBuffer.wrap(bytes)), true);
+  }
+  
+  /**
+   * @param source The source of the input NBT data.
+   * @throws IOException If reading the compression header
+   *   throws an {@link java.io.IOException}
+   *   
+   * The compression of the data is detected from its magic bytes,
+   * so GZIPped, zlib, LZ4 and uncompressed data are all read
+   * without retrying.
    */
   public NBTReader(InputStream source) throws IOException {
-    this(source, true);
+    this(source, (Compression)null, false);
+  }
+  
+  /**
+   * @param source The buffer holding the uncompressed NBT data,
+   *   which is read from its position to its limit.
+   * @param lazy <code>true</code> to read compounds as {@link lib.nbt.io.LazyCompound}s
+   *   
+   * The data is decoded directly from the buffer, without copies
+   * or stream layering. Lazy compounds keep referring to the buffer.
+   */
+  public NBTReader(ByteBuffer source, boolean lazy) {
+    this.source = new NBTStreamReader(new BufferInput(source), lazy);
+  }
+  
+  /**
+   * @param source The buffer holding the uncompressed NBT data.
+   * 
+   * This constructor assumes <code>lazy=false</code>.
+   */
+  public NBTReader(ByteBuffer source) {
+    this(source, false);
+  }
+  
+  /**
+   * @param source The array holding the uncompressed NBT data.
+   * @param offset The index of the first byte of the data.
+   * @param length The length of the data.
+   */
+  public NBTReader(byte[] source, int offset, int length) {
+    this(ByteBuffer.wrap(source, offset, length));
+  }
+  
+  /**
+   * @param path The file holding the uncompressed NBT data.
+   * @param lazy <code>true</code> to read compounds as {@link lib.nbt.io.LazyCompound}s
+   * @return A reader decoding the file through a read-only memory mapping.
+   * @throws IOException If the file cannot be opened or mapped.
+   */
+  public static NBTReader map(Path path, boolean lazy) throws IOException {
+    return new NBTReader(NBTStreamReader.mapFile(path), lazy);
+  }
+  
+  /**
+   * @param interner The table to share decoded names and short strings
+   *   through, <code>null</code> to decode each one separately
+   *
+   * @see lib.nbt.io.StringInterner#global()
+   */
+  public void setInterner(StringInterner interner) {
+    source.setInterner(interner);
+  }
+  
+  /**
+   * @param compact <code>true</code> to read compounds as {@link lib.nbt.CompactCompound}s,
+   *   which use much less heap when many compounds share the same keys
+   */
+  public void setCompact(boolean compact) {
+    source.setCompact(compact);
   }
   
   /**
@@ -58,19 +157,32 @@ public class NBTReader {
    *   {@link java.io.IOException} on a read operation
    */
   public Tag readNBT() throws NBTException, IOException {
+    Tag tag = readTag(source);
+    if (tag == null) {
+      source.close();
+    }
+    return tag;
+  }
+  
+  /**
+   * @param source The reader positioned before a tag.
+   * @return The next tag, <code>null</code> at the end of the data.
+   * @throws NBTException If the NBT data is invalid.
+   * @throws IOException If <code>source</code> throws an
+   *   {@link java.io.IOException} on a read operation
+   */
+  static Tag readTag(NBTStreamReader source) throws NBTException, IOException {
     try {
-      int _tag_id = source.read();
-      if (_tag_id == -1) {
-        source.close();
+      switch(source.next()) {
+      case END_DOCUMENT:
         return null;
-      } else if (_tag_id == NBTType.END.id) {
+      case END:
         return Tag.END;
+      default:
+        String name = source.getName();
+        source.next();
+        return new Tag(name, source.readValue());
       }
-      byte tag_id = (byte)_tag_id;
-      NBTType type = NBTType.getById(tag_id);
-      
-      String name = source.readUTF();
-      return new Tag(name, type.readFrom(source));
     } catch (EOFException eofe) {
       throw new NBTException("Stream ended before tag completed");
     }
@@ -0,0 +1,869 @@
+package lib.nbt.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import lib.nbt.CompactCompound;
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+
+/**
+ * An event-driven (pull) parser for NBT data.
+ *
+ * Rather than building a full tree, the reader reports one
+ * {@link lib.nbt.io.NBTEvent} at a time from {@link #next()}.
+ * Values are read with typed accessors such as {@link #readInt()}
+ * or {@link #readLongArray(long[])}, which do not allocate per tag.
+ * A value that is not read is skipped by the next call to
+ * {@link #next()}, and whole subtrees can be passed over with
+ * {@link #skip()}. Skipping never decodes names or values.
+ * Any value or container can also be materialized with
+ * {@link #readValue()}.
+ *
+ * For example, a compound <code>{"Pos": [1.0d, 2.0d]}</code> named
+ * <code>"Data"</code> produces:
+ * <pre>
+ * NAME("Data") START_COMPOUND
+ *   NAME("Pos") START_LIST(DOUBLE, 2) VALUE VALUE END
+ * END END_DOCUMENT
+ * </pre>
+ *
+ * @see lib.nbt.io.NBTReader
+ * @author Kyrillos Tawadros
+ */
+public class NBTStreamReader implements Closeable {
+  /**
+   * The most elements a list is presized for. Lengths come from the data,
+   * so longer lists grow as their elements are actually read.
+   */
+  static final int MAX_PRESIZE = 1 << 16;
+
+  private final NBTInput source;
+
+  /**
+   * <code>true</code> if compounds nested in materialized values are
+   * returned as {@link lib.nbt.io.LazyCompound}s.
+   */
+  private final boolean lazy;
+
+  /**
+   * The table names and strings are shared through, <code>null</code> for none.
+   */
+  private StringInterner interner;
+
+  /**
+   * <code>true</code> if materialized compounds are
+   * {@link lib.nbt.CompactCompound}s.
+   */
+  private boolean compact;
+
+  /**
+   * The element type ID of every open list,
+   * or <code>-1</code> for an open compound.
+   */
+  private byte[] frames = new byte[16];
+
+  /**
+   * The number of elements left in every open list.
+   */
+  private int[] remaining = new int[16];
+
+  private int depth;
+
+  private NBTEvent event;
+  private NBTType type;
+  private NBTType elementType;
+  private String name;
+  private int length = -1;
+
+  /**
+   * <code>true</code> while the payload of the current
+   * {@link NBTEvent#VALUE} event has not been read.
+   */
+  private boolean pending;
+
+  /**
+   * <code>true</code> after a {@link NBTEvent#NAME} event,
+   * until the event for its value is reported.
+   */
+  private boolean named;
+
+  /**
+   * @param source The source of the input NBT data.
+   * @param compression The compression of the data, <code>null</code>
+   *   to detect it from its magic bytes
+   * @throws IOException If reading the compression header
+   *   throws an {@link java.io.IOException}
+   */
+  public NBTStreamReader(InputStream source, Compression compression) throws IOException {
+    this(new StreamInput(new DataInputStream(buffered(decompress(source, compression)))), false);
+  }
+
+  /**
+   * @param source The source of the input NBT data.
+   * @param compressed <code>true</code> if the data is GZIPped,
+   *   <code>false</code> otherwise
+   * @throws IOException If creating a {@link java.util.zip.GZIPInputStream}
+   *   throws an {@link java.io.IOException}
+   */
+  public NBTStreamReader(InputStream source, boolean compressed) throws IOException {
+    this(source, compressed ? Compression.GZIP : Compression.NONE);
+  }
+
+  /**
+   * @param source The source of the input NBT data.
+   * @throws IOException If reading the compression header
+   *   throws an {@link java.io.IOException}
+   *
+   * The compression of the data is detected from its magic bytes.
+   */
+  public NBTStreamReader(InputStream source) throws IOException {
+    this(source, (Compression)null);
+  }
+
+  /**
+   * @param source The source of the data.
+   * @param compression The compression of the data, <code>null</code> to detect it.
+   * @return A stream of the decompressed data.
+   */
+  static InputStream decompress(InputStream source, Compression compression) throws IOException {
+    if (source == null) {
+      throw new IllegalArgumentException("Input stream must not be null!");
+    }
+    if (compression == null) {
+      source = buffered(source);
+      compression = Compression.detect(source);
+    }
+    return compression.decompress(source);
+  }
+
+  private static InputStream buffered(InputStream source) {
+    return source instanceof BufferedInputStream ? source : new BufferedInputStream(source);
+  }
+
+  /**
+   * @param source The buffer holding the uncompressed NBT data,
+   *   which is read from its position to its limit.
+   *
+   * The data is decoded directly from the buffer with absolute
+   * big-endian reads. The buffer's position is not changed.
+   */
+  public NBTStreamReader(ByteBuffer source) {
+    this(new BufferInput(source), false);
+  }
+
+  /**
+   * @param source The array holding the uncompressed NBT data.
+   * @param offset The index of the first byte of the data.
+   * @param length The length of the data.
+   */
+  public NBTStreamReader(byte[] source, int offset, int length) {
+    this(ByteBuffer.wrap(source, offset, length));
+  }
+
+  /**
+   * @param path The file holding the uncompressed NBT data.
+   * @return A reader decoding the file through a read-only memory mapping.
+   * @throws IOException If the file cannot be opened or mapped.
+   */
+  public static NBTStreamReader map(Path path) throws IOException {
+    return new NBTStreamReader(mapFile(path));
+  }
+
+  /**
+   * @param path The file to map.
+   * @return A read-only mapping of the whole file.
+   * @throws IOException If the file cannot be opened or mapped,
+   *   or is too large to be mapped in one buffer.
+   */
+  static ByteBuffer mapFile(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(String.format("%s is too large to map (%d bytes)", path, size));
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  /**
+   * @param source The input to decode.
+   * @param lazy <code>true</code> to materialize compounds as
+   *   {@link lib.nbt.io.LazyCompound}s, which requires a
+   *   {@link lib.nbt.io.BufferInput}
+   */
+  NBTStreamReader(NBTInput source, boolean lazy) {
+    if (lazy && !(source instanceof BufferInput)) {
+      throw new IllegalArgumentException("Lazy compounds require a buffered input");
+    }
+    this.source = source;
+    this.lazy = lazy;
+  }
+
+  /**
+   * @param interner The table to share decoded names and short strings
+   *   through, <code>null</code> to decode each one separately
+   *
+   * Interning makes repeated keys resolve to one shared
+   * {@link java.lang.String}, instead of a new copy per compound.
+   */
+  public void setInterner(StringInterner interner) {
+    this.interner = interner;
+  }
+
+  /**
+   * @param compact <code>true</code> to materialize compounds as
+   *   {@link lib.nbt.CompactCompound}s, which share their keys with
+   *   every other compound of the same shape
+   *
+   * Compounds read in lazy mode stay lazy.
+   */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  /**
+   * @param type The type of the payload.
+   * @param source The stream positioned at the payload.
+   * @return The payload, materialized as the library's tree types.
+   * @throws IOException If <code>source</code> throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws NBTException If the data is invalid.
+   *
+   * Reads a single payload of <code>type</code> from <code>source</code>.
+   *
+   * @see lib.nbt.NBTType#readFrom(DataInputStream)
+   */
+  public static Object decode(NBTType type, DataInputStream source) throws IOException, NBTException {
+    return new NBTStreamReader(new StreamInput(source), false).readPayload(type);
+  }
+
+  /**
+   * @return The next event.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws NBTException If the data is invalid.
+   *
+   * Advances to the next event, skipping the payload of
+   * the current value if it has not been read.
+   */
+  public NBTEvent next() throws IOException, NBTException {
+    if (pending) {
+      pending = false;
+      skipBody(type, length);
+    }
+
+    if (named) {
+      named = false;
+      return startValue(type);
+    }
+
+    if (depth == 0) {
+      int tag_id = source.read();
+      if (tag_id == -1) {
+        type = null;
+        name = null;
+        return event = NBTEvent.END_DOCUMENT;
+      }
+      return readNamed((byte)tag_id);
+    }
+
+    byte frame = frames[depth - 1];
+    if (frame < 0) {
+      return readNamed(source.readByte());
+    }
+
+    name = null;
+    if (remaining[depth - 1] == 0) {
+      depth--;
+      type = NBTType.END;
+      return event = NBTEvent.END;
+    }
+    remaining[depth - 1]--;
+    return startValue(NBTType.getById(frame));
+  }
+
+  private NBTEvent readNamed(byte tag_id) throws IOException, NBTException {
+    if (tag_id == NBTType.END.id) {
+      if (depth > 0) {
+        depth--;
+      }
+      type = NBTType.END;
+      name = null;
+      return event = NBTEvent.END;
+    }
+
+    type = NBTType.getById(tag_id);
+    name = source.readUTF(interner);
+    named = true;
+    return event = NBTEvent.NAME;
+  }
+
+  private NBTEvent startValue(NBTType type) throws IOException, NBTException {
+    this.type = type;
+    switch(type) {
+    case COMPOUND:
+      length = -1;
+      push((byte)-1, 0);
+      return event = NBTEvent.START_COMPOUND;
+    case LIST:
+      elementType = NBTType.getById(source.readByte());
+      length = readLength();
+      push(elementType.id, length);
+      return event = NBTEvent.START_LIST;
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      length = readLength();
+      pending = true;
+      return event = NBTEvent.VALUE;
+    default:
+      length = -1;
+      pending = true;
+      return event = NBTEvent.VALUE;
+    }
+  }
+
+  private void push(byte frame, int count) {
+    if (depth == frames.length) {
+      frames = Arrays.copyOf(frames, depth * 2);
+      remaining = Arrays.copyOf(remaining, depth * 2);
+    }
+    frames[depth] = frame;
+    remaining[depth] = count;
+    depth++;
+  }
+
+  private int readLength() throws IOException, NBTException {
+    int len = source.readInt();
+    if (len < 0) {
+      throw new NBTException(String.format("Negative length %d", len));
+    }
+    return len;
+  }
+
+  /**
+   * @return The current event, <code>null</code> before the
+   *   first call to {@link #next()}
+   */
+  public NBTEvent getEvent() {
+    return event;
+  }
+
+  /**
+   * @return The type of the current tag or value,
+   *   {@link lib.nbt.NBTType#END} after an {@link NBTEvent#END} event
+   */
+  public NBTType getType() {
+    return type;
+  }
+
+  /**
+   * @return The element type of the list entered
+   *   by the last {@link NBTEvent#START_LIST} event
+   */
+  public NBTType getElementType() {
+    return elementType;
+  }
+
+  /**
+   * @return The name of the current tag, <code>null</code>
+   *   for list elements
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The number of elements of the current list or array,
+   *   <code>-1</code> if the current value has no length
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * @return The number of compounds and lists currently open.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  private void expect(NBTType expected) {
+    check(expected);
+    pending = false;
+  }
+
+  /**
+   * Checks that the current event is an unread value of <code>expected</code>, without reading it.
+   */
+  private void check(NBTType expected) {
+    if (!pending || type != expected) {
+      throw new IllegalStateException(String.format("Current event is not an unread %s value", expected.toString()));
+    }
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#BYTE} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public byte readByte() throws IOException {
+    expect(NBTType.BYTE);
+    return source.readByte();
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#SHORT} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public short readShort() throws IOException {
+    expect(NBTType.SHORT);
+    return source.readShort();
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#INT} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public int readInt() throws IOException {
+    expect(NBTType.INT);
+    return source.readInt();
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#LONG} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public long readLong() throws IOException {
+    expect(NBTType.LONG);
+    return source.readLong();
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#FLOAT} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public float readFloat() throws IOException {
+    expect(NBTType.FLOAT);
+    return source.readFloat();
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#DOUBLE} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public double readDouble() throws IOException {
+    expect(NBTType.DOUBLE);
+    return source.readDouble();
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#STRING} value.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public String readString() throws IOException {
+    expect(NBTType.STRING);
+    return source.readUTF(interner);
+  }
+
+  /**
+   * @param dest The array to fill, at least {@link #getLength()} long.
+   * @return The number of elements read.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public int readByteArray(byte[] dest) throws IOException {
+    check(NBTType.BYTE_ARRAY);
+    checkCapacity(dest.length);
+    pending = false;
+    source.readFully(dest, 0, length);
+    return length;
+  }
+
+  /**
+   * @param dest The array to fill, at least {@link #getLength()} long.
+   * @return The number of elements read.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public int readIntArray(int[] dest) throws IOException {
+    check(NBTType.INT_ARRAY);
+    checkCapacity(dest.length);
+    pending = false;
+    source.readInts(dest, 0, length);
+    return length;
+  }
+
+  /**
+   * @param dest The array to fill, at least {@link #getLength()} long.
+   * @return The number of elements read.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public int readLongArray(long[] dest) throws IOException {
+    check(NBTType.LONG_ARRAY);
+    checkCapacity(dest.length);
+    pending = false;
+    source.readLongs(dest, 0, length);
+    return length;
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#BYTE_ARRAY} value, in a new array.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public byte[] readByteArray() throws IOException {
+    // checked first, since the length is only valid for the right event
+    check(NBTType.BYTE_ARRAY);
+    byte[] result = new byte[length];
+    readByteArray(result);
+    return result;
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#INT_ARRAY} value, in a new array.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public int[] readIntArray() throws IOException {
+    check(NBTType.INT_ARRAY);
+    int[] result = new int[length];
+    readIntArray(result);
+    return result;
+  }
+
+  /**
+   * @return The current {@link lib.nbt.NBTType#LONG_ARRAY} value, in a new array.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws IllegalStateException If the current event is not
+   *   an unread value of that type
+   */
+  public long[] readLongArray() throws IOException {
+    check(NBTType.LONG_ARRAY);
+    long[] result = new long[length];
+    readLongArray(result);
+    return result;
+  }
+
+  private void checkCapacity(int capacity) {
+    if (capacity < length) {
+      throw new IllegalArgumentException(String.format("Array of length %d cannot hold %d elements", capacity, length));
+    }
+  }
+
+  /**
+   * @return The current value, materialized as the library's tree types.
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws NBTException If the data is invalid.
+   * @throws IllegalStateException If the current event is not
+   *   an unread {@link NBTEvent#VALUE}, or a {@link NBTEvent#START_COMPOUND}
+   *   or {@link NBTEvent#START_LIST}
+   *
+   * Reads the current value. For a compound or list, the whole
+   * container is read and the reader is left as if its
+   * {@link NBTEvent#END} event had been reported.
+   */
+  public Object readValue() throws IOException, NBTException {
+    if (event == NBTEvent.VALUE && pending) {
+      pending = false;
+      return readBody(type, length);
+    } else if (event == NBTEvent.START_COMPOUND) {
+      depth--;
+      event = NBTEvent.END;
+      return readCompound();
+    } else if (event == NBTEvent.START_LIST) {
+      depth--;
+      event = NBTEvent.END;
+      return readList(elementType, length);
+    }
+    throw new IllegalStateException(String.format("No value to read at event %s", String.valueOf(event)));
+  }
+
+  /**
+   * @throws IOException If the source throws an
+   *   {@link java.io.IOException} on a read operation
+   * @throws NBTException If the data is invalid.
+   * @throws IllegalStateException If the current event is not a
+   *   {@link NBTEvent#NAME}, {@link NBTEvent#VALUE},
+   *   {@link NBTEvent#START_COMPOUND} or {@link NBTEvent#START_LIST}
+   *
+   * Skips the payload of the current tag without materializing it.
+   * After a {@link NBTEvent#NAME} event the named tag's whole value is
+   * skipped, after a start event the rest of the container is skipped.
+   * In both cases the reader is left as if the skipped value had been read.
+   * Fixed-size values and arrays are skipped by length arithmetic, and
+   * compounds and lists are walked without allocating names or values.
+   */
+  public void skip() throws IOException, NBTException {
+    if (event == NBTEvent.NAME && named) {
+      named = false;
+      skipPayload(type);
+      event = NBTEvent.VALUE;
+    } else if (event == NBTEvent.VALUE) {
+      if (pending) {
+        pending = false;
+        skipBody(type, length);
+      }
+    } else if (event == NBTEvent.START_COMPOUND || event == NBTEvent.START_LIST) {
+      skipContainer();
+      event = NBTEvent.END;
+    } else {
+      throw new IllegalStateException(String.format("Nothing to skip at event %s", String.valueOf(event)));
+    }
+  }
+
+  /**
+   * Skips the remainder of the innermost open container.
+   */
+  private void skipContainer() throws IOException, NBTException {
+    depth--;
+    byte frame = frames[depth];
+    if (frame < 0) {
+      skipCompound();
+    } else {
+      skipList(NBTType.getById(frame), remaining[depth]);
+    }
+  }
+
+  void skipPayload(NBTType type) throws IOException, NBTException {
+    switch(type) {
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      skipBody(type, readLength());
+      break;
+    case LIST:
+      NBTType element_type = NBTType.getById(source.readByte());
+      skipList(element_type, readLength());
+      break;
+    case COMPOUND:
+      skipCompound();
+      break;
+    default:
+      skipBody(type, -1);
+    }
+  }
+
+  /**
+   * Skips a payload whose length, if any, has already been read.
+   */
+  private void skipBody(NBTType type, int length) throws IOException, NBTException {
+    int size = type.getPayloadSize();
+    if (size >= 0) {
+      source.skipBytes(size);
+      return;
+    }
+    switch(type) {
+    case STRING:
+      source.skipBytes(source.readUnsignedShort());
+      break;
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      source.skipBytes((long)length * type.getElementType().getPayloadSize());
+      break;
+    default:
+      skipPayload(type);
+    }
+  }
+
+  private void skipList(NBTType type, int length) throws IOException, NBTException {
+    int size = type.getPayloadSize();
+    if (size >= 0) {
+      source.skipBytes((long)length * size);
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      skipPayload(type);
+    }
+  }
+
+  private void skipCompound() throws IOException, NBTException {
+    byte next_tag_id;
+    while((next_tag_id = source.readByte()) != NBTType.END.id) {
+      NBTType next_type = NBTType.getById(next_tag_id);
+      source.skipBytes(source.readUnsignedShort());
+      skipPayload(next_type);
+    }
+  }
+
+  Object readPayload(NBTType type) throws IOException, NBTException {
+    switch(type) {
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      return readBody(type, readLength());
+    case LIST:
+      NBTType element_type = NBTType.getById(source.readByte());
+      return readList(element_type, readLength());
+    case COMPOUND:
+      return readCompound();
+    default:
+      return readBody(type, -1);
+    }
+  }
+
+  /**
+   * Reads a payload whose length, if any, has already been read.
+   */
+  private Object readBody(NBTType type, int length) throws IOException, NBTException {
+    switch(type) {
+    case END:
+      return null;
+    case BYTE:
+      return source.readByte();
+    case SHORT:
+      return source.readShort();
+    case INT:
+      return source.readInt();
+    case LONG:
+      return source.readLong();
+    case FLOAT:
+      return source.readFloat();
+    case DOUBLE:
+      return source.readDouble();
+    case STRING:
+      return source.readUTF(interner);
+    case BYTE_ARRAY:
+      byte[] bytes = new byte[length];
+      source.readFully(bytes, 0, length);
+      return bytes;
+    case INT_ARRAY:
+      int[] ints = new int[length];
+      source.readInts(ints, 0, length);
+      return ints;
+    case LONG_ARRAY:
+      long[] longs = new long[length];
+      source.readLongs(longs, 0, length);
+      return longs;
+    default:
+      return readPayload(type);
+    }
+  }
+
+  /**
+   * Reads the elements of a list whose element type and length have already been read.
+   */
+  NBTList readList(NBTType type, int length) throws IOException, NBTException {
+    NBTList list = new NBTList(type);
+    list.ensureCapacity(Math.min(length, MAX_PRESIZE));
+    switch(type) {
+    case BYTE:
+      for (int i = 0; i < length; i++) {
+        list.addByte(source.readByte());
+      }
+      break;
+    case SHORT:
+      for (int i = 0; i < length; i++) {
+        list.addShort(source.readShort());
+      }
+      break;
+    case INT:
+      for (int i = 0; i < length; i++) {
+        list.addInt(source.readInt());
+      }
+      break;
+    case LONG:
+      for (int i = 0; i < length; i++) {
+        list.addLong(source.readLong());
+      }
+      break;
+    case FLOAT:
+      for (int i = 0; i < length; i++) {
+        list.addFloat(source.readFloat());
+      }
+      break;
+    case DOUBLE:
+      for (int i = 0; i < length; i++) {
+        list.addDouble(source.readDouble());
+      }
+      break;
+    default:
+      for (int i = 0; i < length; i++) {
+        list.add(readPayload(type));
+      }
+    }
+    return list;
+  }
+
+  private Map<String, Object> readCompound() throws IOException, NBTException {
+    if (lazy) {
+      BufferInput input = (BufferInput)source;
+      int start = input.position();
+      skipCompound();
+      return new LazyCompound(input.buffer(), start, input.position(), interner);
+    }
+    if (compact) {
+      CompactCompound.Builder builder = new CompactCompound.Builder();
+      byte next_tag_id;
+      while((next_tag_id = source.readByte()) != NBTType.END.id) {
+        NBTType next_type = NBTType.getById(next_tag_id);
+        String name = source.readUTF(interner);
+        builder.put(name, readPayload(next_type));
+      }
+      return builder.build();
+    }
+    Map<String, Object> compound = new HashMap<String, Object>();
+    byte next_tag_id;
+    while((next_tag_id = source.readByte()) != NBTType.END.id) {
+      NBTType next_type = NBTType.getById(next_tag_id);
+      String name = source.readUTF(interner);
+      compound.put(name, readPayload(next_type));
+    }
+    return compound;
+  }
+
+  /**
+   * @throws IOException If closing the source throws
+   *   an {@link java.io.IOException}
+   */
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+}
@@ -1,9 +1,10 @@
 package lib.nbt.io;
 
-import java.io.DataOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.nio.ByteBuffer;
 
 import lib.nbt.NBTType;
 import lib.nbt.Tag;
@@ -11,11 +12,12 @@ import lib.nbt.Tag;
 /**
  * A class for writing data from a
  * {@link lib.nbt.Tag} to an output stream
+ * or a {@link java.nio.ByteBuffer}
  * 
  * @author Kyrillos Tawadros
  */
 public class NBTWriter {
-  private DataOutputStream dest;
+  private DataOutput dest;
   
   /**
    * @param dest The output stream to write to.
@@ -26,11 +28,27 @@ public class NBTWriter {
    *   throws an {@link java.io.IOException}
    */
   public NBTWriter(OutputStream dest, boolean compressed) throws IOException {
-    if (compressed) {
-      this.dest = new DataOutputStream(new GZIPOutputStream(dest));
-    } else {
-      this.dest = new DataOutputStream(dest);
+    this(dest, compressed ? Compression.GZIP : Compression.NONE);
+  }
+  
+  /**
+   * @param dest The output stream to write to.
+   * @param compression The compression to apply, e.g. {@link lib.nbt.io.Compression#GZIP}
+   *   or {@link lib.nbt.io.Compression#zlib(int, int)} with a custom level.
+   *   Unlike when reading, it can't be detected, so it must not be <code>null</code>;
+   *   pass {@link lib.nbt.io.Compression#NONE} for uncompressed output.
+   * @throws IOException If writing the compression header
+   *   throws an {@link java.io.IOException}
+   * @throws IllegalArgumentException If <code>dest</code> or <code>compression</code> is <code>null</code>
+   */
+  public NBTWriter(OutputStream dest, Compression compression) throws IOException {
+    if (dest == null) {
+      throw new IllegalArgumentException("Output stream must not be null!");
+    }
+    if (compression == null) {
+      throw new IllegalArgumentException("Compression must not be null!");
     }
+    this.dest = new StreamOutput(compression.compress(dest));
   }
   
   /**
@@ -45,6 +63,18 @@ public class NBTWriter {
     this(dest, true);
   }
   
+  /**
+   * @param dest The heap or direct buffer to write to, starting at its position.
+   * 
+   * The data is encoded uncompressed, directly into the buffer, in a single pass.
+   * After {@link #writeNBT(Tag)} the buffer's position is just past the data.
+   * The buffer must have at least {@link #sizeOf(Tag)} bytes remaining,
+   * otherwise a {@link java.nio.BufferOverflowException} is thrown.
+   */
+  public NBTWriter(ByteBuffer dest) {
+    this.dest = new BufferOutput(dest);
+  }
+  
   /**
    * @param root The root compound Tag to write.
    * @throws IOException If {@link #dest} throws an
@@ -56,6 +86,34 @@ public class NBTWriter {
     }
     
     NBTType.COMPOUND.writeTo(root.getName(), root.getValue(), dest);
-    dest.close();
+    ((Closeable)dest).close();
+  }
+  
+  /**
+   * @param root The root compound Tag to measure.
+   * @return The exact number of bytes in the uncompressed
+   *   encoding of <code>root</code>.
+   */
+  public static long sizeOf(Tag root) {
+    return root.getType().sizeOf(root.getName(), root.getValue());
+  }
+  
+  /**
+   * @param root The root compound Tag to encode.
+   * @param direct <code>true</code> to encode into a direct buffer,
+   *   <code>false</code> for a heap buffer
+   * @return A buffer of exactly {@link #sizeOf(Tag)} bytes holding the
+   *   uncompressed encoding of <code>root</code>, ready to be read.
+   * @throws IOException If a string is too long to be encoded.
+   */
+  public static ByteBuffer encode(Tag root, boolean direct) throws IOException {
+    long size = sizeOf(root);
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException(String.format("Encoded size %d is too large for a buffer", size));
+    }
+    ByteBuffer result = direct ? ByteBuffer.allocateDirect((int)size) : ByteBuffer.allocate((int)size);
+    new NBTWriter(result).writeNBT(root);
+    result.flip();
+    return result;
   }
 }
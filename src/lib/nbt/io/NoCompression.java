@@ -0,0 +1,40 @@
+package lib.nbt.io;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The {@link lib.nbt.io.Compression} passing data through unchanged.
+ *
+ * @author Kyrillos Tawadros
+ */
+class NoCompression implements Compression {
+
+  @Override
+  public String getName() {
+    return "none";
+  }
+
+  /**
+   * @return <code>true</code> if the data starts with a valid tag ID.
+   */
+  @Override
+  public boolean matches(byte[] header, int length) {
+    return length > 0 && header[0] >= 0 && header[0] <= 12;
+  }
+
+  @Override
+  public InputStream decompress(InputStream source) {
+    return source;
+  }
+
+  @Override
+  public OutputStream compress(OutputStream dest) {
+    return dest;
+  }
+
+  @Override
+  public String toString() {
+    return getName();
+  }
+}
@@ -0,0 +1,294 @@
+package lib.nbt.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lib.nbt.NBTException;
+import lib.nbt.Tag;
+
+/**
+ * A class for random access to the chunks stored in an Anvil
+ * region file (<code>r.&lt;x&gt;.&lt;z&gt;.mca</code>).
+ *
+ * Only the 8 KiB header is read when the file is opened. Each chunk is
+ * then read with a single positional {@link java.nio.channels.FileChannel}
+ * read, so chunks can be read in any order, and from several threads at once.
+ * Oversized chunks stored in external <code>c.&lt;x&gt;.&lt;z&gt;.mcc</code>
+ * files are supported.
+ *
+ * @author Kyrillos Tawadros
+ */
+public class RegionFile implements Closeable {
+
+  /**
+   * The size of a sector, the unit in which chunks are allocated.
+   */
+  public static final int SECTOR_SIZE = 4096;
+
+  /**
+   * The number of chunks along each side of a region.
+   */
+  public static final int REGION_SIZE = 32;
+
+  /**
+   * The number of chunks in a region.
+   */
+  public static final int CHUNK_COUNT = REGION_SIZE * REGION_SIZE;
+
+  public static final int COMPRESSION_GZIP = 1;
+  public static final int COMPRESSION_ZLIB = 2;
+  public static final int COMPRESSION_NONE = 3;
+  public static final int COMPRESSION_LZ4 = 4;
+
+  /**
+   * The flag set on the compression type of chunks stored
+   * in an external <code>.mcc</code> file.
+   */
+  public static final int EXTERNAL_FLAG = 0x80;
+
+  private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+  private final Path path;
+  private final FileChannel channel;
+  private final int regionX;
+  private final int regionZ;
+
+  /**
+   * The sector offset of each chunk in the upper 24 bits,
+   * and its sector count in the lower 8 bits.
+   */
+  private final int[] locations = new int[CHUNK_COUNT];
+
+  /**
+   * The last modification time of each chunk, in epoch seconds.
+   */
+  private final int[] timestamps = new int[CHUNK_COUNT];
+
+  private boolean compact;
+  private StringInterner interner;
+
+  /**
+   * @param path The region file to open.
+   * @throws IOException If the file cannot be opened,
+   *   or its header cannot be read
+   *
+   * Opens the region file and reads its location and timestamp headers.
+   * The region coordinates, used to name external chunk files, are
+   * parsed from the file name, and default to <code>0, 0</code>.
+   */
+  public RegionFile(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    Matcher name = REGION_NAME.matcher(path.getFileName().toString());
+    if (name.matches()) {
+      this.regionX = Integer.parseInt(name.group(1));
+      this.regionZ = Integer.parseInt(name.group(2));
+    } else {
+      this.regionX = 0;
+      this.regionZ = 0;
+    }
+
+    try {
+      if (channel.size() >= 2 * SECTOR_SIZE) {
+        ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_SIZE);
+        readFully(header, 0);
+        header.flip();
+        header.asIntBuffer().get(locations).get(timestamps);
+      }
+    } catch (IOException ioe) {
+      channel.close();
+      throw ioe;
+    }
+  }
+
+  /**
+   * @return The path of this region file.
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * @return The X coordinate of this region, parsed from its file name.
+   */
+  public int getRegionX() {
+    return regionX;
+  }
+
+  /**
+   * @return The Z coordinate of this region, parsed from its file name.
+   */
+  public int getRegionZ() {
+    return regionZ;
+  }
+
+  /**
+   * @param compact <code>true</code> to read chunk compounds as
+   *   {@link lib.nbt.CompactCompound}s, unless they are read lazily
+   */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  /**
+   * @param interner The table to share decoded names and short strings
+   *   through, <code>null</code> to decode each one separately
+   */
+  public void setInterner(StringInterner interner) {
+    this.interner = interner;
+  }
+
+  private static int index(int x, int z) {
+    return (x & (REGION_SIZE - 1)) + (z & (REGION_SIZE - 1)) * REGION_SIZE;
+  }
+
+  /**
+   * @param x The chunk's X coordinate. Only its position within the region is used.
+   * @param z The chunk's Z coordinate. Only its position within the region is used.
+   * @return <code>true</code> if the chunk is present in this region.
+   */
+  public boolean hasChunk(int x, int z) {
+    return locations[index(x, z)] != 0;
+  }
+
+  /**
+   * @param x The chunk's X coordinate. Only its position within the region is used.
+   * @param z The chunk's Z coordinate. Only its position within the region is used.
+   * @return The chunk's last modification time in epoch seconds,
+   *   <code>0</code> if it is not present
+   */
+  public int getTimestamp(int x, int z) {
+    return timestamps[index(x, z)];
+  }
+
+  /**
+   * @param x The chunk's X coordinate. Only its position within the region is used.
+   * @param z The chunk's Z coordinate. Only its position within the region is used.
+   * @return The root tag of the chunk, <code>null</code> if it is not present
+   * @throws IOException If reading the chunk throws an {@link java.io.IOException}
+   * @throws NBTException If the chunk's location, header or NBT data is invalid
+   */
+  public Tag readChunk(int x, int z) throws IOException, NBTException {
+    return readChunk(x, z, false);
+  }
+
+  /**
+   * @param x The chunk's X coordinate. Only its position within the region is used.
+   * @param z The chunk's Z coordinate. Only its position within the region is used.
+   * @param lazy <code>true</code> to read compounds as {@link lib.nbt.io.LazyCompound}s
+   * @return The root tag of the chunk, <code>null</code> if it is not present
+   * @throws IOException If reading the chunk throws an {@link java.io.IOException}
+   * @throws NBTException If the chunk's location, header or NBT data is invalid
+   */
+  public Tag readChunk(int x, int z, boolean lazy) throws IOException, NBTException {
+    int index = index(x, z);
+    int location = locations[index];
+    if (location == 0) {
+      return null;
+    }
+
+    long offset = (long)(location >>> 8) * SECTOR_SIZE;
+    int sectors = location & 0xFF;
+    long file_size = channel.size();
+    // at least the length and compression type must be in the file
+    if (offset < 2 * SECTOR_SIZE || sectors == 0 || offset + 5 > file_size) {
+      throw new NBTException(String.format("Invalid location for chunk %d in %s", index, path));
+    }
+
+    // the last chunk may end before its last sector, in files that are not padded;
+    // its own length, checked below, tells how much of the sectors it uses
+    ByteBuffer sector_data = ByteBuffer.allocate((int)Math.min((long)sectors * SECTOR_SIZE, file_size - offset));
+    readFully(sector_data, offset);
+    sector_data.flip();
+
+    int length = sector_data.getInt();
+    if (length < 1 || length > sector_data.remaining()) {
+      throw new NBTException(String.format("Invalid length %d for chunk %d in %s", length, index, path));
+    }
+    int compression = sector_data.get() & 0xFF;
+
+    byte[] payload;
+    int payload_offset;
+    int payload_length;
+    if ((compression & EXTERNAL_FLAG) != 0) {
+      compression &= ~EXTERNAL_FLAG;
+      int chunk_x = regionX * REGION_SIZE + (x & (REGION_SIZE - 1));
+      int chunk_z = regionZ * REGION_SIZE + (z & (REGION_SIZE - 1));
+      payload = Files.readAllBytes(path.resolveSibling(String.format("c.%d.%d.mcc", chunk_x, chunk_z)));
+      payload_offset = 0;
+      payload_length = payload.length;
+    } else {
+      payload = sector_data.array();
+      payload_offset = sector_data.position();
+      payload_length = length - 1;
+    }
+
+    return decode(compression, payload, payload_offset, payload_length, lazy);
+  }
+
+  private Tag decode(int compression, byte[] payload, int offset, int length, boolean lazy) throws IOException, NBTException {
+    if (compression == COMPRESSION_NONE) {
+      return configure(new NBTReader(ByteBuffer.wrap(payload, offset, length), lazy)).readNBT();
+    }
+    Compression codec = compressionOf(compression);
+    if (codec == null) {
+      throw new NBTException(String.format("Unsupported chunk compression type %d in %s", compression, path));
+    }
+    InputStream source = codec.decompress(new ByteArrayInputStream(payload, offset, length));
+    return configure(new NBTReader(source, Compression.NONE, lazy)).readNBT();
+  }
+
+  /**
+   * @param type The compression type stored in a chunk header.
+   * @return The matching compression, <code>null</code> if the type is unknown.
+   */
+  public static Compression compressionOf(int type) {
+    switch(type & ~EXTERNAL_FLAG) {
+    case COMPRESSION_GZIP:
+      return Compression.GZIP;
+    case COMPRESSION_ZLIB:
+      return Compression.ZLIB;
+    case COMPRESSION_NONE:
+      return Compression.NONE;
+    case COMPRESSION_LZ4:
+      return Compression.LZ4;
+    default:
+      return null;
+    }
+  }
+
+  private NBTReader configure(NBTReader reader) {
+    reader.setCompact(compact);
+    reader.setInterner(interner);
+    return reader;
+  }
+
+  private void readFully(ByteBuffer dest, long position) throws IOException {
+    while (dest.hasRemaining()) {
+      int read = channel.read(dest, position);
+      if (read < 0) {
+        throw new EOFException(String.format("Unexpected end of %s", path));
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * @throws IOException If closing the file throws an {@link java.io.IOException}
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,488 @@
+package lib.nbt.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lib.nbt.ByteArrayList;
+import lib.nbt.IntArrayList;
+import lib.nbt.LongArrayList;
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.PrimitiveArrayList;
+import lib.nbt.Tag;
+
+/**
+ * A class for parsing stringified NBT (SNBT), the text form of NBT used
+ * by Minecraft commands and data packs, such as
+ * <code>{Pos:[1.0d,64.0d,-3.5d],Count:3b,Tags:["a",'b'],Data:[I;1,2,3]}</code>.
+ *
+ * Values are read into the same types as {@link lib.nbt.io.NBTReader} produces:
+ * compounds as {@link java.util.HashMap}s, lists as {@link lib.nbt.NBTList}s
+ * and arrays as primitive arrays. Numbers take their type from their suffix:
+ * <code>b</code>, <code>s</code>, <code>L</code>, <code>f</code> and <code>d</code>,
+ * in either case. Unsuffixed whole numbers are ints, other unsuffixed
+ * numbers doubles, and <code>true</code> and <code>false</code> the bytes
+ * 1 and 0. Unquoted words that are not numbers are strings, as are numbers
+ * out of the range of their type.
+ *
+ * The text is parsed in a single pass, without a separate tokenizer or
+ * regular expressions.
+ *
+ * @see lib.nbt.io.SNBTWriter
+ * @author Kyrillos Tawadros
+ */
+public class SNBTReader {
+  /**
+   * The deepest nesting of compounds and lists accepted, as in Minecraft.
+   */
+  public static final int MAX_DEPTH = 512;
+
+  private final CharSequence source;
+  private final int end;
+  private int pos;
+  private int depth;
+
+  /**
+   * @param source The text to parse.
+   */
+  public SNBTReader(CharSequence source) {
+    if (source == null) {
+      throw new IllegalArgumentException("Source must not be null!");
+    }
+    this.source = source;
+    this.end = source.length();
+  }
+
+  /**
+   * @param source The text of a single SNBT value.
+   * @return The value held by <code>source</code>.
+   * @throws NBTException If <code>source</code> is not valid SNBT,
+   *   or holds anything after the value.
+   */
+  public static Object parse(CharSequence source) throws NBTException {
+    SNBTReader reader = new SNBTReader(source);
+    Object value = reader.readValue();
+    reader.expectEnd();
+    return value;
+  }
+
+  /**
+   * @return An unnamed tag holding the value read, usually a compound.
+   * @throws NBTException If the text is not valid SNBT, or holds anything after the value.
+   */
+  public Tag readNBT() throws NBTException {
+    Object value = readValue();
+    expectEnd();
+    return new Tag("", value);
+  }
+
+  /**
+   * @return The next value of the text.
+   * @throws NBTException If the text at the current position is not a valid SNBT value.
+   *
+   * Whitespace before and after the value is skipped. Calling this again
+   * reads a following value, if any.
+   */
+  public Object readValue() throws NBTException {
+    skipWhitespace();
+    if (pos == end) {
+      throw error("Expected a value");
+    }
+    Object value;
+    char c = source.charAt(pos);
+    if (c == '{') {
+      value = readCompound();
+    } else if (c == '[') {
+      value = readListOrArray();
+    } else if (c == '"' || c == '\'') {
+      value = readQuoted();
+    } else {
+      value = readScalar();
+    }
+    skipWhitespace();
+    return value;
+  }
+
+  /**
+   * @return <code>true</code> if only whitespace is left in the text
+   */
+  public boolean isAtEnd() {
+    skipWhitespace();
+    return pos == end;
+  }
+
+  /**
+   * @return The index of the next character to be read.
+   */
+  public int getPosition() {
+    return pos;
+  }
+
+  private void expectEnd() throws NBTException {
+    if (!isAtEnd()) {
+      throw error("Unexpected trailing data");
+    }
+  }
+
+  private Map<String, Object> readCompound() throws NBTException {
+    enter();
+    pos++;
+    Map<String, Object> compound = new HashMap<>();
+    skipWhitespace();
+    if (!consume('}')) {
+      do {
+        skipWhitespace();
+        int key_start = pos;
+        String key = readKey();
+        skipWhitespace();
+        if (!consume(':')) {
+          throw error("Expected ':' after key '" + key + "'");
+        }
+        if (compound.put(key, readValue()) != null) {
+          throw error(key_start, "Duplicate key '" + key + "'");
+        }
+      } while (consume(','));
+      expect('}');
+    }
+    depth--;
+    return compound;
+  }
+
+  private String readKey() throws NBTException {
+    if (pos < end) {
+      char c = source.charAt(pos);
+      if (c == '"' || c == '\'') {
+        return readQuoted();
+      }
+    }
+    int start = pos;
+    while (pos < end && isUnquoted(source.charAt(pos))) {
+      pos++;
+    }
+    if (pos == start) {
+      throw error("Expected a key");
+    }
+    return source.subSequence(start, pos).toString();
+  }
+
+  private Object readListOrArray() throws NBTException {
+    if (pos + 2 < end && source.charAt(pos + 2) == ';') {
+      char kind = source.charAt(pos + 1);
+      if (kind == 'B' || kind == 'I' || kind == 'L') {
+        pos += 3;
+        return readArray(kind);
+      }
+    }
+    enter();
+    pos++;
+    skipWhitespace();
+    NBTList list;
+    if (consume(']')) {
+      list = new NBTList(NBTType.END);
+    } else {
+      int start = pos;
+      Object first = readValue();
+      list = new NBTList(NBTType.typeOf(first));
+      list.add(first);
+      while (consume(',')) {
+        start = pos;
+        Object item = readValue();
+        if (NBTType.typeOf(item) != list.type) {
+          throw error(start, String.format("Expected an element of type %s, found %s", list.type,
+              NBTType.typeOf(item)));
+        }
+        list.add(item);
+      }
+      expect(']');
+    }
+    depth--;
+    return list;
+  }
+
+  private Object readArray(char kind) throws NBTException {
+    NBTType type = kind == 'B' ? NBTType.BYTE : kind == 'I' ? NBTType.INT : NBTType.LONG;
+    PrimitiveArrayList<?> elements = PrimitiveArrayList.forType(type);
+    skipWhitespace();
+    if (!consume(']')) {
+      do {
+        skipWhitespace();
+        int start = pos;
+        Object item = readScalar();
+        skipWhitespace();
+        // unsuffixed ints are accepted in byte and long arrays, as Minecraft writes them loosely
+        if (item instanceof Integer && type != NBTType.INT) {
+          long value = (Integer)item;
+          if (type == NBTType.BYTE && (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE)) {
+            throw error(start, "Byte out of range: " + value);
+          }
+          item = type == NBTType.BYTE ? (Object)(byte)value : (Object)value;
+        }
+        if (NBTType.typeOf(item) != type) {
+          throw error(start, String.format("Invalid element of [%c; array", kind));
+        }
+        if (type == NBTType.BYTE) {
+          ((ByteArrayList)elements).addByte((Byte)item);
+        } else if (type == NBTType.INT) {
+          ((IntArrayList)elements).addInt((Integer)item);
+        } else {
+          ((LongArrayList)elements).addLong((Long)item);
+        }
+      } while (consume(','));
+      expect(']');
+    }
+    return elements.toPrimitiveArray();
+  }
+
+  private String readQuoted() throws NBTException {
+    char quote = source.charAt(pos++);
+    int start = pos;
+    // fast path: no escapes, a single copy
+    while (pos < end) {
+      char c = source.charAt(pos);
+      if (c == quote) {
+        return source.subSequence(start, pos++).toString();
+      } else if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+    StringBuilder result = new StringBuilder(pos - start + 16);
+    result.append(source, start, pos);
+    while (pos < end) {
+      char c = source.charAt(pos++);
+      if (c == quote) {
+        return result.toString();
+      } else if (c != '\\') {
+        result.append(c);
+        continue;
+      } else if (pos == end) {
+        break;
+      }
+      char escaped = source.charAt(pos++);
+      switch (escaped) {
+      case '\\':
+      case '"':
+      case '\'':
+        result.append(escaped);
+        break;
+      case 'n':
+        result.append('\n');
+        break;
+      case 't':
+        result.append('\t');
+        break;
+      case 'r':
+        result.append('\r');
+        break;
+      case 'b':
+        result.append('\b');
+        break;
+      case 'f':
+        result.append('\f');
+        break;
+      case 'u':
+        if (pos + 4 > end) {
+          throw error(pos - 2, "Invalid unicode escape");
+        }
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(source.charAt(pos++), 16);
+          if (digit < 0) {
+            throw error(pos - 1, "Invalid unicode escape");
+          }
+          code = code << 4 | digit;
+        }
+        result.append((char)code);
+        break;
+      default:
+        throw error(pos - 2, "Invalid escape sequence \\" + escaped);
+      }
+    }
+    throw error(start - 1, "Unterminated string");
+  }
+
+  /**
+   * Reads an unquoted word, as a number if it is one of a valid type, a boolean
+   * as a byte, or a string.
+   */
+  private Object readScalar() throws NBTException {
+    int start = pos;
+    while (pos < end && isUnquoted(source.charAt(pos))) {
+      pos++;
+    }
+    if (pos == start) {
+      throw error("Expected a value");
+    }
+    Object number = parseNumber(start, pos);
+    if (number != null) {
+      return number;
+    }
+    String word = source.subSequence(start, pos).toString();
+    if (word.equals("true")) {
+      return (byte)1;
+    } else if (word.equals("false")) {
+      return (byte)0;
+    }
+    return word;
+  }
+
+  /**
+   * @return The number spelled by the characters from <code>start</code> to
+   *   <code>stop</code>, <code>null</code> if they are not a number in the range of its type
+   */
+  private Object parseNumber(int start, int stop) {
+    char suffix = Character.toLowerCase(source.charAt(stop - 1));
+    int digits_end = suffix >= 'a' && suffix <= 'z' ? stop - 1 : stop;
+    if (digits_end == start) {
+      return null;
+    }
+
+    int i = start;
+    char first = source.charAt(i);
+    if (first == '-' || first == '+') {
+      i++;
+    }
+    if (i < digits_end && isDigits(i, digits_end)) {
+      long value;
+      if (digits_end - i <= TextFormat.SAFE_DIGITS) {
+        value = TextFormat.parseDigits(source, i, digits_end);
+        value = first == '-' ? -value : value;
+      } else {
+        try {
+          value = Long.parseLong(source.subSequence(start, digits_end).toString());
+        } catch (NumberFormatException e) {
+          return suffix == 'f' || suffix == 'd' ? parseDecimal(start, digits_end, suffix) : null;
+        }
+      }
+      switch (suffix) {
+      case 'b':
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? (Object)(byte)value : null;
+      case 's':
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ? (Object)(short)value : null;
+      case 'l':
+        return value;
+      case 'f':
+        return (float)value;
+      case 'd':
+        return (double)value;
+      default:
+        if (digits_end != stop) {
+          return null;
+        }
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object)(int)value : null;
+      }
+    }
+
+    if (i == digits_end || suffix != 'f' && suffix != 'd' && digits_end != stop || !isDecimal(i, digits_end)) {
+      return null;
+    }
+    return parseDecimal(start, digits_end, suffix);
+  }
+
+  private Object parseDecimal(int start, int stop, char suffix) {
+    double decimal = Double.parseDouble(source.subSequence(start, stop).toString());
+    return suffix == 'f' ? (Object)(float)decimal : (Object)decimal;
+  }
+
+  private boolean isDigits(int start, int stop) {
+    for (int i = start; i < stop; i++) {
+      char c = source.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return <code>true</code> if the characters are a decimal number without
+   *   a sign: digits with an optional point and exponent, <code>NaN</code> or <code>Infinity</code>
+   */
+  private boolean isDecimal(int start, int stop) {
+    char first = source.charAt(start);
+    if (first == 'N' || first == 'I') {
+      String special = first == 'N' ? "NaN" : "Infinity";
+      if (stop - start != special.length()) {
+        return false;
+      }
+      for (int i = start; i < stop; i++) {
+        if (source.charAt(i) != special.charAt(i - start)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    boolean digits = false;
+    boolean point = false;
+    int i = start;
+    for (; i < stop; i++) {
+      char c = source.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits = true;
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+    if (!digits) {
+      return false;
+    } else if (i == stop) {
+      return true;
+    } else if (Character.toLowerCase(source.charAt(i)) != 'e' || ++i == stop) {
+      return false;
+    }
+    char sign = source.charAt(i);
+    if ((sign == '-' || sign == '+') && ++i == stop) {
+      return false;
+    }
+    return isDigits(i, stop);
+  }
+
+  /**
+   * @return <code>true</code> if <code>c</code> may appear in an unquoted key or string
+   */
+  static boolean isUnquoted(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+        || c == '_' || c == '-' || c == '.' || c == '+';
+  }
+
+  private void skipWhitespace() {
+    while (pos < end && Character.isWhitespace(source.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private boolean consume(char c) {
+    skipWhitespace();
+    if (pos < end && source.charAt(pos) == c) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(char c) throws NBTException {
+    if (!consume(c)) {
+      throw error(pos < end ? String.format("Expected '%c' or ','", c) : String.format("Expected '%c'", c));
+    }
+  }
+
+  private void enter() throws NBTException {
+    if (++depth > MAX_DEPTH) {
+      throw error(String.format("Nesting deeper than %d", MAX_DEPTH));
+    }
+  }
+
+  private NBTException error(String message) {
+    return error(pos, message);
+  }
+
+  private NBTException error(int at, String message) {
+    int from = Math.max(0, at - 16);
+    int to = Math.min(end, at + 16);
+    return new NBTException(String.format("%s at position %d: ...%s<--[HERE]%s", message, at,
+        source.subSequence(from, at), source.subSequence(at, to)));
+  }
+}
@@ -0,0 +1,295 @@
+package lib.nbt.io;
+
+import java.io.IOException;
+import java.util.Map;
+
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+
+/**
+ * A class for writing values as stringified NBT (SNBT), which
+ * {@link lib.nbt.io.SNBTReader} reads back to equal values.
+ *
+ * Compact output has no whitespace at all:
+ * <code>{Count:3b,Pos:[1.0d,64.0d],Data:[I;1,2,3]}</code>. Pretty output puts each
+ * entry of a compound, and each element of a list of compounds or lists, on its
+ * own indented line, and spaces out the rest.
+ *
+ * Numbers are written with their type suffix (except ints), strings in double
+ * quotes (single quotes if that saves escaping) and keys unquoted when they can be.
+ *
+ * Text is appended to a {@link java.lang.StringBuilder} directly, so one
+ * builder can be reset and reused for many values. Other
+ * {@link java.lang.Appendable}s are written to in chunks.
+ *
+ * @see lib.nbt.io.SNBTReader
+ * @author Kyrillos Tawadros
+ */
+public class SNBTWriter {
+  private static final int FLUSH_SIZE = 8192;
+
+  private final Appendable dest;
+  private final StringBuilder out;
+  private final boolean pretty;
+  private String indent = "  ";
+  private int depth;
+
+  /**
+   * @param dest The destination of the text.
+   * @param pretty <code>true</code> to break lines and indent, <code>false</code>
+   *   for compact output
+   */
+  public SNBTWriter(Appendable dest, boolean pretty) {
+    if (dest == null) {
+      throw new IllegalArgumentException("Destination must not be null!");
+    }
+    this.dest = dest;
+    this.out = dest instanceof StringBuilder ? (StringBuilder)dest : new StringBuilder(FLUSH_SIZE + 256);
+    this.pretty = pretty;
+  }
+
+  /**
+   * @param dest The destination of the text.
+   *
+   * This constructor assumes <code>pretty=false</code>.
+   */
+  public SNBTWriter(Appendable dest) {
+    this(dest, false);
+  }
+
+  /**
+   * @param value An NBT value.
+   * @param pretty <code>true</code> to break lines and indent
+   * @return The SNBT text of <code>value</code>.
+   * @throws IllegalArgumentException If <code>value</code> is not a valid NBT value.
+   */
+  public static String toString(Object value, boolean pretty) {
+    StringBuilder result = new StringBuilder();
+    try {
+      new SNBTWriter(result, pretty).write(value);
+    } catch (IOException e) {
+      // a StringBuilder never throws
+      throw new IllegalStateException(e);
+    }
+    return result.toString();
+  }
+
+  /**
+   * @param indent The text to indent pretty output with, per level. Two spaces by default.
+   */
+  public void setIndent(String indent) {
+    this.indent = indent;
+  }
+
+  /**
+   * @param root The tag to write. Its name is not part of the text.
+   * @throws IOException If the destination throws an {@link java.io.IOException}
+   */
+  public void writeNBT(Tag root) throws IOException {
+    write(root.getValue());
+  }
+
+  /**
+   * @param value The value to write.
+   * @throws IOException If the destination throws an {@link java.io.IOException}
+   * @throws IllegalArgumentException If <code>value</code> is not a valid NBT value.
+   */
+  public void write(Object value) throws IOException {
+    writeValue(value);
+    flush(0);
+  }
+
+  private void flush(int threshold) throws IOException {
+    if (out != dest && out.length() > threshold) {
+      dest.append(out);
+      out.setLength(0);
+    }
+  }
+
+  private void writeValue(Object value) throws IOException {
+    NBTType type = NBTType.typeOf(value);
+    if (type == null) {
+      throw new IllegalArgumentException("Invalid object " + String.valueOf(value));
+    }
+    switch (type) {
+    case BYTE:
+      out.append((byte)value).append('b');
+      break;
+    case SHORT:
+      out.append((short)value).append('s');
+      break;
+    case INT:
+      out.append((int)value);
+      break;
+    case LONG:
+      out.append((long)value).append('L');
+      break;
+    case FLOAT:
+      out.append((float)value).append('f');
+      break;
+    case DOUBLE:
+      out.append((double)value).append('d');
+      break;
+    case STRING:
+      writeString((String)value);
+      break;
+    case BYTE_ARRAY:
+    case INT_ARRAY:
+    case LONG_ARRAY:
+      writeArray(NBTType.unboxArray(value));
+      break;
+    case LIST:
+      writeList((NBTList)value);
+      break;
+    case COMPOUND:
+      writeCompound((Map<?, ?>)value);
+      break;
+    default:
+      throw new IllegalArgumentException("Can't write a value of type " + type);
+    }
+  }
+
+  private void writeCompound(Map<?, ?> compound) throws IOException {
+    if (compound.isEmpty()) {
+      out.append("{}");
+      return;
+    }
+    out.append('{');
+    depth++;
+    boolean first = true;
+    for (Map.Entry<?, ?> entry : compound.entrySet()) {
+      if (!first) {
+        out.append(',');
+      }
+      first = false;
+      newLine();
+      writeKey((String)entry.getKey());
+      out.append(pretty ? ": " : ":");
+      writeValue(entry.getValue());
+      flush(FLUSH_SIZE);
+    }
+    depth--;
+    newLine();
+    out.append('}');
+  }
+
+  private void writeList(NBTList list) throws IOException {
+    int size = list.size();
+    if (size == 0) {
+      out.append("[]");
+      return;
+    }
+    boolean nested = pretty && (list.type == NBTType.COMPOUND || list.type == NBTType.LIST);
+    out.append('[');
+    depth++;
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        out.append(pretty && !nested ? ", " : ",");
+      }
+      if (nested) {
+        newLine();
+      }
+      switch (list.type) {
+      // numeric elements are read unboxed
+      case BYTE:
+        out.append(list.getByte(i)).append('b');
+        break;
+      case SHORT:
+        out.append(list.getShort(i)).append('s');
+        break;
+      case INT:
+        out.append(list.getInt(i));
+        break;
+      case LONG:
+        out.append(list.getLong(i)).append('L');
+        break;
+      case FLOAT:
+        out.append(list.getFloat(i)).append('f');
+        break;
+      case DOUBLE:
+        out.append(list.getDouble(i)).append('d');
+        break;
+      default:
+        writeValue(list.get(i));
+        break;
+      }
+      flush(FLUSH_SIZE);
+    }
+    depth--;
+    if (nested) {
+      newLine();
+    }
+    out.append(']');
+  }
+
+  private void writeArray(Object array) throws IOException {
+    String separator = pretty ? ", " : ",";
+    if (array instanceof byte[]) {
+      byte[] bytes = (byte[])array;
+      out.append(pretty && bytes.length > 0 ? "[B; " : "[B;");
+      for (int i = 0; i < bytes.length; i++) {
+        if (i > 0) {
+          out.append(separator);
+        }
+        out.append(bytes[i]).append('b');
+      }
+    } else if (array instanceof int[]) {
+      int[] ints = (int[])array;
+      out.append(pretty && ints.length > 0 ? "[I; " : "[I;");
+      for (int i = 0; i < ints.length; i++) {
+        if (i > 0) {
+          out.append(separator);
+        }
+        out.append(ints[i]);
+        if ((i & 1023) == 1023) {
+          flush(FLUSH_SIZE);
+        }
+      }
+    } else {
+      long[] longs = (long[])array;
+      out.append(pretty && longs.length > 0 ? "[L; " : "[L;");
+      for (int i = 0; i < longs.length; i++) {
+        if (i > 0) {
+          out.append(separator);
+        }
+        out.append(longs[i]).append('L');
+        if ((i & 511) == 511) {
+          flush(FLUSH_SIZE);
+        }
+      }
+    }
+    out.append(']');
+  }
+
+  private void writeKey(String key) {
+    boolean plain = !key.isEmpty();
+    for (int i = 0; i < key.length() && plain; i++) {
+      plain = SNBTReader.isUnquoted(key.charAt(i));
+    }
+    if (plain) {
+      out.append(key);
+    } else {
+      writeString(key);
+    }
+  }
+
+  private void writeString(String str) {
+    char quote = '"';
+    if (str.indexOf('"') >= 0 && str.indexOf('\'') < 0) {
+      quote = '\'';
+    }
+    out.append(quote);
+    TextFormat.appendEscaped(out, str, quote, false);
+    out.append(quote);
+  }
+
+  private void newLine() {
+    if (pretty) {
+      out.append('\n');
+      for (int i = 0; i < depth; i++) {
+        out.append(indent);
+      }
+    }
+  }
+}
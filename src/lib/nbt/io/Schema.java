@@ -0,0 +1,250 @@
+package lib.nbt.io;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lib.nbt.NBTType;
+
+/**
+ * The expected layout of NBT data: which entries a compound holds, of what
+ * types, and which of them to drop. A schema is compiled once into a
+ * {@link lib.nbt.io.SchemaDecoder}, which reads only the declared parts
+ * of each document and checks them as it goes.
+ *
+ * For example, the block data of a chunk:
+ * <pre>
+ * Schema chunk = Schema.compound()
+ *     .require("DataVersion", NBTType.INT)
+ *     .require("xPos", NBTType.INT)
+ *     .require("zPos", NBTType.INT)
+ *     .key("sections", Schema.listOf(Schema.compound()
+ *         .require("Y", NBTType.BYTE)
+ *         .key("block_states", Schema.compound()
+ *             .key("palette", Schema.listOf(NBTType.COMPOUND))
+ *             .key("data", NBTType.LONG_ARRAY)
+ *             .build())
+ *         .build()))
+ *     .build();
+ * </pre>
+ *
+ * Compounds are decoded to {@link java.util.HashMap}s holding the declared
+ * entries present in the data. Other entries are skipped without being
+ * decoded, unless {@link Builder#keepOthers()} is set. Values of a leaf
+ * schema, made by {@link #of(NBTType)}, are decoded whole.
+ *
+ * Schemas are immutable.
+ *
+ * @see lib.nbt.io.SchemaDecoder
+ * @author Kyrillos Tawadros
+ */
+public final class Schema {
+  final NBTType type;
+
+  /**
+   * The entries of a compound schema by name, <code>null</code> for other schemas.
+   */
+  final Map<String, Entry> entries;
+
+  /**
+   * <code>true</code> if a compound keeps entries it does not declare.
+   */
+  final boolean keepOthers;
+
+  /**
+   * The schema of the elements of a list, <code>null</code> for other schemas.
+   */
+  final Schema element;
+
+  /**
+   * A declared entry of a compound.
+   */
+  static final class Entry {
+    /**
+     * The schema of the value, <code>null</code> if the entry is dropped.
+     */
+    final Schema schema;
+    final boolean required;
+
+    Entry(Schema schema, boolean required) {
+      this.schema = schema;
+      this.required = required;
+    }
+  }
+
+  private Schema(NBTType type, Map<String, Entry> entries, boolean keepOthers, Schema element) {
+    this.type = type;
+    this.entries = entries;
+    this.keepOthers = keepOthers;
+    this.element = element;
+  }
+
+  /**
+   * @param type The type of the value.
+   * @return A schema accepting any value of <code>type</code>, decoded whole.
+   */
+  public static Schema of(NBTType type) {
+    if (type == null || type == NBTType.END) {
+      throw new IllegalArgumentException(String.format("Invalid schema type %s", String.valueOf(type)));
+    }
+    return new Schema(type, null, false, null);
+  }
+
+  /**
+   * @param element The schema of the elements.
+   * @return A schema accepting lists of values matching <code>element</code>,
+   *   and empty lists of any type.
+   */
+  public static Schema listOf(Schema element) {
+    if (element == null) {
+      throw new IllegalArgumentException("Element schema must not be null!");
+    }
+    return new Schema(NBTType.LIST, null, false, element);
+  }
+
+  /**
+   * @param elementType The type of the elements.
+   * @return A schema accepting lists of <code>elementType</code>,
+   *   and empty lists of any type.
+   */
+  public static Schema listOf(NBTType elementType) {
+    return listOf(of(elementType));
+  }
+
+  /**
+   * @return A builder of a compound schema.
+   */
+  public static Builder compound() {
+    return new Builder();
+  }
+
+  /**
+   * @return The type of the values this schema accepts.
+   */
+  public NBTType getType() {
+    return type;
+  }
+
+  /**
+   * @return The schema of list elements, <code>null</code> if this is not a list schema.
+   */
+  public Schema getElement() {
+    return element;
+  }
+
+  /**
+   * @return The names of the entries a compound schema declares, including dropped ones,
+   *   in declaration order. Empty for other schemas.
+   */
+  public Iterable<String> getKeys() {
+    return entries == null ? Collections.<String>emptySet() : entries.keySet();
+  }
+
+  /**
+   * @param name The name of an entry.
+   * @return The schema of the entry, <code>null</code> if it is dropped or not declared.
+   */
+  public Schema get(String name) {
+    Entry entry = entries == null ? null : entries.get(name);
+    return entry == null ? null : entry.schema;
+  }
+
+  /**
+   * @return A decoder of documents whose root compound matches this schema.
+   * @throws IllegalArgumentException If this is not a compound schema.
+   */
+  public SchemaDecoder compile() {
+    return new SchemaDecoder(this);
+  }
+
+  /**
+   * Declares the entries of a compound schema. Each name may be declared once.
+   */
+  public static final class Builder {
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean keepOthers;
+
+    private Builder() {}
+
+    private Builder put(String name, Schema schema, boolean required) {
+      if (name == null) {
+        throw new IllegalArgumentException("Name must not be null!");
+      }
+      if (entries.containsKey(name)) {
+        throw new IllegalArgumentException(String.format("Entry '%s' is already declared", name));
+      }
+      entries.put(name, new Entry(schema, required));
+      return this;
+    }
+
+    /**
+     * @param name The name of the entry.
+     * @param type The type of the entry, decoded whole.
+     * @return This builder.
+     */
+    public Builder key(String name, NBTType type) {
+      return put(name, of(type), false);
+    }
+
+    /**
+     * @param name The name of the entry.
+     * @param schema The schema of the entry.
+     * @return This builder.
+     */
+    public Builder key(String name, Schema schema) {
+      if (schema == null) {
+        throw new IllegalArgumentException("Schema must not be null!");
+      }
+      return put(name, schema, false);
+    }
+
+    /**
+     * @param name The name of the entry, which every matching compound must have.
+     * @param type The type of the entry, decoded whole.
+     * @return This builder.
+     */
+    public Builder require(String name, NBTType type) {
+      return put(name, of(type), true);
+    }
+
+    /**
+     * @param name The name of the entry, which every matching compound must have.
+     * @param schema The schema of the entry.
+     * @return This builder.
+     */
+    public Builder require(String name, Schema schema) {
+      if (schema == null) {
+        throw new IllegalArgumentException("Schema must not be null!");
+      }
+      return put(name, schema, true);
+    }
+
+    /**
+     * @param name The name of an entry to skip, whatever its type.
+     * @return This builder.
+     *
+     * Entries that are not declared are skipped anyway, so this is only
+     * needed along with {@link #keepOthers()}.
+     */
+    public Builder drop(String name) {
+      return put(name, null, false);
+    }
+
+    /**
+     * Keeps entries that are not declared, decoded whole, instead of skipping them.
+     *
+     * @return This builder.
+     */
+    public Builder keepOthers() {
+      keepOthers = true;
+      return this;
+    }
+
+    /**
+     * @return The compound schema.
+     */
+    public Schema build() {
+      return new Schema(NBTType.COMPOUND, Collections.unmodifiableMap(new LinkedHashMap<>(entries)), keepOthers, null);
+    }
+  }
+}
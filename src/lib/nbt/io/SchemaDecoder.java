@@ -0,0 +1,442 @@
+package lib.nbt.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Tag;
+import lib.nbt.Util;
+
+/**
+ * A decoder specialized for one {@link lib.nbt.io.Schema}, made by
+ * {@link lib.nbt.io.Schema#compile()}.
+ *
+ * Each compound of the schema is compiled into a hash table of its
+ * declared entries, keyed by their encoded names. Entry names in the data
+ * are looked up by their bytes, so no name is decoded: matched entries
+ * reuse the schema's strings, and other entries are skipped by length
+ * without decoding their names or values. Lists are read straight into
+ * their elements' decoders, and leaf values by a single switch on their
+ * declared type.
+ *
+ * Types are checked as entries are met. A mismatch, a missing required
+ * entry or invalid data throws an {@link lib.nbt.NBTException} naming the
+ * path of the failing value, e.g. <code>sections[3].block_states.data</code>.
+ *
+ * Decoders are immutable and can be shared between threads.
+ *
+ * @see lib.nbt.io.Schema
+ * @author Kyrillos Tawadros
+ */
+public final class SchemaDecoder {
+  private final Schema schema;
+  private final CompoundNode root;
+
+  /**
+   * @param schema The compound schema of the root.
+   * @throws IllegalArgumentException If <code>schema</code> is not a compound schema.
+   */
+  SchemaDecoder(Schema schema) {
+    if (schema.type != NBTType.COMPOUND || schema.entries == null) {
+      throw new IllegalArgumentException(String.format("Root schema must be a compound, not %s", schema.type));
+    }
+    this.schema = schema;
+    this.root = (CompoundNode)compile(schema);
+  }
+
+  private static Node compile(Schema schema) {
+    if (schema.entries != null) {
+      return new CompoundNode(schema);
+    } else if (schema.element != null) {
+      return new ListNode(compile(schema.element));
+    }
+    return new LeafNode(schema.type);
+  }
+
+  /**
+   * @return The schema this decoder was compiled from.
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @param source The stream holding the document, with its compression
+   *   detected from its magic bytes. It is not closed.
+   * @return The root tag of the document, holding the parts declared by the schema,
+   *   <code>null</code> if <code>source</code> is empty
+   * @throws IOException If <code>source</code> throws an {@link java.io.IOException}
+   * @throws NBTException If the data is invalid or does not match the schema.
+   */
+  public Tag decode(InputStream source) throws IOException, NBTException {
+    InputStream data = NBTStreamReader.decompress(source, null);
+    if (!(data instanceof BufferedInputStream)) {
+      data = new BufferedInputStream(data);
+    }
+    return decode(new StreamInput(new DataInputStream(data)));
+  }
+
+  /**
+   * @param source The buffer holding the uncompressed document,
+   *   which is read from its position to its limit. Its position is not changed.
+   * @return The root tag of the document, holding the parts declared by the schema,
+   *   <code>null</code> if <code>source</code> is empty
+   * @throws IOException If the document ends early.
+   * @throws NBTException If the data is invalid or does not match the schema.
+   */
+  public Tag decode(ByteBuffer source) throws IOException, NBTException {
+    return decode(new BufferInput(source));
+  }
+
+  /**
+   * @param source The array holding the uncompressed document.
+   * @param offset The index of the first byte of the document.
+   * @param length The length of the document.
+   * @return The root tag of the document, holding the parts declared by the schema,
+   *   <code>null</code> if the document is empty
+   * @throws IOException If the document ends early.
+   * @throws NBTException If the data is invalid or does not match the schema.
+   */
+  public Tag decode(byte[] source, int offset, int length) throws IOException, NBTException {
+    return decode(ByteBuffer.wrap(source, offset, length));
+  }
+
+  private Tag decode(NBTInput source) throws IOException, NBTException {
+    int tag_id = source.read();
+    if (tag_id == -1) {
+      return null;
+    } else if (tag_id != NBTType.COMPOUND.id) {
+      throw new NBTException(String.format("Expected a root %s, found %s", NBTType.COMPOUND,
+          NBTType.getById((byte)tag_id)));
+    }
+    Run run = new Run(source);
+    try {
+      String name = source.readUTF();
+      return new Tag(name, root.read(run));
+    } catch (NBTException e) {
+      if (run.located) {
+        throw e;
+      }
+      throw new NBTException(String.format("%s at %s", e.getMessage(), run.path()));
+    } catch (EOFException e) {
+      throw new NBTException(String.format("Stream ended before tag completed at %s", run.path()));
+    }
+  }
+
+  /**
+   * The state of one call to {@link #decode(NBTInput)}: the input, the bytes
+   * of the last entry name, and the path to the current value.
+   */
+  private static final class Run {
+    final NBTInput source;
+
+    /**
+     * Reads and skips the values the schema does not describe.
+     */
+    final NBTStreamReader generic;
+
+    byte[] name = new byte[64];
+
+    /**
+     * The entry name or list index of each level of the path. Names
+     * are <code>null</code> at list levels.
+     */
+    String[] names = new String[16];
+    int[] indices = new int[16];
+    int depth;
+
+    /**
+     * <code>true</code> once an exception naming its path was thrown.
+     */
+    boolean located;
+
+    Run(NBTInput source) {
+      this.source = source;
+      this.generic = new NBTStreamReader(source, false);
+    }
+
+    /**
+     * @return The number of bytes of the next entry name, read into {@link #name}.
+     */
+    int readName() throws IOException {
+      int length = source.readUnsignedShort();
+      if (length > name.length) {
+        name = new byte[Math.max(length, name.length * 2)];
+      }
+      source.readFully(name, 0, length);
+      return length;
+    }
+
+    void push(String key, int index) {
+      if (depth == names.length) {
+        names = Arrays.copyOf(names, depth * 2);
+        indices = Arrays.copyOf(indices, depth * 2);
+      }
+      names[depth] = key;
+      indices[depth] = index;
+      depth++;
+    }
+
+    String path() {
+      if (depth == 0) {
+        return "the root";
+      }
+      StringBuilder path = new StringBuilder();
+      for (int i = 0; i < depth; i++) {
+        if (names[i] == null) {
+          path.append('[').append(indices[i]).append(']');
+        } else {
+          if (i > 0) {
+            path.append('.');
+          }
+          path.append(names[i]);
+        }
+      }
+      return path.toString();
+    }
+
+    NBTException error(String format, Object... args) {
+      located = true;
+      return new NBTException(String.format(format, args) + " at " + path());
+    }
+  }
+
+  /**
+   * Decodes the payload of one value of {@link #type}.
+   */
+  private abstract static class Node {
+    final NBTType type;
+
+    Node(NBTType type) {
+      this.type = type;
+    }
+
+    abstract Object read(Run run) throws IOException, NBTException;
+  }
+
+  private static final class LeafNode extends Node {
+    LeafNode(NBTType type) {
+      super(type);
+    }
+
+    @Override
+    Object read(Run run) throws IOException, NBTException {
+      NBTInput source = run.source;
+      switch (type) {
+      case BYTE:
+        return source.readByte();
+      case SHORT:
+        return source.readShort();
+      case INT:
+        return source.readInt();
+      case LONG:
+        return source.readLong();
+      case FLOAT:
+        return source.readFloat();
+      case DOUBLE:
+        return source.readDouble();
+      case STRING:
+        return source.readUTF();
+      default:
+        return run.generic.readPayload(type);
+      }
+    }
+  }
+
+  private static final class ListNode extends Node {
+    private final Node element;
+
+    ListNode(Node element) {
+      super(NBTType.LIST);
+      this.element = element;
+    }
+
+    @Override
+    Object read(Run run) throws IOException, NBTException {
+      NBTInput source = run.source;
+      NBTType element_type = NBTType.getById(source.readByte());
+      int length = source.readInt();
+      if (length < 0) {
+        throw run.error("Negative length %d", length);
+      }
+      if (length == 0) {
+        return new NBTList(element_type);
+      } else if (element_type != element.type) {
+        throw run.error("Expected a list of %s, found a list of %s", element.type, element_type);
+      } else if (element instanceof LeafNode) {
+        return run.generic.readList(element_type, length);
+      }
+      NBTList list = new NBTList(element_type);
+      list.ensureCapacity(Math.min(length, NBTStreamReader.MAX_PRESIZE));
+      run.push(null, 0);
+      int level = run.depth - 1;
+      for (int i = 0; i < length; i++) {
+        run.indices[level] = i;
+        list.add(element.read(run));
+      }
+      run.depth--;
+      return list;
+    }
+  }
+
+  /**
+   * A compound, whose declared entries are looked up in an open-addressed
+   * table by the hash of their encoded names.
+   */
+  private static final class CompoundNode extends Node {
+    private final Field[] table;
+    private final int mask;
+    private final boolean keepOthers;
+    private final int capacity;
+
+    /**
+     * The {@link Field#requiredBit} of every required entry.
+     */
+    private final long requiredMask;
+
+    /**
+     * The required entries, in declaration order.
+     */
+    private final Field[] required;
+
+    CompoundNode(Schema schema) {
+      super(NBTType.COMPOUND);
+      int size = Integer.highestOneBit(Math.max(schema.entries.size(), 1) * 2 - 1) << 1;
+      this.table = new Field[size];
+      this.mask = size - 1;
+      this.keepOthers = schema.keepOthers;
+
+      int count = 0;
+      int kept = 0;
+      long required_mask = 0;
+      Field[] required_fields = new Field[schema.entries.size()];
+      for (Map.Entry<String, Schema.Entry> entry : schema.entries.entrySet()) {
+        Schema.Entry declared = entry.getValue();
+        Field field = new Field(entry.getKey(), declared.schema == null ? null : compile(declared.schema));
+        if (declared.required) {
+          if (count == Long.SIZE) {
+            throw new IllegalArgumentException(String.format("A compound may require at most %d entries",
+                Long.SIZE));
+          }
+          field.requiredBit = 1L << count;
+          required_mask |= field.requiredBit;
+          required_fields[count++] = field;
+        }
+        if (field.node != null) {
+          kept++;
+        }
+        int slot = field.hash & mask;
+        while (table[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = field;
+      }
+      this.requiredMask = required_mask;
+      this.required = Arrays.copyOf(required_fields, count);
+      this.capacity = keepOthers ? 16 : (int)(kept / 0.75f) + 1;
+    }
+
+    /**
+     * @return The entry whose encoded name is the first <code>length</code>
+     *   bytes of <code>name</code>, <code>null</code> if it is not declared
+     */
+    private Field find(byte[] name, int length) {
+      int hash = Field.hash(name, length);
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        Field field = table[slot];
+        if (field == null) {
+          return null;
+        } else if (field.hash == hash && Arrays.equals(field.bytes, 0, field.bytes.length, name, 0, length)) {
+          return field;
+        }
+      }
+    }
+
+    @Override
+    Object read(Run run) throws IOException, NBTException {
+      NBTInput source = run.source;
+      Map<String, Object> result = new HashMap<>(capacity);
+      long seen = 0;
+      byte tag_id;
+      while ((tag_id = source.readByte()) != NBTType.END.id) {
+        NBTType found = NBTType.getById(tag_id);
+        int length = run.readName();
+        Field field = find(run.name, length);
+        if (field == null) {
+          if (keepOthers) {
+            String key = ModifiedUtf8.decode(run.name, 0, length);
+            run.push(key, -1);
+            result.put(key, run.generic.readPayload(found));
+            run.depth--;
+          } else {
+            run.generic.skipPayload(found);
+          }
+          continue;
+        } else if (field.node == null) {
+          run.generic.skipPayload(found);
+          continue;
+        }
+        run.push(field.name, -1);
+        if (found != field.node.type) {
+          throw run.error("Expected %s, found %s", field.node.type, found);
+        }
+        result.put(field.name, field.node.read(run));
+        run.depth--;
+        seen |= field.requiredBit;
+      }
+      if ((seen & requiredMask) != requiredMask) {
+        for (Field field : required) {
+          if ((seen & field.requiredBit) == 0) {
+            run.push(field.name, -1);
+            throw run.error("Missing %s", field.node.type);
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A declared entry of a compound.
+   */
+  private static final class Field {
+    final String name;
+    final byte[] bytes;
+    final int hash;
+
+    /**
+     * The decoder of the value, <code>null</code> if the entry is dropped.
+     */
+    final Node node;
+
+    /**
+     * The bit marking a required entry as seen, 0 for optional entries.
+     */
+    long requiredBit;
+
+    Field(String name, Node node) {
+      this.name = name;
+      this.bytes = new byte[Util.modifiedUtf8Length(name)];
+      ModifiedUtf8.encode(name, bytes, 0);
+      this.hash = hash(bytes, bytes.length);
+      this.node = node;
+    }
+
+    static int hash(byte[] bytes, int length) {
+      int h = length;
+      for (int i = 0; i < length; i++) {
+        h = 31 * h + bytes[i];
+      }
+      return h ^ (h >>> 16);
+    }
+  }
+}
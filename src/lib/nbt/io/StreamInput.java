@@ -0,0 +1,97 @@
+package lib.nbt.io;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import lib.nbt.Util;
+
+/**
+ * An {@link lib.nbt.io.NBTInput} reading from a {@link java.io.DataInputStream}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class StreamInput extends NBTInput {
+  private final DataInputStream source;
+  private byte[] scratch = new byte[128];
+
+  /**
+   * @param source The stream to read from. It is not buffered further,
+   *   so no bytes beyond those decoded are consumed.
+   */
+  StreamInput(DataInputStream source) {
+    this.source = source;
+  }
+
+  @Override
+  int read() throws IOException {
+    return source.read();
+  }
+
+  @Override
+  byte readByte() throws IOException {
+    return source.readByte();
+  }
+
+  @Override
+  short readShort() throws IOException {
+    return source.readShort();
+  }
+
+  @Override
+  int readUnsignedShort() throws IOException {
+    return source.readUnsignedShort();
+  }
+
+  @Override
+  int readInt() throws IOException {
+    return source.readInt();
+  }
+
+  @Override
+  long readLong() throws IOException {
+    return source.readLong();
+  }
+
+  @Override
+  String readUTF(StringInterner interner) throws IOException {
+    int length = source.readUnsignedShort();
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, 2 * scratch.length)];
+    }
+    source.readFully(scratch, 0, length);
+    return interner != null ? interner.intern(scratch, 0, length) : ModifiedUtf8.decode(scratch, 0, length);
+  }
+
+  @Override
+  void readFully(byte[] dest, int offset, int length) throws IOException {
+    source.readFully(dest, offset, length);
+  }
+
+  @Override
+  void readInts(int[] dest, int offset, int length) throws IOException {
+    Util.readInts(source, dest, offset, length);
+  }
+
+  @Override
+  void readLongs(long[] dest, int offset, int length) throws IOException {
+    Util.readLongs(source, dest, offset, length);
+  }
+
+  @Override
+  void skipBytes(long count) throws IOException {
+    while (count > 0) {
+      int skipped = source.skipBytes((int)Math.min(count, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        // skipBytes may give up early; read a byte to detect the end of the stream
+        source.readByte();
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+}
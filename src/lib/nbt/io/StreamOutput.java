@@ -0,0 +1,192 @@
+package lib.nbt.io;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+
+import lib.nbt.Util;
+
+/**
+ * A buffered {@link java.io.DataOutput} writing big-endian values to an
+ * {@link java.io.OutputStream}, in place of a {@link java.io.DataOutputStream}
+ * over a {@link java.io.BufferedOutputStream}.
+ *
+ * Strings are encoded straight into the buffer, and short ones are
+ * copied from the encoder cache of {@link lib.nbt.io.ModifiedUtf8}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class StreamOutput implements DataOutput, Closeable {
+  private OutputStream dest;
+  private final byte[] buffer = new byte[8192];
+  private int count;
+
+  /**
+   * @param dest The stream to write to.
+   */
+  StreamOutput(OutputStream dest) {
+    this.dest = dest;
+  }
+
+  /**
+   * @param dest The stream to write to next, <code>null</code> to
+   *   drop the reference to the previous one.
+   *
+   * Discards any bytes still buffered for the previous stream.
+   */
+  void reset(OutputStream dest) {
+    this.dest = dest;
+    this.count = 0;
+  }
+
+  /**
+   * Makes room for at least <code>length</code> bytes,
+   * which must not exceed the buffer size.
+   */
+  private void ensure(int length) throws IOException {
+    if (length > buffer.length - count) {
+      flushBuffer();
+    }
+  }
+
+  /**
+   * Writes the buffered bytes to the stream, without flushing it.
+   */
+  void flushBuffer() throws IOException {
+    if (count > 0) {
+      dest.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensure(Byte.BYTES);
+    buffer[count++] = (byte)b;
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (len >= buffer.length) {
+      flushBuffer();
+      dest.write(b, off, len);
+      return;
+    }
+    ensure(len);
+    System.arraycopy(b, off, buffer, count, len);
+    count += len;
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    ensure(Short.BYTES);
+    buffer[count++] = (byte)(v >>> 8);
+    buffer[count++] = (byte)v;
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    ensure(Integer.BYTES);
+    buffer[count++] = (byte)(v >>> 24);
+    buffer[count++] = (byte)(v >>> 16);
+    buffer[count++] = (byte)(v >>> 8);
+    buffer[count++] = (byte)v;
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    writeInt((int)(v >>> 32));
+    writeInt((int)v);
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    for (int i = 0; i < s.length(); i++) {
+      write(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) throws IOException {
+    for (int i = 0; i < s.length(); i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    byte[] cached = ModifiedUtf8.cached(s);
+    if (cached != null) {
+      write(cached, 0, cached.length);
+      return;
+    }
+
+    int length = Util.modifiedUtf8Length(s);
+    if (length > 0xFFFF) {
+      throw new UTFDataFormatException(String.format("Encoded string too long: %d bytes", length));
+    }
+    writeShort(length);
+    if (length <= buffer.length) {
+      ensure(length);
+      count = ModifiedUtf8.encode(s, buffer, count);
+    } else {
+      byte[] encoded = new byte[length];
+      ModifiedUtf8.encode(s, encoded, 0);
+      write(encoded, 0, length);
+    }
+  }
+
+  /**
+   * @throws IOException If the stream throws an {@link java.io.IOException}
+   */
+  public void flush() throws IOException {
+    flushBuffer();
+    dest.flush();
+  }
+
+  /**
+   * Flushes the buffered bytes and closes the stream.
+   *
+   * @throws IOException If the stream throws an {@link java.io.IOException}
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBuffer();
+    } finally {
+      dest.close();
+    }
+  }
+}
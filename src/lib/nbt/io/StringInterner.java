@@ -0,0 +1,95 @@
+package lib.nbt.io;
+
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * A bounded table of decoded strings, looked up by their encoded bytes.
+ *
+ * When a reader is given an interner, every short name and string it
+ * decodes is looked up here first. Repeated keys like <code>"id"</code>
+ * then resolve to one shared {@link java.lang.String} without being
+ * decoded again, which saves both time and retained heap when many
+ * trees are held at once.
+ *
+ * The table is direct-mapped: a new string replaces whatever occupied
+ * its slot, so memory use never grows past the capacity. Entries are
+ * immutable, which makes an interner safe to share between threads.
+ *
+ * @see lib.nbt.io.NBTReader#setInterner(StringInterner)
+ * @author Kyrillos Tawadros
+ */
+public class StringInterner {
+
+  /**
+   * The longest encoded string, in bytes, that is interned.
+   * Longer strings are decoded without a lookup.
+   */
+  public static final int MAX_LENGTH = 64;
+
+  private static final StringInterner GLOBAL = new StringInterner(8192);
+
+  private static final class Entry {
+    final int hash;
+    final byte[] bytes;
+    final String value;
+
+    Entry(int hash, byte[] bytes, String value) {
+      this.hash = hash;
+      this.bytes = bytes;
+      this.value = value;
+    }
+  }
+
+  private final Entry[] entries;
+
+  /**
+   * @param capacity The number of strings the table holds,
+   *   rounded up to a power of two.
+   */
+  public StringInterner(int capacity) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+    }
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    entries = new Entry[size];
+  }
+
+  /**
+   * @return An interner shared by the whole application.
+   */
+  public static StringInterner global() {
+    return GLOBAL;
+  }
+
+  /**
+   * @param bytes The array holding the encoded string.
+   * @param offset The index of the first encoded byte.
+   * @param length The number of encoded bytes.
+   * @return The decoded string, shared with previous calls for the same bytes.
+   * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+   */
+  String intern(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+    if (length > MAX_LENGTH) {
+      return ModifiedUtf8.decode(bytes, offset, length);
+    }
+
+    int hash = 1;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & (entries.length - 1);
+    Entry entry = entries[slot];
+    if (entry != null && entry.hash == hash
+        && Arrays.equals(entry.bytes, 0, entry.bytes.length, bytes, offset, offset + length)) {
+      return entry.value;
+    }
+
+    String value = ModifiedUtf8.decode(bytes, offset, length);
+    entries[slot] = new Entry(hash, Arrays.copyOfRange(bytes, offset, offset + length), value);
+    return value;
+  }
+}
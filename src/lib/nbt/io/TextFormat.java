@@ -0,0 +1,80 @@
+package lib.nbt.io;
+
+/**
+ * Number parsing and string escaping shared by the text formats,
+ * SNBT and JSON.
+ *
+ * @author Kyrillos Tawadros
+ */
+final class TextFormat {
+  /**
+   * The most decimal digits that always fit in a <code>long</code>.
+   */
+  static final int SAFE_DIGITS = 18;
+
+  private TextFormat() {}
+
+  /**
+   * @param str The text holding the digits.
+   * @param start The index of the first digit.
+   * @param end The index after the last digit.
+   * @return The value of the decimal digits from <code>start</code> to <code>end</code>,
+   *   of which there must be at most {@link #SAFE_DIGITS}.
+   *
+   * Accumulates the digits directly, without a substring.
+   */
+  static long parseDigits(CharSequence str, int start, int end) {
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = value * 10 + (str.charAt(i) - '0');
+    }
+    return value;
+  }
+
+  /**
+   * @param out The builder to append to.
+   * @param str The string to escape, without its quotes.
+   * @param quote The quote character around the string, escaped with a backslash.
+   * @param escapeControls <code>true</code> to escape other control characters
+   *   as <code>\\u00XX</code>, as JSON requires, <code>false</code> to keep them.
+   *
+   * Backslashes and the common control characters are escaped in both formats.
+   */
+  static void appendEscaped(StringBuilder out, String str, char quote, boolean escapeControls) {
+    int start = 0;
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      String escape;
+      if (c == quote || c == '\\') {
+        escape = null;
+      } else if (c >= 0x20) {
+        continue;
+      } else if (c == '\n') {
+        escape = "\\n";
+      } else if (c == '\t') {
+        escape = "\\t";
+      } else if (c == '\r') {
+        escape = "\\r";
+      } else if (c == '\b') {
+        escape = "\\b";
+      } else if (c == '\f') {
+        escape = "\\f";
+      } else if (escapeControls) {
+        escape = null;
+      } else {
+        continue;
+      }
+      // copy the run of plain characters at once
+      out.append(str, start, i);
+      if (escape != null) {
+        out.append(escape);
+      } else if (c >= 0x20) {
+        out.append('\\').append(c);
+      } else {
+        out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+      }
+      start = i + 1;
+    }
+    out.append(str, start, str.length());
+  }
+}
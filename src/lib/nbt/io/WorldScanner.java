@@ -0,0 +1,172 @@
+package lib.nbt.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lib.nbt.Tag;
+
+/**
+ * A class for scanning every chunk of a world's <code>region/</code>
+ * directory in parallel.
+ *
+ * Region files are opened one at a time, in name order. Each chunk they
+ * contain becomes a separate task on a {@link java.util.concurrent.ForkJoinPool},
+ * which reads, decompresses, decodes and visits it. At most
+ * <code>maxInFlight</code> chunks are queued or being processed at
+ * once. When that limit is reached, opening and submitting further
+ * chunks blocks until one finishes, which bounds the memory in use
+ * however large the world is.
+ *
+ * @see lib.nbt.io.ChunkVisitor
+ * @see lib.nbt.io.RegionFile
+ * @author Kyrillos Tawadros
+ */
+public class WorldScanner {
+  private final int parallelism;
+  private final int maxInFlight;
+  private boolean lazy;
+
+  /**
+   * @param parallelism The number of worker threads.
+   * @param maxInFlight The maximum number of chunks queued
+   *   or being processed at once.
+   */
+  public WorldScanner(int parallelism, int maxInFlight) {
+    if (parallelism < 1 || maxInFlight < 1) {
+      throw new IllegalArgumentException("Parallelism and chunks in flight must be positive!");
+    }
+    this.parallelism = parallelism;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Initializes a scanner with one worker per available processor
+   * and up to four chunks in flight per worker.
+   */
+  public WorldScanner() {
+    this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param lazy <code>true</code> to read chunk compounds as
+   *   {@link lib.nbt.io.LazyCompound}s, which is cheaper when
+   *   visitors only look at a few fields
+   */
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+  }
+
+  /**
+   * @param regionDirectory The directory holding the <code>.mca</code> files.
+   * @param visitor The visitor to call for every chunk, from the worker threads.
+   * @return The number of chunks visited successfully.
+   * @throws IOException If the directory or a region file header cannot be read.
+   * @throws InterruptedException If the calling thread is interrupted while
+   *   waiting for chunks to finish. Chunks not yet started are skipped,
+   *   and the scan returns once those being processed are done.
+   * @throws ExecutionException If the visitor aborts the scan from
+   *   {@link lib.nbt.io.ChunkVisitor#failed(Path, int, int, Exception)}. No further
+   *   chunks are submitted, and the scan returns once those in flight are done.
+   */
+  public long scan(Path regionDirectory, ChunkVisitor visitor) throws IOException, InterruptedException, ExecutionException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(regionDirectory)) {
+      files = listing.filter(p -> p.getFileName().toString().endsWith(".mca")).sorted().collect(Collectors.toList());
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    Semaphore permits = new Semaphore(maxInFlight);
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    LongAdder visited = new LongAdder();
+    try {
+      for (Path file : files) {
+        if (failure.get() != null) {
+          break;
+        }
+        RegionFile region = new RegionFile(file);
+        // one reference for this loop, one for each submitted chunk
+        AtomicInteger references = new AtomicInteger(1);
+        try {
+          for (int z = 0; z < RegionFile.REGION_SIZE && failure.get() == null; z++) {
+            for (int x = 0; x < RegionFile.REGION_SIZE && failure.get() == null; x++) {
+              if (!region.hasChunk(x, z)) {
+                continue;
+              }
+              permits.acquire();
+              references.incrementAndGet();
+              final int chunk_x = x;
+              final int chunk_z = z;
+              pool.execute(() -> {
+                try {
+                  if (failure.get() == null && visit(region, chunk_x, chunk_z, visitor, failure)) {
+                    visited.increment();
+                  }
+                } finally {
+                  release(region, references, failure);
+                  permits.release();
+                }
+              });
+            }
+          }
+        } finally {
+          release(region, references, failure);
+        }
+      }
+      // wait for every chunk in flight
+      permits.acquire(maxInFlight);
+    } catch (InterruptedException ie) {
+      // queued chunks are not cancelled, but skip visiting, so they still release their region
+      failure.compareAndSet(null, ie);
+      throw ie;
+    } finally {
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    if (failure.get() != null) {
+      throw new ExecutionException("Scan aborted by visitor", failure.get());
+    }
+    return visited.sum();
+  }
+
+  /**
+   * @return <code>true</code> if the chunk was visited successfully
+   */
+  private boolean visit(RegionFile region, int x, int z, ChunkVisitor visitor, AtomicReference<Exception> failure) {
+    int world_x = region.getRegionX() * RegionFile.REGION_SIZE + x;
+    int world_z = region.getRegionZ() * RegionFile.REGION_SIZE + z;
+    try {
+      Tag chunk = region.readChunk(x, z, lazy);
+      visitor.visit(region.getPath(), world_x, world_z, chunk);
+      return true;
+    } catch (Exception e) {
+      try {
+        visitor.failed(region.getPath(), world_x, world_z, e);
+      } catch (Exception abort) {
+        failure.compareAndSet(null, abort);
+      }
+      return false;
+    }
+  }
+
+  private static void release(RegionFile region, AtomicInteger references, AtomicReference<Exception> failure) {
+    if (references.decrementAndGet() == 0) {
+      try {
+        region.close();
+      } catch (IOException ioe) {
+        failure.compareAndSet(null, ioe);
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package lib.nbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.io.Compression;
+import lib.nbt.io.NBTReader;
+
+/**
+ * {@link lib.nbt.CompactCompound}s built directly and read in compact mode,
+ * checked against {@link java.util.HashMap}s before and after their key sets change.
+ *
+ * @author Kyrillos Tawadros
+ */
+class CompactCompoundTest {
+
+  @Test
+  void compactReadMatchesLevel() throws IOException, NBTException {
+    Tag level = Samples.level();
+    NBTReader reader = new NBTReader(new ByteArrayInputStream(Samples.encode(level, Compression.NONE)));
+    reader.setCompact(true);
+    Tag compact = reader.readNBT();
+    assertTrue(compact.getValue() instanceof CompactCompound);
+    assertEquals(level, compact);
+  }
+
+  @Test
+  void builtCompoundsBehaveLikeMaps() {
+    CompactCompound.Builder builder = new CompactCompound.Builder();
+    Map<String, Object> expected = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      builder.put("k" + i, i);
+      expected.put("k" + i, i);
+    }
+    builder.put("k3", 33);
+    expected.put("k3", 33);
+    Map<String, Object> compound = builder.build();
+    assertTrue(compound instanceof CompactCompound);
+    assertEquals(expected, compound);
+    assertEquals(compound, expected);
+    assertEquals(expected.hashCode(), compound.hashCode());
+    assertTrue(compound.containsValue(33));
+    assertNull(compound.get("missing"));
+
+    // the builder starts over after build
+    assertTrue(builder.build().isEmpty());
+  }
+
+  @Test
+  void replacingValuesKeepsTheShape() {
+    CompactCompound compound = (CompactCompound)new CompactCompound.Builder().put("a", 1).put("b", 2).build();
+    assertEquals(1, compound.put("a", 10));
+    Iterator<Map.Entry<String, Object>> entries = compound.entrySet().iterator();
+    entries.next();
+    entries.next().setValue(20);
+    assertNull(compound.remove("missing"));
+    assertTrue(compound.isCompact());
+    assertEquals(10, compound.get("a"));
+    assertEquals(20, compound.get("b"));
+  }
+
+  @Test
+  void changingKeysConverts() {
+    CompactCompound.Builder builder = new CompactCompound.Builder();
+    CompactCompound first = (CompactCompound)builder.put("a", 1).put("b", 2).build();
+    CompactCompound second = (CompactCompound)builder.put("a", 3).put("b", 4).build();
+    first.put("c", 5);
+    assertFalse(first.isCompact());
+    first.remove("a");
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("b", 2);
+    expected.put("c", 5);
+    assertEquals(expected, first);
+    // the other compound of the shape is untouched
+    assertTrue(second.isCompact());
+    assertEquals(2, second.size());
+    assertEquals(3, second.get("a"));
+  }
+
+  @Test
+  void largeCompoundsFallBackToHashMaps() {
+    CompactCompound.Builder builder = new CompactCompound.Builder();
+    for (int i = 0; i <= CompactCompound.MAX_SHAPE_SIZE; i++) {
+      builder.put("large" + i, i);
+    }
+    Map<String, Object> compound = builder.build();
+    assertFalse(compound instanceof CompactCompound);
+    assertEquals(CompactCompound.MAX_SHAPE_SIZE + 1, compound.size());
+    assertEquals(7, compound.get("large7"));
+  }
+
+  @Test
+  void nullKeysAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new CompactCompound.Builder().put(null, 1));
+  }
+}
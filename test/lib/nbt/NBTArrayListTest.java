@@ -0,0 +1,142 @@
+package lib.nbt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Edits of an int array through an {@link lib.nbt.NBTArrayList}, directly, in
+ * batches and through iterators and sublists, and when they reach the tag.
+ *
+ * @author Kyrillos Tawadros
+ */
+class NBTArrayListTest {
+
+  /**
+   * A tag counting the values set on it.
+   */
+  private static final class CountingTag extends Tag {
+    int sets;
+
+    CountingTag(int... values) {
+      super("array", values);
+    }
+
+    @Override
+    public void setValue(Object newValue) {
+      super.setValue(newValue);
+      sets++;
+    }
+  }
+
+  @Test
+  void editsArePublishedWhenTheTagIsRead() {
+    CountingTag tag = new CountingTag(1, 2, 3);
+    NBTArrayList list = new NBTArrayList(tag);
+    Object original = tag.value;
+    for (int i = 4; i <= 100; i++) {
+      list.add(i);
+    }
+    list.set(0, 0);
+    list.remove(1);
+    assertTrue(list.isDirty());
+    assertSame(original, tag.value);
+    assertEquals(0, tag.sets);
+
+    int[] expected = new int[99];
+    for (int i = 1; i < expected.length; i++) {
+      expected[i] = i + 2;
+    }
+    assertArrayEquals(expected, (int[])tag.getValue());
+    assertFalse(list.isDirty());
+    assertEquals(1, tag.sets);
+    // reading again publishes nothing
+    tag.getValue();
+    assertEquals(1, tag.sets);
+  }
+
+  @Test
+  void tagsCompareWithTheirPendingEdits() {
+    Tag tag = new Tag("array", new int[] { 1, 2 });
+    NBTArrayList list = new NBTArrayList(tag);
+    list.add(3);
+    Tag expected = new Tag("array", new int[] { 1, 2, 3 });
+    assertEquals(expected, tag);
+    assertEquals(expected.hashCode(), tag.hashCode());
+    list.add(4);
+    assertArrayEquals(new int[] { 1, 2, 3, 4 }, (int[])tag.copy().getValue());
+  }
+
+  @Test
+  void settingTheTagReplacesPendingEdits() {
+    Tag tag = new Tag("array", new int[] { 1, 2 });
+    NBTArrayList list = new NBTArrayList(tag);
+    list.add(3);
+    tag.setValue(new int[] { 9 });
+    assertFalse(list.isDirty());
+    assertArrayEquals(new int[] { 9 }, (int[])tag.getValue());
+  }
+
+  @Test
+  void autoCommitPublishesEachMutationOrBatch() {
+    CountingTag tag = new CountingTag(5, 1, 4);
+    NBTArrayList list = new NBTArrayList(tag);
+    list.setAutoCommit(true);
+    list.add(2);
+    assertEquals(1, tag.sets);
+    assertArrayEquals(new int[] { 5, 1, 4, 2 }, (int[])tag.value);
+
+    list.edit(l -> {
+      l.add(3);
+      l.remove(0);
+    });
+    assertEquals(2, tag.sets);
+    list.addAll(Arrays.asList(6, 7, 8));
+    assertEquals(3, tag.sets);
+    list.removeIf(item -> (Integer)item % 2 == 0);
+    assertEquals(4, tag.sets);
+    list.sort(null);
+    assertEquals(5, tag.sets);
+    assertArrayEquals(new int[] { 1, 3, 7 }, (int[])tag.value);
+  }
+
+  @Test
+  void iteratorsAndSublistsEditTheList() {
+    CountingTag tag = new CountingTag(1, 2, 3, 4, 5, 6);
+    NBTArrayList list = new NBTArrayList(tag);
+    Iterator<Object> it = list.iterator();
+    it.next();
+    it.remove();
+    ListIterator<Object> li = list.listIterator(1);
+    li.next();
+    li.set(30);
+    li.add(35);
+    list.subList(3, 5).clear();
+    assertTrue(list.isDirty());
+    assertEquals(0, tag.sets);
+    assertArrayEquals(new int[] { 2, 30, 35, 6 }, (int[])tag.getValue());
+    assertEquals(Arrays.asList(2, 30, 35, 6), list);
+  }
+
+  @Test
+  void syncTagsUpdateTheirContainerOnPublish() {
+    Map<String, Object> parent = new HashMap<>();
+    parent.put("array", new long[] { 1L });
+    MapSyncTag tag = new MapSyncTag("array", parent.get("array"), parent);
+    NBTArrayList list = new NBTArrayList(tag);
+    list.add(2L);
+    assertArrayEquals(new long[] { 1L }, (long[])parent.get("array"));
+    list.commit();
+    assertArrayEquals(new long[] { 1L, 2L }, (long[])parent.get("array"));
+  }
+}
@@ -0,0 +1,109 @@
+package lib.nbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Random edits of {@link lib.nbt.PersistentCompound}s and {@link lib.nbt.PersistentList}s,
+ * checked against a {@link java.util.HashMap} and an {@link java.util.ArrayList}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class PersistentTest {
+  private static final int STEPS = 20000;
+
+  @Test
+  void compoundMatchesHashMap() {
+    Random random = new Random(42);
+    PersistentCompound compound = PersistentCompound.EMPTY;
+    Map<String, Object> expected = new HashMap<>();
+    List<PersistentCompound> versions = new ArrayList<>();
+    List<Map<String, Object>> snapshots = new ArrayList<>();
+    for (int step = 0; step < STEPS; step++) {
+      // few enough keys that updates and removals hit existing entries
+      String key = "k" + random.nextInt(500);
+      if (random.nextInt(3) == 0) {
+        compound = compound.dissoc(key);
+        expected.remove(key);
+      } else {
+        int value = random.nextInt();
+        compound = compound.assoc(key, value);
+        expected.put(key, value);
+      }
+      assertEquals(expected.size(), compound.size());
+      assertEquals(expected.get(key), compound.get(key));
+      if (step % 1000 == 0) {
+        versions.add(compound);
+        snapshots.add(new HashMap<>(expected));
+      }
+    }
+    assertEquals(expected, compound);
+    assertEquals(compound, expected);
+    assertEquals(expected.hashCode(), compound.hashCode());
+    // earlier versions are untouched by later edits
+    for (int i = 0; i < versions.size(); i++) {
+      assertEquals(snapshots.get(i), versions.get(i));
+    }
+  }
+
+  @Test
+  void listMatchesArrayList() {
+    Random random = new Random(7);
+    PersistentList list = PersistentList.empty(NBTType.INT);
+    List<Object> expected = new ArrayList<>();
+    List<PersistentList> versions = new ArrayList<>();
+    List<List<Object>> snapshots = new ArrayList<>();
+    for (int step = 0; step < STEPS; step++) {
+      int op = random.nextInt(4);
+      if (op == 0 && !expected.isEmpty()) {
+        list = list.pop();
+        expected.remove(expected.size() - 1);
+      } else if (op == 1 && !expected.isEmpty()) {
+        int index = random.nextInt(expected.size());
+        int value = random.nextInt();
+        list = list.assoc(index, value);
+        expected.set(index, value);
+      } else {
+        int value = random.nextInt();
+        list = list.conj(value);
+        expected.add(value);
+      }
+      assertEquals(expected.size(), list.size());
+      if (!expected.isEmpty()) {
+        int index = random.nextInt(expected.size());
+        assertEquals(expected.get(index), list.get(index));
+      }
+      if (step % 1000 == 0) {
+        versions.add(list);
+        snapshots.add(new ArrayList<>(expected));
+      }
+    }
+    assertEquals(expected, list);
+    assertEquals(list, expected);
+    assertEquals(expected.hashCode(), list.hashCode());
+    for (int i = 0; i < versions.size(); i++) {
+      assertEquals(snapshots.get(i), versions.get(i));
+    }
+  }
+
+  @Test
+  void frozenTreesMatchStructurally() {
+    Map<String, Object> compound = new HashMap<>();
+    compound.put("ints", new int[] { 1, 2, 3 });
+    NBTList nested = new NBTList(NBTType.STRING);
+    nested.add("a");
+    compound.put("list", nested);
+    PersistentCompound frozen = PersistentCompound.of(compound);
+    assertTrue(ContentHash.equal(compound, frozen));
+    assertEquals(ContentHash.of(compound), ContentHash.of(frozen));
+    assertEquals(new Tag("root", compound), new Tag("root", frozen));
+  }
+}
@@ -0,0 +1,39 @@
+package lib.nbt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import lib.nbt.io.Compression;
+import lib.nbt.io.NBTReader;
+import lib.nbt.io.NBTWriter;
+
+/**
+ * The sample data the tests share.
+ *
+ * @author Kyrillos Tawadros
+ */
+public final class Samples {
+  private Samples() {}
+
+  /**
+   * @return A fresh copy of the <code>level.dat</code> of a world, read from the test resources.
+   */
+  public static Tag level() throws IOException, NBTException {
+    try (InputStream in = Samples.class.getResourceAsStream("/level.dat")) {
+      if (in == null) {
+        throw new IOException("Missing test resource level.dat");
+      }
+      return new NBTReader(in).readNBT();
+    }
+  }
+
+  /**
+   * @return The encoding of <code>root</code> with <code>compression</code>.
+   */
+  public static byte[] encode(Tag root, Compression compression) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new NBTWriter(out, compression).writeNBT(root);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,166 @@
+package lib.nbt.bind;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+import lib.nbt.io.Compression;
+import lib.nbt.io.NBTReader;
+
+/**
+ * Objects bound to <code>level.dat</code> and to compounds of every supported
+ * field type, read from streams and trees and written back.
+ *
+ * @author Kyrillos Tawadros
+ */
+class BindingTest {
+
+  static class Level {
+    @NBTField("Data") LevelData data;
+  }
+
+  static class LevelData {
+    @NBTField(value = "Time", required = true) long time;
+    @NBTField("DayTime") Long dayTime;
+    @NBTField(value = "Difficulty", type = NBTType.BYTE) int difficulty;
+    @NBTField("ServerBrands") List<String> brands;
+    @NBTField("Version") Version version;
+  }
+
+  static class Version {
+    @NBTField("Id") int id;
+    @NBTField("Name") String name;
+    @NBTField("Snapshot") boolean snapshot;
+  }
+
+  enum Mode { SURVIVAL, CREATIVE }
+
+  static class Base {
+    @NBTField(value = "id", required = true) String id;
+  }
+
+  static class Item extends Base {
+    @NBTField(value = "Count", type = NBTType.BYTE) private int count;
+    @NBTField private Mode mode;
+    @NBTField private int[] slots;
+    @NBTField private List<Long> times;
+    @NBTField private Map<String, Object> tag;
+    private int unbound = -1;
+
+    private Item() {}
+  }
+
+  static class Unbound {
+    int field;
+  }
+
+  static class NoConstructor {
+    @NBTField int field;
+
+    NoConstructor(int field) {
+      this.field = field;
+    }
+  }
+
+  private static Item item() {
+    Item item = new Item();
+    item.id = "minecraft:stone";
+    item.count = 64;
+    item.mode = Mode.CREATIVE;
+    item.slots = new int[] { 1, 2, 3 };
+    item.times = Arrays.asList(1L, 2L);
+    item.tag = new HashMap<>();
+    item.tag.put("Damage", 3);
+    return item;
+  }
+
+  @Test
+  void readsLevel() throws IOException, NBTException {
+    Tag level = Samples.level();
+    Level bound = Binding.of(Level.class).read(new ByteArrayInputStream(Samples.encode(level, Compression.GZIP)));
+    Map<?, ?> data = (Map<?, ?>)((Map<?, ?>)level.getValue()).get("Data");
+    Map<?, ?> version = (Map<?, ?>)data.get("Version");
+    assertEquals(data.get("Time"), bound.data.time);
+    assertEquals(data.get("DayTime"), bound.data.dayTime);
+    assertEquals(((Number)data.get("Difficulty")).intValue(), bound.data.difficulty);
+    assertEquals(data.get("ServerBrands"), bound.data.brands);
+    assertEquals(version.get("Id"), bound.data.version.id);
+    assertEquals(version.get("Name"), bound.data.version.name);
+    assertEquals(((Number)version.get("Snapshot")).byteValue() != 0, bound.data.version.snapshot);
+  }
+
+  @Test
+  void streamRoundTrip() throws IOException, NBTException {
+    Binding<Item> items = Binding.of(Item.class);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    items.write(item(), out, Compression.GZIP);
+    Item read = items.read(new ByteArrayInputStream(out.toByteArray()));
+    assertItem(read);
+    assertEquals(-1, read.unbound);
+  }
+
+  @Test
+  void compoundRoundTrip() throws NBTException {
+    Binding<Item> items = Binding.of(Item.class);
+    Map<String, Object> compound = items.toCompound(item());
+    assertEquals((byte)64, compound.get("Count"));
+    assertEquals("CREATIVE", compound.get("mode"));
+    assertEquals(NBTType.LONG, ((NBTList)compound.get("times")).type);
+    assertFalse(compound.containsKey("unbound"));
+    assertItem(items.fromCompound(compound));
+  }
+
+  @Test
+  void unboundEntriesAreSkipped() throws IOException, NBTException {
+    Map<String, Object> compound = Binding.of(Item.class).toCompound(item());
+    Map<String, Object> nested = new HashMap<>();
+    nested.put("deep", new long[] { 5L });
+    compound.put("extra", nested);
+    compound.put("other", "skipped");
+    byte[] encoded = Samples.encode(new Tag("", compound), Compression.NONE);
+    assertItem(Binding.of(Item.class).read(new ByteArrayInputStream(encoded)));
+    assertEquals(new Tag("", compound), new NBTReader(new ByteArrayInputStream(encoded)).readNBT());
+  }
+
+  @Test
+  void missingRequiredEntriesFail() {
+    Map<String, Object> compound = Binding.of(Item.class).toCompound(item());
+    compound.remove("id");
+    assertThrows(NBTException.class, () -> Binding.of(Item.class).fromCompound(compound));
+    assertThrows(NBTException.class, () -> Binding.of(Item.class)
+        .read(new ByteArrayInputStream(Samples.encode(new Tag("", compound), Compression.NONE))));
+  }
+
+  @Test
+  void unbindableClassesAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> Binding.of(Unbound.class));
+    assertThrows(IllegalArgumentException.class, () -> Binding.of(NoConstructor.class));
+  }
+
+  private static void assertItem(Item item) {
+    assertEquals("minecraft:stone", item.id);
+    assertEquals(64, item.count);
+    assertEquals(Mode.CREATIVE, item.mode);
+    assertArrayEquals(new int[] { 1, 2, 3 }, item.slots);
+    assertEquals(Arrays.asList(1L, 2L), item.times);
+    assertTrue(item.tag.containsKey("Damage"));
+    assertEquals(3, item.tag.get("Damage"));
+  }
+}
@@ -0,0 +1,146 @@
+package lib.nbt.diff;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.PersistentCompound;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+import lib.nbt.io.Compression;
+import lib.nbt.io.NBTReader;
+
+/**
+ * Diffs between <code>level.dat</code> and randomly edited copies of it,
+ * applied back directly and after a round trip through {@link lib.nbt.diff.Patch#toTag()}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class NBTDiffTest {
+  private static final int ROUNDS = 50;
+
+  @Test
+  void identicalTreesGiveEmptyPatch() throws IOException, NBTException {
+    assertTrue(NBTDiff.diff(Samples.level(), Samples.level()).isEmpty());
+  }
+
+  @Test
+  void diffThenApply() throws IOException, NBTException {
+    Tag before = Samples.level();
+    Random random = new Random(1);
+    int edits = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      Tag after = before.deepCopy();
+      mutate(after.getValue(), random);
+      Patch patch = NBTDiff.diff(before, after);
+      edits += patch.size();
+      Tag patched = before.deepCopy();
+      NBTDiff.apply(patch, patched);
+      assertEquals(after, patched, patch.toString());
+    }
+    assertTrue(edits > ROUNDS, "too few edits to test");
+  }
+
+  @Test
+  void applyToPersistentTree() throws IOException, NBTException {
+    Tag before = Samples.level();
+    Random random = new Random(2);
+    for (int round = 0; round < ROUNDS; round++) {
+      Tag after = before.deepCopy();
+      mutate(after.getValue(), random);
+      Patch patch = NBTDiff.diff(before, after);
+      Tag persistent = new Tag(before.getName(), PersistentCompound.freeze(before.getValue()));
+      NBTDiff.apply(patch, persistent);
+      assertEquals(after, persistent, patch.toString());
+    }
+  }
+
+  @Test
+  void patchTagRoundTrip() throws IOException, NBTException {
+    Tag before = Samples.level();
+    Random random = new Random(3);
+    for (int round = 0; round < ROUNDS; round++) {
+      Tag after = before.deepCopy();
+      mutate(after.getValue(), random);
+      Patch patch = NBTDiff.diff(before, after);
+      byte[] encoded = Samples.encode(patch.toTag(), Compression.NONE);
+      Patch read = Patch.fromTag(new NBTReader(new ByteArrayInputStream(encoded)).readNBT());
+      assertEquals(patch.size(), read.size());
+      Tag patched = before.deepCopy();
+      NBTDiff.apply(read, patched);
+      assertEquals(after, patched, read.toString());
+    }
+  }
+
+  @Test
+  void boxedArraysDiff() {
+    Map<String, Object> before = new HashMap<>();
+    before.put("a", new Integer[] { 1, 2, 3 });
+    Map<String, Object> after = new HashMap<>();
+    after.put("a", new int[] { 1, 5, 3, 4 });
+    Patch patch = NBTDiff.diff(before, after);
+    Map<String, Object> patched = NBTDiff.apply(patch, before);
+    assertTrue(Arrays.equals((int[])after.get("a"), (int[])NBTType.unboxArray(patched.get("a"))));
+  }
+
+  /**
+   * Adds, removes and changes a few entries, elements and array ranges throughout <code>node</code>.
+   */
+  @SuppressWarnings("unchecked")
+  private static void mutate(Object node, Random random) {
+    if (node instanceof Map) {
+      Map<String, Object> compound = (Map<String, Object>)node;
+      for (String key : new ArrayList<>(compound.keySet())) {
+        Object value = compound.get(key);
+        int roll = random.nextInt(40);
+        if (roll == 0) {
+          compound.remove(key);
+        } else if (roll == 1) {
+          compound.put(key, random.nextInt());
+        } else if (value instanceof int[] && roll < 8) {
+          compound.put(key, resize((int[])value, random));
+        } else {
+          mutate(value, random);
+        }
+      }
+      if (random.nextInt(10) == 0) {
+        compound.put("added" + random.nextInt(1000), (long)random.nextInt());
+      }
+    } else if (node instanceof NBTList) {
+      NBTList list = (NBTList)node;
+      if (list.type == NBTType.INT && random.nextInt(4) == 0) {
+        if (!list.isEmpty() && random.nextBoolean()) {
+          list.remove(random.nextInt(list.size()));
+        }
+        list.add(random.nextInt(list.size() + 1), random.nextInt(100));
+        if (!list.isEmpty()) {
+          list.set(random.nextInt(list.size()), random.nextInt(100));
+        }
+      } else {
+        for (Object item : list) {
+          mutate(item, random);
+        }
+      }
+    }
+  }
+
+  private static int[] resize(int[] array, Random random) {
+    int[] result = Arrays.copyOf(array, Math.max(0, array.length + random.nextInt(5) - 2));
+    if (result.length > 0) {
+      result[random.nextInt(result.length)] = random.nextInt();
+    }
+    return result;
+  }
+}
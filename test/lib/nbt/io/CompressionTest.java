@@ -0,0 +1,103 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.NBTException;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * Round trips of <code>level.dat</code> through each {@link lib.nbt.io.Compression}.
+ *
+ * @author Kyrillos Tawadros
+ */
+class CompressionTest {
+  private static final List<Compression> COMPRESSIONS = Arrays.asList(Compression.NONE, Compression.GZIP,
+      Compression.ZLIB, Compression.LZ4, Compression.gzip(Deflater.BEST_SPEED),
+      Compression.zlib(Deflater.BEST_COMPRESSION, Deflater.FILTERED));
+
+  @Test
+  void readerAndWriterRoundTrip() throws IOException, NBTException {
+    Tag level = Samples.level();
+    for (Compression compression : COMPRESSIONS) {
+      byte[] encoded = Samples.encode(level, compression);
+      assertEquals(level, new NBTReader(new ByteArrayInputStream(encoded), compression).readNBT(),
+          compression.toString());
+      assertEquals(level, new NBTReader(new ByteArrayInputStream(encoded)).readNBT(), compression.toString());
+    }
+  }
+
+  @Test
+  void codecRoundTrip() throws IOException, NBTException {
+    Tag level = Samples.level();
+    for (Compression compression : COMPRESSIONS) {
+      try (NBTCodec codec = new NBTCodec(compression)) {
+        // twice, since a codec reuses its buffers and inflater
+        for (int i = 0; i < 2; i++) {
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          codec.write(level, out);
+          assertEquals(level, codec.read(new ByteArrayInputStream(out.toByteArray())), compression.toString());
+        }
+      }
+    }
+  }
+
+  @Test
+  void detectsEachCompression() throws IOException, NBTException {
+    Tag level = Samples.level();
+    for (Compression compression : COMPRESSIONS) {
+      byte[] encoded = Samples.encode(level, compression);
+      Compression detected = Compression.detect(encoded, Math.min(encoded.length, Compression.MAGIC_LENGTH));
+      assertEquals(compression.getName(), detected.getName());
+    }
+  }
+
+  @Test
+  void codecReadsConcatenatedGzipMembers() throws IOException, NBTException {
+    Tag level = Samples.level();
+    byte[] raw = Samples.encode(level, Compression.NONE);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int[] cuts = { 0, raw.length / 3, raw.length / 3 + 1, raw.length };
+    for (int i = 0; i + 1 < cuts.length; i++) {
+      GZIPOutputStream member = new GZIPOutputStream(out);
+      member.write(raw, cuts[i], cuts[i + 1] - cuts[i]);
+      member.finish();
+    }
+    try (NBTCodec codec = new NBTCodec()) {
+      assertEquals(level, codec.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+  }
+
+  @Test
+  void codecChecksTrailers() throws IOException, NBTException {
+    Tag level = Samples.level();
+    // the GZIP CRC and size, and the zlib Adler-32, are all in the last 8 bytes
+    for (Compression compression : new Compression[] { Compression.GZIP, Compression.ZLIB }) {
+      int trailer = compression == Compression.GZIP ? 8 : 4;
+      for (int back = 1; back <= trailer; back++) {
+        byte[] encoded = Samples.encode(level, compression);
+        encoded[encoded.length - back] ^= 1;
+        try (NBTCodec codec = new NBTCodec()) {
+          assertThrows(IOException.class, () -> codec.read(new ByteArrayInputStream(encoded)),
+              compression + " with byte -" + back + " changed");
+        }
+      }
+    }
+  }
+
+  @Test
+  void writerRejectsNullCompression() {
+    assertThrows(IllegalArgumentException.class, () -> new NBTWriter(new ByteArrayOutputStream(), (Compression)null));
+  }
+}
@@ -0,0 +1,92 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * <code>level.dat</code> read as {@link lib.nbt.io.LazyCompound}s, compared
+ * with the eager decoding of {@link lib.nbt.io.NBTStreamReader} and
+ * {@link lib.nbt.NBTType#readFrom(DataInputStream)}, and written back.
+ *
+ * @author Kyrillos Tawadros
+ */
+class LazyCompoundTest {
+
+  private static Tag lazy(byte[] raw) throws IOException, NBTException {
+    return new NBTReader(ByteBuffer.wrap(raw), true).readNBT();
+  }
+
+  @Test
+  void lazyMatchesEager() throws IOException, NBTException {
+    Tag level = Samples.level();
+    Tag lazy = lazy(Samples.encode(level, Compression.NONE));
+    assertTrue(lazy.getValue() instanceof LazyCompound);
+    assertEquals(level, lazy);
+    assertEquals(lazy, level);
+    assertEquals(level.hashCode(), lazy.hashCode());
+  }
+
+  @Test
+  void pristineCompoundsCopyTheirBytes() throws IOException, NBTException {
+    byte[] raw = Samples.encode(Samples.level(), Compression.NONE);
+    Tag lazy = lazy(raw);
+    LazyCompound root = (LazyCompound)lazy.getValue();
+    // reading nested compounds and scalars leaves them untouched
+    for (Object value : root.values()) {
+      if (value instanceof Map) {
+        ((Map<?, ?>)value).size();
+      }
+    }
+    assertTrue(root.isPristine());
+    assertArrayEquals(raw, Samples.encode(lazy, Compression.NONE));
+  }
+
+  @Test
+  void editedCompoundsWriteTheirChanges() throws IOException, NBTException {
+    Tag level = Samples.level();
+    Tag lazy = lazy(Samples.encode(level, Compression.NONE));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> expected = (Map<String, Object>)level.getValue();
+    LazyCompound root = (LazyCompound)lazy.getValue();
+    String removed = expected.keySet().iterator().next();
+    expected.put("added", 42L);
+    expected.remove(removed);
+    root.put("added", 42L);
+    root.remove(removed);
+    assertFalse(root.isPristine());
+
+    byte[] encoded = Samples.encode(lazy, Compression.NONE);
+    int header = 1 + 2 + lazy.getName().getBytes(StandardCharsets.UTF_8).length;
+    assertEquals(encoded.length, header + root.sizeOf());
+    assertEquals(new Tag(level.getName(), expected), new NBTReader(new ByteArrayInputStream(encoded)).readNBT());
+  }
+
+  @Test
+  void readFromMatchesStreamReader() throws IOException, NBTException {
+    Tag level = Samples.level();
+    byte[] raw = Samples.encode(level, Compression.NONE);
+    int header = 1 + 2 + level.getName().getBytes(StandardCharsets.UTF_8).length;
+    Object read = NBTType.COMPOUND.readFrom(new DataInputStream(new ByteArrayInputStream(raw, header, raw.length)));
+    Object decoded = NBTStreamReader.decode(NBTType.COMPOUND,
+        new DataInputStream(new ByteArrayInputStream(raw, header, raw.length)));
+    // compared as tags, whose equality looks into arrays
+    assertEquals(level, new Tag(level.getName(), read));
+    assertEquals(new Tag(level.getName(), decoded), new Tag(level.getName(), read));
+  }
+}
@@ -0,0 +1,62 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.NBTException;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * Reading arrays from an {@link lib.nbt.io.NBTStreamReader}, at the right and wrong events.
+ *
+ * @author Kyrillos Tawadros
+ */
+class NBTStreamReaderTest {
+
+  private static NBTStreamReader reader() throws IOException {
+    Map<String, Object> root = new LinkedHashMap<>();
+    root.put("ints", new int[] { 1, 2, 3 });
+    root.put("count", 7);
+    byte[] data = Samples.encode(new Tag("", root), Compression.NONE);
+    return new NBTStreamReader(data, 0, data.length);
+  }
+
+  @Test
+  void readsArraysAtTheirValue() throws IOException, NBTException {
+    NBTStreamReader reader = reader();
+    assertEquals(NBTEvent.NAME, reader.next());
+    assertEquals(NBTEvent.START_COMPOUND, reader.next());
+    assertEquals(NBTEvent.NAME, reader.next());
+    assertEquals(NBTEvent.VALUE, reader.next());
+    assertArrayEquals(new int[] { 1, 2, 3 }, reader.readIntArray());
+  }
+
+  @Test
+  void arraysAtOtherEventsAreStateErrors() throws IOException, NBTException {
+    NBTStreamReader reader = reader();
+    assertEquals(NBTEvent.NAME, reader.next());
+    assertEquals(NBTEvent.START_COMPOUND, reader.next());
+    assertThrows(IllegalStateException.class, reader::readByteArray);
+    assertThrows(IllegalStateException.class, reader::readIntArray);
+    assertThrows(IllegalStateException.class, reader::readLongArray);
+    // at the name of an array, before its length is read
+    assertEquals(NBTEvent.NAME, reader.next());
+    assertThrows(IllegalStateException.class, reader::readIntArray);
+    assertEquals(NBTEvent.VALUE, reader.next());
+    assertArrayEquals(new int[] { 1, 2, 3 }, reader.readIntArray());
+    // at a value of another type
+    assertEquals(NBTEvent.NAME, reader.next());
+    assertEquals(NBTEvent.VALUE, reader.next());
+    assertThrows(IllegalStateException.class, reader::readLongArray);
+    assertThrows(IllegalStateException.class, () -> reader.readIntArray(new int[0]));
+    assertEquals(7, reader.readInt());
+  }
+}
@@ -0,0 +1,79 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lib.nbt.NBTException;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * Chunks read from small region files built in memory,
+ * with and without the padding of their last sector.
+ *
+ * @author Kyrillos Tawadros
+ */
+class RegionFileTest {
+
+  @TempDir
+  Path dir;
+
+  /**
+   * @return A region file holding <code>level.dat</code> as chunk <code>(1, 2)</code>
+   *   in sector 2, zlib compressed, and cut to <code>cut</code> bytes if it is positive.
+   */
+  private Path region(boolean padded, int cut) throws IOException, NBTException {
+    byte[] payload = Samples.encode(Samples.level(), Compression.ZLIB);
+    int sectors = (payload.length + 5 + RegionFile.SECTOR_SIZE - 1) / RegionFile.SECTOR_SIZE;
+    int size = 2 * RegionFile.SECTOR_SIZE + (padded ? sectors * RegionFile.SECTOR_SIZE : payload.length + 5);
+    ByteBuffer file = ByteBuffer.allocate(size);
+    int index = 1 + 2 * RegionFile.REGION_SIZE;
+    file.putInt(index * 4, 2 << 8 | sectors);
+    file.putInt(RegionFile.SECTOR_SIZE + index * 4, 1234);
+    file.position(2 * RegionFile.SECTOR_SIZE);
+    file.putInt(payload.length + 1).put((byte)RegionFile.COMPRESSION_ZLIB).put(payload);
+    Path path = dir.resolve(padded ? "r.0.0.mca" : "r.1.1.mca");
+    Files.write(path, cut > 0 ? Arrays.copyOf(file.array(), cut) : file.array());
+    return path;
+  }
+
+  @Test
+  void readsPaddedAndUnpaddedChunks() throws IOException, NBTException {
+    Tag level = Samples.level();
+    for (boolean padded : new boolean[] { true, false }) {
+      try (RegionFile region = new RegionFile(region(padded, 0))) {
+        assertTrue(region.hasChunk(1, 2));
+        assertFalse(region.hasChunk(2, 1));
+        assertEquals(1234, region.getTimestamp(1, 2));
+        assertNull(region.readChunk(2, 1));
+        assertEquals(level, region.readChunk(1, 2), "padded " + padded);
+        assertEquals(level, region.readChunk(1, 2, true), "padded " + padded);
+      }
+    }
+  }
+
+  @Test
+  void truncatedChunksAreInvalid() throws IOException, NBTException {
+    Path full = region(false, 0);
+    long size = Files.size(full);
+    // within the chunk's data, and within its length header
+    for (long cut : new long[] { size - 1, 2 * RegionFile.SECTOR_SIZE + 2 }) {
+      Path path = region(false, (int)cut);
+      try (RegionFile region = new RegionFile(path)) {
+        assertThrows(NBTException.class, () -> region.readChunk(1, 2), "cut at " + cut);
+      }
+    }
+  }
+}
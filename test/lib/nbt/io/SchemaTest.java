@@ -0,0 +1,118 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.NBTException;
+import lib.nbt.NBTType;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * <code>level.dat</code> decoded through {@link lib.nbt.io.SchemaDecoder}s,
+ * compared with the matching parts of the full tree.
+ *
+ * @author Kyrillos Tawadros
+ */
+class SchemaTest {
+  private static final Schema VERSION = Schema.compound()
+      .require("Id", NBTType.INT)
+      .key("Name", NBTType.STRING)
+      .key("Missing", NBTType.STRING)
+      .build();
+
+  private static final Schema LEVEL = Schema.compound()
+      .require("Data", Schema.compound()
+          .require("Time", NBTType.LONG)
+          .key("Version", VERSION)
+          .key("ServerBrands", Schema.listOf(NBTType.STRING))
+          .key("DragonFight", Schema.compound()
+              .key("Gateways", Schema.listOf(NBTType.INT))
+              .build())
+          .build())
+      .build();
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> compound(Object value) {
+    return (Map<String, Object>)value;
+  }
+
+  /**
+   * @return The entries of <code>compound</code> named by <code>keys</code>.
+   */
+  private static Map<String, Object> pick(Object compound, String... keys) {
+    Map<String, Object> picked = new HashMap<>();
+    for (String key : keys) {
+      if (compound(compound).containsKey(key)) {
+        picked.put(key, compound(compound).get(key));
+      }
+    }
+    return picked;
+  }
+
+  @Test
+  void decodesDeclaredParts() throws IOException, NBTException {
+    Tag level = Samples.level();
+    Map<String, Object> data = compound(compound(level.getValue()).get("Data"));
+    Map<String, Object> expected_data = pick(data, "Time", "ServerBrands");
+    expected_data.put("Version", pick(data.get("Version"), "Id", "Name"));
+    expected_data.put("DragonFight", pick(data.get("DragonFight"), "Gateways"));
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("Data", expected_data);
+    Tag expected_tag = new Tag(level.getName(), expected);
+
+    SchemaDecoder decoder = LEVEL.compile();
+    assertEquals(expected_tag, decoder.decode(new ByteArrayInputStream(Samples.encode(level, Compression.GZIP))));
+    byte[] raw = Samples.encode(level, Compression.NONE);
+    assertEquals(expected_tag, decoder.decode(raw, 0, raw.length));
+  }
+
+  @Test
+  void keepsOtherEntriesUnlessDropped() throws IOException, NBTException {
+    Tag level = Samples.level();
+    Schema schema = Schema.compound()
+        .key("Data", Schema.compound().drop("WorldGenSettings").keepOthers().build())
+        .build();
+    Map<String, Object> data = compound(compound(level.getValue()).get("Data"));
+    assertTrue(data.remove("WorldGenSettings") != null);
+    byte[] raw = Samples.encode(level, Compression.NONE);
+    assertEquals(level, schema.compile().decode(raw, 0, raw.length));
+  }
+
+  @Test
+  void mismatchesNameTheirPath() throws IOException, NBTException {
+    byte[] raw = Samples.encode(Samples.level(), Compression.NONE);
+    Schema wrong_type = Schema.compound()
+        .key("Data", Schema.compound().key("Version", Schema.compound().key("Id", NBTType.STRING).build()).build())
+        .build();
+    NBTException mismatch = assertThrows(NBTException.class, () -> wrong_type.compile().decode(raw, 0, raw.length));
+    assertTrue(mismatch.getMessage().contains("Data.Version.Id"), mismatch.getMessage());
+
+    Schema missing = Schema.compound()
+        .key("Data", Schema.compound().require("Absent", NBTType.INT).build())
+        .build();
+    NBTException absent = assertThrows(NBTException.class, () -> missing.compile().decode(raw, 0, raw.length));
+    assertTrue(absent.getMessage().contains("Absent"), absent.getMessage());
+  }
+
+  @Test
+  void emptyDocumentsDecodeToNull() throws IOException, NBTException {
+    assertNull(LEVEL.compile().decode(new byte[0], 0, 0));
+  }
+
+  @Test
+  void invalidSchemasAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> Schema.compound().key("a", NBTType.INT).key("a", NBTType.INT));
+    assertThrows(IllegalArgumentException.class, () -> Schema.compound().key(null, NBTType.INT));
+    assertThrows(IllegalArgumentException.class, () -> Schema.of(NBTType.INT).compile());
+  }
+}
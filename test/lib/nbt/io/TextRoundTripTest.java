@@ -0,0 +1,80 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lib.nbt.ContentHash;
+import lib.nbt.NBTException;
+import lib.nbt.NBTList;
+import lib.nbt.NBTType;
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * Round trips of <code>level.dat</code> through SNBT and JSON text.
+ *
+ * @author Kyrillos Tawadros
+ */
+class TextRoundTripTest {
+
+  @Test
+  void snbtRoundTrip() throws IOException, NBTException {
+    Tag level = Samples.level();
+    for (boolean pretty : new boolean[] { false, true }) {
+      String text = SNBTWriter.toString(level.getValue(), pretty);
+      assertTrue(ContentHash.equal(level.getValue(), SNBTReader.parse(text)), text);
+    }
+  }
+
+  @Test
+  void snbtSignOnlyWordsAreStrings() throws NBTException {
+    assertEquals("+", SNBTReader.parse("+"));
+    assertEquals("-", SNBTReader.parse("-"));
+    assertEquals("-b", SNBTReader.parse("-b"));
+  }
+
+  @Test
+  void jsonRoundTripPreservingTypes() throws IOException, NBTException {
+    Tag level = Samples.level();
+    Tag read = fromJSON(new JSONTranscoder(true), toJSON(new JSONTranscoder(true), level));
+    assertEquals(level, read);
+  }
+
+  @Test
+  void plainJsonRoundTrip() throws IOException, NBTException {
+    JSONTranscoder plain = new JSONTranscoder(false);
+    String json = toJSON(plain, Samples.level());
+    // widths are lost once, after which the text is stable
+    assertEquals(json, toJSON(plain, fromJSON(plain, json)));
+  }
+
+  @Test
+  void plainJsonReadsNonFiniteDoublesInLists() throws IOException, NBTException {
+    JSONTranscoder plain = new JSONTranscoder(false);
+    for (String json : new String[] { "{\"d\":[1.5,\"NaN\",\"-Infinity\"]}", "{\"d\":[\"Infinity\",2]}" }) {
+      NBTList list = (NBTList)((Map<?, ?>)fromJSON(plain, json).getValue()).get("d");
+      assertEquals(NBTType.DOUBLE, list.type, json);
+      assertEquals(json, toJSON(plain, fromJSON(plain, json)).trim().replace("2.0", "2"));
+    }
+  }
+
+  private static String toJSON(JSONTranscoder transcoder, Tag root) throws IOException, NBTException {
+    StringBuilder json = new StringBuilder();
+    transcoder.toJSON(new ByteArrayInputStream(Samples.encode(root, Compression.NONE)), json);
+    return json.toString();
+  }
+
+  private static Tag fromJSON(JSONTranscoder transcoder, String json) throws IOException, NBTException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    transcoder.toNBT(new StringReader(json), out, Compression.NONE);
+    return new NBTReader(new ByteArrayInputStream(out.toByteArray())).readNBT();
+  }
+}
@@ -0,0 +1,112 @@
+package lib.nbt.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lib.nbt.Samples;
+import lib.nbt.Tag;
+
+/**
+ * Scans of a small world, run to the end and interrupted while chunks are queued.
+ *
+ * @author Kyrillos Tawadros
+ */
+class WorldScannerTest {
+  private static final int CHUNKS = 16;
+
+  @TempDir
+  Path dir;
+
+  /**
+   * Writes a region file whose first <code>CHUNKS</code> chunks each hold an uncompressed, empty compound.
+   */
+  private void region(String name) throws IOException {
+    byte[] payload = Samples.encode(new Tag("", Collections.emptyMap()), Compression.NONE);
+    ByteBuffer file = ByteBuffer.allocate((2 + CHUNKS) * RegionFile.SECTOR_SIZE);
+    for (int i = 0; i < CHUNKS; i++) {
+      file.putInt(i * 4, (2 + i) << 8 | 1);
+      file.position((2 + i) * RegionFile.SECTOR_SIZE);
+      file.putInt(payload.length + 1).put((byte)RegionFile.COMPRESSION_NONE).put(payload);
+    }
+    Files.write(dir.resolve(name), file.array());
+  }
+
+  @Test
+  void visitsEveryChunk() throws Exception {
+    region("r.0.0.mca");
+    region("r.0.1.mca");
+    LongAdder visits = new LongAdder();
+    long visited = new WorldScanner(2, 3).scan(dir, (region, x, z, chunk) -> visits.increment());
+    assertEquals(2 * CHUNKS, visited);
+    assertEquals(2 * CHUNKS, visits.sum());
+    assertEquals(0, openFiles());
+  }
+
+  @Test
+  void interruptedScanClosesItsRegions() throws Exception {
+    assumeTrue(Files.isDirectory(Paths.get("/proc/self/fd")), "needs /proc to count open files");
+    region("r.0.0.mca");
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch resume = new CountDownLatch(1);
+    LongAdder visits = new LongAdder();
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    // a single worker, blocked on the first chunk while the scan fills its queue
+    Thread scan = new Thread(() -> {
+      try {
+        new WorldScanner(1, 4).scan(dir, (region, x, z, chunk) -> {
+          visits.increment();
+          started.countDown();
+          resume.await();
+        });
+      } catch (Exception e) {
+        thrown.set(e);
+      }
+    });
+    scan.start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    scan.interrupt();
+    resume.countDown();
+    scan.join(10000);
+    assertTrue(thrown.get() instanceof InterruptedException, String.valueOf(thrown.get()));
+    // queued chunks may be visited before the scan sees the interrupt, but none are submitted after it
+    assertTrue(visits.sum() <= 4, visits.sum() + " visits");
+    assertEquals(0, openFiles());
+  }
+
+  /**
+   * @return The number of files in the test directory this process has open.
+   */
+  private long openFiles() throws IOException {
+    Path fds = Paths.get("/proc/self/fd");
+    if (!Files.isDirectory(fds)) {
+      return 0;
+    }
+    Path root = dir.toRealPath();
+    try (Stream<Path> links = Files.list(fds)) {
+      return links.filter(link -> {
+        try {
+          return Files.readSymbolicLink(link).startsWith(root);
+        } catch (IOException | UnsupportedOperationException e) {
+          // closed since it was listed
+          return false;
+        }
+      }).count();
+    }
+  }
+}